@@ -8,8 +8,14 @@
 
 package com.ca.mas.core.test;
 
+import com.ca.mas.core.test.cert.KeyAlgorithmTest;
 import com.ca.mas.core.test.datasource.AccountManagerStoreDataSourceTest;
+import com.ca.mas.core.test.datasource.CachingDataSourceTest;
+import com.ca.mas.core.test.datasource.DataSourceExecutorTest;
+import com.ca.mas.core.test.datasource.DataSourceFactoryTest;
 import com.ca.mas.core.test.datasource.KeystoreDataSourceTest;
+import com.ca.mas.core.test.datasource.LocalStoreDataSourceTest;
+import com.ca.mas.core.test.datasource.MappedLogDataSourceTest;
 import com.ca.mas.core.test.datasource.SecureAccountManagerStoreDataSourceTest;
 import com.ca.mas.core.test.dynamicConfig.DynamicConfigTest;
 import com.ca.mas.core.test.error.GeoFencingTest;
@@ -17,16 +23,25 @@ import com.ca.mas.core.test.error.JWTValidationTest;
 import com.ca.mas.core.test.error.MAGEndpointTest;
 import com.ca.mas.core.test.error.MSISDNTest;
 import com.ca.mas.core.test.error.OAuthEndpointTest;
+import com.ca.mas.core.test.http.DnsPrefetchTest;
 import com.ca.mas.core.test.http.HttpTest;
 import com.ca.mas.core.test.oauth.AccessProtectedEndpointTest;
 import com.ca.mas.core.test.oauth.AuthorizationCodeFlowTest;
 import com.ca.mas.core.test.oauth.ClientCredentialsGrantTypeTest;
 import com.ca.mas.core.test.oauth.DeviceIdTest;
+import com.ca.mas.core.test.oauth.ScopeSetTest;
 import com.ca.mas.core.test.oauth.TokenTest;
 import com.ca.mas.core.test.otp.OtpTest;
+import com.ca.mas.core.test.policy.PolicyManagerTest;
+import com.ca.mas.core.test.policy.PolicyPlanTest;
+import com.ca.mas.core.test.request.RequestDeadlineTest;
 import com.ca.mas.core.test.storage.AccountManagerStorageTests;
+import com.ca.mas.core.test.storage.DefaultEncryptionProviderTest;
 import com.ca.mas.core.test.storage.KeyStoreStorageTests;
+import com.ca.mas.core.test.storage.PrivateTokenStorageTest;
+import com.ca.mas.core.test.storage.SegmentedEncryptionTest;
 import com.ca.mas.core.test.storage.StorageProviderTests;
+import com.ca.mas.core.test.stream.EventStreamParserTest;
 
 import org.junit.experimental.categories.Categories;
 import org.junit.runner.RunWith;
@@ -54,7 +69,22 @@ import org.junit.runners.Suite;
         InitSDKTest.class,
         StorageProviderTests.class,
         DynamicConfigTest.class,
-        OtpTest.class})
+        OtpTest.class,
+        EventStreamParserTest.class,
+        RequestDeadlineTest.class,
+        DnsPrefetchTest.class,
+        PrivateTokenStorageTest.class,
+        PolicyPlanTest.class,
+        PolicyManagerTest.class,
+        ScopeSetTest.class,
+        KeyAlgorithmTest.class,
+        CachingDataSourceTest.class,
+        LocalStoreDataSourceTest.class,
+        DataSourceExecutorTest.class,
+        MappedLogDataSourceTest.class,
+        DataSourceFactoryTest.class,
+        DefaultEncryptionProviderTest.class,
+        SegmentedEncryptionTest.class})
 
 public class AllTest {
 
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.cert;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.ca.mas.core.cert.CertUtils;
+import com.ca.mas.core.io.http.SingleKeyX509KeyManager;
+import com.ca.mas.core.util.KeyUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.spongycastle.jce.PKCS10CertificationRequest;
+
+import java.net.InetAddress;
+import java.security.KeyPair;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Verifies the EC P-256 client keys, and compares the cost of the key generation, the certificate signing
+ * request and the TLS handshake with client authentication for RSA and EC keys. The timings are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class KeyAlgorithmTest {
+
+    private static final String TAG = "KeyAlgorithmTest";
+    private static final int ITERATIONS = 5;
+    private static final int RSA_KEY_BITS = 1024;
+
+    @Test
+    public void testEcKeyEncoding() throws Exception {
+        KeyPair keyPair = KeyUtils.generateKeyPair(KeyUtils.EC, RSA_KEY_BITS);
+        assertTrue(KeyUtils.isEc(keyPair.getPrivate()));
+
+        byte[] privateKey = KeyUtils.encodePrivateKey(keyPair.getPrivate());
+        byte[] publicKey = KeyUtils.encodePublicKey(keyPair.getPublic());
+        assertTrue(Arrays.equals(privateKey, KeyUtils.decodePrivateKey(privateKey).getEncoded()));
+        assertTrue(Arrays.equals(publicKey, KeyUtils.decodePublicKey(publicKey).getEncoded()));
+
+        //RSA keys are still decoded as RSA keys
+        KeyPair rsa = KeyUtils.generateKeyPair(null, RSA_KEY_BITS);
+        assertEquals(KeyUtils.RSA, KeyUtils.decodePrivateKey(KeyUtils.encodePrivateKey(rsa.getPrivate())).getAlgorithm());
+    }
+
+    @Test
+    public void testEcCertificateSigningRequest() throws Exception {
+        KeyPair keyPair = KeyUtils.generateEcKeyPair();
+        byte[] csr = CertUtils.generateCertificateSigningRequest("admin", "deviceId", "deviceName", "organization", keyPair);
+        PKCS10CertificationRequest request = new PKCS10CertificationRequest(csr);
+        assertTrue(request.verify());
+        assertTrue(Arrays.equals(keyPair.getPublic().getEncoded(), request.getPublicKey().getEncoded()));
+    }
+
+    @Test
+    public void testKeyManagerMatchesKeyType() throws Exception {
+        KeyPair keyPair = KeyUtils.generateEcKeyPair();
+        X509Certificate cert = CertUtils.generateSelfSignedCertificate("cn=client", keyPair.getPublic(), keyPair.getPrivate(), new SecureRandom());
+        SingleKeyX509KeyManager keyManager = new SingleKeyX509KeyManager(keyPair.getPrivate(), new X509Certificate[]{cert});
+        assertNull(keyManager.chooseClientAlias(new String[]{"RSA"}, null, null));
+        assertEquals("clientCert", keyManager.chooseClientAlias(new String[]{"RSA", "EC"}, null, null));
+    }
+
+    @Test
+    public void testBenchmark() throws Exception {
+        KeyPair serverKeyPair = KeyUtils.generateRsaKeyPair(2048);
+        X509Certificate serverCert = CertUtils.generateSelfSignedCertificate("cn=localhost", serverKeyPair.getPublic(), serverKeyPair.getPrivate(), new SecureRandom());
+
+        for (String algorithm : new String[]{KeyUtils.RSA, KeyUtils.EC}) {
+            KeyPair keyPair = null;
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                keyPair = KeyUtils.generateKeyPair(algorithm, RSA_KEY_BITS);
+            }
+            long keyGen = (System.nanoTime() - start) / ITERATIONS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                CertUtils.generateCertificateSigningRequest("admin", "deviceId", "deviceName", "organization", keyPair);
+            }
+            long csr = (System.nanoTime() - start) / ITERATIONS;
+
+            X509Certificate clientCert = CertUtils.generateSelfSignedCertificate("cn=client", keyPair.getPublic(), keyPair.getPrivate(), new SecureRandom());
+            long handshake = handshake(serverKeyPair, serverCert, keyPair, clientCert);
+
+            Log.i(TAG, String.format("%s: key generation %d us, CSR %d us, handshake %d us",
+                    algorithm, keyGen / 1000, csr / 1000, handshake / 1000));
+        }
+    }
+
+    /**
+     * @return The average duration in nanoseconds of a full TLS handshake with client authentication.
+     */
+    private long handshake(KeyPair serverKeyPair, X509Certificate serverCert, KeyPair clientKeyPair, X509Certificate clientCert) throws Exception {
+        SSLContext serverContext = createContext(serverKeyPair, serverCert);
+        SSLContext clientContext = createContext(clientKeyPair, clientCert);
+        final SSLServerSocket serverSocket = (SSLServerSocket) serverContext.getServerSocketFactory().createServerSocket(0);
+        serverSocket.setNeedClientAuth(true);
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        SSLSocket socket = (SSLSocket) serverSocket.accept();
+                        try {
+                            socket.startHandshake();
+                            socket.getInputStream().read();
+                        } finally {
+                            socket.close();
+                        }
+                    }
+                } catch (Exception e) {
+                    error.set(e);
+                }
+            }
+        });
+        server.start();
+
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < ITERATIONS; i++) {
+                SSLSocket socket = (SSLSocket) clientContext.getSocketFactory().createSocket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+                try {
+                    socket.startHandshake();
+                    //No session resumption, every handshake authenticates the client
+                    socket.getSession().invalidate();
+                    socket.getOutputStream().write(0);
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            server.join();
+            serverSocket.close();
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private SSLContext createContext(KeyPair keyPair, X509Certificate cert) throws Exception {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(new KeyManager[]{new SingleKeyX509KeyManager(keyPair.getPrivate(), new X509Certificate[]{cert})},
+                new TrustManager[]{new X509TrustManager() {
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                    }
+
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                    }
+
+                    @Override
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return new X509Certificate[0];
+                    }
+                }}, new SecureRandom());
+        return context;
+    }
+}
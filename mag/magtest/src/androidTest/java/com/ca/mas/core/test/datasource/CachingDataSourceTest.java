@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.datasource;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ca.mas.core.datasource.CachingDataSource;
+import com.ca.mas.core.datasource.DataSource;
+import com.ca.mas.core.datasource.DataSourceFactory;
+import com.ca.mas.core.datasource.KeystoreDataSource;
+import com.ca.mas.core.datasource.MappedLogDataSource;
+import com.ca.mas.core.datasource.StringDataConverter;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class CachingDataSourceTest {
+
+    private final String KEY = "KEY";
+    private final String KEY2 = "KEY2";
+    private final String VALUE = "VALUE";
+    private final String VALUE2 = "VALUE2";
+
+    @After
+    public void after() {
+        DataSource<String, String> d = create();
+        d.remove(KEY);
+        d.remove(KEY2);
+        CachingDataSource.invalidateAll();
+    }
+
+    @Test
+    public void testWriteThrough() throws Exception {
+        CachingDataSource<String, String> d = create();
+        d.put(KEY, VALUE);
+        long misses = d.getMissCount();
+        assertEquals(VALUE, d.get(KEY));
+        assertEquals(VALUE, d.get(KEY));
+        assertEquals(misses, d.getMissCount());
+
+        //Written to the backing store
+        assertEquals(VALUE, d.getDelegate().get(KEY));
+
+        //Shared by the instances with the same configuration
+        assertEquals(VALUE, create().get(KEY));
+    }
+
+    @Test
+    public void testRemoveInvalidates() throws Exception {
+        CachingDataSource<String, String> d = create();
+        d.put(KEY, VALUE);
+        d.put(KEY2, VALUE2);
+        d.remove(KEY);
+        assertNull(d.get(KEY));
+        assertEquals(VALUE2, d.get(KEY2));
+        assertNull(d.getDelegate().get(KEY));
+    }
+
+    @Test
+    public void testAbsentValueCached() throws Exception {
+        CachingDataSource<String, String> d = create();
+        d.remove(KEY);
+        assertNull(d.get(KEY));
+        long hits = d.getHitCount();
+        assertNull(d.get(KEY));
+        assertEquals(hits + 1, d.getHitCount());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        CachingDataSource<String, String> d = new CachingDataSource<>(create().getDelegate(), "testEviction", 1);
+        d.put(KEY, VALUE);
+        d.put(KEY2, VALUE2);
+        long misses = d.getMissCount();
+        assertEquals(VALUE, d.get(KEY));
+        assertEquals(misses + 1, d.getMissCount());
+    }
+
+    @Test
+    public void testCacheKeyedByConfiguration() throws Exception {
+        DataSource<String, String> first = createLog("CachingDataSourceTest1");
+        DataSource<String, String> second = createLog("CachingDataSourceTest2");
+        try {
+            first.put(KEY, VALUE);
+            assertNull(second.get(KEY));
+            second.put(KEY, VALUE2);
+            assertEquals(VALUE, first.get(KEY));
+            assertEquals(VALUE2, second.get(KEY));
+        } finally {
+            first.removeAll(null);
+            second.removeAll(null);
+        }
+    }
+
+    private DataSource<String, String> createLog(String name) throws Exception {
+        JSONObject param = new JSONObject();
+        param.put(CachingDataSource.CACHE, true);
+        param.put(MappedLogDataSource.NAME, name);
+        param.put(MappedLogDataSource.ENCRYPT, false);
+        DataSource<String, String> d = DataSourceFactory.getStorage(InstrumentationRegistry.getTargetContext(),
+                MappedLogDataSource.class, param, new StringDataConverter());
+        assertTrue(d instanceof CachingDataSource);
+        return d;
+    }
+
+    private CachingDataSource<String, String> create() {
+        try {
+            JSONObject param = new JSONObject();
+            param.put(CachingDataSource.CACHE, true);
+            param.put(CachingDataSource.CACHE_SIZE, 2);
+            DataSource<String, String> d = DataSourceFactory.getStorage(InstrumentationRegistry.getTargetContext(),
+                    KeystoreDataSource.class, param, new StringDataConverter());
+            assertTrue(d instanceof CachingDataSource);
+            return (CachingDataSource<String, String>) d;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
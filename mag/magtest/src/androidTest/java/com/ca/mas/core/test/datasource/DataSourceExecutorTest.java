@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.datasource;
+
+import android.os.Handler;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ca.mas.core.datasource.DataSource;
+import com.ca.mas.core.datasource.DataSourceCallback;
+import com.ca.mas.core.datasource.DataSourceError;
+import com.ca.mas.core.datasource.DataSourceExecutor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class DataSourceExecutorTest {
+
+    @Test
+    public void testOrderAndCoalescing() throws Exception {
+        MapDataSource dataSource = new MapDataSource();
+        DataSourceExecutor<String, String> executor = new DataSourceExecutor<>(dataSource);
+
+        //Hold the storage thread so the following writes are queued
+        dataSource.block = new CountDownLatch(1);
+        executor.put("BLOCK", "VALUE", new Result());
+        dataSource.started.await(5, TimeUnit.SECONDS);
+
+        Result r1 = new Result();
+        Result r2 = new Result();
+        Result r3 = new Result();
+        Result read = new Result();
+        executor.put("KEY", "VALUE1", r1);
+        executor.put("KEY", "VALUE2", r2);
+        executor.get("KEY", read);
+        executor.put("KEY", "VALUE3", r3);
+        dataSource.block.countDown();
+
+        r1.await();
+        r2.await();
+        r3.await();
+        assertEquals("VALUE2", read.await());
+        assertEquals("VALUE3", dataSource.get("KEY"));
+        //VALUE2 merged into VALUE1, VALUE3 not merged across the read
+        assertEquals(1, executor.getCoalescedCount());
+        assertEquals(Collections.singletonList("VALUE2"), dataSource.writes.subList(1, 2));
+    }
+
+    @Test
+    public void testRemoveAndError() throws Exception {
+        MapDataSource dataSource = new MapDataSource();
+        DataSourceExecutor<String, String> executor = new DataSourceExecutor<>(dataSource);
+        executor.put("KEY", "VALUE", new Result());
+        executor.remove("KEY", new Result());
+        Result read = new Result();
+        executor.get("KEY", read);
+        assertNull(read.await());
+
+        Result error = new Result();
+        executor.get(null, error);
+        error.await();
+        assertTrue(error.error.get() != null);
+    }
+
+    @Test
+    public void testDataSourceErrorDoesNotStopQueue() throws Exception {
+        MapDataSource dataSource = new MapDataSource();
+        DataSourceExecutor<String, String> executor = new DataSourceExecutor<>(dataSource);
+
+        Result error = new Result();
+        executor.put("ERROR", "VALUE", error);
+        error.await();
+        assertTrue(error.error.get().getCause() instanceof AssertionError);
+
+        //The following operations still run
+        executor.put("KEY", "VALUE", new Result());
+        Result read = new Result();
+        executor.get("KEY", read);
+        assertEquals("VALUE", read.await());
+    }
+
+    private static class Result implements DataSourceCallback {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<Object> value = new AtomicReference<>();
+        private final AtomicReference<DataSourceError> error = new AtomicReference<>();
+
+        @Override
+        public Handler getHandler() {
+            return null;
+        }
+
+        @Override
+        public void onError(DataSourceError e) {
+            error.set(e);
+            done.countDown();
+        }
+
+        @Override
+        public void onSuccess(Object v) {
+            value.set(v);
+            done.countDown();
+        }
+
+        Object await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            return value.get();
+        }
+    }
+
+    private static class MapDataSource implements DataSource<String, String> {
+
+        private final Map<String, String> values = Collections.synchronizedMap(new HashMap<String, String>());
+        private final List<String> writes = Collections.synchronizedList(new ArrayList<String>());
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile CountDownLatch block;
+
+        @Override
+        public void put(String key, String value) {
+            if ("ERROR".equals(key)) {
+                throw new AssertionError("data source failure");
+            }
+            if ("BLOCK".equals(key) && block != null) {
+                started.countDown();
+                try {
+                    block.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            writes.add(value);
+            values.put(key, value);
+        }
+
+        @Override
+        public void put(String key, String value, DataSourceCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String get(String key) {
+            if (key == null) {
+                throw new IllegalArgumentException();
+            }
+            return values.get(key);
+        }
+
+        @Override
+        public void get(String key, DataSourceCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void remove(String key) {
+            values.remove(key);
+        }
+
+        @Override
+        public void remove(String key, DataSourceCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeAll(Object filter) {
+            values.clear();
+        }
+
+        @Override
+        public void removeAll(Object filter, DataSourceCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> getKeys(Object filter) {
+            return new ArrayList<>(values.keySet());
+        }
+
+        @Override
+        public void getKeys(Object filter, DataSourceCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+        }
+    }
+}
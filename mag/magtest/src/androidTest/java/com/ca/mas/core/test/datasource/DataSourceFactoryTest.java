@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.datasource;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ca.mas.core.datasource.AccountManagerStoreDataSource;
+import com.ca.mas.core.datasource.DataSource;
+import com.ca.mas.core.datasource.DataSourceException;
+import com.ca.mas.core.datasource.DataSourceFactory;
+import com.ca.mas.core.datasource.StringDataConverter;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class DataSourceFactoryTest {
+
+    @Test
+    public void testSharedInstance() throws Exception {
+        DataSource d1 = DataSourceFactory.getSharedInstance(InstrumentationRegistry.getTargetContext(),
+                AccountManagerStoreDataSource.class, new JSONObject().put("share", true), new StringDataConverter());
+        DataSource d2 = DataSourceFactory.getSharedInstance(InstrumentationRegistry.getTargetContext(),
+                AccountManagerStoreDataSource.class, new JSONObject().put("share", true), new StringDataConverter());
+        assertSame(d1, d2);
+
+        //Different configuration or converter
+        assertNotSame(d1, DataSourceFactory.getSharedInstance(InstrumentationRegistry.getTargetContext(),
+                AccountManagerStoreDataSource.class, new JSONObject().put("share", false), new StringDataConverter()));
+        assertNotSame(d1, DataSourceFactory.getSharedInstance(InstrumentationRegistry.getTargetContext(),
+                AccountManagerStoreDataSource.class, new JSONObject().put("share", true), null));
+
+        //Not shared
+        assertNotSame(d1, DataSourceFactory.getStorage(InstrumentationRegistry.getTargetContext(),
+                AccountManagerStoreDataSource.class, new JSONObject().put("share", true), new StringDataConverter()));
+    }
+
+    @Test
+    public void testValidate() throws Exception {
+        DataSourceFactory.validate(AccountManagerStoreDataSource.class);
+        try {
+            DataSourceFactory.validate(String.class);
+            fail();
+        } catch (DataSourceException e) {
+            //Expected
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.datasource;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ca.mas.core.datasource.DataSourceFactory;
+import com.ca.mas.core.datasource.LocalStoreDataSource;
+import com.ca.mas.core.datasource.LocalStoreEntity;
+import com.ca.mas.core.datasource.LocalStoreKey;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class LocalStoreDataSourceTest {
+
+    private static final int SEGMENT = 1;
+    private static final String CREATED_BY = "LocalStoreDataSourceTest";
+    private static final String TYPE = "String";
+
+    private LocalStoreDataSource d;
+
+    @Before
+    public void before() {
+        d = (LocalStoreDataSource) DataSourceFactory.getStorage(InstrumentationRegistry.getTargetContext(),
+                LocalStoreDataSource.class, null, null);
+    }
+
+    @After
+    public void after() {
+        d.removeAll(new LocalStoreKey(null, SEGMENT, CREATED_BY));
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        LocalStoreKey key = new LocalStoreKey("KEY", SEGMENT, CREATED_BY);
+        d.put(key, new LocalStoreEntity(TYPE, "VALUE".getBytes()));
+        LocalStoreEntity entity = d.get(key);
+        assertEquals(TYPE, entity.getType());
+        assertEquals("VALUE", new String(entity.getData()));
+
+        d.put(key, new LocalStoreEntity(TYPE, "VALUE2".getBytes()));
+        assertEquals("VALUE2", new String(d.get(key).getData()));
+
+        d.remove(key);
+        assertNull(d.get(key));
+        //Removing a missing entry is not an error
+        d.remove(key);
+    }
+
+    @Test
+    public void testPutAllAndGetKeys() throws Exception {
+        Map<LocalStoreKey, LocalStoreEntity> items = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            items.put(new LocalStoreKey("KEY" + i, SEGMENT, CREATED_BY), new LocalStoreEntity(TYPE, ("VALUE" + i).getBytes()));
+        }
+        d.putAll(items);
+        assertEquals(500, d.getKeys(new LocalStoreKey(null, SEGMENT, CREATED_BY)).size());
+        assertEquals("VALUE42", new String(d.get(new LocalStoreKey("KEY42", SEGMENT, CREATED_BY)).getData()));
+
+        d.removeAll(new LocalStoreKey(null, SEGMENT, CREATED_BY));
+        assertEquals(0, d.getKeys(new LocalStoreKey(null, SEGMENT, CREATED_BY)).size());
+    }
+
+    @Test
+    public void testTransactionRollback() throws Exception {
+        final LocalStoreKey key = new LocalStoreKey("KEY", SEGMENT, CREATED_BY);
+        try {
+            d.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    d.put(key, new LocalStoreEntity(TYPE, "VALUE".getBytes()));
+                    throw new IllegalStateException();
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            //Expected
+        }
+        assertNull(d.get(key));
+
+        d.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                d.put(key, new LocalStoreEntity(TYPE, "VALUE".getBytes()));
+            }
+        });
+        assertEquals("VALUE", new String(d.get(key).getData()));
+    }
+}
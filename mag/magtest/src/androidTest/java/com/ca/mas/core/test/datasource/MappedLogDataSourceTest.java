@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.datasource;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.ca.mas.core.datasource.BatchDataSource;
+import com.ca.mas.core.datasource.BatchWrite;
+import com.ca.mas.core.datasource.DataSource;
+import com.ca.mas.core.datasource.DataSourceException;
+import com.ca.mas.core.datasource.DataSourceFactory;
+import com.ca.mas.core.datasource.MappedLogDataSource;
+import com.ca.mas.core.datasource.StringDataConverter;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class MappedLogDataSourceTest {
+
+    private static final String TAG = "MappedLogDataSourceTest";
+    private static final int ITERATIONS = 1000;
+    private static final int KEYS = 100;
+
+    /**
+     * The file header holds the magic number, the format version and the generation.
+     */
+    private static final int HEADER_SIZE = 12;
+    private static final int GENERATION_OFFSET = 8;
+
+    private final String KEY = "KEY";
+    private final String KEY2 = "KEY2";
+    private final String KEY3 = "KEY3";
+    private final String VALUE = "VALUE";
+    private final String VALUE2 = "VALUE2";
+    private final String VALUE3 = "VALUE3";
+
+    /**
+     * A log is opened once per process, the logs rebuilt from a modified file are opened under new names.
+     */
+    private final String name = TAG + "_" + System.nanoTime();
+
+    @After
+    public void after() {
+        create().removeAll(null);
+        File[] files = getFile(name).getParentFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(name)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReadWrite() {
+        DataSource<String, String> d = create();
+        d.put(KEY, VALUE);
+        d.put(KEY2, VALUE2);
+        assertEquals(VALUE, d.get(KEY));
+        d.put(KEY, VALUE2);
+        assertEquals(VALUE2, d.get(KEY));
+        d.remove(KEY);
+        assertNull(d.get(KEY));
+        assertEquals(1, d.getKeys(null).size());
+
+        //Shared by the data sources of the same log
+        assertEquals(VALUE2, create().get(KEY2));
+    }
+
+    @Test
+    public void testPutAll() {
+        DataSource<String, String> d = create();
+        d.put(KEY, VALUE);
+        Map<String, String> values = new HashMap<>();
+        values.put(KEY, null);
+        values.put(KEY2, VALUE2);
+        assertTrue(d instanceof BatchDataSource);
+        BatchWrite.putAll(d, values);
+        assertNull(d.get(KEY));
+        assertEquals(VALUE2, d.get(KEY2));
+    }
+
+    @Test
+    public void testRemoveAll() {
+        DataSource<String, String> d = create();
+        d.put(KEY, VALUE);
+        d.removeAll(null);
+        assertNull(d.get(KEY));
+        assertEquals(0, d.getKeys(null).size());
+    }
+
+    @Test
+    public void testBenchmark() {
+        DataSource<String, String> d = create();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            d.put(KEY + (i % KEYS), VALUE + i);
+        }
+        long write = (System.nanoTime() - start) / ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertEquals(VALUE + (ITERATIONS - KEYS + i % KEYS), d.get(KEY + (i % KEYS)));
+        }
+        long read = (System.nanoTime() - start) / ITERATIONS;
+        Log.i(TAG, String.format("write %d us, read %d us", write / 1000, read / 1000));
+        assertEquals(KEYS, d.getKeys(null).size());
+    }
+
+    @Test
+    public void testTornRecord() throws Exception {
+        DataSource<String, String> d = create(name, MappedLogDataSource.SYNC_ALWAYS);
+        d.put(KEY, VALUE);
+        byte[] first = read(getFile(name));
+        d.put(KEY2, VALUE2);
+        byte[] second = read(getFile(name));
+
+        //Only the first half of the second record reached the file
+        int[] record = diff(first, second);
+        int middle = (record[0] + record[1]) / 2;
+        byte[] torn = second.clone();
+        System.arraycopy(first, middle, torn, middle, record[1] - middle + 1);
+        write(getFile(name + "_torn"), torn);
+
+        DataSource<String, String> recovered = create(name + "_torn", MappedLogDataSource.SYNC_ALWAYS);
+        assertEquals(VALUE, recovered.get(KEY));
+        assertNull(recovered.get(KEY2));
+        assertEquals(1, recovered.getKeys(null).size());
+
+        //The next record replaces the torn one
+        recovered.put(KEY3, VALUE3);
+        write(getFile(name + "_reopened"), read(getFile(name + "_torn")));
+        DataSource<String, String> reopened = create(name + "_reopened", MappedLogDataSource.SYNC_ALWAYS);
+        assertEquals(VALUE, reopened.get(KEY));
+        assertNull(reopened.get(KEY2));
+        assertEquals(VALUE3, reopened.get(KEY3));
+    }
+
+    @Test
+    public void testCorruptRecord() throws Exception {
+        DataSource<String, String> d = create(name, MappedLogDataSource.SYNC_ALWAYS);
+        d.put(KEY, VALUE);
+        byte[] first = read(getFile(name));
+        d.put(KEY2, VALUE2);
+        byte[] second = read(getFile(name));
+        d.put(KEY3, VALUE3);
+        byte[] corrupt = read(getFile(name));
+
+        //Flip a byte of the second record, the log ends before it
+        int[] record = diff(first, second);
+        corrupt[record[1]] ^= 0xff;
+        write(getFile(name + "_corrupt"), corrupt);
+
+        DataSource<String, String> recovered = create(name + "_corrupt", MappedLogDataSource.SYNC_ALWAYS);
+        assertEquals(VALUE, recovered.get(KEY));
+        assertNull(recovered.get(KEY2));
+        assertNull(recovered.get(KEY3));
+
+        //A file truncated within the header is a new log
+        write(getFile(name + "_truncated"), Arrays.copyOf(corrupt, HEADER_SIZE - 1));
+        DataSource<String, String> truncated = create(name + "_truncated", MappedLogDataSource.SYNC_ALWAYS);
+        assertTrue(truncated.getKeys(null).isEmpty());
+        truncated.put(KEY, VALUE);
+        assertEquals(VALUE, truncated.get(KEY));
+    }
+
+    @Test
+    public void testStaleGeneration() throws Exception {
+        DataSource<String, String> d = create(name, MappedLogDataSource.SYNC_ALWAYS);
+        d.put(KEY, VALUE);
+        byte[] before = read(getFile(name));
+        d.removeAll(null);
+        byte[] cleared = read(getFile(name));
+        assertFalse(generation(before) == generation(cleared));
+
+        //The records of the previous generation behind the header of the cleared log
+        byte[] stale = cleared.clone();
+        System.arraycopy(before, HEADER_SIZE, stale, HEADER_SIZE, Math.min(before.length, stale.length) - HEADER_SIZE);
+        write(getFile(name + "_stale"), stale);
+        DataSource<String, String> recovered = create(name + "_stale", MappedLogDataSource.SYNC_ALWAYS);
+        assertNull(recovered.get(KEY));
+        assertTrue(recovered.getKeys(null).isEmpty());
+
+        //The same records are read with their own header
+        write(getFile(name + "_current"), before);
+        assertEquals(VALUE, create(name + "_current", MappedLogDataSource.SYNC_ALWAYS).get(KEY));
+    }
+
+    @Test
+    public void testCompactionKeepsLiveKeys() throws Exception {
+        DataSource<String, String> d = create(name, MappedLogDataSource.SYNC_NONE);
+        char[] padding = new char[512];
+        Arrays.fill(padding, 'x');
+        String value = new String(padding);
+        int keys = 20;
+        int writes = 400;
+
+        d.put(KEY, value);
+        int generation = generation(read(getFile(name)));
+        for (int i = 0; i < writes; i++) {
+            d.put(KEY + (i % keys), value + i);
+        }
+        d.remove(KEY + 0);
+
+        //The replaced values exceed the threshold, the log is compacted in the background
+        long deadline = System.currentTimeMillis() + 10000;
+        while (generation(read(getFile(name))) == generation) {
+            assertTrue("The log has not been compacted", System.currentTimeMillis() < deadline);
+            Thread.sleep(100);
+        }
+
+        assertLiveKeys(d, value, keys, writes);
+        write(getFile(name + "_compacted"), read(getFile(name)));
+        assertLiveKeys(create(name + "_compacted", MappedLogDataSource.SYNC_NONE), value, keys, writes);
+    }
+
+    @Test
+    public void testShareRejected() throws Exception {
+        JSONObject param = new JSONObject();
+        param.put(MappedLogDataSource.NAME, name);
+        param.put(MappedLogDataSource.SHARE, true);
+        try {
+            DataSourceFactory.getStorage(InstrumentationRegistry.getTargetContext(),
+                    MappedLogDataSource.class, param, new StringDataConverter());
+            fail();
+        } catch (DataSourceException e) {
+            //Expected
+        }
+    }
+
+    private void assertLiveKeys(DataSource<String, String> d, String value, int keys, int writes) {
+        assertNull(d.get(KEY + 0));
+        assertEquals(keys, d.getKeys(null).size());
+        assertEquals(value, d.get(KEY));
+        for (int k = 1; k < keys; k++) {
+            assertEquals(value + (writes - keys + k), d.get(KEY + k));
+        }
+    }
+
+    private DataSource<String, String> create() {
+        try {
+            JSONObject param = new JSONObject();
+            param.put(MappedLogDataSource.NAME, TAG);
+            return DataSourceFactory.getStorage(InstrumentationRegistry.getTargetContext(),
+                    MappedLogDataSource.class, param, new StringDataConverter());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Create an unencrypted data source, so the records written for the same entries line up.
+     */
+    private DataSource<String, String> create(String name, String sync) {
+        try {
+            JSONObject param = new JSONObject();
+            param.put(MappedLogDataSource.NAME, name);
+            param.put(MappedLogDataSource.SYNC, sync);
+            param.put(MappedLogDataSource.ENCRYPT, false);
+            return DataSourceFactory.getStorage(InstrumentationRegistry.getTargetContext(),
+                    MappedLogDataSource.class, param, new StringDataConverter());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private File getFile(String name) {
+        return new File(new File(InstrumentationRegistry.getTargetContext().getFilesDir(), "mas_log"), name + ".log");
+    }
+
+    private static int generation(byte[] data) {
+        return ByteBuffer.wrap(data).getInt(GENERATION_OFFSET);
+    }
+
+    /**
+     * @return The first and the last index at which the contents differ.
+     */
+    private static int[] diff(byte[] a, byte[] b) {
+        int first = 0;
+        while (a[first] == b[first]) {
+            first++;
+        }
+        int last = Math.min(a.length, b.length) - 1;
+        while (a[last] == b[last]) {
+            last--;
+        }
+        return new int[]{first, last};
+    }
+
+    private static byte[] read(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] data = new byte[(int) in.length()];
+            in.readFully(data);
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(0);
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.http;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ca.mas.core.io.http.DnsPrefetch;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class DnsPrefetchTest {
+
+    @Test
+    public void testPrefetch() throws Exception {
+        assertTrue(DnsPrefetch.prefetch("localhost").get(10, TimeUnit.SECONDS));
+        assertNull(DnsPrefetch.prefetch(null));
+    }
+
+    @Test
+    public void testUnknownHostIgnored() throws Exception {
+        //Reserved top level domain, never resolved
+        assertFalse(DnsPrefetch.prefetch("mas.invalid").get(10, TimeUnit.SECONDS));
+    }
+}
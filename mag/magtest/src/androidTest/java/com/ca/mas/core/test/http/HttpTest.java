@@ -13,7 +13,9 @@ import android.support.test.runner.AndroidJUnit4;
 import android.test.AndroidTestCase;
 import android.util.Pair;
 
+import com.ca.mas.core.conf.ConfigurationManager;
 import com.ca.mas.core.http.MAGHttpClient;
+import com.ca.mas.core.http.MAGInterceptor;
 import com.ca.mas.core.http.MAGRequest;
 import com.ca.mas.core.http.MAGRequestBody;
 import com.ca.mas.core.http.MAGResponse;
@@ -31,7 +33,9 @@ import org.junit.runner.RunWith;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
@@ -249,6 +253,88 @@ public class HttpTest {
 
     }
 
+    @Test
+    public void testNetworkInterceptor() throws Exception {
+
+        final String requestHeaderName = "ExpectedRequestHeaderName";
+        final String requestHeaderValue = "ExpectedRequestHeaderValue";
+
+        mockWebServer.enqueue(new MockResponse().setBody(RESPONSE_DATA));
+
+        Uri uri = builder.appendPath(HTTP_TEST).build();
+
+        MAGInterceptor interceptor = new MAGInterceptor() {
+            @Override
+            public MAGResponse intercept(Chain chain) throws Exception {
+                MAGRequest request = new MAGRequest.MAGRequestBuilder(chain.request())
+                        .header(requestHeaderName, requestHeaderValue)
+                        .build();
+                return chain.proceed(request);
+            }
+        };
+        ConfigurationManager.getInstance().addNetworkInterceptor(interceptor);
+        try {
+            MAGRequest request = new MAGRequest.MAGRequestBuilder(new URL(uri.toString())).
+                    get().build();
+
+            MAGResponse response = client.execute(request);
+
+            assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+
+            if (isLocal()) {
+                RecordedRequest recordedRequest = mockWebServer.takeRequest();
+                assertEquals(requestHeaderValue, recordedRequest.getHeader(requestHeaderName));
+            }
+        } finally {
+            ConfigurationManager.getInstance().removeNetworkInterceptor(interceptor);
+        }
+    }
+
+    @Test
+    public void testNetworkInterceptorShortCircuit() throws Exception {
+
+        Uri uri = builder.appendPath(HTTP_TEST).build();
+
+        MAGInterceptor interceptor = new MAGInterceptor() {
+            @Override
+            public MAGResponse intercept(Chain chain) throws Exception {
+                return new MAGResponse() {
+                    @Override
+                    public Map<String, List<String>> getHeaders() {
+                        return Collections.emptyMap();
+                    }
+
+                    @Override
+                    public int getResponseCode() {
+                        return HttpURLConnection.HTTP_NOT_MODIFIED;
+                    }
+
+                    @Override
+                    public String getResponseMessage() {
+                        return null;
+                    }
+
+                    @Override
+                    public MAGResponseBody getBody() {
+                        return null;
+                    }
+                };
+            }
+        };
+        ConfigurationManager.getInstance().addNetworkInterceptor(interceptor);
+        try {
+            MAGRequest request = new MAGRequest.MAGRequestBuilder(new URL(uri.toString())).
+                    get().build();
+
+            MAGResponse response = client.execute(request);
+
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, response.getResponseCode());
+            assertEquals(0, mockWebServer.getRequestCount());
+        } finally {
+            ConfigurationManager.getInstance().removeNetworkInterceptor(interceptor);
+        }
+    }
+
     private void setupBuilder() {
         if (isLocal()) {
             builder = Uri.parse("http://localhost:" + mockWebServer.getPort()).buildUpon();
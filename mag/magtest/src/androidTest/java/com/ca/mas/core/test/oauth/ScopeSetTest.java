@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.oauth;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ca.mas.core.oauth.ScopeSet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ScopeSetTest {
+
+    @Test
+    public void testParse() throws Exception {
+        ScopeSet scopes = ScopeSet.parse("  openid  msso\tphone ");
+        assertEquals(3, scopes.getScopes().size());
+        assertTrue(scopes.contains("phone"));
+        assertEquals("openid msso phone", scopes.toString());
+        assertSame(ScopeSet.EMPTY, ScopeSet.parse(null));
+        assertSame(ScopeSet.EMPTY, ScopeSet.parse("   "));
+    }
+
+    @Test
+    public void testInterned() throws Exception {
+        assertSame(ScopeSet.parse("openid phone email"), ScopeSet.parse("openid phone email"));
+    }
+
+    @Test
+    public void testContainsAll() throws Exception {
+        ScopeSet granted = ScopeSet.parse("phone email");
+        assertTrue(granted.containsAll(ScopeSet.parse("email")));
+        assertTrue(granted.containsAll(ScopeSet.parse("openid msso msso_register msso_client_register phone")));
+        assertFalse(granted.containsAll(ScopeSet.parse("phone address")));
+        assertTrue(granted.containsAll(ScopeSet.EMPTY));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.policy;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ca.mas.core.MobileSsoConfig;
+import com.ca.mas.core.conf.DefaultConfiguration;
+import com.ca.mas.core.context.MssoContext;
+import com.ca.mas.core.error.MAGStateException;
+import com.ca.mas.core.error.RequestTimeoutException;
+import com.ca.mas.core.http.MAGRequest;
+import com.ca.mas.core.http.MAGResponse;
+import com.ca.mas.core.policy.AssertionCallback;
+import com.ca.mas.core.policy.AsyncMssoAssertion;
+import com.ca.mas.core.policy.MssoAssertion;
+import com.ca.mas.core.policy.PolicyManager;
+import com.ca.mas.core.policy.RequestInfo;
+import com.ca.mas.core.request.RequestDeadline;
+import com.ca.mas.core.test.BaseTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class PolicyManagerTest extends BaseTest {
+
+    private static final long TIMEOUT = 200;
+
+    private static final CountDownLatch held = new CountDownLatch(1);
+    private static volatile AssertionCallback holder;
+
+    @Test
+    public void testParkedRequestTimesOut() throws Exception {
+        MssoContext mssoContext = MssoContext.newContext();
+        mssoContext.init(InstrumentationRegistry.getTargetContext());
+        PolicyManager policyManager = createPolicyManager(mssoContext, HoldingAssertion.class);
+
+        //The first request holds the policy gate until released
+        ResultCallback first = new ResultCallback();
+        policyManager.processRequest(createRequest(mssoContext), first);
+        assertTrue(held.await(5, TimeUnit.SECONDS));
+
+        //The second request is parked behind it with a deadline
+        ResultCallback second = new ResultCallback();
+        long start = System.nanoTime();
+        RequestDeadline previous = RequestDeadline.bind(RequestDeadline.fromTimeout(TIMEOUT));
+        try {
+            policyManager.processRequest(createRequest(mssoContext), second);
+        } finally {
+            RequestDeadline.bind(previous);
+        }
+
+        //Expires while the gate is still held
+        assertTrue(second.done.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= TIMEOUT);
+        assertTrue(second.error instanceof RequestTimeoutException);
+        assertEquals(RequestDeadline.Phase.POLICY_LOCK, ((RequestTimeoutException) second.error).getPhase());
+        assertEquals(1, first.done.getCount());
+
+        holder.onError(new IllegalStateException("released"));
+        assertTrue(first.done.await(5, TimeUnit.SECONDS));
+        assertTrue(first.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testPolicyErrorReleasesGate() throws Exception {
+        MssoContext mssoContext = MssoContext.newContext();
+        mssoContext.init(InstrumentationRegistry.getTargetContext());
+        PolicyManager policyManager = createPolicyManager(mssoContext, FailingAssertion.class);
+
+        for (int i = 0; i < 2; i++) {
+            ResultCallback callback = new ResultCallback();
+            policyManager.processRequest(createRequest(mssoContext), callback);
+            assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+            assertTrue(callback.error instanceof MAGStateException);
+            assertTrue(callback.error.getCause() instanceof AssertionError);
+        }
+    }
+
+    private PolicyManager createPolicyManager(MssoContext mssoContext, Class<? extends MssoAssertion> policy) {
+        DefaultConfiguration configuration = (DefaultConfiguration) mssoContext.getConfigurationProvider();
+        Object policies = configuration.getProperty(MobileSsoConfig.PROP_ADD_CUSTOM_POLICIES);
+        configuration.putProperty(MobileSsoConfig.PROP_ADD_CUSTOM_POLICIES,
+                Collections.singletonList(policy.getName()));
+        try {
+            return new PolicyManager(mssoContext);
+        } finally {
+            configuration.putProperty(MobileSsoConfig.PROP_ADD_CUSTOM_POLICIES, policies);
+        }
+    }
+
+    private RequestInfo createRequest(MssoContext mssoContext) throws Exception {
+        MAGRequest request = new MAGRequest.MAGRequestBuilder(getURI("/protected/resource/products")).build();
+        return new RequestInfo(mssoContext, request, null);
+    }
+
+    private static class ResultCallback implements AssertionCallback {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Exception error;
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+
+        @Override
+        public void onError(Exception e) {
+            error = e;
+            done.countDown();
+        }
+    }
+
+    /**
+     * Fails every request with an {@link Error}.
+     */
+    public static class FailingAssertion implements MssoAssertion {
+
+        @Override
+        public void init(@NonNull MssoContext mssoContext, @NonNull Context sysContext) {
+        }
+
+        @Override
+        public void processRequest(MssoContext mssoContext, RequestInfo request) {
+            throw new AssertionError("policy failure");
+        }
+
+        @Override
+        public void processResponse(MssoContext mssoContext, RequestInfo request, MAGResponse response) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Parks the first request applying it until the test invokes its callback.
+     */
+    public static class HoldingAssertion implements AsyncMssoAssertion {
+
+        @Override
+        public void init(@NonNull MssoContext mssoContext, @NonNull Context sysContext) {
+        }
+
+        @Override
+        public void processRequest(MssoContext mssoContext, RequestInfo request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void processResponse(MssoContext mssoContext, RequestInfo request, MAGResponse response) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void processRequest(MssoContext mssoContext, RequestInfo request, AssertionCallback callback) {
+            holder = callback;
+            held.countDown();
+        }
+
+        @Override
+        public void processResponse(MssoContext mssoContext, RequestInfo request, MAGResponse response, AssertionCallback callback) {
+            callback.onComplete();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
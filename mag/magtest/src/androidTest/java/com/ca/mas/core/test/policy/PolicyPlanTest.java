@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.policy;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ca.mas.core.context.MssoContext;
+import com.ca.mas.core.http.MAGResponse;
+import com.ca.mas.core.oauth.GrantProvider;
+import com.ca.mas.core.policy.ConditionalAssertion;
+import com.ca.mas.core.policy.MssoAssertion;
+import com.ca.mas.core.policy.PolicyPlan;
+import com.ca.mas.core.policy.RequestClass;
+import com.ca.mas.core.policy.RequestInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class PolicyPlanTest {
+
+    private static final RequestClass REMOTE = new RequestClass(false, true, false, GrantProvider.PASSWORD);
+    private static final RequestClass LOCAL = new RequestClass(true, false, false, GrantProvider.PASSWORD);
+
+    @Test
+    public void testUnconditionalPolicyAlwaysApplies() throws Exception {
+        MssoAssertion policy = new TestAssertion();
+        PolicyPlan plan = new PolicyPlan(Arrays.asList(policy), LOCAL);
+        assertEquals(1, plan.getRequestPolicies().size());
+        assertEquals(1, plan.getResponsePolicies(200).size());
+        assertEquals(1, plan.getResponsePolicies(401).size());
+    }
+
+    @Test
+    public void testConditionalPolicy() throws Exception {
+        MssoAssertion first = new TestAssertion();
+        RemoteOnlyAssertion remoteOnly = new RemoteOnlyAssertion();
+        MssoAssertion last = new TestAssertion();
+        List<MssoAssertion> policies = Arrays.asList(first, remoteOnly, last);
+
+        PolicyPlan local = new PolicyPlan(policies, LOCAL);
+        assertEquals(Arrays.asList(first, last), local.getRequestPolicies());
+
+        PolicyPlan remote = new PolicyPlan(policies, REMOTE);
+        assertEquals(policies, remote.getRequestPolicies());
+        assertEquals(Arrays.asList(first, last), remote.getResponsePolicies(200));
+        assertEquals(policies, remote.getResponsePolicies(401));
+    }
+
+    @Test
+    public void testResponsePlanIsEvaluatedOncePerStatus() throws Exception {
+        RemoteOnlyAssertion policy = new RemoteOnlyAssertion();
+        PolicyPlan plan = new PolicyPlan(Arrays.<MssoAssertion>asList(policy), REMOTE);
+        List<MssoAssertion> policies = plan.getResponsePolicies(401);
+        assertSame(policies, plan.getResponsePolicies(401));
+        plan.getResponsePolicies(200);
+        assertEquals(2, policy.responseEvaluations);
+    }
+
+    @Test
+    public void testRequestClassEquality() throws Exception {
+        assertEquals(REMOTE, new RequestClass(false, true, false, GrantProvider.PASSWORD));
+        assertEquals(REMOTE.hashCode(), new RequestClass(false, true, false, GrantProvider.PASSWORD).hashCode());
+        assertTrue(!REMOTE.equals(new RequestClass(false, true, false, GrantProvider.CLIENT_CREDENTIALS)));
+        assertTrue(!REMOTE.equals(LOCAL));
+    }
+
+    private static class TestAssertion implements MssoAssertion {
+
+        @Override
+        public void init(@NonNull MssoContext mssoContext, @NonNull Context sysContext) {
+        }
+
+        @Override
+        public void processRequest(MssoContext mssoContext, RequestInfo request) {
+        }
+
+        @Override
+        public void processResponse(MssoContext mssoContext, RequestInfo request, MAGResponse response) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class RemoteOnlyAssertion extends TestAssertion implements ConditionalAssertion {
+
+        private int responseEvaluations;
+
+        @Override
+        public boolean isRequestApplicable(RequestClass requestClass) {
+            return !requestClass.isLocalRequest();
+        }
+
+        @Override
+        public boolean isResponseApplicable(RequestClass requestClass, int responseCode) {
+            responseEvaluations++;
+            return responseCode >= 400;
+        }
+    }
+}
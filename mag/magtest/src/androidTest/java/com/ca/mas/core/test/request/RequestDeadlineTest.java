@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.request;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ca.mas.core.error.RequestTimeoutException;
+import com.ca.mas.core.request.RequestDeadline;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class RequestDeadlineTest {
+
+    @Test
+    public void testNoTimeout() throws Exception {
+        assertNull(RequestDeadline.fromTimeout(0));
+        assertNull(RequestDeadline.fromTimeout(-1));
+    }
+
+    @Test
+    public void testPhases() throws Exception {
+        RequestDeadline deadline = RequestDeadline.fromTimeout(10000);
+        assertEquals(RequestDeadline.Phase.QUEUE, deadline.getPhase());
+        deadline.enter(RequestDeadline.Phase.POLICY_LOCK);
+        deadline.enter(RequestDeadline.Phase.POLICY);
+        deadline.enter(RequestDeadline.Phase.NETWORK);
+        assertEquals(RequestDeadline.Phase.NETWORK, deadline.getPhase());
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remaining() > 0);
+        deadline.check();
+    }
+
+    @Test
+    public void testExpiredReportsActivePhase() throws Exception {
+        RequestDeadline deadline = RequestDeadline.fromTimeout(50);
+        deadline.enter(RequestDeadline.Phase.POLICY);
+        Thread.sleep(100);
+        assertTrue(deadline.isExpired());
+        assertEquals(0, deadline.remaining());
+        try {
+            deadline.enter(RequestDeadline.Phase.NETWORK);
+            fail();
+        } catch (RequestTimeoutException e) {
+            assertEquals(RequestDeadline.Phase.POLICY, e.getPhase());
+            assertTrue(e.getMessage().contains("POLICY="));
+        }
+    }
+
+    @Test
+    public void testBind() throws Exception {
+        RequestDeadline deadline = RequestDeadline.fromTimeout(1000);
+        RequestDeadline previous = RequestDeadline.bind(deadline);
+        try {
+            assertSame(deadline, RequestDeadline.current());
+        } finally {
+            RequestDeadline.bind(previous);
+        }
+        assertSame(previous, RequestDeadline.current());
+    }
+}
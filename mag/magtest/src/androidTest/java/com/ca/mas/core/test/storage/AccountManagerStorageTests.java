@@ -8,8 +8,12 @@
 
 package com.ca.mas.core.test.storage;
 
+import android.accounts.Account;
+import android.accounts.AccountManager;
+import android.content.Context;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
+import android.util.Base64;
 import android.util.Log;
 
 import com.ca.mas.core.storage.Storage;
@@ -25,10 +29,14 @@ import org.junit.runner.RunWith;
 
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 
 @RunWith(AndroidJUnit4.class)
@@ -52,6 +60,10 @@ public class AccountManagerStorageTests extends BaseStorageTests {
 
     private static final String TAG = AccountManagerStorageTests.class.getCanonicalName();
 
+    //Storage columns of the account, as written by the storage implementation
+    private static final String LEGACY_INDEX = "lookup_index";
+    private static final String PACKED_HEADER = "packed.header";
+
 
     @Override
     @Before
@@ -500,6 +512,104 @@ public class AccountManagerStorageTests extends BaseStorageTests {
         }
     }
 
+    @Test
+    public void testDeleteAllManyEntries() {
+        Log.d(TAG, "testDeleteAllManyEntries");
+        StorageResult result;
+        try {
+            Storage shared = new MASStorageManager().getStorage(MASStorageManager.MASStorageType.TYPE_AMS, new Object[]{InstrumentationRegistry.getInstrumentation().getTargetContext(), true});
+            result = shared.writeOrUpdateData("sharedKey", "sharedValue".getBytes("UTF-8"));
+            assertEquals(result.getStatus(), StorageResult.StorageOperationStatus.SUCCESS);
+
+            for (int i = 0; i < 100; i++) {
+                result = currentStorage.writeData("key" + i, ("value" + i).getBytes("UTF-8"));
+                assertEquals(result.getStatus(), StorageResult.StorageOperationStatus.SUCCESS);
+            }
+            result = currentStorage.getAllKeys();
+            assertEquals(((ArrayList<String>) result.getData()).size(), 100);
+
+            result = currentStorage.deleteAll();
+            assertEquals(result.getStatus(), StorageResult.StorageOperationStatus.SUCCESS);
+            assertEquals(result.getData(), 100);
+            result = currentStorage.getAllKeys();
+            assertEquals(((ArrayList<String>) result.getData()).size(), 0);
+            result = currentStorage.readData("key50");
+            assertEquals(result.getStatus(), StorageResult.StorageOperationStatus.FAILURE);
+
+            //The shared space is not affected
+            result = shared.readData("sharedKey");
+            assertEquals(result.getStatus(), StorageResult.StorageOperationStatus.SUCCESS);
+            assertEquals(new String((byte[]) result.getData(), "UTF-8"), "sharedValue");
+            shared.deleteData("sharedKey");
+        } catch (StorageException | UnsupportedEncodingException e) {
+            e.printStackTrace();
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMigrateLegacyEntries() throws Exception {
+        Log.d(TAG, "testMigrateLegacyEntries");
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        String prefix = context.getPackageName() + "_";
+        Storage shared = new MASStorageManager().getStorage(MASStorageManager.MASStorageType.TYPE_AMS, new Object[]{context, true});
+        StorageResult result = shared.writeOrUpdateData("sharedKey", "sharedValue".getBytes("UTF-8"));
+        assertEquals(result.getStatus(), StorageResult.StorageOperationStatus.SUCCESS);
+        String sharedKey = encodeLegacyKey("SHARED_sharedKey");
+
+        //Start from an empty private space without the packed header, as written by the previous versions
+        result = currentStorage.writeData("key", "value".getBytes("UTF-8"));
+        assertEquals(result.getStatus(), StorageResult.StorageOperationStatus.SUCCESS);
+        AccountManager am = AccountManager.get(context);
+        Account account = getStorageAccount(am, prefix + PACKED_HEADER);
+        currentStorage.deleteAll();
+        am.setUserData(account, prefix + PACKED_HEADER, null);
+
+        List<String> legacyKeys = new ArrayList<>();
+        StringBuilder index = new StringBuilder(am.getUserData(account, LEGACY_INDEX));
+        for (int i = 0; i < 10; i++) {
+            String legacyKey = encodeLegacyKey(prefix + "legacy" + i);
+            am.setUserData(account, legacyKey, Base64.encodeToString(("value" + i).getBytes("UTF-8"), Base64.DEFAULT));
+            index.append(":").append(legacyKey);
+            legacyKeys.add(legacyKey);
+        }
+        am.setUserData(account, LEGACY_INDEX, index.toString());
+
+        //The entries are migrated on first access
+        result = currentStorage.getAllKeys();
+        assertEquals(((ArrayList<String>) result.getData()).size(), 10);
+        result = currentStorage.readData("legacy5");
+        assertEquals(result.getStatus(), StorageResult.StorageOperationStatus.SUCCESS);
+        assertEquals(new String((byte[]) result.getData(), "UTF-8"), "value5");
+        assertNotNull(am.getUserData(account, prefix + PACKED_HEADER));
+
+        //The legacy entries are removed
+        List<String> remaining = Arrays.asList(am.getUserData(account, LEGACY_INDEX).split(":"));
+        for (String legacyKey : legacyKeys) {
+            assertNull(am.getUserData(account, legacyKey));
+            assertFalse(remaining.contains(legacyKey));
+        }
+
+        //The shared space is not affected
+        assertTrue(remaining.contains(sharedKey));
+        result = shared.readData("sharedKey");
+        assertEquals(result.getStatus(), StorageResult.StorageOperationStatus.SUCCESS);
+        assertEquals(new String((byte[]) result.getData(), "UTF-8"), "sharedValue");
+        shared.deleteData("sharedKey");
+    }
+
+    private static String encodeLegacyKey(String name) throws UnsupportedEncodingException {
+        return Base64.encodeToString(name.getBytes("UTF-8"), Base64.DEFAULT);
+    }
 
+    private static Account getStorageAccount(AccountManager am, String column) {
+        for (Account account : am.getAccounts()) {
+            if (am.getUserData(account, column) != null) {
+                return account;
+            }
+        }
+        fail("No storage account");
+        return null;
+    }
 
 }
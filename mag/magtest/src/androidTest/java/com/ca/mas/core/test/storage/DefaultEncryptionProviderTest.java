@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.storage;
+
+import android.os.Build;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.ca.mas.core.security.DefaultEncryptionProvider;
+import com.ca.mas.core.security.KeyStorageProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class DefaultEncryptionProviderTest {
+
+    private static final String TAG = "DefaultEncryptionProviderTest";
+    private static final int ITERATIONS = 1000;
+    private static final byte[] DATA = "testdata".getBytes();
+
+    @Before
+    public void before() {
+        DefaultEncryptionProvider.invalidateKeys();
+    }
+
+    @Test
+    public void testEncryptDecrypt() {
+        DefaultEncryptionProvider provider = create(new MemoryKeyStorageProvider());
+        byte[] encrypted = provider.encrypt(DATA);
+        assertTrue(Arrays.equals(DATA, provider.decrypt(encrypted)));
+        assertTrue(Arrays.equals(new byte[0], provider.decrypt(provider.encrypt(new byte[0]))));
+    }
+
+    @Test
+    public void testDecryptLegacyFrame() throws Exception {
+        MemoryKeyStorageProvider ksp = new MemoryKeyStorageProvider();
+        DefaultEncryptionProvider provider = create(ksp);
+
+        //mac + iv + cipher text, assembled as separate arrays
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        AlgorithmParameterSpec spec = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ?
+                new GCMParameterSpec(128, iv) : new IvParameterSpec(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, ksp.getKey("secret"), spec);
+        byte[] cipherText = cipher.doFinal(DATA);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("secret".getBytes("UTF-8"), "HmacSHA256"));
+        byte[] signature = mac.doFinal(cipherText);
+        byte[] frame = new byte[signature.length + iv.length + cipherText.length];
+        System.arraycopy(signature, 0, frame, 0, signature.length);
+        System.arraycopy(iv, 0, frame, signature.length, iv.length);
+        System.arraycopy(cipherText, 0, frame, signature.length + iv.length, cipherText.length);
+
+        assertTrue(Arrays.equals(DATA, provider.decrypt(frame)));
+    }
+
+    @Test
+    public void testTamperedData() {
+        DefaultEncryptionProvider provider = create(new MemoryKeyStorageProvider());
+        byte[] encrypted = provider.encrypt(DATA);
+        encrypted[encrypted.length - 1] ^= 1;
+        try {
+            provider.decrypt(encrypted);
+            fail();
+        } catch (RuntimeException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testInvalidateKeys() {
+        MemoryKeyStorageProvider ksp = new MemoryKeyStorageProvider();
+        DefaultEncryptionProvider provider = create(ksp);
+        provider.encrypt(DATA);
+        int reads = ksp.reads;
+        provider.decrypt(provider.encrypt(DATA));
+        //Served from the cache
+        assertEquals(reads, ksp.reads);
+
+        DefaultEncryptionProvider.invalidateKeys();
+        provider.encrypt(DATA);
+        assertEquals(reads + 1, ksp.reads);
+    }
+
+    @Test
+    public void testLockUnlockLock() {
+        MemoryKeyStorageProvider ksp = new MemoryKeyStorageProvider();
+
+        //Lock, the session key is provisioned
+        byte[] encrypted = create(ksp, "session").encrypt(DATA);
+        //Unlock, the session key is removed after decrypting
+        assertTrue(Arrays.equals(DATA, create(ksp, "session").decrypt(encrypted)));
+        ksp.removeKey("session");
+
+        //Lock again, a new session key is provisioned and used
+        DefaultEncryptionProvider provider = create(ksp, "session");
+        assertTrue(ksp.containsKey("session"));
+        encrypted = provider.encrypt(DATA);
+        assertTrue(Arrays.equals(DATA, create(ksp, "session").decrypt(encrypted)));
+    }
+
+    @Test
+    public void testBenchmark() {
+        DefaultEncryptionProvider provider = new DefaultEncryptionProvider(InstrumentationRegistry.getTargetContext());
+        byte[] data = new byte[256];
+        new SecureRandom().nextBytes(data);
+        provider.decrypt(provider.encrypt(data));
+
+        byte[] encrypted = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            encrypted = provider.encrypt(data);
+        }
+        long encrypt = (System.nanoTime() - start) / ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            provider.decrypt(encrypted);
+        }
+        long decrypt = (System.nanoTime() - start) / ITERATIONS;
+        Log.i(TAG, String.format("encrypt %d us, decrypt %d us", encrypt / 1000, decrypt / 1000));
+    }
+
+    private DefaultEncryptionProvider create(KeyStorageProvider ksp) {
+        return new DefaultEncryptionProvider(InstrumentationRegistry.getTargetContext(), ksp);
+    }
+
+    private DefaultEncryptionProvider create(KeyStorageProvider ksp, final String alias) {
+        return new DefaultEncryptionProvider(InstrumentationRegistry.getTargetContext(), ksp) {
+            @Override
+            protected String getKeyAlias() {
+                return alias;
+            }
+        };
+    }
+
+    private static class MemoryKeyStorageProvider implements KeyStorageProvider {
+
+        private SecretKey key;
+        private int reads;
+
+        @Override
+        public void storeKey(String alias, SecretKey secretKey) {
+            key = new SecretKeySpec(secretKey.getEncoded(), "AES");
+        }
+
+        @Override
+        public SecretKey getKey(String alias) {
+            reads++;
+            return key;
+        }
+
+        @Override
+        public boolean containsKey(String alias) {
+            return key != null;
+        }
+
+        void removeKey(String alias) {
+            key = null;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.storage;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.ca.mas.core.MobileSsoConfig;
+import com.ca.mas.core.conf.Config;
+import com.ca.mas.core.conf.ConfigurationManager;
+import com.ca.mas.core.datasource.BatchDataSource;
+import com.ca.mas.core.datasource.DataSourceCallback;
+import com.ca.mas.core.http.MAGRequest;
+import com.ca.mas.core.store.LoginState;
+import com.ca.mas.core.store.PrivateTokenStorage;
+import com.ca.mas.core.test.BaseTest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class PrivateTokenStorageTest extends BaseTest {
+
+    private static final String TAG = PrivateTokenStorageTest.class.getCanonicalName();
+    private static final int REQUESTS = 10;
+
+    /**
+     * The storage of the token container used by the SDK, see {@link CountingTokenStorage}.
+     */
+    private static final CountingDataSource sdkStorage = new CountingDataSource();
+
+    @Before
+    @Override
+    public void before() throws Exception {
+        ConfigurationManager.getInstance().setAppConfigs(Collections.singletonList(
+                new Config(false, MobileSsoConfig.PROP_PRIVATE_TOKEN_MANAGER, "custom.private_token_manager", String.class)));
+        super.before();
+    }
+
+    @After
+    @Override
+    public void after() throws Exception {
+        super.after();
+        ConfigurationManager.getInstance().setAppConfigs(null);
+    }
+
+    @Override
+    protected JSONObject getConfig(boolean useHttp, String configFileName) throws JSONException {
+        JSONObject config = super.getConfig(useHttp, configFileName);
+        config.getJSONObject("custom").put("private_token_manager", CountingTokenStorage.class.getName());
+        return config;
+    }
+
+    @Test
+    public void testStorageReadsPerRequest() throws Exception {
+        MAGRequest request = new MAGRequest.MAGRequestBuilder(getURI("/protected/resource/products?operation=listProducts")).password().build();
+        //Register the device and grant the token set
+        processRequest(request);
+        assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+
+        sdkStorage.reads = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            processRequest(request);
+            assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+        }
+        Log.d(TAG, "Token storage reads per request: " + (float) sdkStorage.reads / REQUESTS);
+        assertEquals(0, sdkStorage.reads);
+    }
+
+    @Test
+    public void testReadsServedFromSnapshot() throws Exception {
+        CountingDataSource storage = new CountingDataSource();
+        PrivateTokenStorage tokenStorage = new PrivateTokenStorage(storage);
+        tokenStorage.clearAll();
+        tokenStorage.saveAccessToken("accessToken", "refreshToken", 3600, "openid msso");
+        storage.reads = 0;
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("accessToken", tokenStorage.getAccessToken());
+            assertEquals("refreshToken", tokenStorage.getRefreshToken());
+            assertEquals("openid msso", tokenStorage.getGrantedScope());
+            tokenStorage.getExpiry();
+        }
+        assertEquals(0, storage.reads);
+
+        //Another instance shares the snapshot
+        PrivateTokenStorage other = new PrivateTokenStorage(storage);
+        assertEquals("accessToken", other.getAccessToken());
+        assertEquals(0, storage.reads);
+
+        assertEquals("refreshToken", other.takeRefreshToken());
+        assertNull(tokenStorage.getRefreshToken());
+
+        tokenStorage.clear();
+        assertNull(other.getAccessToken());
+        assertEquals(0, storage.reads);
+    }
+
+    @Test
+    public void testSaveIsSingleWrite() throws Exception {
+        CountingDataSource storage = new CountingDataSource();
+        PrivateTokenStorage tokenStorage = new PrivateTokenStorage(storage);
+        tokenStorage.clearAll();
+        tokenStorage.getAccessToken();
+        storage.writes = 0;
+
+        tokenStorage.saveAccessToken("accessToken", "refreshToken", 3600, "openid");
+        assertEquals(1, storage.writes);
+        assertEquals(1, storage.values.size());
+
+        tokenStorage.clear();
+        assertEquals(2, storage.writes);
+        assertTrue(storage.values.isEmpty());
+    }
+
+    @Test
+    public void testMigrateLegacyEntries() throws Exception {
+        CountingDataSource storage = new CountingDataSource();
+        PrivateTokenStorage tokenStorage = new PrivateTokenStorage(storage);
+        tokenStorage.clearAll();
+        storage.values.put(storage.keyOf("PREF_ACCESS_TOKEN"), "accessToken");
+        storage.values.put(storage.keyOf("PREF_REFRESH_TOKEN"), "refreshToken");
+        storage.values.put(storage.keyOf("PREF_EXPIRY_UNIXTIME"), "1000");
+        storage.values.put(storage.keyOf("PREF_GRANTED_SCOPE"), "openid");
+
+        assertEquals("accessToken", tokenStorage.getAccessToken());
+        assertEquals("refreshToken", tokenStorage.getRefreshToken());
+        assertEquals(1000, tokenStorage.getExpiry());
+        assertEquals("openid", tokenStorage.getGrantedScope());
+        assertEquals(1, storage.values.size());
+        assertTrue(storage.values.containsKey(storage.keyOf("PREF_TOKEN_SET")));
+
+        //Reload from the migrated record
+        String record = storage.values.get(storage.keyOf("PREF_TOKEN_SET"));
+        tokenStorage.clearAll();
+        storage.values.put(storage.keyOf("PREF_TOKEN_SET"), record);
+        assertEquals("refreshToken", new PrivateTokenStorage(storage).getRefreshToken());
+    }
+
+    @Test
+    public void testInterruptedMigration() throws Exception {
+        CountingDataSource storage = new CountingDataSource();
+        PrivateTokenStorage tokenStorage = new PrivateTokenStorage(storage);
+        tokenStorage.clearAll();
+
+        //The record was written but the legacy entries were not removed
+        tokenStorage.saveAccessToken("accessToken", "refreshToken", 3600, "openid");
+        putLegacyEntries(storage);
+        LoginState.reload();
+        assertEquals("accessToken", tokenStorage.getAccessToken());
+        assertEquals(1, storage.values.size());
+
+        //Logout does not bring the legacy tokens back
+        putLegacyEntries(storage);
+        tokenStorage.clear();
+        assertTrue(storage.values.isEmpty());
+        LoginState.reload();
+        assertNull(tokenStorage.getAccessToken());
+        assertNull(tokenStorage.getRefreshToken());
+    }
+
+    @Test
+    public void testLoginStateInvalidated() throws Exception {
+        CountingDataSource storage = new CountingDataSource();
+        PrivateTokenStorage tokenStorage = new PrivateTokenStorage(storage);
+        tokenStorage.clearAll();
+        assertEquals(LoginState.UNKNOWN, LoginState.get());
+
+        //A state computed before the tokens changed is not cached
+        int generation = LoginState.getGeneration();
+        tokenStorage.saveAccessToken("accessToken", "refreshToken", 3600, "openid");
+        LoginState.set(generation, false);
+        assertEquals(LoginState.UNKNOWN, LoginState.get());
+
+        LoginState.set(LoginState.getGeneration(), true);
+        assertEquals(LoginState.LOGGED_IN, LoginState.get());
+
+        tokenStorage.clear();
+        assertEquals(LoginState.UNKNOWN, LoginState.get());
+    }
+
+    private static void putLegacyEntries(CountingDataSource storage) {
+        storage.values.put(storage.keyOf("PREF_ACCESS_TOKEN"), "staleAccessToken");
+        storage.values.put(storage.keyOf("PREF_REFRESH_TOKEN"), "staleRefreshToken");
+        storage.values.put(storage.keyOf("PREF_EXPIRY_UNIXTIME"), "1000");
+        storage.values.put(storage.keyOf("PREF_GRANTED_SCOPE"), "openid");
+    }
+
+    /**
+     * Token container created by the SDK from the {@link MobileSsoConfig#PROP_PRIVATE_TOKEN_MANAGER} property.
+     */
+    public static class CountingTokenStorage extends PrivateTokenStorage {
+
+        public CountingTokenStorage() {
+            super(sdkStorage);
+        }
+    }
+
+    private static class CountingDataSource implements BatchDataSource<String, String> {
+
+        private final Map<String, String> values = new HashMap<>();
+        private int reads;
+        private int writes;
+
+        private String keyOf(String name) {
+            return ConfigurationManager.getInstance().getConnectedGateway().toString() + name;
+        }
+
+        @Override
+        public void put(String key, String value) {
+            writes++;
+            if (value == null) {
+                values.remove(key);
+            } else {
+                values.put(key, value);
+            }
+        }
+
+        @Override
+        public void putAll(Map<String, String> values) {
+            writes++;
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                if (entry.getValue() == null) {
+                    this.values.remove(entry.getKey());
+                } else {
+                    this.values.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        @Override
+        public void put(String key, String value, DataSourceCallback callback) {
+            put(key, value);
+        }
+
+        @Override
+        public String get(String key) {
+            reads++;
+            return values.get(key);
+        }
+
+        @Override
+        public void get(String key, DataSourceCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void remove(String key) {
+            writes++;
+            values.remove(key);
+        }
+
+        @Override
+        public void remove(String key, DataSourceCallback callback) {
+            remove(key);
+        }
+
+        @Override
+        public void removeAll(Object filter) {
+            values.clear();
+        }
+
+        @Override
+        public void removeAll(Object filter, DataSourceCallback callback) {
+            removeAll(filter);
+        }
+
+        @Override
+        public List<String> getKeys(Object filter) {
+            return new ArrayList<>(values.keySet());
+        }
+
+        @Override
+        public void getKeys(Object filter, DataSourceCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.storage;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ca.mas.core.security.DefaultEncryptionProvider;
+import com.ca.mas.core.security.SeekableDecryptor;
+import com.ca.mas.core.security.SegmentedEncryption;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class SegmentedEncryptionTest {
+
+    private static final int SEGMENT_SIZE = 64;
+
+    private final SegmentedEncryption encryption = new SegmentedEncryption(
+            new DefaultEncryptionProvider(InstrumentationRegistry.getTargetContext()), SEGMENT_SIZE);
+
+    @Test
+    public void testStream() throws Exception {
+        for (int size : new int[]{0, 1, SEGMENT_SIZE - 1, SEGMENT_SIZE, SEGMENT_SIZE + 1, 10 * SEGMENT_SIZE + 7}) {
+            byte[] data = random(size);
+            assertTrue(Arrays.equals(data, decrypt(encrypt(data))));
+        }
+    }
+
+    @Test
+    public void testSeekableDecryptor() throws Exception {
+        byte[] data = random(10 * SEGMENT_SIZE + 7);
+        File file = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "SegmentedEncryptionTest");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(encrypt(data));
+        out.close();
+
+        SeekableDecryptor decryptor = encryption.getSeekableDecryptor(new RandomAccessFile(file, "r"));
+        try {
+            assertEquals(data.length, decryptor.size());
+            byte[] b = new byte[100];
+            int n = decryptor.read(150, b, 0, b.length);
+            assertEquals(100, n);
+            assertTrue(Arrays.equals(Arrays.copyOfRange(data, 150, 250), b));
+            n = decryptor.read(data.length - 10, b, 0, b.length);
+            assertEquals(10, n);
+            assertEquals(-1, decryptor.read(data.length, b, 0, b.length));
+            assertEquals(data[SEGMENT_SIZE * 3] & 0xFF, decryptor.getInputStream(SEGMENT_SIZE * 3).read());
+        } finally {
+            decryptor.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testTamperedSegment() throws Exception {
+        byte[] encrypted = encrypt(random(3 * SEGMENT_SIZE));
+        encrypted[encrypted.length - 1] ^= 1;
+        try {
+            decrypt(encrypted);
+            fail();
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testTruncatedStream() throws Exception {
+        byte[] encrypted = encrypt(random(3 * SEGMENT_SIZE));
+        //Drop the last segment, the previous one is not marked as the last
+        byte[] truncated = Arrays.copyOf(encrypted, encrypted.length - SEGMENT_SIZE - 16);
+        try {
+            decrypt(truncated);
+            fail();
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    private byte[] encrypt(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = encryption.getEncryptingStream(bytes);
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] data) throws IOException {
+        InputStream in = encryption.getDecryptingStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, n);
+        }
+        in.close();
+        return bytes.toByteArray();
+    }
+
+    private byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random().nextBytes(data);
+        return data;
+    }
+}
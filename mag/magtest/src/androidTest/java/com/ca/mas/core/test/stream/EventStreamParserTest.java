@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.test.stream;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.ca.mas.core.http.MAGResponse;
+import com.ca.mas.core.stream.EventStreamParser;
+import com.ca.mas.core.stream.MAGStreamEvent;
+import com.ca.mas.core.stream.MAGStreamListener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+public class EventStreamParserTest {
+
+    private List<MAGStreamEvent> events;
+    private MAGStreamListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        events = new ArrayList<>();
+        listener = new MAGStreamListener() {
+            @Override
+            public void onOpen(MAGResponse response) {
+            }
+
+            @Override
+            public void onEvent(MAGStreamEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+
+            @Override
+            public void onClosed() {
+            }
+        };
+    }
+
+    @Test
+    public void testEventStream() throws Exception {
+        EventStreamParser parser = new EventStreamParser(listener, null, false);
+        parser.onLine(": keep alive");
+        parser.onLine("retry: 10000");
+        parser.onLine("id: 1");
+        parser.onLine("event: update");
+        parser.onLine("data: first line");
+        parser.onLine("data:second line");
+        parser.onLine("");
+        parser.onLine("data: {\"value\": 2}");
+        parser.onLine("");
+
+        assertEquals(2, events.size());
+        assertEquals("1", events.get(0).getId());
+        assertEquals("update", events.get(0).getType());
+        assertEquals("first line\nsecond line", events.get(0).getData());
+        assertEquals(MAGStreamEvent.DEFAULT_TYPE, events.get(1).getType());
+        assertEquals(2, events.get(1).getJsonData().getInt("value"));
+        assertEquals("1", parser.getLastEventId());
+        assertEquals(10000, parser.getRetry());
+    }
+
+    @Test
+    public void testEventWithoutDataIsNotDispatched() throws Exception {
+        EventStreamParser parser = new EventStreamParser(listener, "5", false);
+        parser.onLine("event: update");
+        parser.onLine("");
+        parser.onLine("data: value");
+        parser.onLine("");
+
+        assertEquals(1, events.size());
+        assertEquals("5", events.get(0).getId());
+        assertEquals(MAGStreamEvent.DEFAULT_TYPE, events.get(0).getType());
+    }
+
+    @Test
+    public void testLineDelimited() throws Exception {
+        EventStreamParser parser = new EventStreamParser(listener, null, true);
+        parser.onLine("{\"value\": 1}");
+        parser.onLine("");
+        parser.onLine("{\"value\": 2}");
+
+        assertEquals(2, events.size());
+        assertNull(events.get(0).getId());
+        assertEquals(2, events.get(1).getJsonData().getInt("value"));
+    }
+}
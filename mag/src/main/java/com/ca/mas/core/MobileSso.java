@@ -14,6 +14,8 @@ import com.ca.mas.core.auth.ble.BluetoothLePeripheralCallback;
 import com.ca.mas.core.conf.ConfigurationProvider;
 import com.ca.mas.core.http.MAGRequest;
 import com.ca.mas.core.service.AuthenticationProvider;
+import com.ca.mas.core.stream.MAGEventStream;
+import com.ca.mas.core.stream.MAGStreamListener;
 
 import org.json.JSONObject;
 
@@ -49,6 +51,21 @@ public interface MobileSso {
 
     long processRequest(MAGRequest request, ResultReceiver resultReceiver);
 
+    /**
+     * Open a long-lived streaming connection to the API, events are delivered to the listener as soon as
+     * they are received.
+     *
+     * <ul>
+     * <li>The stream is processed on its own thread, this method returns immediately to the calling thread.</li>
+     * <li>The stream reconnects automatically until {@link MAGEventStream#close()} is called.</li>
+     * </ul>
+     *
+     * @param request  the stream request to send.  Required.
+     * @param listener the listener to notify when an event is received.  Required.
+     * @return the started stream.
+     */
+    MAGEventStream stream(MAGRequest request, MAGStreamListener listener);
+
     /**
      * <p>Authenticates a user with a username and password. The existing user session will be logged out and authenticated with the provided username
      * and password.</p>
@@ -46,6 +46,12 @@ public interface MobileSsoConfig {
      */
     String PROP_CLIENT_CERT_RSA_KEYBITS = "msso.cert.rsa.keybits";
 
+    /**
+     * String.  The algorithm of the keypair to generate for the client cert, "RSA" or "EC" for a NIST P-256 key.
+     * Optional, defaults to "RSA".
+     */
+    String PROP_CLIENT_CERT_KEY_ALGORITHM = "msso.cert.key.algorithm";
+
     /**
      * String.  The OAuth scope string that should be requested when obtaining an access token that will be used
      * to consume service from an API endpoint.  If not provided, a default value will be used.
@@ -331,6 +337,11 @@ public interface MobileSsoConfig {
      *      "share" "true/false"
      *  }
      * }
+     * The data sources of the SDK are {@link com.ca.mas.core.datasource.KeystoreDataSource},
+     * {@link com.ca.mas.core.datasource.AccountManagerStoreDataSource},
+     * {@link com.ca.mas.core.datasource.SecureAccountManagerStoreDataSource} and
+     * {@link com.ca.mas.core.datasource.MappedLogDataSource}. The {@link com.ca.mas.core.datasource.MappedLogDataSource}
+     * cannot be shared, it requires {@link #PROP_SHARE_TOKEN_MANAGER}.
      */
     String PROP_STORAGE = "msso.storage";
 
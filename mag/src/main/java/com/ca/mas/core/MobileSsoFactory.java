@@ -27,6 +27,8 @@ import com.ca.mas.core.oauth.OAuthClient;
 import com.ca.mas.core.service.AuthenticationProvider;
 import com.ca.mas.core.service.MssoClient;
 import com.ca.mas.core.service.MssoIntents;
+import com.ca.mas.core.stream.MAGEventStream;
+import com.ca.mas.core.stream.MAGStreamListener;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -212,6 +214,13 @@ public final class MobileSsoFactory {
                 return mssoClient.processRequest(request, resultReceiver);
             }
 
+            @Override
+            public MAGEventStream stream(MAGRequest request, MAGStreamListener listener) {
+                MAGEventStream stream = new MAGEventStream(mssoContext, request, listener);
+                stream.start();
+                return stream;
+            }
+
             @Override
             public void logout(boolean contactServer) {
                 mssoContext.logout(contactServer);
@@ -10,6 +10,8 @@ package com.ca.mas.core.cert;
 
 import android.util.Base64;
 
+import com.ca.mas.core.util.KeyUtils;
+
 import org.spongycastle.asn1.ASN1EncodableVector;
 import org.spongycastle.asn1.ASN1Set;
 import org.spongycastle.asn1.DERSet;
@@ -103,7 +105,7 @@ public class CertUtils {
      */
     public static X509Certificate generateSelfSignedCertificate(String dn, PublicKey subjectPublicKey, PrivateKey issuerPrivateKey, SecureRandom random) throws CertificateException {
         X500Principal subjectDn = new X500Principal(dn);
-        String sigAlg = "SHA1withRSA";
+        String sigAlg = KeyUtils.isEc(issuerPrivateKey) ? "SHA256withECDSA" : "SHA1withRSA";
         int daysUntilExpiry = 10 * 365;
         Date notBefore = new Date(new Date().getTime() - (10 * 60 * 1000L)); // 10 min ago
         Date notAfter = new Date(notBefore.getTime() + (daysUntilExpiry * 24 * 60 * 60 * 1000L)); // daysUntilExpiry days after notBefore
@@ -139,7 +141,7 @@ public class CertUtils {
      * @param deviceId  the device ID.  Required.
      * @param deviceName  the device name.  Required.
      * @param organization  the organization.  Required.
-     * @param keyPair  the client's public and private key pair.  Required.
+     * @param keyPair  the client's public and private key pair, RSA or EC.  Required.
      * @return a signed PKCS#10 CertificationRequest structure in binary DER format.  Never null.
      * @throws CertificateException if a CSR cannot be created
      */
@@ -147,7 +149,8 @@ public class CertUtils {
         try {
             X500Principal subject = new X500Principal("cn=" + commonName + ", ou=" + deviceId + ", dc=" + deviceName + ", o=" + organization);
             ASN1Set attrs = new DERSet(new ASN1EncodableVector());
-            PKCS10CertificationRequest csr = new PKCS10CertificationRequest("SHA1withRSA", subject, keyPair.getPublic(), attrs, keyPair.getPrivate(), null);
+            String sigAlg = KeyUtils.isEc(keyPair.getPrivate()) ? "SHA256withECDSA" : "SHA1withRSA";
+            PKCS10CertificationRequest csr = new PKCS10CertificationRequest(sigAlg, subject, keyPair.getPublic(), attrs, keyPair.getPrivate(), null);
             return csr.getEncoded();
         } catch (Exception e) {
             throw new CertificateException("Unable to generate certificate signing request: " + e.getMessage(), e);
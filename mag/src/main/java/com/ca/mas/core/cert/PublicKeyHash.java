@@ -105,6 +105,13 @@ public class PublicKeyHash implements Serializable {
         return hash;
     }
 
+    /**
+     * @return the key hash as the raw 32 bytes SHA-256 digest.
+     */
+    public byte[] getHashBytes() {
+        return IoUtils.unhexDump(hash);
+    }
+
     /**
      * Get the key hash for the specified public key.
      *
@@ -113,6 +120,18 @@ public class PublicKeyHash implements Serializable {
      * @throws IllegalArgumentException if the public key's encoding format is not "X.509".
      */
     public static String toHash(PublicKey publicKey) {
+        return IoUtils.hexDump(toHashBytes(publicKey));
+    }
+
+    /**
+     * Get the key hash for the specified public key as the raw SHA-256 digest, without the cost of the
+     * hex encoding.
+     *
+     * @param publicKey  a public key.  Required.
+     * @return the 32 bytes SHA-256 digest of the SubjectPublicKeyInfo structure.
+     * @throws IllegalArgumentException if the public key's encoding format is not "X.509".
+     */
+    public static byte[] toHashBytes(PublicKey publicKey) {
         byte[] encoded = publicKey.getEncoded();
         if (encoded == null || encoded.length < 1)
             throw new IllegalArgumentException("public key cannot be encoded");
@@ -124,8 +143,7 @@ public class PublicKeyHash implements Serializable {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
             md.update(encoded);
-            byte[] digest = md.digest();
-            return IoUtils.hexDump(digest);
+            return md.digest();
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
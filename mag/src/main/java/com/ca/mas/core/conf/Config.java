@@ -53,6 +53,7 @@ public class Config {
     public static final Config TRUSTED_PUBLIC_PKI = new Config(false, MobileSsoConfig.PROP_TRUSTED_PUBLIC_PKI, "mag.mobile_sdk.trusted_public_pki", Boolean.class);
     public static final Config TRUSTED_CERT_PINNED_PUBLIC_KEY_HASHES = new Config(false, MobileSsoConfig.PROP_TRUSTED_CERT_PINNED_PUBLIC_KEY_HASHES, "mag.mobile_sdk.trusted_cert_pinned_public_key_hashes", List.class);
     public static final Config CLIENT_CERT_RSA_KEYBITS = new Config(false, MobileSsoConfig.PROP_CLIENT_CERT_RSA_KEYBITS, "mag.mobile_sdk.client_cert_rsa_keybits", Integer.class);
+    public static final Config CLIENT_CERT_KEY_ALGORITHM = new Config(false, MobileSsoConfig.PROP_CLIENT_CERT_KEY_ALGORITHM, "mag.mobile_sdk.client_cert_key_algorithm", String.class);
     public static final Config CLIENT_STORAGE = new Config(false, MobileSsoConfig.PROP_STORAGE, "mag.mobile_sdk.storage", String.class);
 
     //mag.ble
@@ -63,7 +64,7 @@ public class Config {
     public static Config[] values = {
             HOSTNAME, PORT, PREFIX, SERVER_CERTS, ORGANIZATION, CLIENT_KEY, CLIENT_SECRET, SCOPE, REDIRECT_URI, AUTHORIZE_PATH, REGISTER_TOKEN_PATH, REGISTER_TOKEN_PATH_SSO, LOGOUT_DEVICE_PATH,
             REMOVE_DEVICE_PATH, REGISTER_DEVICE_PATH, RENEW_DEVICE_PATH, REGISTER_DEVICE_PATH_CLIENT, CLIENT_CREDENTIAL_INIT_PATH, ENTERPRISE_APP_PATH, SSO_ENABLED, LOCATION_ENABLED, LOCATION_PROVIDER,
-            MSISDN_ENABLED, TRUSTED_PUBLIC_PKI, TRUSTED_CERT_PINNED_PUBLIC_KEY_HASHES, CLIENT_CERT_RSA_KEYBITS, CLIENT_STORAGE, BLE_SERVICE_UUID, BLE_USER_SESSION_CHARACTERISTIC_UUID,
+            MSISDN_ENABLED, TRUSTED_PUBLIC_PKI, TRUSTED_CERT_PINNED_PUBLIC_KEY_HASHES, CLIENT_CERT_RSA_KEYBITS, CLIENT_CERT_KEY_ALGORITHM, CLIENT_STORAGE, BLE_SERVICE_UUID, BLE_USER_SESSION_CHARACTERISTIC_UUID,
             BLE_RSSI, AUTHENTICATE_OTP_PATH
     };
 
@@ -14,9 +14,12 @@ import android.util.Log;
 import com.ca.mas.core.MobileSsoListener;
 import com.ca.mas.core.error.MAGErrorCode;
 import com.ca.mas.core.error.MAGRuntimeException;
+import com.ca.mas.core.http.MAGInterceptor;
 import com.ca.mas.core.http.MAGRequest;
+import com.ca.mas.core.io.http.DnsPrefetch;
 import com.ca.mas.core.oauth.GrantProvider;
 import com.ca.mas.core.store.ClientCredentialContainer;
+import com.ca.mas.core.store.LoginState;
 import com.ca.mas.core.store.OAuthTokenContainer;
 import com.ca.mas.core.store.StorageProvider;
 
@@ -31,6 +34,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static com.ca.mas.core.conf.Config.HOSTNAME;
 import static com.ca.mas.core.MAG.DEBUG;
@@ -45,6 +49,8 @@ public class ConfigurationManager {
     private String configurationFileName = null;
 
     private MAGRequest.MAGConnectionListener connectionListener;
+    private List<MAGInterceptor> interceptors = new CopyOnWriteArrayList<>();
+    private List<MAGInterceptor> networkInterceptors = new CopyOnWriteArrayList<>();
     private MobileSsoListener mobileSsoListener;
 
     private GrantProvider defaultGrantProvider = GrantProvider.PASSWORD;
@@ -55,8 +61,14 @@ public class ConfigurationManager {
 
     private int certificateAdvancedRenewTimeframe = 30;
 
+    private boolean dnsPrefetchEnabled = false;
+
+    private boolean keyPairPregenerationEnabled = false;
+
     private ConfigurationManager() {
         configurationListeners.add(new ClientChangeListener());
+        configurationListeners.add(new DnsPrefetchListener());
+        configurationListeners.add(new LoginStateListener());
     }
 
     public static ConfigurationManager getInstance() {
@@ -65,6 +77,7 @@ public class ConfigurationManager {
 
     public void reset() {
         connectedGatewayConfigurationProvider = null;
+        LoginState.invalidate();
     }
 
     public void init(Context context) {
@@ -359,6 +372,36 @@ public class ConfigurationManager {
         this.connectionListener = connectionListener;
     }
 
+    /**
+     * @return The registered application interceptors, in invocation order.
+     */
+    public List<MAGInterceptor> getInterceptors() {
+        return interceptors;
+    }
+
+    public void addInterceptor(MAGInterceptor interceptor) {
+        interceptors.add(interceptor);
+    }
+
+    public void removeInterceptor(MAGInterceptor interceptor) {
+        interceptors.remove(interceptor);
+    }
+
+    /**
+     * @return The registered network interceptors, in invocation order.
+     */
+    public List<MAGInterceptor> getNetworkInterceptors() {
+        return networkInterceptors;
+    }
+
+    public void addNetworkInterceptor(MAGInterceptor interceptor) {
+        networkInterceptors.add(interceptor);
+    }
+
+    public void removeNetworkInterceptor(MAGInterceptor interceptor) {
+        networkInterceptors.remove(interceptor);
+    }
+
     public MobileSsoListener getMobileSsoListener() {
         return mobileSsoListener;
     }
@@ -405,6 +448,31 @@ public class ConfigurationManager {
         }
     }
 
+    /**
+     * Resolve the gateway host in the background when a configuration is activated, if enabled with
+     * {@link #setDnsPrefetchEnabled(boolean)}.
+     */
+    private static class DnsPrefetchListener implements ConfigurationListener {
+
+        @Override
+        public void onUpdated(Context context, ConfigurationProvider provider) {
+            if (ConfigurationManager.getInstance().isDnsPrefetchEnabled()) {
+                DnsPrefetch.prefetch(provider.getTokenHost());
+            }
+        }
+    }
+
+    /**
+     * Discard the cached login state when a configuration is activated, the state belongs to the previous gateway.
+     */
+    private static class LoginStateListener implements ConfigurationListener {
+
+        @Override
+        public void onUpdated(Context context, ConfigurationProvider provider) {
+            LoginState.invalidate();
+        }
+    }
+
     /**
      * Listener to listen for configuration update
      */
@@ -419,4 +487,31 @@ public class ConfigurationManager {
     public void setCertificateAdvancedRenewTimeframe(int certificateAdvancedRenewTimeframe) {
         this.certificateAdvancedRenewTimeframe = certificateAdvancedRenewTimeframe;
     }
+
+    public boolean isDnsPrefetchEnabled() {
+        return dnsPrefetchEnabled;
+    }
+
+    /**
+     * Enable the resolution of the gateway host when the configuration is activated, so the first
+     * connection to the gateway does not wait for the resolver.
+     */
+    public void setDnsPrefetchEnabled(boolean dnsPrefetchEnabled) {
+        this.dnsPrefetchEnabled = dnsPrefetchEnabled;
+        if (dnsPrefetchEnabled && connectedGatewayConfigurationProvider != null) {
+            DnsPrefetch.prefetch(connectedGatewayConfigurationProvider.getTokenHost());
+        }
+    }
+
+    public boolean isKeyPairPregenerationEnabled() {
+        return keyPairPregenerationEnabled;
+    }
+
+    /**
+     * Enable the generation of the client key pair in the background when the SDK is initialized,
+     * so the device registration does not wait for the key generation.
+     */
+    public void setKeyPairPregenerationEnabled(boolean keyPairPregenerationEnabled) {
+        this.keyPairPregenerationEnabled = keyPairPregenerationEnabled;
+    }
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.context;
+
+import com.ca.mas.core.http.MAGResponse;
+
+/**
+ * Callback of {@link MssoContext#executeRequest(android.os.Bundle, com.ca.mas.core.http.MAGRequest,
+ * com.ca.mas.core.request.RequestDeadline, ExecutionCallback)}. Exactly one of the methods is invoked, either
+ * before the request method returns or later on a policy thread.
+ */
+public interface ExecutionCallback {
+
+    /**
+     * @param response the response of the request.
+     */
+    void onResponse(MAGResponse response);
+
+    /**
+     * @param e the exception {@link MssoContext#executeRequest(android.os.Bundle, com.ca.mas.core.http.MAGRequest)}
+     *          would have thrown.
+     */
+    void onError(Exception e);
+}
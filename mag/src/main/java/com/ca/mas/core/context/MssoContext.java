@@ -13,29 +13,31 @@ import android.os.Bundle;
 import android.util.Log;
 
 import com.ca.mas.core.EventDispatcher;
-import com.ca.mas.core.auth.AuthenticationException;
 import com.ca.mas.core.client.ServerClient;
 import com.ca.mas.core.conf.ConfigurationManager;
 import com.ca.mas.core.conf.ConfigurationProvider;
 import com.ca.mas.core.creds.Credentials;
 import com.ca.mas.core.datasource.DataSourceException;
 import com.ca.mas.core.error.MAGErrorCode;
-import com.ca.mas.core.error.MAGServerException;
 import com.ca.mas.core.error.MAGStateException;
+import com.ca.mas.core.error.RequestTimeoutException;
 import com.ca.mas.core.http.MAGHttpClient;
+import com.ca.mas.core.http.MAGInterceptor;
+import com.ca.mas.core.http.MAGInterceptorChain;
 import com.ca.mas.core.http.MAGRequest;
 import com.ca.mas.core.http.MAGResponse;
 import com.ca.mas.core.oauth.OAuthClient;
+import com.ca.mas.core.oauth.ScopeSet;
 import com.ca.mas.core.policy.PolicyManager;
 import com.ca.mas.core.policy.RequestInfo;
-import com.ca.mas.core.policy.exceptions.CertificateExpiredException;
-import com.ca.mas.core.policy.exceptions.InvalidClientCredentialException;
-import com.ca.mas.core.policy.exceptions.RetryRequestException;
+import com.ca.mas.core.registration.ClientKeyPairGenerator;
 import com.ca.mas.core.registration.RegistrationClient;
-import com.ca.mas.core.request.MAGInternalRequest;
+import com.ca.mas.core.request.RequestDeadline;
 import com.ca.mas.core.request.internal.LocalRequest;
 import com.ca.mas.core.security.SecureLockException;
+import com.ca.mas.core.store.ClientCertificateProvider;
 import com.ca.mas.core.store.ClientCredentialContainer;
+import com.ca.mas.core.store.LoginState;
 import com.ca.mas.core.store.OAuthTokenContainer;
 import com.ca.mas.core.store.StorageProvider;
 import com.ca.mas.core.store.TokenManager;
@@ -48,6 +50,7 @@ import com.ca.mas.core.token.JWTValidationException;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.Date;
+import java.util.List;
 
 import static com.ca.mas.core.MAG.DEBUG;
 import static com.ca.mas.core.MAG.TAG;
@@ -66,11 +69,6 @@ import static com.ca.mas.core.MAG.TAG;
  */
 public class MssoContext {
 
-    /**
-     * Maximum number of RetryRequestExceptions to honor before giving up.
-     */
-    private static final int MAX_REQUEST_ATTEMPTS = 4;
-
     private Context context;
 
     private ConfigurationProvider configurationProvider;
@@ -162,7 +160,16 @@ public class MssoContext {
             deviceName = android.os.Build.MODEL;
         }
 
+        pregenerateClientKeyPair();
+    }
 
+    /**
+     * Generate the client key pair in the background if enabled, so it is ready for the next device registration.
+     */
+    private void pregenerateClientKeyPair() {
+        if (ConfigurationManager.getInstance().isKeyPairPregenerationEnabled()) {
+            ClientKeyPairGenerator.pregenerate(tokenManager, configurationProvider);
+        }
     }
 
     public void initPolicyManager() {
@@ -274,6 +281,9 @@ public class MssoContext {
      */
     public boolean isDeviceRegistered() {
         try {
+            if (tokenManager instanceof ClientCertificateProvider) {
+                return ((ClientCertificateProvider) tokenManager).isDeviceRegistered();
+            }
             return tokenManager != null && tokenManager.isClientCertificateChainAvailable();
         } catch (DataSourceException e) {
             return false;
@@ -390,6 +400,13 @@ public class MssoContext {
         return privateTokens.getGrantedScope();
     }
 
+    /**
+     * @return the parsed granted scope of the access token, {@link ScopeSet#EMPTY} if not available.
+     */
+    public ScopeSet getGrantedScopes() {
+        return privateTokens.getGrantedScopes();
+    }
+
     /**
      * Take and consume the refresh token, if one is available.
      * <p/>
@@ -419,6 +436,9 @@ public class MssoContext {
      * Add an access token to the specified outbound request, transmit it to the target server, and return
      * the response.
      * <p/>
+     * The registered application {@link MAGInterceptor}s are invoked before the policies are applied,
+     * internal local requests are not intercepted.
+     * <p/>
      * This method may take a long time to execute and should not be invoked on the GUI thread.
      *
      * @param request the request to decorate and send.  Required.
@@ -427,54 +447,93 @@ public class MssoContext {
      *                           (for example, if a username and password must be provided, or if the token store needs to be unlocked).
      * @throws IOException       if there is an error communicating with the target server.
      */
-    public MAGResponse executeRequest(Bundle extra, MAGRequest request) throws Exception {
-        RequestInfo requestInfo = new RequestInfo(this, request, extra);
-        MAGInternalRequest internalRequest = requestInfo.getRequest();
+    public MAGResponse executeRequest(final Bundle extra, MAGRequest request) throws Exception {
+        return executeRequest(extra, request, RequestDeadline.fromRequest(request));
+    }
 
-        MAGStateException lastError = null;
-        for (; requestInfo.getNumAttempts() < MAX_REQUEST_ATTEMPTS; requestInfo.incrementNumAttempts()) {
+    /**
+     * Same as {@link #executeRequest(Bundle, MAGRequest)}, with the remaining time budget of the request bounding
+     * the policy lock, the policies, the retries and the network exchanges.
+     *
+     * @param deadline the deadline of the request, null for no deadline.
+     * @throws com.ca.mas.core.error.RequestTimeoutException if the deadline is reached.
+     */
+    public MAGResponse executeRequest(final Bundle extra, MAGRequest request, RequestDeadline deadline) throws Exception {
+        RequestDeadline previous = RequestDeadline.bind(deadline);
+        try {
+            return intercept(extra, request);
+        } catch (Exception e) {
+            throw timeoutIfExpired(deadline, e);
+        } finally {
+            RequestDeadline.bind(previous);
+        }
+    }
+
+    /**
+     * Same as {@link #executeRequest(Bundle, MAGRequest, RequestDeadline)}, without blocking the calling thread
+     * while the request is parked by an {@link com.ca.mas.core.policy.AsyncMssoAssertion} or waits for the policies
+     * applied to another request. Requests intercepted by a {@link MAGInterceptor} are executed on the calling thread.
+     *
+     * @param callback the callback to invoke with the response or the failure, possibly before this method returns.
+     */
+    public void executeRequest(final Bundle extra, MAGRequest request, final RequestDeadline deadline,
+                               final ExecutionCallback callback) {
+        if (!ConfigurationManager.getInstance().getInterceptors().isEmpty() && !(request instanceof LocalRequest)) {
+            MAGResponse response;
             try {
-                policyManager.processRequest(requestInfo);
-                MAGResponse response;
-                if (internalRequest.isLocalRequest()) {
-                    response = ((LocalRequest) internalRequest.getRequest()).send(this);
-                } else {
-                    response = getMAGHttpClient().execute(internalRequest);
-                }
-                policyManager.processResponse(requestInfo, response);
-                return response;
-            } catch (MAGServerException e) {
-                if (DEBUG) Log.d(TAG, String.format("Server return x-ca-err %d", e.getErrorCode()));
-                rethrow(e);
-            } catch (RetryRequestException e) {
-                lastError = e;
-                e.recover(this);
-                if (DEBUG) Log.d(TAG, "Attempting to retry request. " + e.getClass());
+                response = executeRequest(extra, request, deadline);
+            } catch (Exception e) {
+                callback.onError(e);
+                return;
             }
+            callback.onResponse(response);
+            return;
         }
-        if (lastError != null && lastError.getCause() != null) {
-            throw (Exception) lastError.getCause();
+        RequestDeadline previous = RequestDeadline.bind(deadline);
+        try {
+            new RequestExecution(this, policyManager, new RequestInfo(this, request, extra)).execute(new ExecutionCallback() {
+                @Override
+                public void onResponse(MAGResponse response) {
+                    callback.onResponse(response);
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    callback.onError(timeoutIfExpired(deadline, e));
+                }
+            });
+        } finally {
+            RequestDeadline.bind(previous);
         }
-        throw new IOException("Too many attempts, giving up: " + (lastError == null ? null : lastError.getMessage()));
     }
 
     /**
-     * Handle common server error defined under
-     * Git: MAS/Gateway-SK-MAG/blob/develop/apidoc/errorcodes/error_codes_overview.xml
+     * @return a timeout if the time budget ran out in a nested call (e.g. registration), the exception otherwise.
      */
-    private void rethrow(MAGServerException e) throws Exception {
-        int errorCode = e.getErrorCode();
-        String s = Integer.toString(errorCode);
-        if (s.endsWith("201")) { //Invalid client - The given client credentials were not valid
-            throw new InvalidClientCredentialException();
-        }
-        if (s.endsWith("202")) { //Invalid resource owner - The given resource owner credentials were not valid
-            throw new AuthenticationException(e);
+    private static Exception timeoutIfExpired(RequestDeadline deadline, Exception e) {
+        if (deadline != null && deadline.isExpired() && !(e instanceof RequestTimeoutException)) {
+            RequestTimeoutException timeout = deadline.timeout();
+            timeout.initCause(e);
+            return timeout;
         }
-        if (s.endsWith("206")) { //Invalid client Certificate - The given client certificate has expired
-            throw new CertificateExpiredException(e);
+        return e;
+    }
+
+    private MAGResponse intercept(final Bundle extra, MAGRequest request) throws Exception {
+        List<MAGInterceptor> interceptors = ConfigurationManager.getInstance().getInterceptors();
+        if (interceptors.isEmpty() || request instanceof LocalRequest) {
+            return doExecuteRequest(extra, request);
         }
-        throw e; //Cannot be handle on the client side, rethrow to caller
+        return new MAGInterceptorChain(interceptors, request, new MAGInterceptorChain.Executor() {
+            @Override
+            public MAGResponse execute(MAGRequest request) throws Exception {
+                return doExecuteRequest(extra, request);
+            }
+        }).proceed(request);
+    }
+
+    private MAGResponse doExecuteRequest(Bundle extra, MAGRequest request) throws Exception {
+        return new RequestExecution(this, policyManager, new RequestInfo(this, request, extra)).execute();
     }
 
     /**
@@ -632,6 +691,7 @@ public class MssoContext {
         } finally {
             resetHttpClient();
         }
+        pregenerateClientKeyPair();
     }
 
     /**
@@ -658,6 +718,7 @@ public class MssoContext {
         } finally {
             resetHttpClient();
         }
+        pregenerateClientKeyPair();
     }
 
     /**
@@ -674,13 +735,20 @@ public class MssoContext {
      *
      * @return true if the id token has been acquired and stored in the the device. false if the id token is not available.
      * For SSO disabled, id token is not issued by the server, check access token and refresh token instead.
+     * The state is cached by {@link LoginState} until the tokens change.
      */
     public boolean isLogin() {
+        int state = LoginState.get();
+        if (state != LoginState.UNKNOWN) {
+            return state == LoginState.LOGGED_IN;
+        }
+        int generation = LoginState.getGeneration();
 
         //The access token is granted by Client Credential if refresh token is null
         //Please refer to https://tools.ietf.org/html/rfc6749#section-4.4.3 for detail
-        return getIdToken() != null || getRefreshToken() != null;
-
+        boolean login = getIdToken() != null || getRefreshToken() != null;
+        LoginState.set(generation, login);
+        return login;
     }
 
     public void setClientCredentials(ClientCredentials clientCredentials) {
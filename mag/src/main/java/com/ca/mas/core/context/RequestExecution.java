@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.context;
+
+import android.util.Log;
+
+import com.ca.mas.core.auth.AuthenticationException;
+import com.ca.mas.core.error.MAGServerException;
+import com.ca.mas.core.http.MAGResponse;
+import com.ca.mas.core.policy.AssertionCallback;
+import com.ca.mas.core.policy.PolicyManager;
+import com.ca.mas.core.policy.Recovery;
+import com.ca.mas.core.policy.RequestInfo;
+import com.ca.mas.core.policy.exceptions.CertificateExpiredException;
+import com.ca.mas.core.policy.exceptions.CredentialRequiredException;
+import com.ca.mas.core.policy.exceptions.InvalidClientCredentialException;
+import com.ca.mas.core.policy.exceptions.RetryRequestException;
+import com.ca.mas.core.request.MAGInternalRequest;
+import com.ca.mas.core.request.RequestDeadline;
+import com.ca.mas.core.request.internal.LocalRequest;
+
+import java.io.IOException;
+
+import static com.ca.mas.core.MAG.DEBUG;
+import static com.ca.mas.core.MAG.TAG;
+
+/**
+ * Executes a request through the policies, as a state machine driven by the outcome of every attempt.
+ * <p/>
+ * Policies request a retry with {@link RequestInfo#retry(String, Recovery)}, so the expected retries, e.g. an
+ * access token rejected by the server, do not allocate an exception. A {@link RetryRequestException} thrown
+ * by a policy is still honored.
+ */
+class RequestExecution {
+
+    enum State {
+        /**
+         * The request passed the policies and the response is accepted.
+         */
+        PROCEED,
+        /**
+         * The request has to be retried from the beginning, after a recovery.
+         */
+        RETRY_WITH_RECOVERY,
+        /**
+         * The request is pending until the user credentials are provided.
+         */
+        NEEDS_CREDENTIALS,
+        /**
+         * The request failed.
+         */
+        FAIL
+    }
+
+    /**
+     * Maximum number of retries to honor before giving up.
+     */
+    private static final int MAX_REQUEST_ATTEMPTS = 4;
+
+    private final MssoContext mssoContext;
+    private final PolicyManager policyManager;
+    private final RequestInfo requestInfo;
+    private final RequestDeadline deadline;
+
+    private MAGResponse response;
+    private Exception failure;
+    private Recovery recovery;
+    private String retryReason;
+    private RetryRequestException retryException;
+    private ExecutionCallback callback;
+
+    RequestExecution(MssoContext mssoContext, PolicyManager policyManager, RequestInfo requestInfo) {
+        this.mssoContext = mssoContext;
+        this.policyManager = policyManager;
+        this.requestInfo = requestInfo;
+        this.deadline = RequestDeadline.current();
+    }
+
+    /**
+     * @return the response of the request.
+     * @throws CredentialRequiredException if the user credentials are required to process the request.
+     * @throws Exception                   if the request failed.
+     */
+    MAGResponse execute() throws Exception {
+        while (true) {
+            switch (attempt()) {
+                case PROCEED:
+                    return response;
+                case RETRY_WITH_RECOVERY:
+                    recover();
+                    break;
+                case NEEDS_CREDENTIALS:
+                case FAIL:
+                    throw failure;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #execute()}, the request is parked instead of blocking the calling thread while an
+     * {@link com.ca.mas.core.policy.AsyncMssoAssertion} is applied or while the policies are applied to
+     * another request.
+     *
+     * @param callback the callback to invoke with the response or the failure.
+     */
+    void execute(ExecutionCallback callback) {
+        this.callback = callback;
+        attemptAsync();
+    }
+
+    /**
+     * Apply the policies to the request, send it and apply the policies to the response.
+     *
+     * @return the state of the request after the attempt.
+     */
+    private State attempt() {
+        try {
+            policyManager.processRequest(requestInfo);
+            if (requestInfo.isRetryRequested()) {
+                return retry(requestInfo.getRetryReason(), requestInfo.takeRecovery(), null);
+            }
+            MAGResponse result = send();
+            policyManager.processResponse(requestInfo, result);
+            if (requestInfo.isRetryRequested()) {
+                return retry(requestInfo.getRetryReason(), requestInfo.takeRecovery(), null);
+            }
+            response = result;
+            return State.PROCEED;
+        } catch (Exception e) {
+            return onError(e);
+        }
+    }
+
+    private void attemptAsync() {
+        RequestDeadline previous = RequestDeadline.bind(deadline);
+        try {
+            policyManager.processRequest(requestInfo, new AssertionCallback() {
+                @Override
+                public void onComplete() {
+                    if (requestInfo.isRetryRequested()) {
+                        next(retry(requestInfo.getRetryReason(), requestInfo.takeRecovery(), null));
+                    } else {
+                        sendAsync();
+                    }
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    next(RequestExecution.this.onError(e));
+                }
+            });
+        } finally {
+            RequestDeadline.bind(previous);
+        }
+    }
+
+    private void sendAsync() {
+        RequestDeadline previous = RequestDeadline.bind(deadline);
+        try {
+            final MAGResponse result;
+            try {
+                result = send();
+            } catch (Exception e) {
+                next(onError(e));
+                return;
+            }
+            policyManager.processResponse(requestInfo, result, new AssertionCallback() {
+                @Override
+                public void onComplete() {
+                    if (requestInfo.isRetryRequested()) {
+                        next(retry(requestInfo.getRetryReason(), requestInfo.takeRecovery(), null));
+                    } else {
+                        response = result;
+                        next(State.PROCEED);
+                    }
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    next(RequestExecution.this.onError(e));
+                }
+            });
+        } finally {
+            RequestDeadline.bind(previous);
+        }
+    }
+
+    /**
+     * Move the asynchronous execution to the next state.
+     */
+    private void next(State state) {
+        switch (state) {
+            case PROCEED:
+                callback.onResponse(response);
+                return;
+            case RETRY_WITH_RECOVERY:
+                RequestDeadline previous = RequestDeadline.bind(deadline);
+                try {
+                    recover();
+                } catch (Exception e) {
+                    callback.onError(e);
+                    return;
+                } finally {
+                    RequestDeadline.bind(previous);
+                }
+                attemptAsync();
+                return;
+            default:
+                callback.onError(failure);
+        }
+    }
+
+    private MAGResponse send() throws Exception {
+        if (deadline != null) {
+            deadline.enter(RequestDeadline.Phase.NETWORK);
+        }
+        MAGInternalRequest internalRequest = requestInfo.getRequest();
+        if (internalRequest.isLocalRequest()) {
+            return ((LocalRequest) internalRequest.getRequest()).send(mssoContext);
+        } else {
+            return mssoContext.getMAGHttpClient().execute(internalRequest);
+        }
+    }
+
+    private void recover() throws Exception {
+        requestInfo.incrementNumAttempts();
+        if (requestInfo.getNumAttempts() >= MAX_REQUEST_ATTEMPTS) {
+            throw tooManyAttempts();
+        }
+        if (deadline != null) {
+            deadline.enter(RequestDeadline.Phase.RETRY);
+        }
+        recovery.recover(mssoContext);
+        if (DEBUG) Log.d(TAG, "Attempting to retry request. " + retryReason);
+    }
+
+    /**
+     * @return the state of the request after the failure of an attempt.
+     */
+    private State onError(Exception e) {
+        if (e instanceof MAGServerException) {
+            if (DEBUG) Log.d(TAG, String.format("Server return x-ca-err %d", ((MAGServerException) e).getErrorCode()));
+            return fail(translate((MAGServerException) e));
+        }
+        if (e instanceof RetryRequestException) {
+            return retry(e.getMessage(), (RetryRequestException) e, (RetryRequestException) e);
+        }
+        if (e instanceof CredentialRequiredException) {
+            failure = e;
+            return State.NEEDS_CREDENTIALS;
+        }
+        return fail(e);
+    }
+
+    private State retry(String reason, Recovery recovery, RetryRequestException e) {
+        this.retryReason = reason;
+        this.recovery = recovery;
+        this.retryException = e;
+        return State.RETRY_WITH_RECOVERY;
+    }
+
+    private State fail(Exception e) {
+        failure = e;
+        return State.FAIL;
+    }
+
+    private Exception tooManyAttempts() {
+        if (retryException != null && retryException.getCause() instanceof Exception) {
+            return (Exception) retryException.getCause();
+        }
+        return new IOException("Too many attempts, giving up: " + retryReason);
+    }
+
+    /**
+     * Handle common server error defined under
+     * Git: MAS/Gateway-SK-MAG/blob/develop/apidoc/errorcodes/error_codes_overview.xml
+     */
+    private static Exception translate(MAGServerException e) {
+        int errorCode = e.getErrorCode();
+        String s = Integer.toString(errorCode);
+        if (s.endsWith("201")) { //Invalid client - The given client credentials were not valid
+            return new InvalidClientCredentialException();
+        }
+        if (s.endsWith("202")) { //Invalid resource owner - The given resource owner credentials were not valid
+            return new AuthenticationException(e);
+        }
+        if (s.endsWith("206")) { //Invalid client Certificate - The given client certificate has expired
+            return new CertificateExpiredException(e);
+        }
+        return e; //Cannot be handle on the client side, rethrow to caller
+    }
+}
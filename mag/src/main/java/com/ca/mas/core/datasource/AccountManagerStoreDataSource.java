@@ -12,7 +12,6 @@ import android.content.Context;
 
 import com.ca.mas.core.storage.StorageException;
 import com.ca.mas.core.storage.StorageResult;
-import com.ca.mas.core.storage.StorageResultReceiver;
 import com.ca.mas.core.storage.implementation.AccountManagerStorage;
 import com.ca.mas.core.storage.implementation.MASStorageManager;
 
@@ -31,6 +30,7 @@ public class AccountManagerStoreDataSource<K, V> implements DataSource<K, V> {
     private DataConverter converter;
     private Context context;
     private boolean share;
+    private final DataSourceExecutor<K, V> executor = new DataSourceExecutor<>(this);
 
 
     public AccountManagerStoreDataSource(Context context, JSONObject param, DataConverter converter) {
@@ -72,38 +72,8 @@ public class AccountManagerStoreDataSource<K, V> implements DataSource<K, V> {
     }
 
     @Override
-    public void put(K key, V value, final DataSourceCallback callback) {
-        try {
-            if (value instanceof byte[]) {
-                storage.writeOrUpdateData((String) key, (byte[]) value, new StorageResultReceiver(callback.getHandler()) {
-                    @Override
-                    public void onReceiveResult(StorageResult result) {
-                        if (result.getStatus() == StorageResult.StorageOperationStatus.FAILURE) {
-                            callback.onError(new DataSourceError(((StorageException) result.getData())));
-                        } else {
-                            callback.onSuccess(null);
-                        }
-                    }
-                });
-            } else if (value instanceof String) {
-                storage.writeOrUpdateString((String) key, (String) value, new StorageResultReceiver(callback.getHandler()) {
-                    @Override
-                    public void onReceiveResult(StorageResult result) {
-                        if (result.getStatus() == StorageResult.StorageOperationStatus.FAILURE) {
-                            callback.onError(new DataSourceError(((StorageException) result.getData())));
-                        } else {
-                            callback.onSuccess(null);
-                        }
-                    }
-                });
-            } else {
-                throw new UnsupportedOperationException("Value type not supported");
-            }
-        } catch (StorageException e) {
-            throw new DataSourceException(e);
-        }
-
-
+    public void put(K key, V value, DataSourceCallback callback) {
+        executor.put(key, value, callback);
     }
 
     @Override
@@ -127,23 +97,8 @@ public class AccountManagerStoreDataSource<K, V> implements DataSource<K, V> {
     }
 
     @Override
-    public void get(final K key, final DataSourceCallback callback) {
-
-        try {
-            storage.readData((String) key, new StorageResultReceiver(callback.getHandler()) {
-                @Override
-                public void onReceiveResult(StorageResult result) {
-                    if (result.getStatus() == StorageResult.StorageOperationStatus.FAILURE) {
-                        callback.onError(new DataSourceError(((StorageException) result.getData())));
-                    } else {
-                        V data = getData(key, result);
-                        callback.onSuccess(data);
-                    }
-                }
-            });
-        } catch (StorageException e) {
-            throw new DataSourceException(e);
-        }
+    public void get(K key, DataSourceCallback callback) {
+        executor.get(key, callback);
     }
 
     @Override
@@ -161,23 +116,8 @@ public class AccountManagerStoreDataSource<K, V> implements DataSource<K, V> {
     }
 
     @Override
-    public void remove(K key, final DataSourceCallback callback) {
-        try {
-            storage.deleteData((String) key, new StorageResultReceiver(callback.getHandler()) {
-                @Override
-                public void onReceiveResult(StorageResult result) {
-                    if (result.getStatus() == StorageResult.StorageOperationStatus.FAILURE) {
-                        callback.onError(new DataSourceError(((StorageException) result.getData())));
-                    } else {
-                        callback.onSuccess(null);
-                    }
-                }
-            });
-        } catch (StorageException e) {
-            throw new DataSourceException(e);
-        }
-
-
+    public void remove(K key, DataSourceCallback callback) {
+        executor.remove(key, callback);
     }
 
     @Override
@@ -195,21 +135,8 @@ public class AccountManagerStoreDataSource<K, V> implements DataSource<K, V> {
     }
 
     @Override
-    public void removeAll(Object filter, final DataSourceCallback callback) {
-        try {
-            storage.deleteAll(new StorageResultReceiver(callback.getHandler()) {
-                @Override
-                public void onReceiveResult(StorageResult result) {
-                    if (result.getStatus() == StorageResult.StorageOperationStatus.FAILURE) {
-                        callback.onError(new DataSourceError(((StorageException) result.getData())));
-                    } else {
-                        callback.onSuccess(null);
-                    }
-                }
-            });
-        } catch (StorageException e) {
-            throw new DataSourceException(e);
-        }
+    public void removeAll(Object filter, DataSourceCallback callback) {
+        executor.removeAll(filter, callback);
     }
 
     @Override
@@ -223,21 +150,8 @@ public class AccountManagerStoreDataSource<K, V> implements DataSource<K, V> {
     }
 
     @Override
-    public void getKeys(Object filter, final DataSourceCallback callback) {
-        try {
-            storage.getAllKeys(new StorageResultReceiver(callback.getHandler()) {
-                @Override
-                public void onReceiveResult(StorageResult result) {
-                    if (result.getStatus() == StorageResult.StorageOperationStatus.FAILURE) {
-                        callback.onError(new DataSourceError(((StorageException) result.getData())));
-                    } else {
-                        callback.onSuccess(result.getData());
-                    }
-                }
-            });
-        } catch (StorageException e) {
-            throw new DataSourceException(e);
-        }
+    public void getKeys(Object filter, DataSourceCallback callback) {
+        executor.getKeys(filter, callback);
     }
 
     @Override
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.datasource;
+
+import java.util.Map;
+
+/**
+ * A {@link DataSource} writing several entries with a single transaction of its storage. Implementing it is
+ * optional, use {@link BatchWrite#putAll(DataSource, Map)} to write several entries to any data source.
+ */
+public interface BatchDataSource<K, T> extends DataSource<K, T> {
+
+    /**
+     * Write multiple entries atomically, either all the entries are written, or none of them.
+     * A null value removes the entry.
+     *
+     * @param values The entries to write.
+     * @throws DataSourceException if the entries cannot be written, the storage is left unchanged.
+     */
+    void putAll(Map<K, T> values);
+}
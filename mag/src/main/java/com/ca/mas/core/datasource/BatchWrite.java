@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.datasource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes several entries to a {@link DataSource}. A {@link BatchDataSource} writes the entries atomically.
+ * <p/>
+ * The other data sources are written one entry at a time. The previous values are captured before writing and
+ * restored if one of the writes fails, but the write is not atomic: a crash in the middle of the writes leaves
+ * a part of the entries written.
+ */
+public class BatchWrite {
+
+    private BatchWrite() {
+    }
+
+    /**
+     * @param values The entries to write, in order. A null value removes the entry.
+     * @throws DataSourceException if the entries cannot be written.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> void putAll(DataSource<K, V> dataSource, Map<K, V> values) {
+        if (dataSource instanceof BatchDataSource) {
+            ((BatchDataSource<K, V>) dataSource).putAll(values);
+            return;
+        }
+        Map<K, V> previous = new LinkedHashMap<>();
+        for (K key : values.keySet()) {
+            previous.put(key, dataSource.get(key));
+        }
+        Map<K, V> written = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<K, V> entry : values.entrySet()) {
+                written.put(entry.getKey(), previous.get(entry.getKey()));
+                put(dataSource, entry.getKey(), entry.getValue());
+            }
+        } catch (RuntimeException e) {
+            for (Map.Entry<K, V> entry : written.entrySet()) {
+                try {
+                    put(dataSource, entry.getKey(), entry.getValue());
+                } catch (RuntimeException ignore) {
+                    //Best effort, report the original failure
+                }
+            }
+            if (e instanceof DataSourceException) {
+                throw e;
+            }
+            throw new DataSourceException("Error in putAll() ", e);
+        }
+    }
+
+    private static <K, V> void put(DataSource<K, V> dataSource, K key, V value) {
+        if (value == null) {
+            dataSource.remove(key);
+        } else {
+            dataSource.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.datasource;
+
+import android.os.Handler;
+
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A write-through in-memory cache in front of another {@link DataSource}, so the values read repeatedly
+ * are not read and decrypted from the backing store every time.
+ * <p/>
+ * Enabled in the <code>storage</code> section of the JSON configuration:
+ * <pre>
+ * "storage": {
+ *   "class": "com.ca.mas.core.datasource.KeystoreDataSource",
+ *   "cache": true,
+ *   "cache_size": 128
+ * }
+ * </pre>
+ * Writes go to the backing store first and then update the cache, removals invalidate the cached entries.
+ * Absent values are cached as well. The cached entries are shared by all the instances with the same backing
+ * store configuration, and the least recently used entries are evicted above <code>cache_size</code> entries.
+ * Changes made to the backing store by another process are only visible after {@link #invalidateAll()}.
+ */
+public class CachingDataSource<K, V> implements DataSource<K, V> {
+
+    public static final String CACHE = "cache";
+    public static final String CACHE_SIZE = "cache_size";
+    public static final int DEFAULT_CACHE_SIZE = 128;
+
+    private static final Object NONE = new Object();
+    private static final Map<String, Cache> caches = new HashMap<>();
+
+    private final DataSource<K, V> delegate;
+    private final Cache cache;
+
+    /**
+     * @param delegate The backing store.
+     * @param id       Identifies the backing store, instances with the same id share the cached entries.
+     * @param size     The maximum number of cached entries.
+     */
+    public CachingDataSource(DataSource<K, V> delegate, String id, int size) {
+        this.delegate = delegate;
+        synchronized (caches) {
+            Cache c = caches.get(id);
+            if (c == null) {
+                c = new Cache(size);
+                caches.put(id, c);
+            }
+            this.cache = c;
+        }
+    }
+
+    /**
+     * @param param The storage configuration.
+     * @return True if the caching is enabled by the storage configuration.
+     */
+    public static boolean isEnabled(JSONObject param) {
+        return param != null && param.optBoolean(CACHE, false);
+    }
+
+    /**
+     * Wrap the data source with a cache if enabled by the storage configuration.
+     *
+     * @param dataSource The backing store.
+     * @param param      The storage configuration.
+     * @param converter  The converter used by the backing store, or null.
+     * @return The caching data source, or the data source itself if caching is not enabled.
+     */
+    public static <K, V> DataSource<K, V> wrap(DataSource<K, V> dataSource, JSONObject param, DataConverter converter) {
+        if (!isEnabled(param)) {
+            return dataSource;
+        }
+        //Same fingerprint as the shared data sources, values are converted by the backing store so the
+        //converter is part of it
+        String id = dataSource.getClass().getName() + ":" + param.toString()
+                + ":" + (converter == null ? null : converter.getClass().getName());
+        int size = param.optInt(CACHE_SIZE, DEFAULT_CACHE_SIZE);
+        if (dataSource instanceof BatchDataSource) {
+            return new Batch<>((BatchDataSource<K, V>) dataSource, id, size);
+        }
+        return new CachingDataSource<>(dataSource, id, size);
+    }
+
+    /**
+     * Discard the cached entries of all the caching data sources.
+     */
+    public static void invalidateAll() {
+        synchronized (caches) {
+            for (Cache c : caches.values()) {
+                c.clear();
+            }
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            delegate.put(key, value);
+        } catch (RuntimeException e) {
+            cache.remove(key);
+            throw e;
+        }
+        cache.put(key, value);
+    }
+
+    @Override
+    public void put(K key, V value, DataSourceCallback callback) {
+        delegate.put(key, value, new InvalidatingCallback(key, callback));
+    }
+
+    /**
+     * Write the entries with a single transaction of the backing store, which has to be a {@link BatchDataSource}.
+     */
+    void putAll(BatchDataSource<K, V> batch, Map<K, V> values) {
+        try {
+            batch.putAll(values);
+        } catch (RuntimeException e) {
+            for (K key : values.keySet()) {
+                cache.remove(key);
+            }
+            throw e;
+        }
+        for (Map.Entry<K, V> entry : values.entrySet()) {
+            cache.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        Object value = cache.get(key);
+        if (value != null) {
+            return value == NONE ? null : copy((V) value);
+        }
+        long version = cache.getVersion();
+        V v = delegate.get(key);
+        cache.fill(key, v, version);
+        return copy(v);
+    }
+
+    @Override
+    public void get(K key, DataSourceCallback callback) {
+        delegate.get(key, callback);
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            delegate.remove(key);
+        } finally {
+            cache.remove(key);
+        }
+    }
+
+    @Override
+    public void remove(K key, DataSourceCallback callback) {
+        delegate.remove(key, new InvalidatingCallback(key, callback));
+    }
+
+    @Override
+    public void removeAll(Object filter) {
+        try {
+            delegate.removeAll(filter);
+        } finally {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public void removeAll(Object filter, DataSourceCallback callback) {
+        delegate.removeAll(filter, new InvalidatingCallback(null, callback));
+    }
+
+    @Override
+    public List<K> getKeys(Object filter) {
+        return delegate.getKeys(filter);
+    }
+
+    @Override
+    public void getKeys(Object filter, DataSourceCallback callback) {
+        delegate.getKeys(filter, callback);
+    }
+
+    @Override
+    public boolean isReady() {
+        return delegate.isReady();
+    }
+
+    @Override
+    public void unlock() {
+        delegate.unlock();
+    }
+
+    /**
+     * @return The number of reads served from the cache.
+     */
+    public long getHitCount() {
+        return cache.hits.get();
+    }
+
+    /**
+     * @return The number of reads served by the backing store.
+     */
+    public long getMissCount() {
+        return cache.misses.get();
+    }
+
+    public DataSource<K, V> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Byte arrays are mutable, the caller gets its own copy.
+     */
+    private V copy(V value) {
+        if (value instanceof byte[]) {
+            return (V) ((byte[]) value).clone();
+        }
+        return value;
+    }
+
+    /**
+     * Invalidates the key, or the whole cache if the key is null, when an asynchronous operation completes.
+     */
+    private class InvalidatingCallback implements DataSourceCallback {
+
+        private final K key;
+        private final DataSourceCallback callback;
+
+        InvalidatingCallback(K key, DataSourceCallback callback) {
+            this.key = key;
+            this.callback = callback;
+            invalidate();
+        }
+
+        private void invalidate() {
+            if (key == null) {
+                cache.clear();
+            } else {
+                cache.remove(key);
+            }
+        }
+
+        @Override
+        public Handler getHandler() {
+            return callback.getHandler();
+        }
+
+        @Override
+        public void onError(DataSourceError e) {
+            invalidate();
+            callback.onError(e);
+        }
+
+        @Override
+        public void onSuccess(Object value) {
+            invalidate();
+            callback.onSuccess(value);
+        }
+    }
+
+    /**
+     * Least recently used entries, with a version incremented on every change, so that a value read from
+     * the backing store is not cached if the entry changed during the read.
+     */
+    private static class Cache {
+
+        private final Map<Object, Object> entries;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private long version;
+
+        Cache(final int size) {
+            entries = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                    return size() > size;
+                }
+            };
+        }
+
+        synchronized Object get(Object key) {
+            Object value = entries.get(key);
+            if (value == null) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+            return value;
+        }
+
+        synchronized long getVersion() {
+            return version;
+        }
+
+        synchronized void fill(Object key, Object value, long version) {
+            if (this.version == version) {
+                entries.put(key, value == null ? NONE : value);
+            }
+        }
+
+        synchronized void put(Object key, Object value) {
+            version++;
+            if (value instanceof byte[]) {
+                value = ((byte[]) value).clone();
+            }
+            entries.put(key, value == null ? NONE : value);
+        }
+
+        synchronized void remove(Object key) {
+            version++;
+            entries.remove(key);
+        }
+
+        synchronized void clear() {
+            version++;
+            entries.clear();
+        }
+    }
+
+    /**
+     * A caching data source in front of a {@link BatchDataSource}.
+     */
+    public static class Batch<K, V> extends CachingDataSource<K, V> implements BatchDataSource<K, V> {
+
+        private final BatchDataSource<K, V> batch;
+
+        public Batch(BatchDataSource<K, V> delegate, String id, int size) {
+            super(delegate, id, size);
+            this.batch = delegate;
+        }
+
+        @Override
+        public void putAll(Map<K, V> values) {
+            putAll(batch, values);
+        }
+    }
+}
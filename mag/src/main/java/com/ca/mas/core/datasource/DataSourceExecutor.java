@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.datasource;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ca.mas.core.MAG.DEBUG;
+import static com.ca.mas.core.MAG.TAG;
+
+/**
+ * Runs the {@link DataSourceCallback} variants of the {@link DataSource} operations with the synchronous operations
+ * of the data source, on a small pool of storage threads shared by all the data sources.
+ * <p/>
+ * The operations of a data source run one at a time in submission order, a read always sees the writes submitted
+ * before it. A write to a key replaces a queued write to the same key that has not started yet, the callbacks of
+ * both writes are notified with the result of the merged write.
+ * <p/>
+ * The callbacks are notified with the {@link Handler} of the callback, or on the thread submitting the operation
+ * if it has a {@link Looper}, otherwise on the storage thread.
+ */
+public class DataSourceExecutor<K, V> {
+
+    /**
+     * The number of storage threads.
+     */
+    public static final int THREADS = 2;
+
+    /**
+     * The maximum number of operations run for a data source before yielding the storage thread to the
+     * other data sources.
+     */
+    private static final int BATCH = 16;
+
+    private static final ThreadPoolExecutor executor;
+
+    static {
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "DataSource-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private enum Type {PUT, REMOVE, GET, REMOVE_ALL, GET_KEYS}
+
+    private final DataSource<K, V> dataSource;
+    private final Queue<Operation> queue = new ArrayDeque<>();
+
+    /**
+     * The last queued operation of each key, cleared by the operations on all the keys.
+     */
+    private final Map<K, Operation> lastOperations = new HashMap<>();
+    private boolean running;
+    private long coalesced;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            boolean idle = false;
+            try {
+                for (int i = 0; i < BATCH; i++) {
+                    Operation operation;
+                    synchronized (DataSourceExecutor.this) {
+                        operation = queue.poll();
+                        if (operation == null) {
+                            running = false;
+                            idle = true;
+                            return;
+                        }
+                        operation.started = true;
+                        if (operation.key != null && lastOperations.get(operation.key) == operation) {
+                            lastOperations.remove(operation.key);
+                        }
+                    }
+                    operation.run();
+                }
+            } finally {
+                //Yield after a batch, or keep draining the queue if a callback failed
+                if (!idle) {
+                    executor.execute(this);
+                }
+            }
+        }
+    };
+
+    /**
+     * @param dataSource The data source, the operations run with its synchronous methods.
+     */
+    public DataSourceExecutor(DataSource<K, V> dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void put(K key, V value, DataSourceCallback callback) {
+        submit(new Operation(value == null ? Type.REMOVE : Type.PUT, key, value, null, callback));
+    }
+
+    public void get(K key, DataSourceCallback callback) {
+        submit(new Operation(Type.GET, key, null, null, callback));
+    }
+
+    public void remove(K key, DataSourceCallback callback) {
+        submit(new Operation(Type.REMOVE, key, null, null, callback));
+    }
+
+    public void removeAll(Object filter, DataSourceCallback callback) {
+        submit(new Operation(Type.REMOVE_ALL, null, null, filter, callback));
+    }
+
+    public void getKeys(Object filter, DataSourceCallback callback) {
+        submit(new Operation(Type.GET_KEYS, null, null, filter, callback));
+    }
+
+    /**
+     * @return The number of writes merged into a queued write.
+     */
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    private synchronized void submit(Operation operation) {
+        if (operation.key != null) {
+            Operation last = lastOperations.get(operation.key);
+            if (operation.isWrite() && last != null && last.isWrite() && !last.started) {
+                last.type = operation.type;
+                last.value = operation.value;
+                last.deliveries.addAll(operation.deliveries);
+                coalesced++;
+                return;
+            }
+            lastOperations.put(operation.key, operation);
+        } else {
+            //Writes queued before an operation on all the keys must not be merged with the writes queued after it
+            lastOperations.clear();
+        }
+        queue.add(operation);
+        if (!running) {
+            running = true;
+            executor.execute(drain);
+        }
+    }
+
+    private class Operation implements Runnable {
+
+        private Type type;
+        private final K key;
+        private V value;
+        private final Object filter;
+        private final List<Delivery> deliveries = new ArrayList<>(1);
+        private boolean started;
+
+        Operation(Type type, K key, V value, Object filter, DataSourceCallback callback) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+            this.filter = filter;
+            deliveries.add(new Delivery(callback));
+        }
+
+        boolean isWrite() {
+            return type == Type.PUT || type == Type.REMOVE;
+        }
+
+        @Override
+        public void run() {
+            Object result = null;
+            try {
+                switch (type) {
+                    case PUT:
+                        dataSource.put(key, value);
+                        break;
+                    case REMOVE:
+                        dataSource.remove(key);
+                        break;
+                    case GET:
+                        result = dataSource.get(key);
+                        break;
+                    case REMOVE_ALL:
+                        dataSource.removeAll(filter);
+                        break;
+                    case GET_KEYS:
+                        result = dataSource.getKeys(filter);
+                        break;
+                }
+            } catch (Throwable e) {
+                //An Error of the data source is reported to the callbacks as well
+                DataSourceError error = new DataSourceError(e);
+                for (Delivery delivery : deliveries) {
+                    delivery.onError(error);
+                }
+                return;
+            }
+            for (Delivery delivery : deliveries) {
+                delivery.onSuccess(result);
+            }
+        }
+    }
+
+    /**
+     * Notifies a callback on the thread selected when the operation has been submitted.
+     */
+    private static class Delivery {
+
+        private final DataSourceCallback callback;
+        private final Handler handler;
+
+        Delivery(DataSourceCallback callback) {
+            this.callback = callback;
+            Handler h = callback.getHandler();
+            if (h == null && Looper.myLooper() != null) {
+                h = new Handler(Looper.myLooper());
+            }
+            this.handler = h;
+        }
+
+        void onSuccess(final Object value) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onSuccess(value);
+                }
+            });
+        }
+
+        void onError(final DataSourceError e) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onError(e);
+                }
+            });
+        }
+
+        private void post(final Runnable runnable) {
+            Runnable safe = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runnable.run();
+                    } catch (Exception e) {
+                        if (DEBUG) Log.e(TAG, "Error in DataSource Callback", e);
+                    }
+                }
+            };
+            if (handler == null) {
+                safe.run();
+            } else {
+                handler.post(safe);
+            }
+        }
+    }
+}
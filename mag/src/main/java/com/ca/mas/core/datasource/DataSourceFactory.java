@@ -12,14 +12,21 @@ import android.content.Context;
 import org.json.JSONObject;
 
 import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
 
 public class DataSourceFactory {
 
+    private static final Map<Class, Constructor> constructors = new HashMap<>();
+    private static final Map<String, DataSource> instances = new HashMap<>();
+
     public static <K, V> DataSource<K, V> getStorage(Context context, Class<? extends DataSource> c, JSONObject param, DataConverter converter) {
 
         try {
-            Constructor constructor = c.getConstructor(Context.class, JSONObject.class, DataConverter.class);
-            return (DataSource) constructor.newInstance(context, param, converter);
+            Constructor constructor = getConstructor(c);
+            return CachingDataSource.wrap((DataSource<K, V>) constructor.newInstance(context, param, converter), param, converter);
+        } catch (DataSourceException e) {
+            throw e;
         } catch (Exception e) {
             throw new DataSourceException(e);
         }
@@ -27,11 +34,58 @@ public class DataSourceFactory {
     }
 
     public static <K, V> DataSource<K, V> getStorage(Context context, Class<? extends DataSource> c, JSONObject param) {
-        try {
-            Constructor constructor = c.getConstructor(Context.class, JSONObject.class, DataConverter.class);
-            return (DataSource) constructor.newInstance(context, param);
-        } catch (Exception e) {
-            throw new DataSourceException(e);
+        return getStorage(context, c, param, null);
+    }
+
+    /**
+     * Return the data source for the configuration, the data source is created on first use and then
+     * shared by all the callers with the same data source class, configuration and converter class.
+     * The converter must not hold any state.
+     *
+     * @param context   The context, the application context is kept by the shared data source.
+     * @param c         The data source class.
+     * @param param     The storage configuration.
+     * @param converter The converter, or null.
+     * @return The shared data source.
+     */
+    public static <K, V> DataSource<K, V> getSharedInstance(Context context, Class<? extends DataSource> c, JSONObject param, DataConverter converter) {
+        String fingerprint = c.getName() + ":" + (param == null ? null : param.toString())
+                + ":" + (converter == null ? null : converter.getClass().getName());
+        synchronized (instances) {
+            DataSource<K, V> dataSource = instances.get(fingerprint);
+            if (dataSource == null) {
+                dataSource = getStorage(context.getApplicationContext(), c, param, converter);
+                instances.put(fingerprint, dataSource);
+            }
+            return dataSource;
+        }
+    }
+
+    /**
+     * Check that the class is a {@link DataSource} with the
+     * (<code>Context</code>, <code>JSONObject</code>, {@link DataConverter}) constructor.
+     *
+     * @throws DataSourceException if the class cannot be used as a data source.
+     */
+    public static void validate(Class<?> c) {
+        if (!DataSource.class.isAssignableFrom(c)) {
+            throw new DataSourceException(String.format("%s is not a DataSource", c.getName()));
+        }
+        getConstructor((Class<? extends DataSource>) c);
+    }
+
+    private static Constructor getConstructor(Class<? extends DataSource> c) {
+        synchronized (constructors) {
+            Constructor constructor = constructors.get(c);
+            if (constructor == null) {
+                try {
+                    constructor = c.getConstructor(Context.class, JSONObject.class, DataConverter.class);
+                } catch (NoSuchMethodException e) {
+                    throw new DataSourceException(String.format("%s has no (Context, JSONObject, DataConverter) constructor", c.getName()), e);
+                }
+                constructors.put(c, constructor);
+            }
+            return constructor;
         }
     }
 
@@ -8,12 +8,12 @@
 
 package com.ca.mas.core.datasource;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.util.Pair;
@@ -23,14 +23,24 @@ import com.ca.mas.core.storage.StorageException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
-public class LocalStoreDataSource implements DataSource<LocalStoreKey, LocalStoreEntity> {
+/**
+ * Local storage in the LS.db SQLite database. The database is opened in write-ahead logging mode and shared
+ * by all the instances, the statements for a single entry are compiled once and reused.
+ * Use {@link #runInTransaction(Runnable)} to perform several operations in a single transaction.
+ */
+public class LocalStoreDataSource implements BatchDataSource<LocalStoreKey, LocalStoreEntity> {
 
+    private static LocalStorageDbHelper sharedDbHelper;
 
     private Context context;
 
+    private final DataSourceExecutor<LocalStoreKey, LocalStoreEntity> executor = new DataSourceExecutor<>(this);
+
     /**
      * The reference to DB helper class.
      */
@@ -39,99 +49,196 @@ public class LocalStoreDataSource implements DataSource<LocalStoreKey, LocalStor
     public LocalStoreDataSource(Context context, JSONObject param, DataConverter converter) {
         this.context = context.getApplicationContext();
         try {
-            mLocalStorageDbHelper = new LocalStorageDbHelper(this.context);
+            mLocalStorageDbHelper = getDbHelper(this.context);
             mLocalStorageDbHelper.getDatabaseHandle();
         } catch (Exception e) {
             throw new DataSourceException(e);
         }
     }
 
+    private static synchronized LocalStorageDbHelper getDbHelper(Context context) {
+        if (sharedDbHelper == null) {
+            sharedDbHelper = new LocalStorageDbHelper(context);
+        }
+        return sharedDbHelper;
+    }
+
+    /**
+     * Run the operations in a single transaction, the changes are committed when the work completes
+     * and rolled back if it throws. Transactions can be nested, the operations of the data source
+     * called by the work join the transaction.
+     *
+     * @param work The operations to perform.
+     */
+    public void runInTransaction(Runnable work) {
+        SQLiteDatabase myDatabase;
+        try {
+            myDatabase = mLocalStorageDbHelper.getDatabaseHandle();
+        } catch (Exception e) {
+            throw new DataSourceException("Error in runInTransaction() ", e);
+        }
+        myDatabase.beginTransaction();
+        try {
+            work.run();
+            myDatabase.setTransactionSuccessful();
+        } finally {
+            myDatabase.endTransaction();
+        }
+    }
+
     @Override
     public void put(@NonNull LocalStoreKey key, @NonNull LocalStoreEntity localStoreItem) {
 
         SQLiteDatabase myDatabase = null;
 
+        Statements statements = null;
         try {
             myDatabase = mLocalStorageDbHelper.getDatabaseHandle();
-            ContentValues values = new ContentValues();
-            values.put(LocalStorageContract.LocalStorageEntry.COLUMN_KEY, key.getKey());
-            if (key.getCreatedBy() == null) {
-                values.putNull(LocalStorageContract.LocalStorageEntry.COLUMN_CREATED_BY);
-            } else {
-                values.put(LocalStorageContract.LocalStorageEntry.COLUMN_CREATED_BY, key.getCreatedBy());
-            }
-            values.put(LocalStorageContract.LocalStorageEntry.COLUMN_SEGMENT, key.getSegment());
-            values.put(LocalStorageContract.LocalStorageEntry.COLUMN_VALUE, localStoreItem.getData());
-            values.put(LocalStorageContract.LocalStorageEntry.COLUMN_TYPE, localStoreItem.getType());
-            values.put(LocalStorageContract.LocalStorageEntry.COLUMN_LAST_UPDATED_DATE, new Date().getTime());
-
-            long rowID;
-            rowID = myDatabase.insertWithOnConflict(LocalStorageContract.LocalStorageEntry.TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
-            if (rowID == -1) {
-                throw new StorageException(StorageException.OPERATION_FAILED);
+            statements = new Statements(myDatabase);
+            insert(statements, key, localStoreItem);
+        } catch (Exception e) {
+            throw new DataSourceException("Error in put() ", e);
+        } finally {
+            if (statements != null) {
+                statements.close();
             }
+        }
 
+    }
+
+    @Override
+    public void putAll(Map<LocalStoreKey, LocalStoreEntity> items) {
+        SQLiteDatabase myDatabase = null;
+        try {
+            myDatabase = mLocalStorageDbHelper.getDatabaseHandle();
+            Statements statements = new Statements(myDatabase);
+            myDatabase.beginTransaction();
+            try {
+                for (Map.Entry<LocalStoreKey, LocalStoreEntity> entry : items.entrySet()) {
+                    if (entry.getValue() == null) {
+                        delete(statements, entry.getKey());
+                    } else {
+                        insert(statements, entry.getKey(), entry.getValue());
+                    }
+                }
+                myDatabase.setTransactionSuccessful();
+            } finally {
+                statements.close();
+                myDatabase.endTransaction();
+            }
         } catch (Exception e) {
-            throw new DataSourceException("Error in put() ", e);
+            throw new DataSourceException("Error in putAll() ", e);
+        }
+    }
+
+    private void insert(Statements statements, LocalStoreKey key, LocalStoreEntity localStoreItem) throws StorageException {
+        SQLiteStatement statement = statements.getInsertStatement();
+        statement.clearBindings();
+        statement.bindString(1, key.getKey());
+        if (key.getCreatedBy() == null) {
+            statement.bindNull(2);
+        } else {
+            statement.bindString(2, key.getCreatedBy());
+        }
+        statement.bindLong(3, key.getSegment());
+        statement.bindBlob(4, localStoreItem.getData());
+        statement.bindString(5, localStoreItem.getType());
+        statement.bindLong(6, new Date().getTime());
+        long rowID = statement.executeInsert();
+        if (rowID == -1) {
+            throw new StorageException(StorageException.OPERATION_FAILED);
+        }
+    }
+
+    /**
+     * Delete the entries matching the key, with the compiled statement if the key identifies a single entry.
+     *
+     * @return The number of deleted entries.
+     */
+    private int delete(Statements statements, LocalStoreKey key) {
+        if (!isSingleEntry(key)) {
+            Pair<String, String[]> selection = getSelection(key);
+            return statements.db.delete(LocalStorageContract.LocalStorageEntry.TABLE_NAME, selection.first, selection.second);
         }
+        SQLiteStatement statement = statements.getDeleteStatement();
+        statement.clearBindings();
+        statement.bindString(1, key.getKey());
+        statement.bindLong(2, key.getSegment());
+        statement.bindString(3, key.getCreatedBy());
+        return statement.executeUpdateDelete();
+    }
 
+    private boolean isSingleEntry(LocalStoreKey key) {
+        return key.getKey() != null && key.getSegment() != null && key.getCreatedBy() != null;
     }
 
     @Override
     public void put(LocalStoreKey key, LocalStoreEntity localStoreItem, DataSourceCallback dataSourceCallback) {
-        throw new DataSourceException("Not Implemented");
+        executor.put(key, localStoreItem, dataSourceCallback);
     }
 
     @Override
     public LocalStoreEntity get(@NonNull LocalStoreKey key) {
 
         SQLiteDatabase myDatabase = null;
+        Cursor resultCursor = null;
         try {
             myDatabase = mLocalStorageDbHelper.getDatabaseHandle();
-            String[] columns = new String[]{LocalStorageContract.LocalStorageEntry.COLUMN_VALUE, LocalStorageContract.LocalStorageEntry.COLUMN_TYPE};
-            Pair<String, String[]> selection = getSelection(key);
-
-            Cursor resultCursor = myDatabase.query(LocalStorageContract.LocalStorageEntry.TABLE_NAME, columns, selection.first, selection.second,
-                    null, null, null, null);
-            if (resultCursor.getCount() == 0) {
+            if (isSingleEntry(key)) {
+                //Same SQL for every key, the statement is reused from the statement cache of the connection
+                resultCursor = myDatabase.rawQuery(LocalStorageDbHelper.SQL_SELECT_ENTRY, new String[]{key.getKey(),
+                        Integer.toString(key.getSegment()), key.getCreatedBy()});
+            } else {
+                String[] columns = new String[]{LocalStorageContract.LocalStorageEntry.COLUMN_VALUE, LocalStorageContract.LocalStorageEntry.COLUMN_TYPE};
+                Pair<String, String[]> selection = getSelection(key);
+                resultCursor = myDatabase.query(LocalStorageContract.LocalStorageEntry.TABLE_NAME, columns, selection.first, selection.second,
+                        null, null, null, null);
+            }
+            if (!resultCursor.moveToFirst()) {
                 return null;
             } else {
-                resultCursor.moveToFirst();
                 byte[] value = resultCursor.getBlob(resultCursor.getColumnIndexOrThrow(LocalStorageContract.LocalStorageEntry.COLUMN_VALUE));
                 String type = resultCursor.getString(resultCursor.getColumnIndexOrThrow(LocalStorageContract.LocalStorageEntry.COLUMN_TYPE));
-                resultCursor.close();
                 return new LocalStoreEntity(type, value);
             }
 
         } catch (Exception e) {
             throw new DataSourceException("Error in get() ", e);
+        } finally {
+            if (resultCursor != null) {
+                resultCursor.close();
+            }
         }
     }
 
     @Override
     public void get(LocalStoreKey s, DataSourceCallback dataSourceCallback) {
-        throw new DataSourceException("Not Implemented");
+        executor.get(s, dataSourceCallback);
     }
 
     @Override
     public void remove(@NonNull LocalStoreKey key) {
         SQLiteDatabase myDatabase = null;
+        Statements statements = null;
         try {
-            get(key);//will throw exception if READ_DATA_NOT_FOUND
             myDatabase = mLocalStorageDbHelper.getDatabaseHandle();
-            Pair<String, String[]> selection = getSelection(key);
-            int val = myDatabase.delete(LocalStorageContract.LocalStorageEntry.TABLE_NAME, selection.first, selection.second);
+            statements = new Statements(myDatabase);
+            int val = delete(statements, key);
             if (val < 0) {
                 throw new StorageException(StorageException.OPERATION_FAILED);
             }
         } catch (Exception e) {
             throw new DataSourceException("Error in remove() ", e);
+        } finally {
+            if (statements != null) {
+                statements.close();
+            }
         }
     }
 
     @Override
     public void remove(LocalStoreKey s, DataSourceCallback dataSourceCallback) {
-        throw new DataSourceException("Not Implemented");
+        executor.remove(s, dataSourceCallback);
     }
 
     @Override
@@ -151,38 +258,75 @@ public class LocalStoreDataSource implements DataSource<LocalStoreKey, LocalStor
 
     @Override
     public void removeAll(Object filter, DataSourceCallback dataSourceCallback) {
-        throw new DataSourceException("Not Implemented");
+        executor.removeAll(filter, dataSourceCallback);
     }
 
     @Override
     public List<LocalStoreKey> getKeys(Object filter) {
         SQLiteDatabase myDatabase = null;
         List<LocalStoreKey> allKeys = new ArrayList<>();
+        Cursor resultCursor = null;
         try {
-            myDatabase = mLocalStorageDbHelper.getWritableDatabase();
+            myDatabase = mLocalStorageDbHelper.getDatabaseHandle();
             String[] columns = new String[]{LocalStorageContract.LocalStorageEntry.COLUMN_KEY,
                     LocalStorageContract.LocalStorageEntry.COLUMN_SEGMENT,
                     LocalStorageContract.LocalStorageEntry.COLUMN_CREATED_BY};
             Pair<String, String[]> selection = getSelection((LocalStoreKey) filter);
-            Cursor resultCursor = myDatabase.query(LocalStorageContract.LocalStorageEntry.TABLE_NAME,
+            resultCursor = myDatabase.query(LocalStorageContract.LocalStorageEntry.TABLE_NAME,
                     columns, selection.first, selection.second, null, null, null);
-            if (resultCursor.getCount() != 0) {
-                resultCursor.moveToFirst();
-                while (resultCursor.isAfterLast() == false) {
-                    allKeys.add(new LocalStoreKey(
-                            resultCursor.getString(resultCursor.getColumnIndexOrThrow(LocalStorageContract.LocalStorageEntry.COLUMN_KEY)),
-                            resultCursor.getInt(resultCursor.getColumnIndexOrThrow(LocalStorageContract.LocalStorageEntry.COLUMN_SEGMENT)),
-                            resultCursor.getString(resultCursor.getColumnIndexOrThrow(LocalStorageContract.LocalStorageEntry.COLUMN_CREATED_BY))
-                            ));
-
-                    resultCursor.moveToNext();
-                }
-                resultCursor.close();
+            int keyIndex = resultCursor.getColumnIndexOrThrow(LocalStorageContract.LocalStorageEntry.COLUMN_KEY);
+            int segmentIndex = resultCursor.getColumnIndexOrThrow(LocalStorageContract.LocalStorageEntry.COLUMN_SEGMENT);
+            int createdByIndex = resultCursor.getColumnIndexOrThrow(LocalStorageContract.LocalStorageEntry.COLUMN_CREATED_BY);
+            while (resultCursor.moveToNext()) {
+                allKeys.add(new LocalStoreKey(
+                        resultCursor.getString(keyIndex),
+                        resultCursor.getInt(segmentIndex),
+                        resultCursor.getString(createdByIndex)
+                ));
             }
             return allKeys;
 
         } catch (Exception e) {
             throw new DataSourceException("error getKeys()", e);
+        } finally {
+            if (resultCursor != null) {
+                resultCursor.close();
+            }
+        }
+    }
+
+    /**
+     * Return the values of the entries matching the filter with a type starting with the prefix,
+     * without reading the other values.
+     *
+     * @param filter     The key, segment and creator to match, null fields match any value.
+     * @param typePrefix The prefix of the type.
+     * @return The values of the matching entries.
+     */
+    public List<byte[]> getValues(@NonNull LocalStoreKey filter, @NonNull String typePrefix) {
+        SQLiteDatabase myDatabase = null;
+        List<byte[]> values = new ArrayList<>();
+        Cursor resultCursor = null;
+        try {
+            myDatabase = mLocalStorageDbHelper.getDatabaseHandle();
+            Pair<String, String[]> selection = getSelection(filter);
+            String typeSelection = "substr(" + LocalStorageContract.LocalStorageEntry.COLUMN_TYPE + ",1," + typePrefix.length() + ") =? ";
+            String[] selectionArgs = Arrays.copyOf(selection.second, selection.second.length + 1);
+            selectionArgs[selection.second.length] = typePrefix;
+            resultCursor = myDatabase.query(LocalStorageContract.LocalStorageEntry.TABLE_NAME,
+                    new String[]{LocalStorageContract.LocalStorageEntry.COLUMN_VALUE},
+                    selection.first.isEmpty() ? typeSelection : selection.first + " AND " + typeSelection,
+                    selectionArgs, null, null, null);
+            while (resultCursor.moveToNext()) {
+                values.add(resultCursor.getBlob(0));
+            }
+            return values;
+        } catch (Exception e) {
+            throw new DataSourceException("Error in getValues() ", e);
+        } finally {
+            if (resultCursor != null) {
+                resultCursor.close();
+            }
         }
     }
 
@@ -216,7 +360,7 @@ public class LocalStoreDataSource implements DataSource<LocalStoreKey, LocalStor
 
     @Override
     public void getKeys(Object filter, DataSourceCallback dataSourceCallback) {
-
+        executor.getKeys(filter, dataSourceCallback);
     }
 
     @Override
@@ -236,12 +380,12 @@ public class LocalStoreDataSource implements DataSource<LocalStoreKey, LocalStor
     /**
      * SQLite Database related classes
      */
-    private final class LocalStorageContract {
+    private static final class LocalStorageContract {
         public LocalStorageContract() {
         }
 
         /* Inner class that defines the table contents */
-        public abstract class LocalStorageEntry implements BaseColumns {
+        public static abstract class LocalStorageEntry implements BaseColumns {
             public static final String TABLE_NAME = "LocalStore";
             public static final String COLUMN_KEY = "key";
             public static final String COLUMN_VALUE = "value";
@@ -253,9 +397,9 @@ public class LocalStoreDataSource implements DataSource<LocalStoreKey, LocalStor
         }
     }
 
-    private class LocalStorageDbHelper extends SQLiteOpenHelper {
+    private static class LocalStorageDbHelper extends SQLiteOpenHelper {
 
-        public static final int DATABASE_VERSION = 2;
+        public static final int DATABASE_VERSION = 3;
         private static final String DATABASE_NAME = "LS.db";
         private static final String TEXT_TYPE = " TEXT";
         private static final String INT_TYPE = " INTEGER";
@@ -275,22 +419,61 @@ public class LocalStoreDataSource implements DataSource<LocalStoreKey, LocalStor
                         LocalStorageContract.LocalStorageEntry.COLUMN_CREATED_BY + ")" +
                         " )";
 
+        /**
+         * The primary key starts with the key, the keys of a segment or a user are listed and removed with this index.
+         */
+        private static final String SQL_CREATE_SEGMENT_INDEX =
+                "CREATE INDEX IF NOT EXISTS " + LocalStorageContract.LocalStorageEntry.TABLE_NAME + "_segment_created_by ON " +
+                        LocalStorageContract.LocalStorageEntry.TABLE_NAME + " (" +
+                        LocalStorageContract.LocalStorageEntry.COLUMN_SEGMENT + "," +
+                        LocalStorageContract.LocalStorageEntry.COLUMN_CREATED_BY + ")";
+
+        private static final String SQL_INSERT_ENTRY =
+                "INSERT OR REPLACE INTO " + LocalStorageContract.LocalStorageEntry.TABLE_NAME + " (" +
+                        LocalStorageContract.LocalStorageEntry.COLUMN_KEY + "," +
+                        LocalStorageContract.LocalStorageEntry.COLUMN_CREATED_BY + "," +
+                        LocalStorageContract.LocalStorageEntry.COLUMN_SEGMENT + "," +
+                        LocalStorageContract.LocalStorageEntry.COLUMN_VALUE + "," +
+                        LocalStorageContract.LocalStorageEntry.COLUMN_TYPE + "," +
+                        LocalStorageContract.LocalStorageEntry.COLUMN_LAST_UPDATED_DATE + ") VALUES (?,?,?,?,?,?)";
+
+        private static final String ENTRY_SELECTION =
+                " WHERE " + LocalStorageContract.LocalStorageEntry.COLUMN_KEY + " =? AND " +
+                        LocalStorageContract.LocalStorageEntry.COLUMN_SEGMENT + " =? AND " +
+                        LocalStorageContract.LocalStorageEntry.COLUMN_CREATED_BY + " =?";
+
+        private static final String SQL_SELECT_ENTRY =
+                "SELECT " + LocalStorageContract.LocalStorageEntry.COLUMN_VALUE + "," +
+                        LocalStorageContract.LocalStorageEntry.COLUMN_TYPE + " FROM " +
+                        LocalStorageContract.LocalStorageEntry.TABLE_NAME + ENTRY_SELECTION;
+
+        private static final String SQL_DELETE_ENTRY =
+                "DELETE FROM " + LocalStorageContract.LocalStorageEntry.TABLE_NAME + ENTRY_SELECTION;
+
         private final String SQL_DELETE_ENTRIES =
                 "DROP TABLE IF EXISTS " + LocalStorageContract.LocalStorageEntry.TABLE_NAME;
 
         public LocalStorageDbHelper(Context context) {
             super(context, DATABASE_NAME, null, DATABASE_VERSION);
+            //Readers do not wait for the writer
+            setWriteAheadLoggingEnabled(true);
         }
 
         @Override
         public void onCreate(SQLiteDatabase db) {
             db.execSQL(SQL_CREATE_ENTRIES);
+            db.execSQL(SQL_CREATE_SEGMENT_INDEX);
         }
 
         @Override
-        public void onUpgrade(SQLiteDatabase db, int i, int i1) {
-            db.execSQL(SQL_DELETE_ENTRIES);
-            onCreate(db);
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            if (oldVersion < 2) {
+                db.execSQL(SQL_DELETE_ENTRIES);
+                onCreate(db);
+            } else {
+                //Version 3 only adds the index, keep the entries
+                db.execSQL(SQL_CREATE_SEGMENT_INDEX);
+            }
         }
 
         public SQLiteDatabase getDatabaseHandle() throws SQLiteException {
@@ -299,5 +482,45 @@ public class LocalStoreDataSource implements DataSource<LocalStoreKey, LocalStor
         }
     }
 
+    /**
+     * The insert and delete statements of a single operation, compiled on first use and closed when the
+     * operation completes. The statements are not kept across operations, a kept statement would stay bound to
+     * the database after the helper is closed, compiling the same SQL again is served by the statement cache
+     * of the connection.
+     */
+    private static class Statements {
+
+        private final SQLiteDatabase db;
+        private SQLiteStatement insertStatement;
+        private SQLiteStatement deleteStatement;
+
+        private Statements(SQLiteDatabase db) {
+            this.db = db;
+        }
+
+        SQLiteStatement getInsertStatement() {
+            if (insertStatement == null) {
+                insertStatement = db.compileStatement(LocalStorageDbHelper.SQL_INSERT_ENTRY);
+            }
+            return insertStatement;
+        }
+
+        SQLiteStatement getDeleteStatement() {
+            if (deleteStatement == null) {
+                deleteStatement = db.compileStatement(LocalStorageDbHelper.SQL_DELETE_ENTRY);
+            }
+            return deleteStatement;
+        }
+
+        void close() {
+            if (insertStatement != null) {
+                insertStatement.close();
+            }
+            if (deleteStatement != null) {
+                deleteStatement.close();
+            }
+        }
+    }
+
 
 }
@@ -32,5 +32,26 @@ public class LocalStoreKey {
     public String getCreatedBy() {
         return createdBy;
     }
-}
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LocalStoreKey)) return false;
+        LocalStoreKey that = (LocalStoreKey) o;
+        return equals(getKey(), that.getKey())
+                && equals(getSegment(), that.getSegment())
+                && equals(getCreatedBy(), that.getCreatedBy());
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getKey() != null ? getKey().hashCode() : 0;
+        result = 31 * result + (getSegment() != null ? getSegment().hashCode() : 0);
+        result = 31 * result + (getCreatedBy() != null ? getCreatedBy().hashCode() : 0);
+        return result;
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.datasource;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static com.ca.mas.core.MAG.DEBUG;
+import static com.ca.mas.core.MAG.TAG;
+
+/**
+ * Append-only log of key value entries in a memory-mapped file, with an in-memory index of the location
+ * of the current value of each key.
+ * <p/>
+ * The file starts with a header holding the format version and a generation, followed by records.
+ * A record holds one or more entries and is written with a single append, its CRC covers the generation and
+ * the entries, so a torn record or a record of a previous generation ends the log when the file is opened.
+ * Reads look up the index and copy the value from the mapping without locking.
+ * <p/>
+ * The log is compacted in the background when the space used by the replaced and removed entries exceeds
+ * {@link #COMPACT_THRESHOLD} of the log: the live entries are copied to a new file which replaces the log.
+ * A log is opened once per process and file, it must not be used by several processes.
+ */
+class MappedLog {
+
+    static final int SYNC_NONE = 0;
+    static final int SYNC_BATCH = 1;
+    static final int SYNC_ALWAYS = 2;
+
+    /**
+     * Delay in milliseconds before the changes are flushed to the file with {@link #SYNC_BATCH}.
+     */
+    static final long SYNC_DELAY = 1000;
+
+    static final float COMPACT_THRESHOLD = 0.5f;
+    static final int COMPACT_MIN_SIZE = 64 * 1024;
+
+    private static final int MAGIC = 0x4d41534c;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int INITIAL_SIZE = 16 * 1024;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Map<String, MappedLog> logs = new HashMap<>();
+    private static final Random random = new Random();
+    private static final ScheduledExecutorService background;
+
+    static {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MappedLog");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        background = executor;
+    }
+
+    /**
+     * The mapping and the index, replaced together by a compaction. The mapping alone is replaced
+     * when the file grows, the index is then shared by the old and new state.
+     */
+    private static class State {
+        final MappedByteBuffer buffer;
+        final ConcurrentHashMap<String, Long> index;
+
+        State(MappedByteBuffer buffer, ConcurrentHashMap<String, Long> index) {
+            this.buffer = buffer;
+            this.index = index;
+        }
+    }
+
+    private final File file;
+    private final int syncMode;
+    private volatile State state;
+
+    //Guarded by this
+    private RandomAccessFile raf;
+    private int generation;
+    private int position;
+    private long live;
+    private boolean syncScheduled;
+    private boolean compactionScheduled;
+
+    private MappedLog(File file, int syncMode) throws IOException {
+        this.file = file;
+        this.syncMode = syncMode;
+        load();
+    }
+
+    /**
+     * @param file     The log file.
+     * @param syncMode {@link #SYNC_NONE}, {@link #SYNC_BATCH} or {@link #SYNC_ALWAYS}, applies to the first open
+     *                 of the file.
+     * @return The log of the file, shared by all the callers.
+     */
+    static MappedLog open(File file, int syncMode) throws IOException {
+        synchronized (logs) {
+            String path = file.getCanonicalPath();
+            MappedLog log = logs.get(path);
+            if (log == null) {
+                log = new MappedLog(file, syncMode);
+                logs.put(path, log);
+            }
+            return log;
+        }
+    }
+
+    byte[] get(String key) {
+        while (true) {
+            State s = state;
+            Long location = s.index.get(key);
+            if (location == null) {
+                return null;
+            }
+            int offset = (int) (location >>> 32);
+            int length = (int) (long) location;
+            if (offset + length > s.buffer.capacity()) {
+                //The file has grown after the state has been read
+                continue;
+            }
+            byte[] value = new byte[length];
+            ByteBuffer b = s.buffer.duplicate();
+            b.position(offset);
+            b.get(value);
+            return value;
+        }
+    }
+
+    boolean contains(String key) {
+        return state.index.containsKey(key);
+    }
+
+    List<String> keys() {
+        return new ArrayList<>(state.index.keySet());
+    }
+
+    synchronized void put(String key, byte[] value) throws IOException {
+        Map<String, byte[]> entries = new HashMap<>(1);
+        entries.put(key, value);
+        append(entries);
+    }
+
+    synchronized void remove(String key) throws IOException {
+        if (!state.index.containsKey(key)) {
+            return;
+        }
+        Map<String, byte[]> entries = new HashMap<>(1);
+        entries.put(key, null);
+        append(entries);
+    }
+
+    /**
+     * Write the entries in a single record, either all the entries are in the log or none of them.
+     * A null value removes the entry.
+     */
+    synchronized void putAll(Map<String, byte[]> entries) throws IOException {
+        if (!entries.isEmpty()) {
+            append(entries);
+        }
+    }
+
+    /**
+     * Remove all the entries. The log is replaced by an empty file, a concurrent read still reads the previous file.
+     */
+    synchronized void clear() throws IOException {
+        rewrite(new State(state.buffer, new ConcurrentHashMap<String, Long>()));
+    }
+
+    private void append(Map<String, byte[]> entries) throws IOException {
+        long total = 4;
+        List<byte[]> keys = new ArrayList<>(entries.size());
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            byte[] key = entry.getKey().getBytes(UTF8);
+            keys.add(key);
+            total += entrySize(key.length, entry.getValue());
+        }
+        ensureCapacity(position + RECORD_HEADER_SIZE + total);
+        int size = (int) total;
+        int recordSize = RECORD_HEADER_SIZE + size;
+
+        State s = state;
+        ByteBuffer b = s.buffer.duplicate();
+        int start = position;
+        b.position(start + RECORD_HEADER_SIZE);
+        b.putInt(entries.size());
+        int i = 0;
+        Map<String, Long> locations = new HashMap<>(entries.size());
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            byte[] key = keys.get(i++);
+            byte[] value = entry.getValue();
+            b.put(value == null ? DELETE : PUT);
+            b.putInt(key.length);
+            b.put(key);
+            if (value == null) {
+                b.putInt(-1);
+                locations.put(entry.getKey(), null);
+            } else {
+                b.putInt(value.length);
+                locations.put(entry.getKey(), location(b.position(), value.length));
+                b.put(value);
+            }
+        }
+        b.putInt(start, size);
+        b.putInt(start + 4, crc(s.buffer, start + RECORD_HEADER_SIZE, size));
+        if (syncMode == SYNC_ALWAYS) {
+            s.buffer.force();
+        }
+        position = start + recordSize;
+
+        //The entries are visible once the record is complete
+        for (Map.Entry<String, Long> location : locations.entrySet()) {
+            String key = location.getKey();
+            Long previous = location.getValue() == null ? s.index.remove(key) : s.index.put(key, location.getValue());
+            int keyLength = key.getBytes(UTF8).length;
+            if (previous != null) {
+                live -= RECORD_HEADER_SIZE + 4 + entrySize(keyLength, (int) (long) previous);
+            }
+            if (location.getValue() != null) {
+                live += RECORD_HEADER_SIZE + 4 + entrySize(keyLength, (int) (long) location.getValue());
+            }
+        }
+        scheduleSync();
+        scheduleCompaction();
+    }
+
+    /**
+     * Grow the file to hold the required size, the file is mapped as a whole so its size is limited to
+     * {@link Integer#MAX_VALUE}.
+     */
+    private void ensureCapacity(long required) throws IOException {
+        MappedByteBuffer buffer = state.buffer;
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        checkSize(required);
+        int size = (int) Math.min(Math.max(buffer.capacity() * 2L, required), Integer.MAX_VALUE);
+        raf.setLength(size);
+        //Publish the mapping before the index refers to the new space
+        state = new State(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size), state.index);
+    }
+
+    private void scheduleSync() {
+        if (syncMode != SYNC_BATCH || syncScheduled) {
+            return;
+        }
+        syncScheduled = true;
+        background.schedule(new Runnable() {
+            @Override
+            public void run() {
+                MappedByteBuffer buffer;
+                synchronized (MappedLog.this) {
+                    syncScheduled = false;
+                    buffer = state.buffer;
+                }
+                buffer.force();
+            }
+        }, SYNC_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleCompaction() {
+        if (compactionScheduled || !needsCompaction()) {
+            return;
+        }
+        compactionScheduled = true;
+        background.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (MappedLog.this) {
+                    compactionScheduled = false;
+                    if (!needsCompaction()) {
+                        return;
+                    }
+                    try {
+                        compact();
+                    } catch (IOException e) {
+                        if (DEBUG) Log.e(TAG, "Failed to compact " + file, e);
+                    }
+                }
+            }
+        });
+    }
+
+    private boolean needsCompaction() {
+        int used = position - HEADER_SIZE;
+        return position > COMPACT_MIN_SIZE && used - live > used * COMPACT_THRESHOLD;
+    }
+
+    private void compact() throws IOException {
+        rewrite(state);
+    }
+
+    /**
+     * Copy the entries of the state to a new file, which replaces the log. The values are copied as they are.
+     */
+    private void rewrite(State s) throws IOException {
+        long required = HEADER_SIZE;
+        for (Map.Entry<String, Long> entry : s.index.entrySet()) {
+            required += RECORD_HEADER_SIZE + 4 + entrySize(entry.getKey().getBytes(UTF8).length, (int) (long) entry.getValue());
+        }
+        checkSize(required);
+        int size = (int) Math.max(INITIAL_SIZE, required);
+        File tmp = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        MappedByteBuffer buffer;
+        ConcurrentHashMap<String, Long> index = new ConcurrentHashMap<>();
+        int newGeneration = nextGeneration(generation);
+        int pos = HEADER_SIZE;
+        try {
+            out.setLength(0);
+            out.setLength(size);
+            buffer = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            for (Map.Entry<String, Long> entry : s.index.entrySet()) {
+                byte[] key = entry.getKey().getBytes(UTF8);
+                int offset = (int) (entry.getValue() >>> 32);
+                int length = (int) (long) entry.getValue();
+                int recordSize = (int) (RECORD_HEADER_SIZE + 4 + entrySize(key.length, length));
+                ByteBuffer b = buffer.duplicate();
+                b.position(pos + RECORD_HEADER_SIZE);
+                b.putInt(1);
+                b.put(PUT);
+                b.putInt(key.length);
+                b.put(key);
+                b.putInt(length);
+                index.put(entry.getKey(), location(b.position(), length));
+                ByteBuffer value = s.buffer.duplicate();
+                value.position(offset);
+                value.limit(offset + length);
+                b.put(value);
+                b.putInt(pos, recordSize - RECORD_HEADER_SIZE);
+                b.putInt(pos + 4, crc(buffer, pos + RECORD_HEADER_SIZE, recordSize - RECORD_HEADER_SIZE, newGeneration));
+                pos += recordSize;
+            }
+            writeHeader(buffer, newGeneration);
+            buffer.force();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+        if (DEBUG) Log.d(TAG, String.format("Rewrote %s from %d to %d bytes", file, position, pos));
+
+        raf.close();
+        raf = new RandomAccessFile(file, "rw");
+        generation = newGeneration;
+        position = pos;
+        live = pos - HEADER_SIZE;
+        state = new State(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length()), index);
+    }
+
+    /**
+     * Open the file, and rebuild the index from the records of the current generation.
+     */
+    private void load() throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        raf = new RandomAccessFile(file, "rw");
+        if (raf.length() < HEADER_SIZE) {
+            raf.setLength(INITIAL_SIZE);
+        }
+        MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        ConcurrentHashMap<String, Long> index = new ConcurrentHashMap<>();
+        position = HEADER_SIZE;
+        live = 0;
+
+        if (buffer.getInt(0) != MAGIC) {
+            generation = nextGeneration(random.nextInt());
+            writeHeader(buffer, generation);
+            buffer.force();
+            state = new State(buffer, index);
+            return;
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported log version " + buffer.getInt(4));
+        }
+        generation = buffer.getInt(8);
+
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int size = buffer.getInt(position);
+            int start = position + RECORD_HEADER_SIZE;
+            if (size <= 0 || size > buffer.capacity() - start
+                    || buffer.getInt(position + 4) != crc(buffer, start, size)) {
+                break;
+            }
+            ByteBuffer b = buffer.duplicate();
+            b.position(start);
+            int count = b.getInt();
+            for (int i = 0; i < count; i++) {
+                byte type = b.get();
+                byte[] key = new byte[b.getInt()];
+                b.get(key);
+                int length = b.getInt();
+                String k = new String(key, UTF8);
+                Long previous;
+                if (type == PUT) {
+                    previous = index.put(k, location(b.position(), length));
+                    live += RECORD_HEADER_SIZE + 4 + entrySize(key.length, length);
+                    b.position(b.position() + length);
+                } else {
+                    previous = index.remove(k);
+                }
+                if (previous != null) {
+                    live -= RECORD_HEADER_SIZE + 4 + entrySize(key.length, (int) (long) previous);
+                }
+            }
+            position = start + size;
+        }
+        state = new State(buffer, index);
+        scheduleCompaction();
+    }
+
+    private int crc(ByteBuffer buffer, int start, int length) {
+        return crc(buffer, start, length, generation);
+    }
+
+    private static int crc(ByteBuffer buffer, int start, int length, int generation) {
+        CRC32 crc = new CRC32();
+        crc.update(new byte[]{(byte) (generation >>> 24), (byte) (generation >>> 16), (byte) (generation >>> 8), (byte) generation});
+        byte[] bytes = new byte[length];
+        ByteBuffer b = buffer.duplicate();
+        b.position(start);
+        b.get(bytes);
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static void writeHeader(ByteBuffer buffer, int generation) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, generation);
+    }
+
+    private static int nextGeneration(int generation) {
+        return generation + 1;
+    }
+
+    private void checkSize(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The size of " + file + " would exceed " + Integer.MAX_VALUE + " bytes");
+        }
+    }
+
+    private static long entrySize(int keyLength, byte[] value) {
+        return entrySize(keyLength, value == null ? 0 : value.length);
+    }
+
+    private static long entrySize(int keyLength, int valueLength) {
+        return 1 + 4 + (long) keyLength + 4 + valueLength;
+    }
+
+    private static long location(int offset, int length) {
+        return ((long) offset << 32) | (length & 0xffffffffL);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.datasource;
+
+import android.content.Context;
+
+import com.ca.mas.core.security.DefaultEncryptionProvider;
+import com.ca.mas.core.security.EncryptionProvider;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data source backed by an append-only log in a memory-mapped file, see {@link MappedLog}. The values are
+ * encrypted with the {@link DefaultEncryptionProvider}, the keys are stored as they are.
+ * <p/>
+ * Enabled in the <code>storage</code> section of the JSON configuration:
+ * <pre>
+ * "storage": {
+ *   "class": "com.ca.mas.core.datasource.MappedLogDataSource",
+ *   "name": "mas_storage",
+ *   "sync": "batch"
+ * }
+ * </pre>
+ * <code>sync</code> controls when the changes are flushed to the file: <code>always</code> after every write,
+ * <code>batch</code> at most {@link MappedLog#SYNC_DELAY} milliseconds after a write, or <code>none</code>
+ * to leave it to the system. The log is private to the application and to its main process, the
+ * <code>share</code> option is rejected: when it is the storage of the SDK, a shared token manager has to be
+ * configured with {@link com.ca.mas.core.MobileSsoConfig#PROP_SHARE_TOKEN_MANAGER}.
+ */
+public class MappedLogDataSource<K, V> implements BatchDataSource<K, V> {
+
+    public static final String NAME = "name";
+    public static final String SYNC = "sync";
+    public static final String ENCRYPT = "encrypt";
+    public static final String SHARE = "share";
+
+    public static final String SYNC_ALWAYS = "always";
+    public static final String SYNC_BATCH = "batch";
+    public static final String SYNC_NONE = "none";
+
+    private static final String DEFAULT_NAME = "mas_storage";
+    private static final String DIRECTORY = "mas_log";
+    private static final String EXTENSION = ".log";
+
+    private final MappedLog log;
+    private final DataConverter converter;
+    private EncryptionProvider encryptionProvider;
+    private final DataSourceExecutor<K, V> executor = new DataSourceExecutor<>(this);
+
+    public MappedLogDataSource(Context context, JSONObject param, DataConverter converter) {
+        this.converter = converter;
+        String name = DEFAULT_NAME;
+        String sync = SYNC_BATCH;
+        boolean encrypt = true;
+        if (param != null) {
+            if (param.optBoolean(SHARE, false)) {
+                throw new DataSourceException("The log is private to the application and cannot be shared");
+            }
+            name = param.optString(NAME, DEFAULT_NAME);
+            sync = param.optString(SYNC, SYNC_BATCH);
+            encrypt = param.optBoolean(ENCRYPT, true);
+        }
+        try {
+            File file = new File(new File(context.getFilesDir(), DIRECTORY), name + EXTENSION);
+            log = MappedLog.open(file, getSyncMode(sync));
+        } catch (IOException e) {
+            throw new DataSourceException(e);
+        }
+        if (encrypt) {
+            encryptionProvider = new DefaultEncryptionProvider(context);
+        }
+    }
+
+    private static int getSyncMode(String sync) {
+        if (SYNC_ALWAYS.equals(sync)) {
+            return MappedLog.SYNC_ALWAYS;
+        }
+        if (SYNC_NONE.equals(sync)) {
+            return MappedLog.SYNC_NONE;
+        }
+        if (SYNC_BATCH.equals(sync)) {
+            return MappedLog.SYNC_BATCH;
+        }
+        throw new IllegalArgumentException("Unsupported sync mode " + sync);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if (value == null) {
+            remove(key);
+            return;
+        }
+        try {
+            log.put((String) key, encode(value));
+        } catch (IOException e) {
+            throw new DataSourceException("Error in put() ", e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value, DataSourceCallback callback) {
+        executor.put(key, value, callback);
+    }
+
+    @Override
+    public void putAll(Map<K, V> values) {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (Map.Entry<K, V> entry : values.entrySet()) {
+            entries.put((String) entry.getKey(), entry.getValue() == null ? null : encode(entry.getValue()));
+        }
+        try {
+            log.putAll(entries);
+        } catch (IOException e) {
+            throw new DataSourceException("Error in putAll() ", e);
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        byte[] data = log.get((String) key);
+        if (data == null) {
+            return null;
+        }
+        if (encryptionProvider != null) {
+            data = encryptionProvider.decrypt(data);
+        }
+        if (converter != null) {
+            return (V) converter.convert(key, data);
+        }
+        return (V) data;
+    }
+
+    @Override
+    public void get(K key, DataSourceCallback callback) {
+        executor.get(key, callback);
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            log.remove((String) key);
+        } catch (IOException e) {
+            throw new DataSourceException("Error in remove() ", e);
+        }
+    }
+
+    @Override
+    public void remove(K key, DataSourceCallback callback) {
+        executor.remove(key, callback);
+    }
+
+    @Override
+    public void removeAll(Object filter) {
+        try {
+            log.clear();
+        } catch (IOException e) {
+            throw new DataSourceException("Error in removeAll() ", e);
+        }
+    }
+
+    @Override
+    public void removeAll(Object filter, DataSourceCallback callback) {
+        executor.removeAll(filter, callback);
+    }
+
+    @Override
+    public List<K> getKeys(Object filter) {
+        return (List<K>) log.keys();
+    }
+
+    @Override
+    public void getKeys(Object filter, DataSourceCallback callback) {
+        executor.getKeys(filter, callback);
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        //nothing to do
+    }
+
+    private byte[] encode(V value) {
+        byte[] data;
+        if (value instanceof byte[]) {
+            data = (byte[]) value;
+        } else if (value instanceof String) {
+            try {
+                data = ((String) value).getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new DataSourceException(e);
+            }
+        } else {
+            throw new UnsupportedOperationException("Value type not supported");
+        }
+        if (encryptionProvider != null) {
+            data = encryptionProvider.encrypt(data);
+        }
+        return data;
+    }
+}
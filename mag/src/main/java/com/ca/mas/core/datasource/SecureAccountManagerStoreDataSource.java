@@ -27,16 +27,14 @@ public class SecureAccountManagerStoreDataSource<K, V> extends AccountManagerSto
 
     @Override
     public void put(K key, V value) {
+        if (value == null) {
+            super.put(key, null);
+            return;
+        }
         byte[] encryptedValue = encryptionProvider.encrypt( getValueBytes(value) );
         super.put(key, (V) encryptedValue);
     }
 
-    @Override
-    public void put(K key, V value, DataSourceCallback callback) {
-        byte[] encryptedValue = encryptionProvider.encrypt( getValueBytes(value) );
-        super.put(key, (V) encryptedValue, callback);
-    }
-
     @Override
     protected V getData(K key, StorageResult result) {
         V encryptedValue = (V) result.getData();
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.error;
+
+import com.ca.mas.core.request.RequestDeadline;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Thrown when a request did not complete within the timeout defined with
+ * {@link com.ca.mas.core.http.MAGRequest.MAGRequestBuilder#timeout(long, java.util.concurrent.TimeUnit)}.
+ */
+public class RequestTimeoutException extends InterruptedIOException {
+
+    private final RequestDeadline.Phase phase;
+
+    public RequestTimeoutException(RequestDeadline.Phase phase, String detailMessage) {
+        super(detailMessage);
+        this.phase = phase;
+    }
+
+    /**
+     * @return The phase of the request which was active when the time budget ran out.
+     */
+    public RequestDeadline.Phase getPhase() {
+        return phase;
+    }
+}
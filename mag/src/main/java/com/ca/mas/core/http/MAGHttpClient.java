@@ -13,10 +13,13 @@ import android.os.Build;
 import android.util.Log;
 
 import com.ca.mas.core.conf.ConfigurationManager;
+import com.ca.mas.core.error.RequestTimeoutException;
 import com.ca.mas.core.io.ssl.MAGSocketFactory;
+import com.ca.mas.core.request.RequestDeadline;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.util.List;
 import java.util.Map;
 
@@ -47,10 +50,30 @@ public class MAGHttpClient {
      * @throws IOException if any error occur or the connection was aborted.
      */
     public <T> MAGResponse<T> execute(MAGRequest request) throws IOException {
+        List<MAGInterceptor> interceptors = ConfigurationManager.getInstance().getNetworkInterceptors();
+        if (interceptors.isEmpty()) {
+            return proceed(request);
+        }
+        try {
+            return new MAGInterceptorChain(interceptors, request, new MAGInterceptorChain.Executor() {
+                @Override
+                public MAGResponse execute(MAGRequest request) throws Exception {
+                    return proceed(request);
+                }
+            }).proceed(request);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private <T> MAGResponse<T> proceed(MAGRequest request) throws IOException {
         final HttpURLConnection urlConnection = (HttpURLConnection) request.getURL().openConnection();
 
         if (DEBUG) Log.d(TAG, String.format("API Request Url: %s", request.getURL()));
 
+        RequestDeadline deadline = RequestDeadline.current();
         try {
             onConnectionObtained(urlConnection);
             if (request.getConnectionListener() != null) {
@@ -59,6 +82,9 @@ public class MAGHttpClient {
             if (ConfigurationManager.getInstance().getConnectionListener() != null) {
                 ConfigurationManager.getInstance().getConnectionListener().onObtained(urlConnection);
             }
+            if (deadline != null) {
+                applyDeadline(urlConnection, deadline);
+            }
 
             if (urlConnection instanceof HttpsURLConnection && sslSocketFactory != null) {
                 ((HttpsURLConnection) urlConnection).setSSLSocketFactory(sslSocketFactory);
@@ -154,11 +180,32 @@ public class MAGHttpClient {
 
             };
 
+        } catch (SocketTimeoutException e) {
+            if (deadline != null && deadline.isExpired()) {
+                RequestTimeoutException timeout = deadline.timeout();
+                timeout.initCause(e);
+                throw timeout;
+            }
+            throw e;
         } finally {
             urlConnection.disconnect();
         }
     }
 
+    /**
+     * Cap the connect and read timeouts of the connection to the remaining time of the request deadline.
+     */
+    private void applyDeadline(HttpURLConnection urlConnection, RequestDeadline deadline) throws RequestTimeoutException {
+        deadline.check();
+        int remaining = (int) Math.min(Integer.MAX_VALUE, deadline.remaining());
+        if (urlConnection.getConnectTimeout() == 0 || urlConnection.getConnectTimeout() > remaining) {
+            urlConnection.setConnectTimeout(remaining);
+        }
+        if (urlConnection.getReadTimeout() == 0 || urlConnection.getReadTimeout() > remaining) {
+            urlConnection.setReadTimeout(remaining);
+        }
+    }
+
     protected void onConnectionObtained(HttpURLConnection connection) {
 
     }
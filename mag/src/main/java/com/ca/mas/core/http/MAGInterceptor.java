@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.http;
+
+/**
+ * <p>Observes, rewrites and potentially short-circuits requests going out to the MAG server and the
+ * corresponding responses coming back in.</p>
+ * Interceptors are registered in an ordered chain, either as:
+ * <ul>
+ * <li>Application interceptors, invoked once per API request before the SDK policies
+ * (client registration, token acquisition, retries) are applied. An application interceptor may return
+ * a response without calling {@link Chain#proceed(MAGRequest)}, for example to serve a locally cached response.</li>
+ * <li>Network interceptors, invoked for every HTTP exchange with the server, including the
+ * exchanges issued by the SDK itself, with the request fully decorated by the SDK policies.</li>
+ * </ul>
+ * Request and response bodies are never buffered by the chain, the body is streamed to and read from the
+ * connection as defined by {@link MAGRequestBody} and {@link MAGResponseBody}.
+ */
+public interface MAGInterceptor {
+
+    /**
+     * Intercept the request, implementation should call {@link Chain#proceed(MAGRequest)} zero or more
+     * times to continue the chain.
+     *
+     * @param chain The interceptor chain
+     * @return The response to the request.
+     * @throws Exception if any error occur, the error is propagated to the caller of the request.
+     */
+    MAGResponse intercept(Chain chain) throws Exception;
+
+    /**
+     * The chain of interceptors for a single request.
+     */
+    interface Chain {
+
+        /**
+         * @return The request as seen by the current interceptor.
+         */
+        MAGRequest request();
+
+        /**
+         * Pass the request to the next interceptor in the chain, or to the SDK if this is the last one.
+         * May be called more than once to retry the request.
+         *
+         * @param request The request to proceed with, use {@link MAGRequest.MAGRequestBuilder#MAGRequestBuilder(MAGRequest)}
+         *                to rewrite the request.
+         * @return The response to the request.
+         * @throws Exception if any error occur.
+         */
+        MAGResponse proceed(MAGRequest request) throws Exception;
+    }
+}
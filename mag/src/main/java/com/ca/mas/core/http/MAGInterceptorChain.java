@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.http;
+
+import java.util.List;
+
+/**
+ * Chain of {@link MAGInterceptor}, the last element of the chain hands over the request to the
+ * provided {@link Executor}.
+ */
+public class MAGInterceptorChain implements MAGInterceptor.Chain {
+
+    private final List<MAGInterceptor> interceptors;
+    private final int index;
+    private final MAGRequest request;
+    private final Executor executor;
+
+    public MAGInterceptorChain(List<MAGInterceptor> interceptors, MAGRequest request, Executor executor) {
+        this(interceptors, 0, request, executor);
+    }
+
+    private MAGInterceptorChain(List<MAGInterceptor> interceptors, int index, MAGRequest request, Executor executor) {
+        this.interceptors = interceptors;
+        this.index = index;
+        this.request = request;
+        this.executor = executor;
+    }
+
+    @Override
+    public MAGRequest request() {
+        return request;
+    }
+
+    @Override
+    public MAGResponse proceed(MAGRequest request) throws Exception {
+        if (index >= interceptors.size()) {
+            return executor.execute(request);
+        }
+        MAGInterceptor interceptor = interceptors.get(index);
+        MAGResponse response = interceptor.intercept(new MAGInterceptorChain(interceptors, index + 1, request, executor));
+        if (response == null) {
+            throw new IllegalStateException("Interceptor " + interceptor + " returned null response");
+        }
+        return response;
+    }
+
+    /**
+     * Execute the request after all interceptors are processed.
+     */
+    public interface Executor {
+        MAGResponse execute(MAGRequest request) throws Exception;
+    }
+}
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An Http Api Request. Instances of this class are immutable.
@@ -75,6 +76,20 @@ public interface MAGRequest {
      */
     String getScope();
 
+    /**
+     * Optional interface of the requests with an end-to-end timeout, the requests built with
+     * {@link MAGRequestBuilder#timeout(long, TimeUnit)} implement it. Requests not implementing it have no timeout.
+     */
+    interface MAGTimedRequest extends MAGRequest {
+
+        /**
+         * @return The end-to-end timeout of this request in milliseconds, including the time spent in the
+         * request queue, the security policies (device registration, token acquisition), the retries and the network.
+         * 0 for no timeout.
+         */
+        long getTimeout();
+    }
+
     interface MAGConnectionListener {
         /**
          * Invoke immediately after the call {@link URL#openConnection()}.
@@ -106,6 +121,7 @@ public interface MAGRequest {
         private GrantProvider grantProvider = ConfigurationManager.getInstance().getDefaultGrantProvider();
         private String scope;
         private MAGConnectionListener listener;
+        private long timeout;
 
         /**
          * Create a builder with the provided {@link URI}.
@@ -146,6 +162,31 @@ public interface MAGRequest {
             this.url = url;
         }
 
+        /**
+         * Create a builder initialized with the attributes of the provided {@link MAGRequest},
+         * this is useful to rewrite a request within a {@link MAGInterceptor}.
+         *
+         * @param request the provided request
+         */
+        public MAGRequestBuilder(MAGRequest request) {
+            this.url = request.getURL();
+            this.method = request.getMethod();
+            this.body = request.getBody();
+            this.responseBody = request.getResponseBody();
+            this.grantProvider = request.getGrantProvider();
+            this.scope = request.getScope();
+            this.listener = request.getConnectionListener();
+            if (request instanceof MAGTimedRequest) {
+                this.timeout = ((MAGTimedRequest) request).getTimeout();
+            }
+            for (String key : request.getHeaders().keySet()) {
+                List<String> values = request.getHeaders().get(key);
+                if (values != null) {
+                    headers.put(key, new ArrayList<>(values));
+                }
+            }
+        }
+
         /**
          * Sets the request method to GET.
          *
@@ -279,6 +320,24 @@ public interface MAGRequest {
             return this;
         }
 
+        /**
+         * Sets the end-to-end timeout of the request. The timeout covers the time spent in the request queue,
+         * the security policies (device registration, token acquisition), the retries and the network.
+         * When the timeout is reached, the request fails with {@link com.ca.mas.core.error.RequestTimeoutException},
+         * reporting the phase in which the time ran out.
+         *
+         * @param timeout The timeout, 0 for no timeout.
+         * @param unit    The time unit of the timeout.
+         * @return The builder
+         */
+        public MAGRequestBuilder timeout(long timeout, TimeUnit unit) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("timeout < 0");
+            }
+            this.timeout = unit.toMillis(timeout);
+            return this;
+        }
+
         /**
          * Builds the {@link MAGRequest} object.
          *
@@ -298,7 +357,7 @@ public interface MAGRequest {
             }
             final Map<String, List<String>> unmodifiableHeaders = Collections.unmodifiableMap(newHeaders);
 
-            return new MAGRequest() {
+            return new MAGTimedRequest() {
                 @Override
                 public URL getURL() {
                     return url;
@@ -338,6 +397,11 @@ public interface MAGRequest {
                 public String getScope() {
                     return scope;
                 }
+
+                @Override
+                public long getTimeout() {
+                    return timeout;
+                }
             };
         }
     }
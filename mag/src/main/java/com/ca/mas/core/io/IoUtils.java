@@ -95,6 +95,28 @@ public class IoUtils {
         return new String(buffer);
     }
 
+    /**
+     * Convert the specified string containing hexadecimal digits into binary data.
+     * Example:  unhexDump("abcd") returns new byte[] { (byte)0xAB, (byte)0xCD }
+     *
+     * @param hexData the hex string to convert, must contain an even number of hexadecimal digits.
+     * @return the binary data
+     * @throws IllegalArgumentException if the string is not a valid hex dump.
+     */
+    public static byte[] unhexDump(String hexData) {
+        if (hexData == null) throw new NullPointerException();
+        int len = hexData.length();
+        if (len % 2 != 0) throw new IllegalArgumentException("odd number of hex digits");
+        byte[] result = new byte[len / 2];
+        for (int i = 0; i < result.length; i++) {
+            int high = Character.digit(hexData.charAt(i * 2), 16);
+            int low = Character.digit(hexData.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) throw new IllegalArgumentException("invalid hex digit");
+            result[i] = (byte) ((high << 4) | low);
+        }
+        return result;
+    }
+
     /**
      * Base-64 encode the charset-encoded bytes of the specified string.
      *
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.io.http;
+
+import android.util.Log;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import static com.ca.mas.core.MAG.DEBUG;
+import static com.ca.mas.core.MAG.TAG;
+
+/**
+ * Resolves hosts ahead of time, so the result is in the cache of the platform resolver when the connections of
+ * {@link com.ca.mas.core.http.MAGHttpClient} resolve the host. The connections still resolve and connect with
+ * the platform, the addresses are not kept here.
+ */
+public class DnsPrefetch {
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "DnsPrefetch");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private DnsPrefetch() {
+    }
+
+    /**
+     * Resolve the host in the background. Resolution failures are ignored.
+     *
+     * @param host The host name to resolve.
+     * @return The result of the resolution, true if the host has been resolved, or null if the host is null.
+     */
+    public static Future<Boolean> prefetch(final String host) {
+        if (host == null) {
+            return null;
+        }
+        return executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                try {
+                    InetAddress.getAllByName(host);
+                    return true;
+                } catch (UnknownHostException e) {
+                    if (DEBUG) Log.d(TAG, "Unable to pre-resolve " + host + ": " + e.getMessage());
+                    return false;
+                }
+            }
+        });
+    }
+}
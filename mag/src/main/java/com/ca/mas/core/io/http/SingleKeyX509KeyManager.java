@@ -8,6 +8,8 @@
 
 package com.ca.mas.core.io.http;
 
+import com.ca.mas.core.util.KeyUtils;
+
 import java.net.Socket;
 import java.security.Principal;
 import java.security.PrivateKey;
@@ -17,13 +19,14 @@ import javax.net.ssl.SSLEngine;
 import javax.net.ssl.X509ExtendedKeyManager;
 
 /**
- * An SSL X509KeyManager that holds a single pre-configured client cert and private key, and always uses
- * it to respond to challenges.
+ * An SSL X509KeyManager that holds a single pre-configured client cert and private key, RSA or EC, and uses
+ * it to respond to the challenges accepting its key type.
  */
 public class SingleKeyX509KeyManager extends X509ExtendedKeyManager {
     private final X509Certificate[] certChain;
     private final PrivateKey privateKey;
     private final String alias;
+    private final String keyType;
 
     /**
      * Create a a KeyManager that only knows about a single X.509 certificate.
@@ -42,14 +45,38 @@ public class SingleKeyX509KeyManager extends X509ExtendedKeyManager {
         this.certChain = certChain;
         this.privateKey = privateKey;
         this.alias = "clientCert";
+        this.keyType = KeyUtils.isEc(privateKey) ? KeyUtils.EC : privateKey.getAlgorithm();
+    }
+
+    /**
+     * The certificate is only presented if the server accepts its key type, so that an ECDSA client
+     * certificate is not offered to a server which only accepts RSA certificates.
+     */
+    private String chooseClientAlias(String[] keyTypes) {
+        if (keyTypes == null)
+            return alias;
+        for (String k : keyTypes) {
+            if (isKeyType(k))
+                return alias;
+        }
+        return null;
+    }
+
+    /**
+     * @param k the key type requested by the TLS implementation, eg "RSA", "EC" or "EC_RSA" for an EC key signed with RSA.
+     */
+    private boolean isKeyType(String k) {
+        return k == null || k.equals(keyType) || k.startsWith(keyType + "_");
     }
 
     public String[] getClientAliases(String s, Principal[] principals) {
-        return new String[] { alias };
+        return isKeyType(s)
+            ? new String[] { alias }
+            : null;
     }
 
     public String chooseClientAlias(String[] strings, Principal[] principals, Socket socket) {
-        return alias;
+        return chooseClientAlias(strings);
     }
 
     public String[] getServerAliases(String s, Principal[] principals) {
@@ -73,7 +100,7 @@ public class SingleKeyX509KeyManager extends X509ExtendedKeyManager {
     }
 
     public String chooseEngineClientAlias(String[] strings, Principal[] principals, SSLEngine sslEngine) {
-        return alias;
+        return chooseClientAlias(strings);
     }
 
     public String chooseEngineServerAlias(String string, Principal[] principals, SSLEngine sslEngine) {
@@ -10,16 +10,24 @@ package com.ca.mas.core.io.http;
 
 import com.ca.mas.core.cert.PublicKeyHash;
 import com.ca.mas.core.cert.TrustedCertificateConfiguration;
+import com.ca.mas.core.io.Charsets;
+import com.ca.mas.core.io.IoUtils;
 
 import java.io.IOException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.net.ssl.TrustManager;
@@ -28,11 +36,39 @@ import javax.net.ssl.X509TrustManager;
 
 /**
  * Trust manager that works with a {@link com.ca.mas.core.cert.TrustedCertificateConfiguration}.
+ * <p/>
+ * Successful trust decisions are remembered for a bounded number of certificate chains, until the
+ * first certificate of the chain expires or at most one hour, so repeated handshakes with the same server
+ * skip the chain validation and the public key hashing.
  */
 public class TrustedCertificateConfigurationTrustManager implements X509TrustManager {
+
+    /**
+     * Maximum number of trusted certificate chains to remember.
+     */
+    private static final int MAX_TRUSTED_CHAINS = 16;
+
+    /**
+     * Maximum time in milliseconds a trust decision is reused, even if the chain is still valid for longer.
+     */
+    private static final long MAX_TRUST_DECISION_AGE = 60 * 60 * 1000;
+
+    /**
+     * Trusted chain fingerprints to the time in milliseconds the trust decision expires, shared by
+     * all trust managers.  The fingerprint includes the trust configuration version, so a configuration change
+     * never reuses a decision made under a different configuration.
+     */
+    private static final Map<String, Long> trustedChains = new LinkedHashMap<String, Long>(MAX_TRUSTED_CHAINS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_TRUSTED_CHAINS;
+        }
+    };
+
     private final Collection<X509TrustManager> publicPkiDelegates;
     private final Collection<X509TrustManager> privateTrustStoreDelegates;
-    private final Set<PublicKeyHash> pinnedPublicKeys;
+    private final List<byte[]> pinnedPublicKeys;
+    private final String trustVersion;
 
     /**
      * Create a trust manager that uses the specified trust configuration.
@@ -43,7 +79,46 @@ public class TrustedCertificateConfigurationTrustManager implements X509TrustMan
         this.publicPkiDelegates = trustConf.isAlsoTrustPublicPki() ? getPlatformX509TrustManagers() : null;
         this.privateTrustStoreDelegates = getPrivateX509TrustManagers(trustConf.getTrustedCertificateAnchors());
         Collection<PublicKeyHash> pins = trustConf.getTrustedCertificatePinnedPublicKeyHashes();
-        this.pinnedPublicKeys = pins == null ? null : new HashSet<PublicKeyHash>(pins);
+        this.pinnedPublicKeys = pins == null ? null : toHashBytes(pins);
+        this.trustVersion = getTrustVersion(trustConf.isAlsoTrustPublicPki(), trustConf.getTrustedCertificateAnchors(), pins);
+    }
+
+    private static List<byte[]> toHashBytes(Collection<PublicKeyHash> pins) {
+        Set<PublicKeyHash> unique = new HashSet<PublicKeyHash>(pins);
+        List<byte[]> result = new ArrayList<byte[]>(unique.size());
+        for (PublicKeyHash pin : unique) {
+            result.add(pin.getHashBytes());
+        }
+        return result;
+    }
+
+    /**
+     * Compute a fingerprint of the trust configuration, identifying the pin set, the trust anchors
+     * and the public PKI setting.
+     */
+    private static String getTrustVersion(boolean alsoTrustPublicPki, Collection<X509Certificate> anchors, Collection<PublicKeyHash> pins) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update((byte) (alsoTrustPublicPki ? 1 : 0));
+            if (anchors != null) {
+                for (X509Certificate anchor : anchors) {
+                    md.update(anchor.getEncoded());
+                }
+            }
+            if (pins != null) {
+                List<String> hashes = new ArrayList<String>(pins.size());
+                for (PublicKeyHash pin : pins) {
+                    hashes.add(pin.getHash());
+                }
+                Collections.sort(hashes);
+                for (String hash : hashes) {
+                    md.update(hash.getBytes(Charsets.ASCII));
+                }
+            }
+            return IoUtils.hexDump(md.digest());
+        } catch (NoSuchAlgorithmException | CertificateEncodingException e) {
+            throw new RuntimeException("Unable to compute trust configuration fingerprint: " + e.getMessage(), e);
+        }
     }
 
     private static Collection<X509TrustManager> getPrivateX509TrustManagers(Collection<X509Certificate> certs) {
@@ -113,14 +188,47 @@ public class TrustedCertificateConfigurationTrustManager implements X509TrustMan
 
     @Override
     public void checkServerTrusted(X509Certificate[] chain, String s) throws CertificateException {
+        if (chain == null || chain.length == 0)
+            throw new IllegalArgumentException("Server certificate chain is empty");
+
+        // Skip the validation if the same chain has been trusted recently under the same configuration
+        String fingerprint = getFingerprint(chain, s);
+        long now = System.currentTimeMillis();
+        synchronized (trustedChains) {
+            Long expiry = trustedChains.get(fingerprint);
+            if (expiry != null) {
+                if (now < expiry) {
+                    return;
+                }
+                trustedChains.remove(fingerprint);
+            }
+        }
+
+        validate(chain, s);
+
+        long expiry = now + MAX_TRUST_DECISION_AGE;
+        for (X509Certificate cert : chain) {
+            expiry = Math.min(expiry, cert.getNotAfter().getTime());
+        }
+        synchronized (trustedChains) {
+            trustedChains.put(fingerprint, expiry);
+        }
+    }
+
+    private void validate(X509Certificate[] chain, String s) throws CertificateException {
         // Check pins first, if certificate public key pinning is in use
         if (pinnedPublicKeys != null && pinnedPublicKeys.size() > 0) {
             boolean sawPin = false;
             for (X509Certificate cert : chain) {
-                if (pinnedPublicKeys.contains(PublicKeyHash.fromPublicKey(cert.getPublicKey()))) {
-                    sawPin = true;
-                    break;
+                byte[] hash = PublicKeyHash.toHashBytes(cert.getPublicKey());
+                for (byte[] pinnedPublicKey : pinnedPublicKeys) {
+                    if (MessageDigest.isEqual(pinnedPublicKey, hash)) {
+                        sawPin = true;
+                        break;
+                    }
                 }
+                if (sawPin)
+                    break;
             }
             if (!sawPin)
                 throw new CertificateException("Server certificate chain did not contain any of the pinned public keys");
@@ -143,6 +251,21 @@ public class TrustedCertificateConfigurationTrustManager implements X509TrustMan
         }
     }
 
+    /**
+     * Fingerprint of the certificate chain, the authentication type and the trust configuration version.
+     */
+    private String getFingerprint(X509Certificate[] chain, String authType) throws CertificateException {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (X509Certificate cert : chain) {
+                md.update(cert.getEncoded());
+            }
+            return trustVersion + ":" + authType + ":" + IoUtils.hexDump(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new CertificateException(e);
+        }
+    }
+
     @Override
     public X509Certificate[] getAcceptedIssuers() {
         return new X509Certificate[0];
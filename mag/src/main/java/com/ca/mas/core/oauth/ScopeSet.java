@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.oauth;
+
+import com.ca.mas.core.client.ServerClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable set of the space delimited scopes of a scope string.
+ * <p/>
+ * Parsed scope sets are interned, so parsing the same scope string again, e.g. the scope of every request
+ * to the same API, does not allocate, and the sufficiency check {@link #containsAll(ScopeSet)} only performs
+ * hash lookups.
+ */
+public final class ScopeSet {
+
+    /**
+     * Maximum number of interned scope sets, the cache is cleared when it is full.
+     */
+    private static final int MAX_INTERNED = 256;
+
+    private static final Map<String, ScopeSet> interned = new ConcurrentHashMap<>();
+
+    public static final ScopeSet EMPTY = new ScopeSet(Collections.<String>emptySet());
+
+    /**
+     * Scopes granted implicitly by the server, which are not required to be part of the granted scope.
+     */
+    private static final Set<String> RESERVED = new HashSet<>();
+
+    static {
+        RESERVED.add(ServerClient.OPENID);
+        RESERVED.add(ServerClient.MSSO);
+        RESERVED.add(ServerClient.MSSO_REGISTER);
+        RESERVED.add(ServerClient.MSSO_CLIENT_REGISTER);
+    }
+
+    private final Set<String> scopes;
+    private final String[] required;
+
+    private ScopeSet(Set<String> scopes) {
+        this.scopes = scopes;
+        List<String> required = new ArrayList<>(scopes.size());
+        for (String scope : scopes) {
+            if (!RESERVED.contains(scope)) {
+                required.add(scope);
+            }
+        }
+        this.required = required.toArray(new String[required.size()]);
+    }
+
+    /**
+     * @param scope space delimited scopes, may be null.
+     * @return the interned scope set of the scope string.
+     */
+    public static ScopeSet parse(String scope) {
+        if (scope == null) {
+            return EMPTY;
+        }
+        ScopeSet result = interned.get(scope);
+        if (result == null) {
+            Set<String> scopes = new LinkedHashSet<>();
+            for (String s : scope.trim().split("\\s+")) {
+                if (s.length() > 0) {
+                    scopes.add(s);
+                }
+            }
+            result = scopes.isEmpty() ? EMPTY : new ScopeSet(Collections.unmodifiableSet(scopes));
+            if (interned.size() >= MAX_INTERNED) {
+                interned.clear();
+            }
+            interned.put(scope, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if there is no scope in the set.
+     */
+    public boolean isEmpty() {
+        return scopes.isEmpty();
+    }
+
+    public boolean contains(String scope) {
+        return scopes.contains(scope);
+    }
+
+    /**
+     * Check if this granted scope set is sufficient for the requested scope set. The reserved scopes
+     * (openid, msso, msso_register and msso_client_register) of the requested scope set are ignored.
+     *
+     * @param requested the requested scope set.
+     * @return true if every requested scope, except the reserved ones, is in this set.
+     */
+    public boolean containsAll(ScopeSet requested) {
+        if (requested == this) {
+            return true;
+        }
+        for (String scope : requested.required) {
+            if (!scopes.contains(scope)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the scopes, in the order of the scope string.
+     */
+    public Set<String> getScopes() {
+        return scopes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return scopes.equals(((ScopeSet) o).scopes);
+    }
+
+    @Override
+    public int hashCode() {
+        return scopes.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (String scope : scopes) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(scope);
+        }
+        return sb.toString();
+    }
+}
@@ -26,16 +26,14 @@ import com.ca.mas.core.oauth.OAuthException;
 import com.ca.mas.core.oauth.OAuthServerException;
 import com.ca.mas.core.oauth.OAuthTokenClient;
 import com.ca.mas.core.oauth.OAuthTokenResponse;
+import com.ca.mas.core.oauth.ScopeSet;
 import com.ca.mas.core.policy.exceptions.CredentialRequiredException;
 import com.ca.mas.core.policy.exceptions.RetryRequestException;
 import com.ca.mas.core.request.MAGInternalRequest;
 import com.ca.mas.core.token.IdToken;
 import com.ca.mas.core.token.JWTValidationException;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.net.HttpURLConnection;
 
 import static com.ca.mas.core.MAG.DEBUG;
 import static com.ca.mas.core.MAG.TAG;
@@ -44,10 +42,17 @@ import static com.ca.mas.core.MAG.TAG;
  * A policy that includes an access token with each outbound request.
  * This policy must run after the DeviceRegistrationPolicy has succeeded.
  */
-class AccessTokenAssertion implements MssoAssertion {
+class AccessTokenAssertion extends BlockingAssertion implements ConditionalAssertion {
 
     public static final String TOKEN_EXPIRED_ERROR_CODE_SUFFIX = "990";
 
+    private static final Recovery CLEAR_ACCESS_TOKEN = new Recovery() {
+        @Override
+        public void recover(MssoContext context) throws Exception {
+            context.clearAccessToken();
+        }
+    };
+
     private OAuthTokenClient oAuthTokenClient;
 
     @Override
@@ -85,15 +90,30 @@ class AccessTokenAssertion implements MssoAssertion {
         }
         String s = Integer.toString(errorCode);
         if (s.endsWith(TOKEN_EXPIRED_ERROR_CODE_SUFFIX)) {
-            throw new RetryRequestException("Access token rejected by server") {
-                @Override
-                public void recover(MssoContext context) throws Exception {
-                    context.clearAccessToken();
-                }
-            };
+            request.retry("Access token rejected by server", CLEAR_ACCESS_TOKEN);
         }
     }
 
+    @Override
+    protected boolean isBlocking(MssoContext mssoContext, RequestInfo request) {
+        // The token server is not called if the current access token can be used
+        return mssoContext.getAccessToken() == null
+                || !isAccessTokenStillValid(mssoContext)
+                || !isSufficientScope(mssoContext, request.getRequest())
+                || (request.getRequest().getGrantProvider() == GrantProvider.PASSWORD && mssoContext.getRefreshToken() == null);
+    }
+
+    @Override
+    public boolean isRequestApplicable(RequestClass requestClass) {
+        return true;
+    }
+
+    @Override
+    public boolean isResponseApplicable(RequestClass requestClass, int responseCode) {
+        //The server only reports an x-ca-err for failed requests
+        return responseCode >= HttpURLConnection.HTTP_BAD_REQUEST;
+    }
+
     @Override
     public void close() {
     }
@@ -170,27 +190,12 @@ class AccessTokenAssertion implements MssoAssertion {
     }
 
     private boolean isSufficientScope(MssoContext mssoContext, MAGRequest request) {
-        String rScope = request.getScope();
-        String gScope = mssoContext.getGrantedScope();
-        if (rScope == null || rScope.trim().length() == 0) {
+        ScopeSet requested = ScopeSet.parse(request.getScope());
+        if (requested.isEmpty()) {
             return true;
         }
-        if (gScope == null || gScope.trim().length() == 0) {
-            return false;
-        }
-        String[] requestScopes = rScope.trim().split("\\s+");
-        List<String> rScopeList = new ArrayList<>();
-        Collections.addAll(rScopeList, requestScopes);
-        rScopeList.remove(ServerClient.OPENID);
-        rScopeList.remove(ServerClient.MSSO);
-        rScopeList.remove(ServerClient.MSSO_REGISTER);
-        rScopeList.remove(ServerClient.MSSO_CLIENT_REGISTER);
-
-        String[] grantedScopes = gScope.split("\\s+");
-        List<String> gScopeList = Arrays.asList(grantedScopes);
-
-        return gScopeList.containsAll(rScopeList);
-
+        ScopeSet granted = mssoContext.getGrantedScopes();
+        return !granted.isEmpty() && granted.containsAll(requested);
     }
 
 
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.policy;
+
+/**
+ * Completion callback of an {@link AsyncMssoAssertion}. Exactly one of the methods must be invoked, once,
+ * from any thread.
+ */
+public interface AssertionCallback {
+
+    /**
+     * The policy has been applied, the next policy can be applied.
+     */
+    void onComplete();
+
+    /**
+     * The policy cannot be applied, the same exception the synchronous
+     * {@link MssoAssertion} methods would have thrown.
+     *
+     * @param e the reason of the failure.
+     */
+    void onError(Exception e);
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.policy;
+
+import com.ca.mas.core.context.MssoContext;
+import com.ca.mas.core.http.MAGResponse;
+
+/**
+ * A policy which applies itself without blocking the calling thread, e.g. by calling the token server on
+ * another thread. The {@link PolicyManager} applies the policy with these methods instead of the synchronous
+ * {@link MssoAssertion} methods, the request is parked until the callback is invoked, and the thread which
+ * dispatched the request is free to process other requests.
+ * <p/>
+ * Policies are still applied one at a time, the next policy, of this request or of another request, is only
+ * applied once the callback is invoked. A policy may invoke the callback before returning, when it
+ * can be applied without blocking.
+ */
+public interface AsyncMssoAssertion extends MssoAssertion {
+
+    /**
+     * Apply the policy to the specified pending outbound request, see
+     * {@link MssoAssertion#processRequest(MssoContext, RequestInfo)}.
+     *
+     * @param mssoContext the MSSO context.  Required.
+     * @param request     the pending HTTP request.  Required.
+     * @param callback    the callback to invoke once the policy is applied.  Required.
+     */
+    void processRequest(MssoContext mssoContext, RequestInfo request, AssertionCallback callback);
+
+    /**
+     * Apply the policy to the specified received response, see
+     * {@link MssoAssertion#processResponse(MssoContext, RequestInfo, MAGResponse)}.
+     *
+     * @param mssoContext the MSSO context.  Required.
+     * @param request     the original request.  Required.
+     * @param response    the HTTP response.  Required.
+     * @param callback    the callback to invoke once the policy is applied.  Required.
+     */
+    void processResponse(MssoContext mssoContext, RequestInfo request, MAGResponse response, AssertionCallback callback);
+}
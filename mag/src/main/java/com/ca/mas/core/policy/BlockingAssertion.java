@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.policy;
+
+import com.ca.mas.core.context.MssoContext;
+import com.ca.mas.core.http.MAGResponse;
+import com.ca.mas.core.request.RequestDeadline;
+
+/**
+ * Base class of the policies which may call the server while applied to a request. When
+ * {@link #isBlocking(MssoContext, RequestInfo)} reports that the server has to be called, the synchronous
+ * {@link #processRequest(MssoContext, RequestInfo)} runs on a policy thread and the request is parked,
+ * otherwise the policy is applied on the calling thread.
+ */
+abstract class BlockingAssertion implements AsyncMssoAssertion {
+
+    /**
+     * @return true if applying the policy to the request may block on I/O.
+     */
+    protected abstract boolean isBlocking(MssoContext mssoContext, RequestInfo request);
+
+    @Override
+    public void processRequest(final MssoContext mssoContext, final RequestInfo request, final AssertionCallback callback) {
+        if (!isBlocking(mssoContext, request)) {
+            try {
+                processRequest(mssoContext, request);
+            } catch (Exception e) {
+                callback.onError(e);
+                return;
+            }
+            callback.onComplete();
+            return;
+        }
+        final RequestDeadline deadline = RequestDeadline.current();
+        PolicyExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                RequestDeadline previous = RequestDeadline.bind(deadline);
+                try {
+                    try {
+                        processRequest(mssoContext, request);
+                    } catch (Exception e) {
+                        callback.onError(e);
+                        return;
+                    }
+                    callback.onComplete();
+                } finally {
+                    RequestDeadline.bind(previous);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void processResponse(MssoContext mssoContext, RequestInfo request, MAGResponse response, AssertionCallback callback) {
+        try {
+            processResponse(mssoContext, request, response);
+        } catch (Exception e) {
+            callback.onError(e);
+            return;
+        }
+        callback.onComplete();
+    }
+}
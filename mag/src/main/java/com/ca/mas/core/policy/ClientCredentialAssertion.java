@@ -19,17 +19,25 @@ import com.ca.mas.core.error.MAGException;
 import com.ca.mas.core.error.MAGServerException;
 import com.ca.mas.core.error.MAGStateException;
 import com.ca.mas.core.http.MAGResponse;
-import com.ca.mas.core.policy.exceptions.InvalidClientCredentialException;
 import com.ca.mas.core.token.ClientCredentials;
 import static com.ca.mas.core.MAG.DEBUG;
 import static com.ca.mas.core.MAG.TAG;
 
+import java.net.HttpURLConnection;
 import java.util.UUID;
 
-class ClientCredentialAssertion implements MssoAssertion {
+class ClientCredentialAssertion extends BlockingAssertion implements ConditionalAssertion {
 
     public static final String INVALID_CLIENT_CREDENTIALS_ERROR_CODE_SUFFIX = "201";
 
+    private static final Recovery CLEAR_CLIENT_CREDENTIALS = new Recovery() {
+        @Override
+        public void recover(MssoContext context) throws Exception {
+            context.clearAccessToken();
+            context.clearClientCredentials();
+        }
+    };
+
     @Override
     public void init(@NonNull MssoContext mssoContext, @NonNull Context sysContext) {
         if (mssoContext.getConfigurationProvider() == null)
@@ -39,22 +47,14 @@ class ClientCredentialAssertion implements MssoAssertion {
     @Override
     public void processRequest(MssoContext mssoContext, RequestInfo request) throws MAGException, MAGServerException {
 
-       String configuredClientSecret = mssoContext.getConfigurationProvider().getClientSecret();
-        String configuredClientId = mssoContext.getConfigurationProvider().getClientId();
-
-        if (configuredClientSecret != null && configuredClientSecret.trim().length() > 0) {
-            //Configured Client ID cannot be null, it is mandatory in the configuration.
-            if (!configuredClientId.equals(configuredClientSecret)) {
-                //It is not a master key, do not hit the initialize endpoint
-                if (DEBUG) Log.d(TAG, "Using static client id and client secret");
-                return;
-            }
+        if (isStaticClient(mssoContext)) {
+            //It is not a master key, do not hit the initialize endpoint
+            if (DEBUG) Log.d(TAG, "Using static client id and client secret");
+            return;
         }
 
-        //OR the client ID does not exist. Due to unset the the device pin, the key to decrypt the clientID may be empty.
-        //May not necessary to check the client id, the client expiration check may be good enough
-        if (mssoContext.isClientCredentialExpired(mssoContext.getClientExpiration()) ||
-                mssoContext.getStoredClientId() == null) {
+        String configuredClientId = mssoContext.getConfigurationProvider().getClientId();
+        if (isClientCredentialRequired(mssoContext)) {
             try {
                 if (DEBUG) Log.d(TAG, "Retrieve dynamic Client Credentials");
                 String uuid = UUID.randomUUID().toString();
@@ -72,6 +72,26 @@ class ClientCredentialAssertion implements MssoAssertion {
 
     }
 
+    @Override
+    protected boolean isBlocking(MssoContext mssoContext, RequestInfo request) {
+        return !isStaticClient(mssoContext) && isClientCredentialRequired(mssoContext);
+    }
+
+    private boolean isStaticClient(MssoContext mssoContext) {
+        String configuredClientSecret = mssoContext.getConfigurationProvider().getClientSecret();
+        String configuredClientId = mssoContext.getConfigurationProvider().getClientId();
+        //Configured Client ID cannot be null, it is mandatory in the configuration.
+        return configuredClientSecret != null && configuredClientSecret.trim().length() > 0
+                && !configuredClientId.equals(configuredClientSecret);
+    }
+
+    private boolean isClientCredentialRequired(MssoContext mssoContext) {
+        //OR the client ID does not exist. Due to unset the the device pin, the key to decrypt the clientID may be empty.
+        //May not necessary to check the client id, the client expiration check may be good enough
+        return mssoContext.isClientCredentialExpired(mssoContext.getClientExpiration()) ||
+                mssoContext.getStoredClientId() == null;
+    }
+
     @Override
     public void processResponse(MssoContext mssoContext, RequestInfo request, MAGResponse response) throws MAGStateException {
         int errorCode = ServerClient.findErrorCode(response);
@@ -80,10 +100,21 @@ class ClientCredentialAssertion implements MssoAssertion {
         }
         String s = Integer.toString(errorCode);
         if (s.endsWith(INVALID_CLIENT_CREDENTIALS_ERROR_CODE_SUFFIX)) {
-            throw new InvalidClientCredentialException("Client is rejected by server");
+            request.retry("Client is rejected by server", CLEAR_CLIENT_CREDENTIALS);
         }
     }
 
+    @Override
+    public boolean isRequestApplicable(RequestClass requestClass) {
+        return true;
+    }
+
+    @Override
+    public boolean isResponseApplicable(RequestClass requestClass, int responseCode) {
+        //The server only reports an x-ca-err for failed requests
+        return responseCode >= HttpURLConnection.HTTP_BAD_REQUEST;
+    }
+
     @Override
     public void close() {
     }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.policy;
+
+/**
+ * A policy which declares the requests and responses it applies to, so the {@link PolicyManager} does not
+ * invoke it for unrelated messages. Policies implementing only {@link MssoAssertion} apply to every request
+ * and every response.
+ * <p/>
+ * The declarations are evaluated once per {@link RequestClass} (and response status code) after the policy is
+ * initialized, and the result is reused until the policies are initialized again, so they must only depend on the
+ * arguments and on the state set by {@link #init(com.ca.mas.core.context.MssoContext, android.content.Context)}.
+ */
+public interface ConditionalAssertion extends MssoAssertion {
+
+    /**
+     * @param requestClass the class of the pending request.
+     * @return true if {@link #processRequest(com.ca.mas.core.context.MssoContext, RequestInfo)} has to be invoked
+     * for requests of this class.
+     */
+    boolean isRequestApplicable(RequestClass requestClass);
+
+    /**
+     * @param requestClass the class of the original request.
+     * @param responseCode the HTTP status code of the response.
+     * @return true if {@link #processResponse(com.ca.mas.core.context.MssoContext, RequestInfo, com.ca.mas.core.http.MAGResponse)}
+     * has to be invoked for the response.
+     */
+    boolean isResponseApplicable(RequestClass requestClass, int responseCode);
+}
@@ -23,21 +23,20 @@ import com.ca.mas.core.error.MAGException;
 import com.ca.mas.core.error.MAGServerException;
 import com.ca.mas.core.error.MAGStateException;
 import com.ca.mas.core.http.MAGResponse;
+import com.ca.mas.core.policy.exceptions.CertificateExpiredException;
 import com.ca.mas.core.policy.exceptions.CredentialRequiredException;
 import com.ca.mas.core.policy.exceptions.TokenStoreUnavailableException;
+import com.ca.mas.core.registration.ClientKeyPairGenerator;
 import com.ca.mas.core.registration.DeviceRegistrationAwaitingActivationException;
 import com.ca.mas.core.registration.RegistrationClient;
 import com.ca.mas.core.registration.RegistrationException;
+import com.ca.mas.core.store.ClientCertificate;
 import com.ca.mas.core.store.TokenManager;
 import com.ca.mas.core.store.TokenStoreException;
 import com.ca.mas.core.token.IdToken;
-import com.ca.mas.core.util.KeyUtils;
 
 import java.security.KeyPair;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateExpiredException;
-import java.security.cert.CertificateNotYetValidException;
-import java.security.cert.X509Certificate;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -49,11 +48,12 @@ import static com.ca.mas.core.MAG.TAG;
  * <p/>
  * This policy does nothing if the device is already registered.
  * <p/>
- * If device registration is required, this policy will generate a keypair and register the device.
+ * If device registration is required, this policy will generate a keypair, unless one has been pre-generated,
+ * and register the device.
  * CredentialRequiredException will be thrown if the user needs to be prompted for credentials.
  * TokenStoreUnavailableException will be thrown if the device needs to be unlocked.
  */
-class DeviceRegistrationAssertion implements MssoAssertion {
+class DeviceRegistrationAssertion extends BlockingAssertion implements ConditionalAssertion {
 
     private TokenManager tokenManager;
 
@@ -68,21 +68,15 @@ class DeviceRegistrationAssertion implements MssoAssertion {
 
     @Override
     public void processRequest(MssoContext mssoContext, RequestInfo request) throws MAGException, MAGServerException {
-        X509Certificate[] clientCerts = tokenManager.getClientCertificateChain();
-        if (clientCerts != null && clientCerts.length > 0) {
-            // Device is registered
-            X509Certificate certificate = clientCerts[0];
-            try {
-                // Check if client certificate is expired
-                Calendar cal = Calendar.getInstance();
-                cal.add(Calendar.DAY_OF_YEAR, ConfigurationManager.getInstance().getCertificateAdvancedRenewTimeframe());
-                Date date = cal.getTime();
-                certificate.checkValidity(date);
-            } catch (CertificateExpiredException | CertificateNotYetValidException e) {
-                if (e instanceof CertificateExpiredException) {
-                    // Client certificate expired, try to renew
-                    throw new com.ca.mas.core.policy.exceptions.CertificateExpiredException(e);
-                }
+        ClientCertificate clientCertificate = ClientCertificate.of(tokenManager);
+        if (clientCertificate != null) {
+            // Device is registered, check if client certificate is expired
+            Calendar cal = Calendar.getInstance();
+            cal.add(Calendar.DAY_OF_YEAR, ConfigurationManager.getInstance().getCertificateAdvancedRenewTimeframe());
+            Date date = cal.getTime();
+            if (clientCertificate.isExpired(date)) {
+                // Client certificate expired, try to renew
+                throw new CertificateExpiredException("Client certificate expires on " + clientCertificate.getNotAfter());
             }
             if (DEBUG) Log.d(TAG,
                     String.format("Device is registered with identifier: %s", tokenManager.getMagIdentifier()));
@@ -118,17 +112,12 @@ class DeviceRegistrationAssertion implements MssoAssertion {
         if (DEBUG) Log.d(TAG, "Device registration process start");
 
         // Perform device registration
-        KeyPair keyPair = tokenManager.getClientKeyPair();
-        if (keyPair == null) {
-            Integer keyBits = mssoContext.getConfigurationProvider().getProperty(ConfigurationProvider.PROP_CLIENT_CERT_RSA_KEYBITS);
-            if (keyBits == null)
-                keyBits = 1024;
-            keyPair = KeyUtils.generateRsaKeyPair(keyBits);
-            try {
-                tokenManager.saveClientKeyPair(keyPair);
-            } catch (TokenStoreException e) {
-                throw new TokenStoreUnavailableException(e);
-            }
+        // The key pair may have been generated ahead of time
+        KeyPair keyPair;
+        try {
+            keyPair = ClientKeyPairGenerator.getOrGenerate(tokenManager, mssoContext.getConfigurationProvider());
+        } catch (TokenStoreException e) {
+            throw new TokenStoreUnavailableException(e);
         }
 
         final String deviceId = mssoContext.getDeviceId();
@@ -169,6 +158,22 @@ class DeviceRegistrationAssertion implements MssoAssertion {
         }
     }
 
+    @Override
+    protected boolean isBlocking(MssoContext mssoContext, RequestInfo request) {
+        // Only the registration calls the server
+        return ClientCertificate.of(tokenManager) == null;
+    }
+
+    @Override
+    public boolean isRequestApplicable(RequestClass requestClass) {
+        return true;
+    }
+
+    @Override
+    public boolean isResponseApplicable(RequestClass requestClass, int responseCode) {
+        return false;
+    }
+
     @Override
     public void close() {
     }
@@ -33,7 +33,7 @@ import static com.ca.mas.core.MAG.TAG;
 /**
  * A policy that adds location information to outbound requests.
  */
-class LocationAssertion implements MssoAssertion {
+class LocationAssertion implements ConditionalAssertion {
 
     static final String DEFAULT_PROVIDER = LocationManager.NETWORK_PROVIDER;
     static final long DEFAULT_MIN_TIME = 120000L;
@@ -44,6 +44,7 @@ class LocationAssertion implements MssoAssertion {
     private LocationListener locationListener;
     private Context context;
     private MssoContext mssoContext;
+    private boolean enabled;
 
     @Override
     public void init(@NonNull MssoContext mssoContext, @NonNull Context sysContext) {
@@ -58,7 +59,8 @@ class LocationAssertion implements MssoAssertion {
         if (conf == null)
             throw new NullPointerException("mssoContext.configurationProvider");
         Boolean enabled = conf.getProperty(ConfigurationProvider.PROP_LOCATION_ENABLED);
-        if (enabled == null || !enabled) {
+        this.enabled = enabled != null && enabled;
+        if (!this.enabled) {
             close();
             return;
         }
@@ -159,6 +161,16 @@ class LocationAssertion implements MssoAssertion {
         }
     }
 
+    @Override
+    public boolean isRequestApplicable(RequestClass requestClass) {
+        return enabled && !requestClass.isLocalRequest();
+    }
+
+    @Override
+    public boolean isResponseApplicable(RequestClass requestClass, int responseCode) {
+        return responseCode >= HttpURLConnection.HTTP_BAD_REQUEST && responseCode < HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
     @Override
     public void close() {
         if (locationListener != null && locationManager != null) {
@@ -184,8 +196,9 @@ class LocationAssertion implements MssoAssertion {
 
     @Override
     public void processRequest(MssoContext mssoContext, RequestInfo request) {
-        if (getLastLocation() != null) {
-            String loc = String.format("%f,%f", getLastLocation().getLatitude(), getLastLocation().getLongitude());
+        Location location = getLastLocation();
+        if (location != null) {
+            String loc = String.format("%f,%f", location.getLatitude(), location.getLongitude());
             request.getRequest().addHeader("geo-location", loc);
         }
     }
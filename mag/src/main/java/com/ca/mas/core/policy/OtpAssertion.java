@@ -27,7 +27,7 @@ import com.ca.mas.core.policy.exceptions.OtpException;
  * A policy that checks for OTP flow related error codes and status in the response.
  * Throws OtpException if found.
  */
-class OtpAssertion implements MssoAssertion {
+class OtpAssertion implements ConditionalAssertion {
 
     @Override
     public void init(@NonNull MssoContext mssoContext, @NonNull Context sysContext) {
@@ -72,6 +72,18 @@ class OtpAssertion implements MssoAssertion {
         }
     }
 
+    @Override
+    public boolean isRequestApplicable(RequestClass requestClass) {
+        return requestClass.hasExtra();
+    }
+
+    @Override
+    public boolean isResponseApplicable(RequestClass requestClass, int responseCode) {
+        return responseCode == java.net.HttpURLConnection.HTTP_BAD_REQUEST
+                || responseCode == java.net.HttpURLConnection.HTTP_UNAUTHORIZED
+                || responseCode == java.net.HttpURLConnection.HTTP_FORBIDDEN;
+    }
+
     @Override
     public void close() {
     }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.policy;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads running the blocking part of the policies and the requests resumed after a parked policy. The pool is
+ * bounded, the tasks exceeding the threads wait in the queue. A single timer thread expires the requests
+ * waiting for the policy gate.
+ */
+class PolicyExecutor {
+
+    /**
+     * The number of policy threads.
+     */
+    static final int THREADS = 4;
+
+    private static final ThreadPoolExecutor executor;
+    private static final ScheduledExecutorService timer;
+
+    static {
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MssoPolicy-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MssoPolicyTimer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private PolicyExecutor() {
+    }
+
+    static void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Run the task on the timer thread once the delay elapses, the task must not block.
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long delay) {
+        return timer.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.policy;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes the application of the policies, like a fair lock which is not owned by a thread: the gate may
+ * be released by another thread than the one which acquired it, so a request holding the gate can be parked
+ * while an {@link AsyncMssoAssertion} completes on another thread.
+ */
+class PolicyGate {
+
+    private final Queue<Waiter> waiters = new ArrayDeque<>();
+    private boolean held;
+
+    /**
+     * Acquire the gate and run the task. The task runs before this method returns if the gate is free,
+     * otherwise it runs on a policy thread once the gate is released to it.
+     */
+    void acquire(Runnable task) {
+        acquire(task, 0, null);
+    }
+
+    /**
+     * Same as {@link #acquire(Runnable)}, giving up once the timeout elapses: if the gate is not released to
+     * the task within the timeout, the task is removed from the waiters and the timeout task runs instead,
+     * on the timer thread.
+     *
+     * @param timeout   The maximum time to wait for the gate, in milliseconds.
+     * @param onTimeout The task to run if the gate is not acquired in time, or null to wait without timeout.
+     */
+    void acquire(Runnable task, long timeout, final Runnable onTimeout) {
+        final Waiter waiter;
+        synchronized (this) {
+            if (held) {
+                waiter = new Waiter(task);
+                waiters.add(waiter);
+            } else {
+                held = true;
+                waiter = null;
+            }
+        }
+        if (waiter == null) {
+            task.run();
+            return;
+        }
+        if (onTimeout != null) {
+            waiter.timer = PolicyExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    //The gate may have been released to the waiter in the meantime
+                    if (cancel(waiter)) {
+                        onTimeout.run();
+                    }
+                }
+            }, timeout);
+        }
+    }
+
+    /**
+     * Acquire the gate, blocking the calling thread.
+     *
+     * @return false if the gate is not acquired within the timeout.
+     */
+    boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        Waiter waiter;
+        synchronized (this) {
+            if (!held) {
+                held = true;
+                return true;
+            }
+            waiter = new Waiter(null);
+            waiters.add(waiter);
+        }
+        try {
+            if (waiter.latch.await(timeout, unit)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            if (!cancel(waiter)) {
+                release();
+            }
+            throw e;
+        }
+        //The gate may have been released to the waiter after the timeout
+        return !cancel(waiter);
+    }
+
+    private synchronized boolean cancel(Waiter waiter) {
+        return waiters.remove(waiter);
+    }
+
+    /**
+     * Acquire the gate, blocking the calling thread without timeout.
+     */
+    void acquireUninterruptibly() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (tryAcquire(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Release the gate to the next waiter, if any.
+     */
+    void release() {
+        Waiter next;
+        synchronized (this) {
+            next = waiters.poll();
+            if (next == null) {
+                held = false;
+                return;
+            }
+        }
+        ScheduledFuture<?> timer = next.timer;
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        if (next.task == null) {
+            next.latch.countDown();
+        } else {
+            PolicyExecutor.execute(next.task);
+        }
+    }
+
+    private static class Waiter {
+        private final Runnable task;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile ScheduledFuture<?> timer;
+
+        Waiter(Runnable task) {
+            this.task = task;
+        }
+    }
+}
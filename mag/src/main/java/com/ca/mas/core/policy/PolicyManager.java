@@ -15,19 +15,33 @@ import com.ca.mas.core.context.MssoContext;
 import com.ca.mas.core.error.MAGException;
 import com.ca.mas.core.error.MAGServerException;
 import com.ca.mas.core.error.MAGStateException;
+import com.ca.mas.core.error.RequestTimeoutException;
 import com.ca.mas.core.http.MAGResponse;
+import com.ca.mas.core.request.RequestDeadline;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Keeps track of policies that can be applied to requests.
+ * <p/>
+ * The policies implementing {@link ConditionalAssertion} are only applied to the requests and responses
+ * they declare to apply to. The applicable policies are resolved once per {@link RequestClass} into a
+ * {@link PolicyPlan}.
+ * <p/>
+ * Policies are applied one request at a time. A request applying an {@link AsyncMssoAssertion} is parked,
+ * and the other requests are queued, without blocking the threads which dispatched them.
  */
 public class PolicyManager {
 
     private final MssoContext mssoContext;
     private final List<MssoAssertion> policies = new ArrayList<MssoAssertion>();
-    private final Object policySync = new Object();
+    private final Map<RequestClass, PolicyPlan> plans = new ConcurrentHashMap<>();
+    private final PolicyGate policyGate = new PolicyGate();
 
     public PolicyManager(MssoContext mssoContext) {
         this.mssoContext = mssoContext;
@@ -62,6 +76,7 @@ public class PolicyManager {
         for (MssoAssertion policy : policies) {
             policy.init(mssoContext, sysContext);
         }
+        plans.clear();
     }
 
     /**
@@ -69,20 +84,37 @@ public class PolicyManager {
      * obtain additional information, possibly adding headers to the request.
      * <p/>
      * The request will not actually be sent on to the target system by this method.  The caller remains
-     * responsible for doing that.
+     * responsible for doing that, unless a policy requested a retry with {@link RequestInfo#retry(String, Recovery)}.
+     * <p/>
+     * The calling thread is blocked while an {@link AsyncMssoAssertion} is applied, see
+     * {@link #processRequest(RequestInfo, AssertionCallback)} to park the request instead.
      *
      * @param request the request to process.  Required.
      * @throws MAGStateException if the request cannot be processed in the current MSSO engine state.
      * @throws MAGException Exception occur in MAG Engine
+     * @throws RequestTimeoutException if the request deadline is reached while waiting for the policy lock.
      */
-    public void processRequest(RequestInfo request) throws MAGStateException, MAGException, MAGServerException{
+    public void processRequest(RequestInfo request) throws MAGStateException, MAGException, MAGServerException, RequestTimeoutException {
         // For now, we will serialize all policies to prevent things like device registration and token acquisition
         // from being attempted in parallel.
-        synchronized (policySync) {
-            for (MssoAssertion policy : policies) {
-                policy.processRequest(mssoContext, request);
-            }
-        }
+        PolicyPlan plan = getPlan(request);
+        lock();
+        BlockingCallback callback = new BlockingCallback();
+        new PolicyChain(plan.getRequestPolicies(), request, null, RequestDeadline.current(), callback).run();
+        callback.await();
+    }
+
+    /**
+     * Same as {@link #processRequest(RequestInfo)}, without blocking the calling thread while the policy lock is
+     * held by another request or while an {@link AsyncMssoAssertion} is applied. The callback may be invoked
+     * before this method returns, or later on a policy thread.
+     *
+     * @param request  the request to process.  Required.
+     * @param callback the callback to invoke once the policies are applied.  Required.
+     */
+    public void processRequest(RequestInfo request, AssertionCallback callback) {
+        PolicyPlan plan = getPlan(request);
+        apply(plan.getRequestPolicies(), request, null, callback);
     }
 
     /**
@@ -94,13 +126,236 @@ public class PolicyManager {
      * @throws MAGStateException only for a failed (non-200) response, if the nature of the response indicates that
      *                            the request cannot be processed in the current MSSO engine state (or should be retried).
      * @throws MAGException Exception occur in MAG Engine
+     * @throws RequestTimeoutException if the request deadline is reached while waiting for the policy lock.
      */
-    public void processResponse(RequestInfo request, MAGResponse response) throws MAGException ,MAGServerException{
+    public void processResponse(RequestInfo request, MAGResponse response) throws MAGException ,MAGServerException, RequestTimeoutException {
         // For now, we will serialize all policies
-        synchronized (policySync) {
-            for (MssoAssertion policy : policies) {
-                policy.processResponse(mssoContext, request, response);
+        List<MssoAssertion> responsePolicies = getPlan(request).getResponsePolicies(response.getResponseCode());
+        if (responsePolicies.isEmpty()) {
+            return;
+        }
+        lock();
+        BlockingCallback callback = new BlockingCallback();
+        new PolicyChain(responsePolicies, request, response, RequestDeadline.current(), callback).run();
+        callback.await();
+    }
+
+    /**
+     * Same as {@link #processResponse(RequestInfo, MAGResponse)}, without blocking the calling thread, see
+     * {@link #processRequest(RequestInfo, AssertionCallback)}.
+     *
+     * @param request  the original request to which this is a response.  Required.
+     * @param response the response to examine.  Required.
+     * @param callback the callback to invoke once the policies are applied.  Required.
+     */
+    public void processResponse(RequestInfo request, MAGResponse response, AssertionCallback callback) {
+        List<MssoAssertion> responsePolicies = getPlan(request).getResponsePolicies(response.getResponseCode());
+        if (responsePolicies.isEmpty()) {
+            callback.onComplete();
+            return;
+        }
+        apply(responsePolicies, request, response, callback);
+    }
+
+    private PolicyPlan getPlan(RequestInfo request) {
+        RequestClass requestClass = RequestClass.of(mssoContext, request);
+        PolicyPlan plan = plans.get(requestClass);
+        if (plan == null) {
+            plan = new PolicyPlan(policies, requestClass);
+            plans.put(requestClass, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Apply the policies once the policy gate is acquired, the request is parked while the gate is held by
+     * another request. A parked request with a deadline fails with a {@link RequestTimeoutException} if the gate
+     * is not released to it before the deadline.
+     */
+    private void apply(final List<MssoAssertion> policies, final RequestInfo request, final MAGResponse response,
+                       final AssertionCallback callback) {
+        final RequestDeadline deadline = RequestDeadline.current();
+        if (deadline != null) {
+            try {
+                deadline.enter(RequestDeadline.Phase.POLICY_LOCK);
+            } catch (RequestTimeoutException e) {
+                callback.onError(e);
+                return;
+            }
+        }
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (deadline != null) {
+                    try {
+                        deadline.enter(RequestDeadline.Phase.POLICY);
+                    } catch (RequestTimeoutException e) {
+                        policyGate.release();
+                        callback.onError(e);
+                        return;
+                    }
+                }
+                new PolicyChain(policies, request, response, deadline, callback).run();
+            }
+        };
+        if (deadline == null) {
+            policyGate.acquire(task);
+            return;
+        }
+        policyGate.acquire(task, deadline.remaining(), new Runnable() {
+            @Override
+            public void run() {
+                callback.onError(deadline.timeout());
+            }
+        });
+    }
+
+    /**
+     * Acquire the policy lock, waiting no longer than the remaining time of the deadline bound to the
+     * current thread, if any.
+     */
+    private void lock() throws RequestTimeoutException {
+        RequestDeadline deadline = RequestDeadline.current();
+        if (deadline == null) {
+            policyGate.acquireUninterruptibly();
+            return;
+        }
+        deadline.enter(RequestDeadline.Phase.POLICY_LOCK);
+        try {
+            if (!policyGate.tryAcquire(deadline.remaining(), TimeUnit.MILLISECONDS)) {
+                throw deadline.timeout();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            RequestTimeoutException timeout = deadline.timeout();
+            timeout.initCause(e);
+            throw timeout;
+        }
+        try {
+            deadline.enter(RequestDeadline.Phase.POLICY);
+        } catch (RequestTimeoutException e) {
+            policyGate.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Applies the policies one after the other, the synchronous policies on the current thread and the
+     * {@link AsyncMssoAssertion}s through their callback. Releases the policy gate once done.
+     */
+    private class PolicyChain implements AssertionCallback {
+
+        private final List<MssoAssertion> policies;
+        private final RequestInfo request;
+        private final MAGResponse response;
+        private final RequestDeadline deadline;
+        private final AssertionCallback callback;
+        private int index;
+
+        PolicyChain(List<MssoAssertion> policies, RequestInfo request, MAGResponse response,
+                    RequestDeadline deadline, AssertionCallback callback) {
+            this.policies = policies;
+            this.request = request;
+            this.response = response;
+            this.deadline = deadline;
+            this.callback = callback;
+        }
+
+        void run() {
+            RequestDeadline previous = RequestDeadline.bind(deadline);
+            try {
+                while (index < policies.size() && !request.isRetryRequested()) {
+                    MssoAssertion policy = policies.get(index++);
+                    if (policy instanceof AsyncMssoAssertion) {
+                        // Resumed by the policy callback
+                        if (response == null) {
+                            ((AsyncMssoAssertion) policy).processRequest(mssoContext, request, this);
+                        } else {
+                            ((AsyncMssoAssertion) policy).processResponse(mssoContext, request, response, this);
+                        }
+                        return;
+                    }
+                    if (response == null) {
+                        policy.processRequest(mssoContext, request);
+                    } else {
+                        policy.processResponse(mssoContext, request, response);
+                    }
+                }
+            } catch (Exception e) {
+                onError(e);
+                return;
+            } catch (Error e) {
+                //Release the gate, or every later request would stay parked
+                onError(new MAGStateException(e));
+                return;
+            } finally {
+                RequestDeadline.bind(previous);
+            }
+            policyGate.release();
+            callback.onComplete();
+        }
+
+        @Override
+        public void onComplete() {
+            run();
+        }
+
+        @Override
+        public void onError(Exception e) {
+            policyGate.release();
+            callback.onError(e);
+        }
+    }
+
+    /**
+     * Callback of the synchronous methods, which wait for the policies to be applied.
+     */
+    private static class BlockingCallback implements AssertionCallback {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Exception error;
+
+        @Override
+        public void onComplete() {
+            latch.countDown();
+        }
+
+        @Override
+        public void onError(Exception e) {
+            error = e;
+            latch.countDown();
+        }
+
+        void await() throws MAGException, MAGServerException, RequestTimeoutException {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    latch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            Exception e = error;
+            if (e == null) {
+                return;
+            }
+            if (e instanceof MAGException) {
+                throw (MAGException) e;
+            }
+            if (e instanceof MAGServerException) {
+                throw (MAGServerException) e;
+            }
+            if (e instanceof RequestTimeoutException) {
+                throw (RequestTimeoutException) e;
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
             }
+            throw new MAGStateException(e);
         }
     }
 
@@ -108,5 +363,6 @@ public class PolicyManager {
         for (MssoAssertion policy : policies) {
             policy.close();
         }
+        plans.clear();
     }
 }
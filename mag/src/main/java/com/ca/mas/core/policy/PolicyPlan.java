@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.policy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The policies to apply to the requests of a {@link RequestClass}, in the order of the {@link PolicyManager}.
+ * The policies to apply to a response are resolved once per response status code.
+ */
+public class PolicyPlan {
+
+    private final RequestClass requestClass;
+    private final List<MssoAssertion> requestPolicies;
+    private final List<MssoAssertion> responsePolicies;
+    private final Map<Integer, List<MssoAssertion>> responsePlans = new ConcurrentHashMap<>();
+
+    public PolicyPlan(List<MssoAssertion> policies, RequestClass requestClass) {
+        this.requestClass = requestClass;
+        List<MssoAssertion> requestPolicies = new ArrayList<>();
+        for (MssoAssertion policy : policies) {
+            if (!(policy instanceof ConditionalAssertion)
+                    || ((ConditionalAssertion) policy).isRequestApplicable(requestClass)) {
+                requestPolicies.add(policy);
+            }
+        }
+        this.requestPolicies = Collections.unmodifiableList(requestPolicies);
+        this.responsePolicies = new ArrayList<>(policies);
+    }
+
+    /**
+     * @return the policies to apply to the request.
+     */
+    public List<MssoAssertion> getRequestPolicies() {
+        return requestPolicies;
+    }
+
+    /**
+     * @param responseCode the HTTP status code of the response.
+     * @return the policies to apply to the response.
+     */
+    public List<MssoAssertion> getResponsePolicies(int responseCode) {
+        List<MssoAssertion> result = responsePlans.get(responseCode);
+        if (result == null) {
+            List<MssoAssertion> applicable = new ArrayList<>();
+            for (MssoAssertion policy : responsePolicies) {
+                if (!(policy instanceof ConditionalAssertion)
+                        || ((ConditionalAssertion) policy).isResponseApplicable(requestClass, responseCode)) {
+                    applicable.add(policy);
+                }
+            }
+            result = Collections.unmodifiableList(applicable);
+            responsePlans.put(responseCode, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.policy;
+
+import com.ca.mas.core.context.MssoContext;
+
+/**
+ * Action to perform before a request is retried from the beginning, e.g. clearing a rejected access token.
+ *
+ * @see RequestInfo#retry(String, Recovery)
+ */
+public interface Recovery {
+
+    /**
+     * Restore a state in which the request can be retried.
+     *
+     * @param context the MSSO context.
+     * @throws Exception if the state cannot be recovered, the request fails with this exception.
+     */
+    void recover(MssoContext context) throws Exception;
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.policy;
+
+import com.ca.mas.core.context.MssoContext;
+import com.ca.mas.core.oauth.GrantProvider;
+import com.ca.mas.core.request.MAGInternalRequest;
+
+import java.net.URL;
+
+/**
+ * The attributes of a request which decide the policies to apply to it.
+ * Requests of the same class share the same {@link PolicyPlan}.
+ */
+public final class RequestClass {
+
+    private final boolean localRequest;
+    private final boolean gatewayHost;
+    private final boolean extra;
+    private final GrantProvider grantProvider;
+
+    public RequestClass(boolean localRequest, boolean gatewayHost, boolean extra, GrantProvider grantProvider) {
+        this.localRequest = localRequest;
+        this.gatewayHost = gatewayHost;
+        this.extra = extra;
+        this.grantProvider = grantProvider;
+    }
+
+    static RequestClass of(MssoContext mssoContext, RequestInfo request) {
+        MAGInternalRequest internalRequest = request.getRequest();
+        URL url = internalRequest.getURL();
+        boolean gatewayHost = url != null && url.getHost() != null
+                && url.getHost().equals(mssoContext.getConfigurationProvider().getTokenHost());
+        return new RequestClass(internalRequest.isLocalRequest(), gatewayHost, request.getExtra() != null,
+                internalRequest.getGrantProvider());
+    }
+
+    /**
+     * @return True if the request is handled by the SDK and not sent to the Gateway.
+     */
+    public boolean isLocalRequest() {
+        return localRequest;
+    }
+
+    /**
+     * @return True if the request targets the host which issued the access token.
+     */
+    public boolean isGatewayHost() {
+        return gatewayHost;
+    }
+
+    /**
+     * @return True if the request is sent with extra parameters, e.g. an OTP.
+     */
+    public boolean hasExtra() {
+        return extra;
+    }
+
+    public GrantProvider getGrantProvider() {
+        return grantProvider;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RequestClass that = (RequestClass) o;
+        return localRequest == that.localRequest
+                && gatewayHost == that.gatewayHost
+                && extra == that.extra
+                && grantProvider == that.grantProvider;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = localRequest ? 1 : 0;
+        result = 31 * result + (gatewayHost ? 1 : 0);
+        result = 31 * result + (extra ? 1 : 0);
+        result = 31 * result + (grantProvider != null ? grantProvider.hashCode() : 0);
+        return result;
+    }
+}
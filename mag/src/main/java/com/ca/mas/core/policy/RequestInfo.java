@@ -21,6 +21,8 @@ public class RequestInfo {
     private final MAGInternalRequest request;
     private int numAttempts = 0;
     private final Bundle extra;
+    private String retryReason;
+    private Recovery recovery;
 
     public RequestInfo(MssoContext context, MAGRequest request, Bundle extra) {
         if (request == null)
@@ -54,4 +56,46 @@ public class RequestInfo {
         numAttempts++;
     }
 
+    /**
+     * Request the request to be retried from the beginning once the current policy returns. The remaining
+     * policies are not applied to the current attempt.
+     * <p/>
+     * This has the same effect as throwing a {@link com.ca.mas.core.policy.exceptions.RetryRequestException},
+     * without the cost of an exception.
+     *
+     * @param reason   the reason of the retry, reported if the request runs out of attempts.
+     * @param recovery the action to perform before the request is retried.  Required.
+     */
+    public void retry(String reason, Recovery recovery) {
+        if (recovery == null)
+            throw new NullPointerException("recovery");
+        this.retryReason = reason;
+        this.recovery = recovery;
+    }
+
+    /**
+     * @return true if a policy requested the current attempt to be retried.
+     */
+    public boolean isRetryRequested() {
+        return recovery != null;
+    }
+
+    /**
+     * @return the reason of the last requested retry, or null.
+     */
+    public String getRetryReason() {
+        return retryReason;
+    }
+
+    /**
+     * Take the recovery of the requested retry, if any, so the next attempt starts without a pending retry.
+     *
+     * @return the recovery to perform before the next attempt, or null if no retry was requested.
+     */
+    public Recovery takeRecovery() {
+        Recovery result = recovery;
+        recovery = null;
+        return result;
+    }
+
 }
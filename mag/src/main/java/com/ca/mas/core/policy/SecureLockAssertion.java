@@ -17,7 +17,7 @@ import com.ca.mas.core.policy.RequestInfo;
 import com.ca.mas.core.security.SecureLockException;
 import com.ca.mas.core.store.TokenManager;
 
-class SecureLockAssertion implements MssoAssertion {
+class SecureLockAssertion implements ConditionalAssertion {
     private TokenManager tokenManager;
 
     @Override
@@ -48,6 +48,16 @@ class SecureLockAssertion implements MssoAssertion {
     public void processResponse(MssoContext mssoContext, RequestInfo request, MAGResponse response) {
     }
 
+    @Override
+    public boolean isRequestApplicable(RequestClass requestClass) {
+        return true;
+    }
+
+    @Override
+    public boolean isResponseApplicable(RequestClass requestClass, int responseCode) {
+        return false;
+    }
+
     @Override
     public void close() {
     }
@@ -7,7 +7,7 @@ import com.ca.mas.core.context.MssoContext;
 import com.ca.mas.core.http.MAGResponse;
 import com.ca.mas.core.policy.exceptions.TokenStoreUnavailableException;
 
-class StorageReadyAssertion implements MssoAssertion {
+class StorageReadyAssertion implements ConditionalAssertion {
 
     @Override
     public void init(@NonNull MssoContext mssoContext, @NonNull Context sysContext) {
@@ -28,6 +28,16 @@ class StorageReadyAssertion implements MssoAssertion {
 
     }
 
+    @Override
+    public boolean isRequestApplicable(RequestClass requestClass) {
+        return true;
+    }
+
+    @Override
+    public boolean isResponseApplicable(RequestClass requestClass, int responseCode) {
+        return false;
+    }
+
     @Override
     public void close() {
 
@@ -25,7 +25,7 @@ import static com.ca.mas.core.MAG.TAG;
 /**
  * A policy that adds telephone information to outbound requests.
  */
-class TelephoneAssertion implements MssoAssertion {
+class TelephoneAssertion implements ConditionalAssertion {
 
     private TelephonyManager telephonyManager;
 
@@ -77,6 +77,16 @@ class TelephoneAssertion implements MssoAssertion {
         }
     }
 
+    @Override
+    public boolean isRequestApplicable(RequestClass requestClass) {
+        return telephonyManager != null && !requestClass.isLocalRequest();
+    }
+
+    @Override
+    public boolean isResponseApplicable(RequestClass requestClass, int responseCode) {
+        return responseCode >= 400 && responseCode < 500;
+    }
+
     @Override
     public void close() {
         if (telephonyManager != null) {
@@ -10,11 +10,14 @@ package com.ca.mas.core.policy.exceptions;
 
 import com.ca.mas.core.context.MssoContext;
 import com.ca.mas.core.error.MAGStateException;
+import com.ca.mas.core.policy.Recovery;
 
 /**
  * Exception thrown if a request should retried from the beginning.
+ * Policies should prefer {@link com.ca.mas.core.policy.RequestInfo#retry(String, Recovery)}, which does not
+ * allocate an exception.
  */
-public abstract class RetryRequestException extends MAGStateException {
+public abstract class RetryRequestException extends MAGStateException implements Recovery {
 
     public RetryRequestException() {
     }
@@ -27,5 +30,6 @@ public abstract class RetryRequestException extends MAGStateException {
         super(throwable);
     }
 
+    @Override
     public abstract void recover(MssoContext context) throws Exception;
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.registration;
+
+import android.util.Log;
+
+import com.ca.mas.core.conf.ConfigurationProvider;
+import com.ca.mas.core.store.ClientCertificate;
+import com.ca.mas.core.store.TokenManager;
+import com.ca.mas.core.store.TokenStoreException;
+import com.ca.mas.core.util.KeyUtils;
+
+import java.security.KeyPair;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static com.ca.mas.core.MAG.DEBUG;
+import static com.ca.mas.core.MAG.TAG;
+
+/**
+ * Provides the client key pair used to build the certificate signing request of the device registration.
+ * The key algorithm, RSA or EC P-256, is configured with {@link ConfigurationProvider#PROP_CLIENT_CERT_KEY_ALGORITHM}.
+ * <p/>
+ * The key pair can be generated ahead of time with {@link #pregenerate(TokenManager, ConfigurationProvider)},
+ * on a low priority background thread, and is parked in the token store until the device registers.
+ * The registration then only has to sign the certificate signing request. A registration started while the key
+ * pair is being generated waits for it instead of generating a second one.
+ */
+public class ClientKeyPairGenerator {
+
+    /**
+     * Default size of the client RSA key in bits.
+     */
+    public static final int DEFAULT_KEY_BITS = 1024;
+
+    private static final Object lock = new Object();
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ClientKeyPair");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private ClientKeyPairGenerator() {
+    }
+
+    /**
+     * Retrieve the stored client key pair, or generate and store a new one.
+     *
+     * @param tokenManager          The token store holding the key pair.
+     * @param configurationProvider The configuration, to retrieve the key size.
+     * @return The client key pair. Never null.
+     * @throws TokenStoreException if the generated key pair cannot be stored.
+     */
+    public static KeyPair getOrGenerate(TokenManager tokenManager, ConfigurationProvider configurationProvider) throws TokenStoreException {
+        KeyPair keyPair = tokenManager.getClientKeyPair();
+        if (keyPair != null) {
+            return keyPair;
+        }
+        synchronized (lock) {
+            //May have been generated in the background meanwhile
+            keyPair = tokenManager.getClientKeyPair();
+            if (keyPair == null) {
+                String algorithm = configurationProvider.getProperty(ConfigurationProvider.PROP_CLIENT_CERT_KEY_ALGORITHM);
+                keyPair = KeyUtils.generateKeyPair(algorithm, getKeyBits(configurationProvider));
+                tokenManager.saveClientKeyPair(keyPair);
+            }
+            return keyPair;
+        }
+    }
+
+    /**
+     * Generate and store the client key pair in the background, if the device is not registered
+     * and no key pair is stored yet. Failures are ignored, the key pair is generated again by the registration.
+     *
+     * @param tokenManager          The token store holding the key pair.
+     * @param configurationProvider The configuration, to retrieve the key size.
+     */
+    public static void pregenerate(final TokenManager tokenManager, final ConfigurationProvider configurationProvider) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!tokenManager.isTokenStoreReady() || ClientCertificate.of(tokenManager) != null) {
+                        return;
+                    }
+                    long start = System.currentTimeMillis();
+                    getOrGenerate(tokenManager, configurationProvider);
+                    if (DEBUG) Log.d(TAG, String.format("Client key pair ready in %d ms", System.currentTimeMillis() - start));
+                } catch (Exception e) {
+                    if (DEBUG) Log.w(TAG, "Unable to pre-generate the client key pair: " + e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    private static int getKeyBits(ConfigurationProvider configurationProvider) {
+        Integer keyBits = configurationProvider.getProperty(ConfigurationProvider.PROP_CLIENT_CERT_RSA_KEYBITS);
+        return keyBits == null ? DEFAULT_KEY_BITS : keyBits;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.request;
+
+import com.ca.mas.core.error.RequestTimeoutException;
+import com.ca.mas.core.http.MAGRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end time budget of a request, shared by all the phases the request goes through: waiting in
+ * the request queue, waiting for the policy lock, applying the policies (including device registration and
+ * token acquisition), the network exchange and the retries.
+ * <p/>
+ * The deadline of the request being processed is bound to the processing thread with {@link #bind(RequestDeadline)},
+ * so nested HTTP exchanges issued by the policies are bounded by the same budget.
+ */
+public class RequestDeadline {
+
+    /**
+     * The phases of a request.
+     */
+    public enum Phase {QUEUE, POLICY_LOCK, POLICY, NETWORK, RETRY}
+
+    private static final ThreadLocal<RequestDeadline> current = new ThreadLocal<>();
+
+    private final long timeout;
+    private final long deadline;
+    private final long[] elapsed = new long[Phase.values().length];
+    private Phase phase = Phase.QUEUE;
+    private long phaseStart;
+
+    private RequestDeadline(long timeout) {
+        this.timeout = timeout;
+        this.phaseStart = System.nanoTime();
+        this.deadline = phaseStart + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * Create a deadline starting now, the request is considered to be in the {@link Phase#QUEUE} phase.
+     *
+     * @param timeout The time budget in milliseconds.
+     * @return The deadline, or null if the timeout is 0 or less (no deadline).
+     */
+    public static RequestDeadline fromTimeout(long timeout) {
+        if (timeout <= 0) {
+            return null;
+        }
+        return new RequestDeadline(timeout);
+    }
+
+    /**
+     * Create a deadline starting now from the timeout of the request.
+     *
+     * @return The deadline, or null if the request has no timeout.
+     * @see #getTimeout(MAGRequest)
+     */
+    public static RequestDeadline fromRequest(MAGRequest request) {
+        return fromTimeout(getTimeout(request));
+    }
+
+    /**
+     * @return The timeout of the request in milliseconds, 0 (no timeout) for the requests not implementing
+     * {@link MAGRequest.MAGTimedRequest}.
+     */
+    public static long getTimeout(MAGRequest request) {
+        if (request instanceof MAGRequest.MAGTimedRequest) {
+            return ((MAGRequest.MAGTimedRequest) request).getTimeout();
+        }
+        return 0;
+    }
+
+    /**
+     * @return The deadline bound to the current thread, or null if none.
+     */
+    public static RequestDeadline current() {
+        return current.get();
+    }
+
+    /**
+     * Bind the deadline to the current thread.
+     *
+     * @param deadline The deadline, or null to unbind.
+     * @return The previously bound deadline, or null.
+     */
+    public static RequestDeadline bind(RequestDeadline deadline) {
+        RequestDeadline previous = current.get();
+        if (deadline == null) {
+            current.remove();
+        } else {
+            current.set(deadline);
+        }
+        return previous;
+    }
+
+    /**
+     * Move the request to the next phase.
+     *
+     * @param next The next phase.
+     * @throws RequestTimeoutException if the budget ran out, reporting the phase which was active.
+     */
+    public synchronized void enter(Phase next) throws RequestTimeoutException {
+        long now = System.nanoTime();
+        elapsed[phase.ordinal()] += now - phaseStart;
+        phaseStart = now;
+        if (now - deadline >= 0) {
+            throw createException(phase);
+        }
+        phase = next;
+    }
+
+    /**
+     * @throws RequestTimeoutException if the budget ran out, reporting the current phase.
+     */
+    public void check() throws RequestTimeoutException {
+        if (isExpired()) {
+            throw timeout();
+        }
+    }
+
+    /**
+     * @return True if the budget ran out.
+     */
+    public boolean isExpired() {
+        return System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * @return The remaining time in milliseconds, at least 1 if the budget did not run out, 0 otherwise.
+     */
+    public long remaining() {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining));
+    }
+
+    /**
+     * @return The total time budget in milliseconds.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return The current phase of the request.
+     */
+    public synchronized Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return A timeout exception reporting the current phase.
+     */
+    public synchronized RequestTimeoutException timeout() {
+        long now = System.nanoTime();
+        elapsed[phase.ordinal()] += now - phaseStart;
+        phaseStart = now;
+        return createException(phase);
+    }
+
+    private RequestTimeoutException createException(Phase phase) {
+        StringBuilder sb = new StringBuilder("Request timed out after ")
+                .append(timeout)
+                .append(" ms in phase ")
+                .append(phase)
+                .append(" (");
+        Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(phases[i]).append('=').append(TimeUnit.NANOSECONDS.toMillis(elapsed[i])).append(" ms");
+        }
+        sb.append(')');
+        return new RequestTimeoutException(phase, sb.toString());
+    }
+}
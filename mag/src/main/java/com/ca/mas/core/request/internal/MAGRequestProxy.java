@@ -12,12 +12,13 @@ import com.ca.mas.core.http.MAGRequest;
 import com.ca.mas.core.http.MAGRequestBody;
 import com.ca.mas.core.http.MAGResponseBody;
 import com.ca.mas.core.oauth.GrantProvider;
+import com.ca.mas.core.request.RequestDeadline;
 
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
 
-public abstract class MAGRequestProxy implements MAGRequest {
+public abstract class MAGRequestProxy implements MAGRequest.MAGTimedRequest {
 
     protected MAGRequest request;
 
@@ -60,4 +61,9 @@ public abstract class MAGRequestProxy implements MAGRequest {
     public String getScope() {
         return request.getScope();
     }
+
+    @Override
+    public long getTimeout() {
+        return RequestDeadline.getTimeout(request);
+    }
 }
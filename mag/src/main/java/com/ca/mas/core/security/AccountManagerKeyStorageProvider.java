@@ -41,7 +41,7 @@ public class AccountManagerKeyStorageProvider extends KeyStoreKeyStorageProvider
             if (DEBUG) Log.w(TAG, "Failed to set sharing property " + e);
         }
 
-        storage = DataSourceFactory.getStorage(ctx, AccountManagerStoreDataSource.class, params, null);
+        storage = DataSourceFactory.getSharedInstance(ctx, AccountManagerStoreDataSource.class, params, null);
     }
 
     /**
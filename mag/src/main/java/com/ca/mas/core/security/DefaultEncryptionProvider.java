@@ -13,26 +13,40 @@ import android.os.Build;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.crypto.Cipher;
 import javax.crypto.Mac;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import javax.security.auth.DestroyFailedException;
-import javax.security.auth.Destroyable;
 import static com.ca.mas.core.MAG.DEBUG;
 import static com.ca.mas.core.MAG.TAG;
 
-public class DefaultEncryptionProvider implements EncryptionProvider {
+/**
+ * Encrypts the data with AES/GCM, the output frame is mac(HmacSHA256) + iv + cipher text.
+ * <p/>
+ * The secret key is read once from the {@link KeyStorageProvider} and cached per provider class and alias,
+ * see {@link #invalidateKeys()}. The cached key is discarded when a new key is provisioned. The keys of a
+ * {@link LockableKeyStorageProvider} are not cached, they are removed and destroyed when the session is locked
+ * or unlocked. The {@link Cipher} and {@link Mac} instances are kept per thread.
+ * <p/>
+ * Streams are encrypted with {@link SegmentedEncryption}, the data key of every stream is encrypted with this provider.
+ */
+public class DefaultEncryptionProvider implements EncryptionProvider, StreamEncryptionProvider {
     private KeyStorageProvider ksp;
     private static final String KEY_ALIAS = "secret";
     private static final String ALGORITHM = "AES";
@@ -40,6 +54,16 @@ public class DefaultEncryptionProvider implements EncryptionProvider {
     private static final String AES_GCM_NO_PADDING = "AES/GCM/NoPadding";
     private static final String HMAC_SHA256 = "HmacSHA256";
     private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 128;
+
+    private static final Map<String, SecretKey> keys = new HashMap<>();
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    private final String keyId;
+    private final boolean cacheable;
+    private final ThreadLocal<Cipher> cipher = new ThreadLocal<>();
+    private final ThreadLocal<Mac> mac = new ThreadLocal<>();
+    private final StreamEncryptionProvider streams = new SegmentedEncryption(this);
 
     public DefaultEncryptionProvider(@NonNull Context ctx) {
         this(ctx, new SharedPreferencesKeyStorageProvider(ctx));
@@ -47,11 +71,14 @@ public class DefaultEncryptionProvider implements EncryptionProvider {
 
     public DefaultEncryptionProvider(Context ctx, KeyStorageProvider keyStorageProvider) {
         ksp = keyStorageProvider;
+        keyId = ksp.getClass().getName() + ":" + getKeyAlias();
+        cacheable = !(ksp instanceof LockableKeyStorageProvider);
         boolean hasSecureKey = ksp.containsKey(getKeyAlias());
 
         if (!hasSecureKey) {
             SecretKey sk = generateKey();
             ksp.storeKey(getKeyAlias(), sk);
+            invalidateKey();
         }
     }
 
@@ -59,6 +86,43 @@ public class DefaultEncryptionProvider implements EncryptionProvider {
         return KEY_ALIAS;
     }
 
+    /**
+     * Discards all the cached secret keys, the keys are read again from the {@link KeyStorageProvider}
+     * on the next encryption or decryption. To be called when the stored keys are removed or replaced.
+     */
+    public static void invalidateKeys() {
+        synchronized (keys) {
+            keys.clear();
+        }
+    }
+
+    private void invalidateKey() {
+        synchronized (keys) {
+            keys.remove(keyId);
+        }
+    }
+
+    private SecretKey getKey() {
+        if (!cacheable) {
+            SecretKey secretKey = ksp.getKey(getKeyAlias());
+            if (secretKey == null) {
+                throw new IllegalStateException("Secret key not found for " + getKeyAlias());
+            }
+            return secretKey;
+        }
+        synchronized (keys) {
+            SecretKey secretKey = keys.get(keyId);
+            if (secretKey == null) {
+                secretKey = ksp.getKey(getKeyAlias());
+                if (secretKey == null) {
+                    throw new IllegalStateException("Secret key not found for " + getKeyAlias());
+                }
+                keys.put(keyId, secretKey);
+            }
+            return secretKey;
+        }
+    }
+
     private SecretKey generateKey() {
         KeyGenerator keyGenerator = new DefaultKeyGenerator(ALGORITHM, KEY_SIZE);
         try {
@@ -82,40 +146,48 @@ public class DefaultEncryptionProvider implements EncryptionProvider {
             return null;
         }
 
-        byte[] encryptedData;
         try {
-            SecretKey secretKey = ksp.getKey(getKeyAlias());
-            Cipher cipher = Cipher.getInstance(AES_GCM_NO_PADDING);
-
-            byte[] iv;
-            AlgorithmParameterSpec ivParams;
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-                iv = cipher.getIV();
-            } else {
-                iv = new byte[IV_LENGTH];
-                SecureRandom secureRandom = new SecureRandom();
-                secureRandom.nextBytes(iv);
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                    ivParams = new GCMParameterSpec(128, iv);
-                } else {
-                    /**
-                     * GCMParameterSpec does not work in Android 19
-                     */
-                    ivParams = new IvParameterSpec(iv);
-                }
-
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivParams);
+            try {
+                return encrypt(getKey(), data);
+            } catch (InvalidKeyException e) {
+                //The stored key has been replaced, retry with the current one
+                invalidateKey();
+                return encrypt(getKey(), data);
             }
-
-            encryptedData = cipher.doFinal(data);
-            byte[] mac = computeMac(getKeyAlias(), encryptedData);
-            encryptedData = concatArrays(mac, iv, encryptedData);
         } catch (Exception e) {
             if (DEBUG) Log.e(TAG, "inside exception of encrypt function: ", e);
             throw new RuntimeException(e.getMessage(), e);
         }
-        return encryptedData;
+    }
+
+    private byte[] encrypt(SecretKey secretKey, byte[] data) throws GeneralSecurityException {
+        Cipher cipher = getCipher();
+        Mac mac = getMac();
+        int macLength = mac.getMacLength();
+
+        byte[] iv;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+            iv = cipher.getIV();
+        } else {
+            iv = new byte[IV_LENGTH];
+            secureRandom.nextBytes(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey, getParameterSpec(iv, 0));
+        }
+
+        //Write the frame in place: mac + iv + cipher text
+        int offset = macLength + iv.length;
+        byte[] result = new byte[offset + cipher.getOutputSize(data.length)];
+        int length = cipher.doFinal(data, 0, data.length, result, offset);
+        if (offset + length != result.length) {
+            byte[] trimmed = new byte[offset + length];
+            System.arraycopy(result, 0, trimmed, 0, trimmed.length);
+            result = trimmed;
+        }
+        System.arraycopy(iv, 0, result, macLength, iv.length);
+        mac.update(result, offset, length);
+        mac.doFinal(result, 0);
+        return result;
     }
 
     /**
@@ -125,113 +197,100 @@ public class DefaultEncryptionProvider implements EncryptionProvider {
     @TargetApi(Build.VERSION_CODES.KITKAT)
     @Override
     public byte[] decrypt(byte[] encryptedData) {
-        Cipher cipher;
-        try {
-            cipher = Cipher.getInstance(AES_GCM_NO_PADDING);
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-            if (DEBUG) Log.e(TAG, "Error while getting an cipher instance", e);
-            throw new RuntimeException("Error while getting an cipher instance", e);
-        }
-
-        int ivlength = IV_LENGTH;
-        int macLength;
-        try {
-            macLength = Mac.getInstance(HMAC_SHA256).getMacLength();
-        } catch (NoSuchAlgorithmException e) {
-            if (DEBUG) Log.e(TAG, "Error while instantiating MAC", e);
-            throw new RuntimeException("Error while instantiating MAC", e);
-        }
-        int encryptedDataLength = encryptedData.length - ivlength - macLength;
-        byte[] macFromMessage = getArraySubset(encryptedData, 0, macLength);
-
-        byte[] iv = getArraySubset(encryptedData, macLength, ivlength);
-        encryptedData = getArraySubset(encryptedData, macLength + ivlength, encryptedDataLength);
-        byte[] mac = computeMac(getKeyAlias(), encryptedData);
-
-        if (!Arrays.equals(mac, macFromMessage)) {
+        Mac mac = getMac();
+        int macLength = mac.getMacLength();
+        int offset = macLength + IV_LENGTH;
+        int encryptedDataLength = encryptedData.length - offset;
+        if (encryptedDataLength < 0) {
             if (DEBUG) Log.e(TAG, "MAC signature could not be verified");
             throw new RuntimeException("MAC signature could not be verified");
         }
 
-        AlgorithmParameterSpec ivParams;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            ivParams = new GCMParameterSpec(128, iv);
-        } else {
-            ivParams = new IvParameterSpec(iv);
+        mac.update(encryptedData, offset, encryptedDataLength);
+        byte[] computed = mac.doFinal();
+        byte[] macFromMessage = new byte[macLength];
+        System.arraycopy(encryptedData, 0, macFromMessage, 0, macLength);
+        if (!MessageDigest.isEqual(computed, macFromMessage)) {
+            if (DEBUG) Log.e(TAG, "MAC signature could not be verified");
+            throw new RuntimeException("MAC signature could not be verified");
         }
 
         try {
-            SecretKey secretKey = ksp.getKey(getKeyAlias());
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, ivParams);
-            return cipher.doFinal(encryptedData);
+            try {
+                return decrypt(getKey(), encryptedData, macLength, offset, encryptedDataLength);
+            } catch (GeneralSecurityException e) {
+                //The cached key may be stale, retry once with the stored key
+                invalidateKey();
+                return decrypt(getKey(), encryptedData, macLength, offset, encryptedDataLength);
+            }
         } catch (Exception e) {
             if (DEBUG) Log.i(TAG, "Error while decrypting an cipher instance", e);
             throw new RuntimeException(e.getMessage(), e);
         }
     }
 
-    /**
-     * Computes the mac signature for the encrypted array
-     *
-     * @param key         : Key to use to generate a secret key for MAC operation
-     * @param cipherText: the data for which the signature has to be calculated
-     * @return
-     */
-    private byte[] computeMac(String key, byte[] cipherText) {
-        Mac hm;
-        SecretKey secretKey = null;
-        try {
-            hm = Mac.getInstance(HMAC_SHA256);
-            secretKey = new SecretKeySpec(key.getBytes("UTF-8"), HMAC_SHA256);
-            hm.init(secretKey);
-            return hm.doFinal(cipherText);
-        } catch (NoSuchAlgorithmException | InvalidKeyException | UnsupportedEncodingException e) {
-            if (DEBUG) Log.e(TAG, "Error while calculating signature", e);
-            throw new RuntimeException("Error while calculating signature", e);
-        } finally {
-            destroyKey(secretKey);
-        }
+    @Override
+    public OutputStream getEncryptingStream(OutputStream out) throws IOException {
+        return streams.getEncryptingStream(out);
     }
 
-    /**
-     * Combine the mac,iv and encrypted data arrays into one array
-     *
-     * @param mac
-     * @param iv
-     * @param cipherText
-     * @return
-     */
-    private byte[] concatArrays(byte[] mac, byte[] iv, byte[] cipherText) {
-        int macLength = mac.length;
-        int ivLength = iv.length;
-        int cipherTextLength = cipherText.length;
-        int totalLength = macLength + ivLength + cipherTextLength;
-        byte[] result = new byte[totalLength];
-        System.arraycopy(mac, 0, result, 0, macLength);
-        System.arraycopy(iv, 0, result, macLength, ivLength);
-        System.arraycopy(cipherText, 0, result, macLength + ivLength, cipherTextLength);
-        return result;
+    @Override
+    public InputStream getDecryptingStream(InputStream in) throws IOException {
+        return streams.getDecryptingStream(in);
     }
 
-    private byte[] getArraySubset(byte[] array, int start, int length) {
-        byte[] result = new byte[length];
-        System.arraycopy(array, start, result, 0, length);
-        return result;
+    @Override
+    public SeekableDecryptor getSeekableDecryptor(RandomAccessFile file) throws IOException {
+        return streams.getSeekableDecryptor(file);
+    }
+
+    private byte[] decrypt(SecretKey secretKey, byte[] encryptedData, int ivOffset, int offset, int length) throws GeneralSecurityException {
+        Cipher cipher = getCipher();
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, getParameterSpec(encryptedData, ivOffset));
+        return cipher.doFinal(encryptedData, offset, length);
+    }
+
+    private AlgorithmParameterSpec getParameterSpec(byte[] src, int offset) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return new GCMParameterSpec(TAG_LENGTH, src, offset, IV_LENGTH);
+        } else {
+            /**
+             * GCMParameterSpec does not work in Android 19
+             */
+            return new IvParameterSpec(src, offset, IV_LENGTH);
+        }
+    }
+
+    private Cipher getCipher() {
+        Cipher c = cipher.get();
+        if (c == null) {
+            try {
+                c = Cipher.getInstance(AES_GCM_NO_PADDING);
+            } catch (GeneralSecurityException e) {
+                if (DEBUG) Log.e(TAG, "Error while getting an cipher instance", e);
+                throw new RuntimeException("Error while getting an cipher instance", e);
+            }
+            cipher.set(c);
+        }
+        return c;
     }
 
     /**
-     * Destroys the ephemeral key, in this case the Secret key generated for MAC, if the key implements Destroyable
-     *
-     * @param key
+     * The MAC is keyed with the key alias, the Mac instance is initialized once per thread and
+     * reset by every doFinal.
      */
-    private void destroyKey(SecretKey key) {
-        if (key instanceof Destroyable) {
-            Destroyable destroyable = (Destroyable) key;
+    private Mac getMac() {
+        Mac m = mac.get();
+        if (m == null) {
             try {
-                destroyable.destroy();
-            } catch (DestroyFailedException e) {
-                if (DEBUG) Log.e(TAG, "Could not destroy key");
+                m = Mac.getInstance(HMAC_SHA256);
+                m.init(new SecretKeySpec(getKeyAlias().getBytes("UTF-8"), HMAC_SHA256));
+            } catch (GeneralSecurityException | UnsupportedEncodingException e) {
+                if (DEBUG) Log.e(TAG, "Error while instantiating MAC", e);
+                throw new RuntimeException("Error while instantiating MAC", e);
             }
+            mac.set(m);
         }
+        return m;
     }
 }
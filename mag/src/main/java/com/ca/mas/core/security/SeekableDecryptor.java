@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.security;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Random access to encrypted data, only the segments that hold the requested range are read and decrypted.
+ */
+public interface SeekableDecryptor extends Closeable {
+
+    /**
+     * @return The size of the decrypted data
+     */
+    long size();
+
+    /**
+     * Reads the decrypted data starting at the given position.
+     *
+     * @return The number of bytes read, or -1 if the position is at the end of the data
+     */
+    int read(long position, byte[] b, int off, int len) throws IOException;
+
+    /**
+     * @return A stream of the decrypted data starting at the given position
+     */
+    InputStream getInputStream(long position);
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.security;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Stream encryption with AES/GCM over fixed size segments, every segment is authenticated on its own
+ * so the data can be decrypted as a stream or at random positions.
+ * <p/>
+ * Each stream has its own random data key, the data key is encrypted with the given {@link EncryptionProvider}
+ * and stored in the header:
+ * <pre>
+ * magic(4) | version(1) | segment size(4) | encrypted key length(2) | encrypted key | nonce prefix(7)
+ * </pre>
+ * followed by the segments, each is the cipher text of <code>segment size</code> bytes (less for the last one)
+ * and the tag. The nonce of a segment is the nonce prefix, the segment index and a flag marking the last segment,
+ * and the header is authenticated with every segment, so segments cannot be reordered, truncated or moved to
+ * another stream.
+ */
+public class SegmentedEncryption implements StreamEncryptionProvider {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    private static final int MAGIC = 0x4D415345;
+    private static final byte VERSION = 1;
+    private static final String AES = "AES";
+    private static final String AES_GCM_NO_PADDING = "AES/GCM/NoPadding";
+    private static final int KEY_SIZE = 32;
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+    private static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_KEY_LENGTH = 4096;
+
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    private final EncryptionProvider keyProvider;
+    private final int segmentSize;
+
+    public SegmentedEncryption(@NonNull EncryptionProvider keyProvider) {
+        this(keyProvider, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param keyProvider The provider to encrypt the data keys
+     * @param segmentSize The size of the plain text segments, the memory used by a stream is about twice the size.
+     */
+    public SegmentedEncryption(@NonNull EncryptionProvider keyProvider, int segmentSize) {
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Unsupported segment size " + segmentSize);
+        }
+        this.keyProvider = keyProvider;
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public OutputStream getEncryptingStream(@NonNull OutputStream out) throws IOException {
+        byte[] key = new byte[KEY_SIZE];
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        secureRandom.nextBytes(key);
+        secureRandom.nextBytes(noncePrefix);
+
+        byte[] encryptedKey;
+        try {
+            encryptedKey = keyProvider.encrypt(key);
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to encrypt the data key", e);
+        }
+        if (encryptedKey.length > MAX_KEY_LENGTH) {
+            throw new IOException("Encrypted data key is too long");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeInt(segmentSize);
+        header.writeShort(encryptedKey.length);
+        header.write(encryptedKey);
+        header.write(noncePrefix);
+
+        Header h = new Header(bytes.toByteArray(), segmentSize, key, noncePrefix);
+        out.write(h.bytes);
+        return new EncryptingOutputStream(out, h);
+    }
+
+    @Override
+    public InputStream getDecryptingStream(@NonNull InputStream in) throws IOException {
+        return new DecryptingInputStream(in, readHeader(new DataInputStream(in)));
+    }
+
+    @Override
+    public SeekableDecryptor getSeekableDecryptor(@NonNull RandomAccessFile file) throws IOException {
+        file.seek(0);
+        return new FileDecryptor(file, readHeader(file));
+    }
+
+    private Header readHeader(DataInput in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not an encrypted stream");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+        int size = in.readInt();
+        if (size <= 0 || size > MAX_SEGMENT_SIZE) {
+            throw new IOException("Invalid segment size " + size);
+        }
+        int keyLength = in.readUnsignedShort();
+        if (keyLength > MAX_KEY_LENGTH) {
+            throw new IOException("Invalid key length " + keyLength);
+        }
+        byte[] encryptedKey = new byte[keyLength];
+        in.readFully(encryptedKey);
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        in.readFully(noncePrefix);
+
+        header.writeInt(magic);
+        header.writeByte(version);
+        header.writeInt(size);
+        header.writeShort(keyLength);
+        header.write(encryptedKey);
+        header.write(noncePrefix);
+
+        byte[] key;
+        try {
+            key = keyProvider.decrypt(encryptedKey);
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to decrypt the data key", e);
+        }
+        if (key == null || key.length != KEY_SIZE) {
+            throw new IOException("Invalid data key");
+        }
+        return new Header(bytes.toByteArray(), size, key, noncePrefix);
+    }
+
+    private static class Header {
+
+        private final byte[] bytes;
+        private final int segmentSize;
+        private final SecretKeySpec key;
+        private final byte[] noncePrefix;
+
+        private Header(byte[] bytes, int segmentSize, byte[] key, byte[] noncePrefix) {
+            this.bytes = bytes;
+            this.segmentSize = segmentSize;
+            this.key = new SecretKeySpec(key, AES);
+            this.noncePrefix = noncePrefix;
+        }
+
+        private int getEncryptedSegmentSize() {
+            return segmentSize + TAG_LENGTH;
+        }
+
+        @TargetApi(Build.VERSION_CODES.KITKAT)
+        private void init(Cipher cipher, int mode, long segment, boolean last) throws GeneralSecurityException {
+            if (segment > Integer.MAX_VALUE) {
+                throw new GeneralSecurityException("Too many segments");
+            }
+            byte[] nonce = Arrays.copyOf(noncePrefix, NONCE_LENGTH);
+            nonce[NONCE_PREFIX_LENGTH] = (byte) (segment >>> 24);
+            nonce[NONCE_PREFIX_LENGTH + 1] = (byte) (segment >>> 16);
+            nonce[NONCE_PREFIX_LENGTH + 2] = (byte) (segment >>> 8);
+            nonce[NONCE_PREFIX_LENGTH + 3] = (byte) segment;
+            nonce[NONCE_LENGTH - 1] = (byte) (last ? 1 : 0);
+
+            AlgorithmParameterSpec spec;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                spec = new GCMParameterSpec(TAG_LENGTH * 8, nonce);
+            } else {
+                /**
+                 * GCMParameterSpec does not work in Android 19
+                 */
+                spec = new IvParameterSpec(nonce);
+            }
+            cipher.init(mode, key, spec);
+            cipher.updateAAD(bytes);
+        }
+
+        private static Cipher newCipher() throws IOException {
+            try {
+                return Cipher.getInstance(AES_GCM_NO_PADDING);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Error while getting an cipher instance", e);
+            }
+        }
+
+        /**
+         * Decrypts the segment in place, returns the length of the plain text.
+         */
+        private int decrypt(Cipher cipher, long segment, boolean last, byte[] data, int length, byte[] output) throws IOException {
+            if (length < TAG_LENGTH) {
+                throw new IOException("Encrypted data is truncated");
+            }
+            try {
+                init(cipher, Cipher.DECRYPT_MODE, segment, last);
+                return cipher.doFinal(data, 0, length, output, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Segment " + segment + " could not be authenticated", e);
+            }
+        }
+    }
+
+    private static class EncryptingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final Header header;
+        private final Cipher cipher;
+        private final byte[] buffer;
+        private final byte[] encrypted;
+        private int count;
+        private long segment;
+        private boolean closed;
+
+        private EncryptingOutputStream(OutputStream out, Header header) throws IOException {
+            this.out = out;
+            this.header = header;
+            this.cipher = Header.newCipher();
+            this.buffer = new byte[header.segmentSize];
+            this.encrypted = new byte[header.getEncryptedSegmentSize()];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            while (len > 0) {
+                //A full segment is only written once more data arrives, the last segment is written on close
+                if (count == buffer.length) {
+                    writeSegment(false);
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeSegment(true);
+            } finally {
+                Arrays.fill(buffer, (byte) 0);
+                out.close();
+            }
+        }
+
+        private void writeSegment(boolean last) throws IOException {
+            int length;
+            try {
+                header.init(cipher, Cipher.ENCRYPT_MODE, segment, last);
+                length = cipher.doFinal(buffer, 0, count, encrypted, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Failed to encrypt segment " + segment, e);
+            }
+            out.write(encrypted, 0, length);
+            segment++;
+            count = 0;
+        }
+    }
+
+    private static class DecryptingInputStream extends InputStream {
+
+        private final InputStream in;
+        private final Header header;
+        private final Cipher cipher;
+        private final byte[] encrypted;
+        private final byte[] buffer;
+        private int position;
+        private int limit;
+        private long segment;
+        private boolean last;
+        //One byte read ahead to find the last segment
+        private int next = -1;
+
+        private DecryptingInputStream(InputStream in, Header header) throws IOException {
+            this.in = in;
+            this.header = header;
+            this.cipher = Header.newCipher();
+            this.encrypted = new byte[header.getEncryptedSegmentSize()];
+            this.buffer = new byte[header.segmentSize];
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            Arrays.fill(buffer, (byte) 0);
+            in.close();
+        }
+
+        private boolean fill() throws IOException {
+            while (position == limit) {
+                if (last) {
+                    return false;
+                }
+                int length = 0;
+                if (next >= 0) {
+                    encrypted[length++] = (byte) next;
+                }
+                while (length < encrypted.length) {
+                    int n = in.read(encrypted, length, encrypted.length - length);
+                    if (n < 0) {
+                        break;
+                    }
+                    length += n;
+                }
+                next = length == encrypted.length ? in.read() : -1;
+                last = next < 0;
+                limit = header.decrypt(cipher, segment++, last, encrypted, length, buffer);
+                position = 0;
+            }
+            return true;
+        }
+    }
+
+    private static class FileDecryptor implements SeekableDecryptor {
+
+        private final RandomAccessFile file;
+        private final Header header;
+        private final Cipher cipher;
+        private final long offset;
+        private final long segments;
+        private final long size;
+        private final byte[] encrypted;
+        private final byte[] buffer;
+        private long current = -1;
+        private int limit;
+
+        private FileDecryptor(RandomAccessFile file, Header header) throws IOException {
+            this.file = file;
+            this.header = header;
+            this.cipher = Header.newCipher();
+            this.offset = header.bytes.length;
+            long length = file.length() - offset;
+            int encryptedSegmentSize = header.getEncryptedSegmentSize();
+            segments = Math.max(1, (length + encryptedSegmentSize - 1) / encryptedSegmentSize);
+            long lastLength = length - (segments - 1) * encryptedSegmentSize;
+            if (lastLength < TAG_LENGTH) {
+                throw new IOException("Encrypted data is truncated");
+            }
+            size = (segments - 1) * header.segmentSize + lastLength - TAG_LENGTH;
+            encrypted = new byte[encryptedSegmentSize];
+            buffer = new byte[header.segmentSize];
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public synchronized int read(long position, byte[] b, int off, int len) throws IOException {
+            if (position < 0) {
+                throw new IllegalArgumentException("Negative position");
+            }
+            if (position >= size) {
+                return -1;
+            }
+            int read = 0;
+            while (read < len && position < size) {
+                long segment = position / header.segmentSize;
+                load(segment);
+                int start = (int) (position - segment * header.segmentSize);
+                int n = Math.min(len - read, limit - start);
+                System.arraycopy(buffer, start, b, off + read, n);
+                read += n;
+                position += n;
+            }
+            return read;
+        }
+
+        @Override
+        public InputStream getInputStream(final long position) {
+            return new InputStream() {
+
+                private long p = position;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] b = new byte[1];
+                    return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+                }
+
+                @Override
+                public int read(@NonNull byte[] b, int off, int len) throws IOException {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    int n = FileDecryptor.this.read(p, b, off, len);
+                    if (n > 0) {
+                        p += n;
+                    }
+                    return n;
+                }
+
+                @Override
+                public long skip(long n) {
+                    long skipped = Math.max(0, Math.min(n, size - p));
+                    p += skipped;
+                    return skipped;
+                }
+            };
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            Arrays.fill(buffer, (byte) 0);
+            file.close();
+        }
+
+        private void load(long segment) throws IOException {
+            if (segment == current) {
+                return;
+            }
+            current = -1;
+            long start = offset + segment * header.getEncryptedSegmentSize();
+            int length = (int) Math.min(encrypted.length, file.length() - start);
+            file.seek(start);
+            try {
+                file.readFully(encrypted, 0, length);
+            } catch (EOFException e) {
+                throw new IOException("Encrypted data is truncated", e);
+            }
+            limit = header.decrypt(cipher, segment, segment == segments - 1, encrypted, length, buffer);
+            current = segment;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * This interface provides encryption of streams, so large values can be encrypted and decrypted
+ * with bounded memory.
+ */
+public interface StreamEncryptionProvider {
+
+    /**
+     * @param out The stream to write the encrypted data to
+     * @return A stream that encrypts the data written to it, the data is only complete once the stream is closed
+     */
+    OutputStream getEncryptingStream(OutputStream out) throws IOException;
+
+    /**
+     * @param in The stream of encrypted data
+     * @return A stream of the decrypted data, an IOException is thrown when the data cannot be authenticated
+     */
+    InputStream getDecryptingStream(InputStream in) throws IOException;
+
+    /**
+     * @param file The file of encrypted data, as written by {@link #getEncryptingStream(OutputStream)}
+     * @return A decryptor of any range of the data
+     */
+    SeekableDecryptor getSeekableDecryptor(RandomAccessFile file) throws IOException;
+}
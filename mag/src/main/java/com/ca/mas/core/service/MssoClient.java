@@ -11,6 +11,9 @@ package com.ca.mas.core.service;
 import android.content.Context;
 import android.content.Intent;
 import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.ResultReceiver;
 import android.util.Log;
 
@@ -21,6 +24,7 @@ import com.ca.mas.core.creds.PasswordCredentials;
 import com.ca.mas.core.error.MAGError;
 import com.ca.mas.core.http.MAGRequest;
 import com.ca.mas.core.http.MAGResponse;
+import com.ca.mas.core.request.RequestDeadline;
 import com.ca.mas.core.request.internal.AuthenticateRequest;
 import com.ca.mas.core.security.SecureLockException;
 import com.ca.mas.core.util.Functions;
@@ -64,12 +68,43 @@ public class MssoClient {
         MssoRequestQueue.getInstance().addRequest(mssoRequest);
 
         final long requestId = mssoRequest.getId();
+        if (mssoRequest.getDeadline() != null) {
+            scheduleTimeout(requestId, mssoRequest.getDeadline().getTimeout());
+        }
         Intent intent = new Intent(MssoIntents.ACTION_PROCESS_REQUEST, null, sysContext, MssoService.class);
         intent.putExtra(MssoIntents.EXTRA_REQUEST_ID, requestId);
         sysContext.startService(intent);
         return requestId;
     }
 
+    /**
+     * Expire the request if it is still waiting in the queue or waiting for user interaction when the timeout
+     * is reached. A request being executed is bounded by its {@link RequestDeadline} instead.
+     */
+    private void scheduleTimeout(final long requestId, long timeout) {
+        new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                MssoRequest request = MssoRequestQueue.getInstance().takeRequest(requestId);
+                if (request == null) {
+                    request = MssoActiveQueue.getInstance().getRequest(requestId);
+                    if (request == null || request.isExecuting()) {
+                        return;
+                    }
+                    request = MssoActiveQueue.getInstance().takeRequest(requestId);
+                }
+                if (request != null && request.getResultReceiver() != null) {
+                    MAGError error = new MAGError(request.getDeadline().timeout());
+                    if (DEBUG) Log.d(TAG, error.getMessage());
+                    Bundle resultData = new Bundle();
+                    resultData.putSerializable(MssoIntents.RESULT_ERROR, error);
+                    resultData.putString(MssoIntents.RESULT_ERROR_MESSAGE, error.getMessage());
+                    request.getResultReceiver().send(MssoIntents.RESULT_CODE_ERR_TIMEOUT, resultData);
+                }
+            }
+        }, timeout);
+    }
+
     /**
      * Logs in a user with a username and password. The existing user session will be logout and login with the provided username
      * and password.
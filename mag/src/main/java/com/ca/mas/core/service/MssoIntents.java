@@ -30,6 +30,9 @@ public interface MssoIntents {
     /** An Intent with this action is used by a Display otp protected data activity to send otp information back to the MssoService.  Fired by Display otp protected data activity .  Handled by MssoService. */
     String ACTION_VALIDATE_OTP = "com.ca.mas.core.service.action.VALIDATE_OTP";
 
+    /** An Intent with this action hands a request completed on a policy thread back to the MssoService.  Fired by MssoService.  Handled by MssoService. */
+    String ACTION_REQUEST_COMPLETED = "com.ca.mas.core.service.action.REQUEST_COMPLETED";
+
     /** An Intent with this can be sent to the App to indicate that a webview should be rendered. Fired by clicking the App Icon in the enterprise browser */
     String ACTION_RENDER_WEBVIEW = "com.ca.mas.core.service.action.RENDER_WEBVIEW";
 
@@ -95,6 +98,9 @@ public interface MssoIntents {
     /** Result code indicating that failed in device registration process . */
     int RESULT_CODE_ERR_REGISTRATION = 7;
 
+    /** Result code indicating that the request did not complete within its timeout. */
+    int RESULT_CODE_ERR_TIMEOUT = 8;
+
     /** Result code indicating that location is turned off, but is required. */
     int RESULT_CODE_ERR_LOCATION_REQUIRED = -301;
 
@@ -13,6 +13,8 @@ import android.os.ResultReceiver;
 
 import com.ca.mas.core.context.MssoContext;
 import com.ca.mas.core.http.MAGRequest;
+import com.ca.mas.core.http.MAGResponse;
+import com.ca.mas.core.request.RequestDeadline;
 
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -28,6 +30,15 @@ class MssoRequest {
     private final ResultReceiver resultReceiver;
     //Extra data for the request
     private Bundle extra;
+    //End-to-end deadline of the request, null if the request has no timeout
+    private final RequestDeadline deadline;
+    private volatile boolean executing;
+    //Outcome of a request completed on a policy thread, handed back to the MssoService thread
+    private MAGResponse response;
+    private Exception error;
+    private boolean completed;
+    //The servicing of the queue stopped at this request while it was parked
+    private boolean resumeQueue;
 
     public MssoRequest(Object creator, MssoContext mssoContext, MAGRequest request, ResultReceiver resultReceiver) {
         this.id = nextRequestId.incrementAndGet();
@@ -35,6 +46,7 @@ class MssoRequest {
         this.mssoContext = mssoContext;
         this.request = request;
         this.resultReceiver = resultReceiver;
+        this.deadline = RequestDeadline.fromRequest(request);
     }
 
     public long getId() {
@@ -64,4 +76,69 @@ class MssoRequest {
     public Bundle getExtra() {
         return extra;
     }
+
+    public RequestDeadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return True if the request is being executed by the MssoService, false if the request is waiting
+     * in the queue or waiting for user interaction (credentials, OTP, unlock).
+     */
+    public boolean isExecuting() {
+        return executing;
+    }
+
+    public void setExecuting(boolean executing) {
+        this.executing = executing;
+    }
+
+    /**
+     * Keep the outcome of the request executed on a policy thread, until the MssoService thread handles it.
+     */
+    synchronized void setResult(MAGResponse response, Exception error) {
+        this.response = response;
+        this.error = error;
+        this.completed = true;
+    }
+
+    /**
+     * @return True if the request completed on a policy thread and its outcome is not handled yet.
+     */
+    synchronized boolean hasResult() {
+        return completed;
+    }
+
+    /**
+     * @return The response of the request, null if the request failed.
+     */
+    synchronized MAGResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * @return The failure of the request, null if the request succeeded.
+     */
+    synchronized Exception getError() {
+        return error;
+    }
+
+    synchronized void clearResult() {
+        response = null;
+        error = null;
+        completed = false;
+    }
+
+    synchronized void setResumeQueue(boolean resumeQueue) {
+        this.resumeQueue = resumeQueue;
+    }
+
+    /**
+     * @return True if the servicing of the queue has to resume once this request is handled. The flag is cleared.
+     */
+    synchronized boolean takeResumeQueue() {
+        boolean result = resumeQueue;
+        resumeQueue = false;
+        return result;
+    }
 }
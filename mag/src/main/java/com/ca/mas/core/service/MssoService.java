@@ -10,6 +10,7 @@ package com.ca.mas.core.service;
 
 import android.app.IntentService;
 import android.content.ActivityNotFoundException;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.ResultReceiver;
@@ -23,9 +24,10 @@ import com.ca.mas.core.auth.otp.model.OtpResponseHeaders;
 import com.ca.mas.core.clientcredentials.ClientCredentialsException;
 import com.ca.mas.core.clientcredentials.ClientCredentialsServerException;
 import com.ca.mas.core.conf.ConfigurationManager;
-import com.ca.mas.core.context.MssoContext;
+import com.ca.mas.core.context.ExecutionCallback;
 import com.ca.mas.core.creds.Credentials;
 import com.ca.mas.core.error.MAGError;
+import com.ca.mas.core.error.RequestTimeoutException;
 import com.ca.mas.core.http.MAGResponse;
 import com.ca.mas.core.oauth.OAuthClient;
 import com.ca.mas.core.oauth.OAuthException;
@@ -93,7 +95,10 @@ public class MssoService extends IntentService {
         }
 
         if (MssoIntents.ACTION_PROCESS_REQUEST.equals(action)) {
-            onProcessRequest(request);
+            onProcessRequest(request, false);
+            return;
+        } else if (MssoIntents.ACTION_REQUEST_COMPLETED.equals(action)) {
+            onParkedRequestCompleted(request);
             return;
         } else if (MssoIntents.ACTION_CREDENTIALS_OBTAINED.equals(action)) {
             onCredentialsObtained(extras, request);
@@ -114,7 +119,7 @@ public class MssoService extends IntentService {
         bundle.putString(OtpConstants.X_OTP_CHANNEL, extras.getString(MssoIntents.EXTRA_OTP_SELECTED_CHANNELS));
         //associate the otp and selected channels to the request
         request.setExtra(bundle);
-        onProcessRequest(request);
+        onProcessRequest(request, false);
     }
 
     private void onCredentialsObtained(Bundle extras, MssoRequest request) {
@@ -133,7 +138,7 @@ public class MssoService extends IntentService {
         for (MssoRequest mssoRequest : requests) {
             if (request == mssoRequest)
                 originalRequestProcessed = true;
-            if (!onProcessRequest(mssoRequest)) {
+            if (!onProcessRequest(mssoRequest, true)) {
                 // Stop servicing queue now
                 break;
             }
@@ -141,7 +146,7 @@ public class MssoService extends IntentService {
 
         // Ensure we make at least one request to process the original request
         if (!originalRequestProcessed)
-            onProcessRequest(request);
+            onProcessRequest(request, false);
     }
 
 
@@ -158,7 +163,7 @@ public class MssoService extends IntentService {
     private void onProcessAllPendingRequests() {
         final Collection<MssoRequest> requests = new ArrayList<>(MssoActiveQueue.getInstance().getAllRequest());
         for (MssoRequest mssoRequest : requests) {
-            if (!onProcessRequest(mssoRequest)) {
+            if (!onProcessRequest(mssoRequest, true)) {
                 // Stop servicing queue now
                 break;
             }
@@ -166,134 +171,237 @@ public class MssoService extends IntentService {
     }
 
     /**
-     * @param request request to process. Required.
-     * @return true if the request was handled to completion (requestFinished() was called)
-     * false if an activity was started (requestFinished() not called, request still pending)
+     * Handle the outcome of a request parked by a policy, on the service thread. The servicing of the queue
+     * resumes if it stopped at the request.
      */
-    private boolean onProcessRequest(final MssoRequest request) {
-        ResultReceiver receiver = request.getResultReceiver();
-        boolean expectingUnlock = false;
+    private void onParkedRequestCompleted(MssoRequest request) {
+        if (!request.hasResult()) {
+            if (DEBUG) Log.d(TAG, "Request outcome already handled");
+            return;
+        }
+        boolean resumeQueue = request.takeResumeQueue();
+        if (onRequestCompleted(request) && resumeQueue) {
+            onProcessAllPendingRequests();
+        }
+    }
 
-        MssoContext mssoContext = request.getMssoContext();
-        try {
-            MAGResponse magResponse = mssoContext.executeRequest(request.getExtra(), request.getRequest());
+    /**
+     * @param request     request to process. Required.
+     * @param resumeQueue true if the request is processed while servicing the queue, the servicing then resumes
+     *                    once the request completes if the request is parked.
+     * @return true if the request was handled to completion (requestFinished() was called),
+     * false if an activity was started (requestFinished() not called, request still pending), or if the request is
+     * parked by a policy. A parked request completes on a policy thread and is handed back to the service thread
+     * with {@link MssoIntents#ACTION_REQUEST_COMPLETED}.
+     */
+    private boolean onProcessRequest(final MssoRequest request, boolean resumeQueue) {
+        if (request.isExecuting() || request.hasResult()) {
+            // Parked by a policy, the request is handed back to the service thread once completed
+            if (resumeQueue) {
+                request.setResumeQueue(true);
+            }
+            return false;
+        }
+        final Context context = getApplicationContext();
+        final Dispatch dispatch = new Dispatch();
+        request.setExecuting(true);
+        request.getMssoContext().executeRequest(request.getExtra(), request.getRequest(), request.getDeadline(),
+                new ExecutionCallback() {
+                    @Override
+                    public void onResponse(MAGResponse response) {
+                        complete(response, null);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        complete(null, e);
+                    }
 
+                    private void complete(MAGResponse response, Exception e) {
+                        request.setResult(response, e);
+                        request.setExecuting(false);
+                        if (dispatch.complete()) {
+                            // Completed on a policy thread, the service may have stopped meanwhile
+                            Intent intent = new Intent(MssoIntents.ACTION_REQUEST_COMPLETED, null, context, MssoService.class);
+                            intent.putExtra(MssoIntents.EXTRA_REQUEST_ID, request.getId());
+                            context.startService(intent);
+                        }
+                    }
+                });
+        if (dispatch.park()) {
+            // Stop servicing the queue, the next request may depend on the outcome of this one (e.g. credentials)
+            if (resumeQueue) {
+                request.setResumeQueue(true);
+            }
+            return false;
+        }
+        return onRequestCompleted(request);
+    }
+
+    /**
+     * Handle the outcome of the request on the service thread.
+     */
+    private boolean onRequestCompleted(MssoRequest request) {
+        MAGResponse response = request.getResponse();
+        Exception error = request.getError();
+        request.clearResult();
+        if (error != null) {
+            return onRequestFailed(request, error);
+        }
+        return onRequestSucceeded(request, response);
+    }
+
+    private boolean onRequestSucceeded(MssoRequest request, MAGResponse magResponse) {
+        try {
             // Success. Move to response queue and send success notification.
             if (requestFinished(request)) {
                 MssoResponse response = createMssoResponse(request, magResponse);
                 MssoResponseQueue.getInstance().addResponse(response);
-                respondSuccess(receiver, response.getId(), "OK");
+                respondSuccess(request.getResultReceiver(), response.getId(), "OK");
             } else {
                 // Request was canceled, don't bother enqueuing a response
             }
-            MssoState.setExpectingUnlock(false);
-            return true;
+        } catch (Throwable t) {
+            return onRequestFailed(request, t);
+        }
+        MssoState.setExpectingUnlock(false);
+        return true;
+    }
 
-        } catch (CredentialRequiredException e) {
-            if (DEBUG) Log.d(TAG, "Request for user credential");
-            //Notify listener
-            MobileSsoListener mobileSsoListener = ConfigurationManager.getInstance().getMobileSsoListener();
-            try {
-                AuthenticationProvider authProvider = new OAuthClient(request.getMssoContext()).getSocialPlatformProvider(getApplicationContext());
-                if (mobileSsoListener != null) {
-                    mobileSsoListener.onAuthenticateRequest(request.getId(), authProvider);
-                } else {
-                    if (DEBUG) Log.w(TAG, "No Authentication listener is registered");
+    private boolean onRequestFailed(MssoRequest request, Throwable t) {
+        ResultReceiver receiver = request.getResultReceiver();
+        boolean expectingUnlock = false;
+        try {
+            if (t instanceof CredentialRequiredException) {
+                if (DEBUG) Log.d(TAG, "Request for user credential");
+                //Notify listener
+                MobileSsoListener mobileSsoListener = ConfigurationManager.getInstance().getMobileSsoListener();
+                try {
+                    AuthenticationProvider authProvider = new OAuthClient(request.getMssoContext()).getSocialPlatformProvider(getApplicationContext());
+                    if (mobileSsoListener != null) {
+                        mobileSsoListener.onAuthenticateRequest(request.getId(), authProvider);
+                    } else {
+                        if (DEBUG) Log.w(TAG, "No Authentication listener is registered");
+                    }
+                    // Keep request pending, will revisit after CREDENTIALS_OBTAINED
+                    return false;
+                } catch (OAuthException | OAuthServerException e1) {
+                    if (DEBUG) Log.e(TAG, e1.getMessage(), e1);
+                    if (requestFinished(request)) {
+                        respondError(request.getResultReceiver(), MssoIntents.RESULT_CODE_ERR_AUTHORIZE, new MAGError(e1));
+                    }
+                    return true;
                 }
-                // Keep request pending, will revisit after CREDENTIALS_OBTAINED
-                return false;
-            } catch (OAuthException | OAuthServerException e1) {
-                if (DEBUG) Log.e(TAG, e1.getMessage(), e1);
-                requestFinished(request);
-                respondError(request.getResultReceiver(), MssoIntents.RESULT_CODE_ERR_AUTHORIZE, new MAGError(e1));
-                return true;
-            }
 
-        } catch (TokenStoreUnavailableException e) {
-            try {
-                expectingUnlock = true;
-                mssoContext.getTokenManager().getTokenStore().unlock();
-                // Keep request pending, will revisit after unlock has completed
-                return false;
-            } catch (Exception e1) {
-                requestFinished(request);
-                respondError(receiver, MssoIntents.RESULT_CODE_ERR_UNKNOWN, new MAGError(e));
-                return true;
-            }
-        } catch (OtpException e) {
-            OtpResponseHeaders otpResponseHeaders = e.getOtpResponseHeaders();
-            MobileSsoListener mobileSsoListener = ConfigurationManager.getInstance().getMobileSsoListener();
-
-            if (mobileSsoListener != null) {
-                if (OtpResponseHeaders.X_OTP_VALUE.REQUIRED.equals(otpResponseHeaders.getxOtpValue())) {
-                    mobileSsoListener.onOtpAuthenticationRequest(new OtpAuthenticationHandler(request.getId(), otpResponseHeaders.getChannels(), false, null));
-                } else if (OtpResponseHeaders.X_CA_ERROR.OTP_INVALID == otpResponseHeaders.getErrorCode()) {
-                    Bundle extra = request.getExtra();
-                    String selectedChannels = null;
-                    if (extra != null) {
-                        selectedChannels = extra.getString(OtpConstants.X_OTP_CHANNEL);
+            } else if (t instanceof TokenStoreUnavailableException) {
+                try {
+                    expectingUnlock = true;
+                    request.getMssoContext().getTokenManager().getTokenStore().unlock();
+                    // Keep request pending, will revisit after unlock has completed
+                    return false;
+                } catch (Exception e1) {
+                    if (requestFinished(request)) {
+                        respondError(receiver, MssoIntents.RESULT_CODE_ERR_UNKNOWN, new MAGError(t));
                     }
+                    return true;
+                }
+            } else if (t instanceof OtpException) {
+                OtpResponseHeaders otpResponseHeaders = ((OtpException) t).getOtpResponseHeaders();
+                MobileSsoListener mobileSsoListener = ConfigurationManager.getInstance().getMobileSsoListener();
 
-                    OtpAuthenticationHandler otpHandler = new OtpAuthenticationHandler(request.getId(), otpResponseHeaders.getChannels(), true, selectedChannels);
-                    mobileSsoListener.onOtpAuthenticationRequest(otpHandler);
+                if (mobileSsoListener != null) {
+                    if (OtpResponseHeaders.X_OTP_VALUE.REQUIRED.equals(otpResponseHeaders.getxOtpValue())) {
+                        mobileSsoListener.onOtpAuthenticationRequest(new OtpAuthenticationHandler(request.getId(), otpResponseHeaders.getChannels(), false, null));
+                    } else if (OtpResponseHeaders.X_CA_ERROR.OTP_INVALID == otpResponseHeaders.getErrorCode()) {
+                        Bundle extra = request.getExtra();
+                        String selectedChannels = null;
+                        if (extra != null) {
+                            selectedChannels = extra.getString(OtpConstants.X_OTP_CHANNEL);
+                        }
+
+                        OtpAuthenticationHandler otpHandler = new OtpAuthenticationHandler(request.getId(), otpResponseHeaders.getChannels(), true, selectedChannels);
+                        mobileSsoListener.onOtpAuthenticationRequest(otpHandler);
+                    }
+                    return false;
                 }
-                return false;
             }
-            if (DEBUG) Log.e(TAG, e.getMessage(), e);
-            requestFinished(request);
-            respondError(receiver, getErrorCode(e), new MAGError(e));
-            return true;
 
-        } catch (Throwable t) {
             if (DEBUG) Log.e(TAG, t.getMessage(), t);
-            requestFinished(request);
-            respondError(receiver, getErrorCode(t), new MAGError(t));
+            if (requestFinished(request)) {
+                respondError(receiver, getErrorCode(t), new MAGError(t));
+            }
             return true;
         } finally {
             MssoState.setExpectingUnlock(expectingUnlock);
         }
     }
 
+    /**
+     * Tracks whether a request completed before the service thread returned from the execution,
+     * or has been parked by a policy.
+     */
+    private static class Dispatch {
+        private boolean done;
+        private boolean parked;
+
+        /**
+         * @return true if the request has been parked, the outcome has to be handed back to the service thread.
+         */
+        synchronized boolean complete() {
+            done = true;
+            return parked;
+        }
 
-    private int getErrorCode(Throwable exception) {
-        try {
-            throw exception;
-        } catch (DeviceRegistrationAwaitingActivationException e) {
+        /**
+         * @return false if the request already completed, true if the request is parked.
+         */
+        synchronized boolean park() {
+            if (done) {
+                return false;
+            }
+            parked = true;
+            return true;
+        }
+    }
+
+
+    private int getErrorCode(Throwable e) {
+        if (e instanceof DeviceRegistrationAwaitingActivationException) {
             return MssoIntents.RESULT_CODE_ERR_AWAITING_REGISTRATION;
-        } catch (ClientCredentialsException | ClientCredentialsServerException e) {
+        } else if (e instanceof ClientCredentialsException || e instanceof ClientCredentialsServerException) {
             return MssoIntents.RESULT_CODE_ERR_CLIENT_CREDENTIALS;
-        } catch (RegistrationException | RegistrationServerException e) {
+        } else if (e instanceof RegistrationException || e instanceof RegistrationServerException) {
             return MssoIntents.RESULT_CODE_ERR_REGISTRATION;
-        } catch (OAuthException | OAuthServerException e) {
+        } else if (e instanceof OAuthException || e instanceof OAuthServerException) {
             return MssoIntents.RESULT_CODE_ERR_OAUTH;
-        } catch (LocationRequiredException e) {
+        } else if (e instanceof LocationRequiredException) {
             return MssoIntents.RESULT_CODE_ERR_LOCATION_REQUIRED;
-        } catch (LocationInvalidException e) {
+        } else if (e instanceof LocationInvalidException) {
             return MssoIntents.RESULT_CODE_ERR_LOCATION_UNAUTHORIZED;
-        } catch (MobileNumberRequiredException e) {
+        } else if (e instanceof MobileNumberRequiredException) {
             return MssoIntents.RESULT_CODE_ERR_MSISDN_REQUIRED;
-        } catch (MobileNumberInvalidException e) {
+        } else if (e instanceof MobileNumberInvalidException) {
             return MssoIntents.RESULT_CODE_ERR_MSISDN_UNAUTHORIZED;
-        } catch (JWTInvalidAUDException e) {
+        } else if (e instanceof JWTInvalidAUDException) {
             return MssoIntents.RESULT_CODE_ERR_JWT_AUD_INVALID;
-        } catch (JWTInvalidAZPException e) {
+        } else if (e instanceof JWTInvalidAZPException) {
             return MssoIntents.RESULT_CODE_ERR_JWT_AZP_INVALID;
-        } catch (JWTExpiredException e) {
+        } else if (e instanceof JWTExpiredException) {
             return MssoIntents.RESULT_CODE_ERR_JWT_EXPIRED;
-        } catch (JWTInvalidSignatureException e) {
+        } else if (e instanceof JWTInvalidSignatureException) {
             return MssoIntents.RESULT_CODE_ERR_JWT_SIGNATURE_INVALID;
-        } catch (JWTValidationException e) {
+        } else if (e instanceof JWTValidationException) {
             return MssoIntents.RESULT_CODE_ERR_JWT_INVALID;
-        } catch (AuthenticationException e) {
+        } else if (e instanceof AuthenticationException) {
             return HttpURLConnection.HTTP_UNAUTHORIZED;
-        } catch (IOException e) {
+        } else if (e instanceof RequestTimeoutException) {
+            return MssoIntents.RESULT_CODE_ERR_TIMEOUT;
+        } else if (e instanceof IOException) {
             return MssoIntents.RESULT_CODE_ERR_IO;
-        } catch (Throwable e) {
-            if (e.getCause() == null) {
-                return MssoIntents.RESULT_CODE_ERR_UNKNOWN;
-            } else {
-                return getErrorCode(e.getCause());
-            }
+        } else if (e.getCause() == null) {
+            return MssoIntents.RESULT_CODE_ERR_UNKNOWN;
+        } else {
+            return getErrorCode(e.getCause());
         }
     }
 
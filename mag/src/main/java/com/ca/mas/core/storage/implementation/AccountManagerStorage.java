@@ -8,10 +8,7 @@
 
 package com.ca.mas.core.storage.implementation;
 
-import android.accounts.Account;
-import android.accounts.AccountManager;
 import android.content.Context;
-import android.util.Base64;
 import android.util.Log;
 
 import com.ca.mas.core.storage.Storage;
@@ -21,13 +18,15 @@ import com.ca.mas.core.storage.StorageResultReceiver;
 
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import static com.ca.mas.core.MAG.DEBUG;
 import static com.ca.mas.core.MAG.TAG;
 
 /***
  * Android Account based storage implementation. This leverages the {@link android.accounts.AccountManager}
  * to store key value pairs in the Android Accounts Database (inside the "extras" table).
+ * The entries of the private space are packed into a few user data columns by {@link PackedAccountStore}, the
+ * entries of the shared space are stored one per user data by {@link LegacyAccountStore}, the format of the
+ * previous versions also sharing the space.
  */
 public class AccountManagerStorage extends Storage {
 
@@ -38,11 +37,6 @@ public class AccountManagerStorage extends Storage {
     private static final int MAX_DATA_SIZE = SQLITE_MAX_LENGTH;
     private static final int MAX_KEY_SIZE = SQLITE_MAX_LENGTH;
 
-    /**
-     * Column name for the key-index
-     */
-    private static final String KEYINDEX_COLUMN_NAME = "lookup_index";
-
     /**
      * Key Prefix. The value will be the package name for private mode and
      * "SHARED_" for shared mode
@@ -55,9 +49,9 @@ public class AccountManagerStorage extends Storage {
     private Context mContext;
 
     /**
-     * Handle to the class responsible to marshaling and unmarshaling the key index.
+     * The entries of the space.
      */
-    private AccountIndexFormatter mFormatter;
+    private AccountStore mStore;
 
     /**
      * AMS Manager
@@ -88,17 +82,23 @@ public class AccountManagerStorage extends Storage {
                 throw new StorageException(StorageException.INVALID_INPUT);
             }
 
+            boolean shared;
             try {
-                mPrefix = (boolean) inputs[1] ? "SHARED_" : mContext.getPackageName() + "_";
+                shared = (boolean) inputs[1];
             } catch (Exception e) {
                 if (DEBUG) Log.w(TAG, "Wrong shared input attribute, falling back to private" + e);
                 //if not specified , assume default as "not shared"
-                mPrefix = mContext.getPackageName() + "_";
+                shared = false;
             }
+            mPrefix = shared ? "SHARED_" : mContext.getPackageName() + "_";
 
             accountManager = AMSSManager.getInstance(mContext);
 
-            mFormatter = new AccountIndexFormatter();
+            if (shared) {
+                mStore = new LegacyAccountStore(mContext, accountManager, mPrefix);
+            } else {
+                mStore = PackedAccountStore.get(mContext, accountManager, mPrefix);
+            }
         } catch (StorageException bubble) {
             throw bubble;
         } catch (Exception e) {
@@ -117,29 +117,24 @@ public class AccountManagerStorage extends Storage {
         StorageException returnException = null;
         validateInputs(key, value);
         try {
-            byte[] keyBytes = (mPrefix + key).getBytes(UTF8);
-            String encodedKey = Base64.encodeToString(keyBytes, Base64.DEFAULT);
-            String data = readAccountData(mContext, encodedKey);
-
             switch (option) {
                 case 0://write
-                    if (data != null) {
+                    if (mStore.contains(key)) {
                         returnException = new StorageException(StorageException.WRITE_DATA_ALREADY_EXISTS);
                     }
                     break;
                 case 1://update
-                    if (data == null) {
+                    if (!mStore.contains(key)) {
                         returnException = new StorageException(StorageException.READ_DATA_NOT_FOUND);
                     }
                     break;
-                case 2://write or update
+                case 2://write or update, no existence check
                 default:
                     break;
             }
 
             if (returnException == null) {
-                String encodedValue = Base64.encodeToString(value, Base64.DEFAULT);
-                writeAccountData(mContext, encodedKey, encodedValue);
+                mStore.write(key, value);
             }
         } catch (Exception e) {
             if (DEBUG) Log.e(TAG, "Error writing data ", e);
@@ -197,18 +192,11 @@ public class AccountManagerStorage extends Storage {
         }
 
         try {
-            byte[] keyBytes = (mPrefix + key).getBytes(UTF8);
-            String encodedKey = Base64.encodeToString(keyBytes, Base64.DEFAULT);
-            String data = readAccountData(mContext, encodedKey);
-            if (data == null) {
+            byte[] retrievedData = mStore.read(key);
+            if (retrievedData == null) {
                 returnException = new StorageException(StorageException.READ_DATA_NOT_FOUND);
             } else {
-                byte[] retrievedData = Base64.decode(data.getBytes(UTF8), Base64.DEFAULT);
-                if (retrievedData == null) {
-                    returnException = new StorageException(StorageException.OPERATION_FAILED);
-                } else {
-                    returnValue.setData(retrievedData);
-                }
+                returnValue.setData(retrievedData.clone());
             }
         } catch (Exception e) {
             if (DEBUG) Log.e(TAG, "Error Writing data ", e);
@@ -331,13 +319,8 @@ public class AccountManagerStorage extends Storage {
         }
 
         try {
-            byte[] keyBytes = (mPrefix + key).getBytes(UTF8);
-            String encodedKey = Base64.encodeToString(keyBytes, Base64.DEFAULT);
-            String data = readAccountData(mContext, encodedKey);
-            if (data == null) {
+            if (!mStore.delete(key)) {
                 returnException = new StorageException(StorageException.READ_DATA_NOT_FOUND);
-            } else {
-                writeAccountData(mContext, encodedKey, null);
             }
         } catch (Exception e) {
             if (DEBUG) Log.e(TAG, "Error writing data ", e);
@@ -376,43 +359,15 @@ public class AccountManagerStorage extends Storage {
     @Override
     public StorageResult deleteAll() {
         StorageResult returnValue = new StorageResult(StorageResult.StorageOperationType.DELETE_ALL);
-        StorageException returnError = null;
-        int successCount = 0;
-        int failureCount = 0;
         try {
-            StorageResult keyQuery = getAllKeys();
-            ArrayList<String> keys = (ArrayList<String>) keyQuery.getData();
-            for (String currentKey : keys) {
-                try {
-                    StorageResult deleteQuery = deleteData(currentKey);
-                    if (deleteQuery.getStatus() == StorageResult.StorageOperationStatus.FAILURE) {
-                        failureCount++;
-                    } else {
-                        successCount++;
-                    }
-                } catch (Exception e) {
-                    failureCount++;
-                }
-            }
-
-            if (failureCount != 0) {
-                String msg = "Failed to deleteData " + failureCount + " entries. Entries deleted: " + successCount;
-                if (DEBUG) Log.e(TAG, msg);
-                returnError = new StorageException(msg, null, StorageException.OPERATION_FAILED);
-            } else {
-                if (DEBUG) Log.i(TAG, "Deleted " + successCount + " entries ");
-            }
+            int count = mStore.clear();
+            if (DEBUG) Log.i(TAG, "Deleted " + count + " entries ");
+            returnValue.setStatus(StorageResult.StorageOperationStatus.SUCCESS);
+            returnValue.setData(count);
         } catch (Exception e) {
             if (DEBUG) Log.e(TAG, "deleteAll failed ", e);
-            returnError = new StorageException(StorageException.OPERATION_FAILED);
-        }
-
-        if (returnError != null) {
             returnValue.setStatus(StorageResult.StorageOperationStatus.FAILURE);
-            returnValue.setData(returnError);
-        } else {
-            returnValue.setStatus(StorageResult.StorageOperationStatus.SUCCESS);
-            returnValue.setData(successCount);
+            returnValue.setData(new StorageException(StorageException.OPERATION_FAILED));
         }
         return returnValue;
     }
@@ -429,8 +384,7 @@ public class AccountManagerStorage extends Storage {
         StorageException returnError = null;
         ArrayList<String> keys = new ArrayList<>();
         try {
-            String keyBlob = readAccountData(mContext, "lookup_index");
-            keys = mFormatter.unmarshal(keyBlob, true);
+            keys.addAll(mStore.keys());
         } catch (Exception e) {
             returnError = new StorageException(StorageException.OPERATION_FAILED);
         }
@@ -465,45 +419,6 @@ public class AccountManagerStorage extends Storage {
         }
     }
 
-    private void updateAccountKeyIndex(Context ctx, String key, String value) throws Exception {
-        AccountManager am = AccountManager.get(ctx);
-        Account account = accountManager.getAccount();
-        String keyBlob = readAccountData(ctx, KEYINDEX_COLUMN_NAME);
-        //ArrayList<String> keyList = keyBlob==null?new ArrayList<String>():new ArrayList<String>(Arrays.asList(keyBlob.split(ACCOUNT_KEY_SEPERATOR)));
-        ArrayList<String> keyList = mFormatter.unmarshal(keyBlob, false);
-        if (value == null) {
-            //DELETE
-            if (keyList.contains(key)) {
-                keyList.remove(key);
-            }
-        } else {
-            //WRITE
-            if (!keyList.contains(key)) {
-                keyList.add(key);
-            }
-        }
-        keyBlob = mFormatter.marshal(keyList, false);
-        am.setUserData(account, KEYINDEX_COLUMN_NAME, keyBlob);
-    }
-
-    private void writeAccountData(Context ctx, String encodedKey, String value) throws Exception {
-        AccountManager am = AccountManager.get(ctx);
-        Account account = accountManager.getAccount();
-        if (value == null) {//DELETE
-            updateAccountKeyIndex(ctx, encodedKey, null);
-            am.setUserData(account, encodedKey, null);
-        } else {//WRITE or UPDATE
-            am.setUserData(account, encodedKey, value);
-            updateAccountKeyIndex(ctx, encodedKey, value);
-        }
-    }
-
-    private String readAccountData(Context ctx,String key) throws Exception {
-        AccountManager am = AccountManager.get(ctx);
-        Account account = accountManager.getAccount();
-        return am.getUserData(account, key);
-    }
-
     /**
      * This methods checks for cases such as null or min and max length of the key and data.
      *
@@ -558,79 +473,4 @@ public class AccountManagerStorage extends Storage {
             throw new StorageException(StorageException.DATA_SIZE_LIMIT_EXCEEDED);
         }
     }
-
-    /**
-     * Class responsible for marshalling and unmarshalling the key index.
-     */
-    private class AccountIndexFormatter {
-
-        private static final String ACCOUNT_KEY_SEPARATOR = ":";
-
-        /**
-         * String representation of the ArrayList<String>.
-         * @param items
-         * @param encode
-         * @return
-         */
-        private String marshal(ArrayList<String> items, boolean encode) {
-            if (items == null || items.size() == 0) {
-                return "";
-            }
-            try {
-                StringBuffer buff = new StringBuffer();
-                for (String keyElement : items) {
-                    String modifiedKey = keyElement;
-                    if (encode) {
-                        modifiedKey = Base64.encodeToString((mPrefix + keyElement).getBytes(UTF8), Base64.DEFAULT);
-                    }
-                    buff.append(modifiedKey);
-                    buff.append(ACCOUNT_KEY_SEPARATOR);
-                }
-                String keyBlob = buff.toString();
-                keyBlob = keyBlob.endsWith(ACCOUNT_KEY_SEPARATOR) ? keyBlob.substring(0, keyBlob.length() - 1) : keyBlob;
-                return keyBlob;
-            } catch (Exception e) {
-                if (DEBUG) Log.e(TAG, "Error in marshal: " + e);
-                return "";
-            }
-        }
-
-        /**
-         * Creates ArrayList<String> out of the String blob.
-         * @param blob
-         * @param decode if you want to Base64 decode the items
-         * @return
-         */
-        private ArrayList<String> unmarshal(String blob, boolean decode) {
-            ArrayList<String> keys = new ArrayList<>();
-            if (blob == null || blob.length() == 0) {
-                return keys;
-            }
-
-            try {
-                ArrayList<String> temp = new ArrayList<String>(Arrays.asList(blob.split(ACCOUNT_KEY_SEPARATOR)));
-                if (decode) {
-                    for (String key : temp) {
-                        byte[] decodedData = Base64.decode(key.getBytes(UTF8), Base64.DEFAULT);
-                        if (decodedData != null) {
-                            String sanitizedKey = new String((byte[]) decodedData, UTF8);
-                            if (sanitizedKey.startsWith(mPrefix)) {
-                                keys.add(sanitizedKey.substring(mPrefix.length()));
-                            }
-                        } else {
-                            if (DEBUG) Log.w(TAG, "Unable to process key retrieved from store");
-                        }
-                    }
-                } else {
-                    keys = temp;
-                }
-            } catch (UnsupportedEncodingException e) {
-                if (DEBUG) Log.e(TAG, "Error in unmarshal: " + e);
-            }
-
-            return keys;
-        }
-    }
-
 }
-
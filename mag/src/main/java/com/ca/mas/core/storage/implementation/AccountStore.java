@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.storage.implementation;
+
+import java.util.List;
+
+/**
+ * The entries of an {@link AccountManagerStorage} space, stored as Account user data.
+ */
+interface AccountStore {
+
+    /**
+     * @return The value of the entry, or null if there is no entry for the key.
+     */
+    byte[] read(String key) throws Exception;
+
+    boolean contains(String key) throws Exception;
+
+    void write(String key, byte[] value) throws Exception;
+
+    /**
+     * @return True if the entry has been removed, false if there was no entry for the key.
+     */
+    boolean delete(String key) throws Exception;
+
+    /**
+     * Remove all the entries of the space.
+     *
+     * @return The number of removed entries.
+     */
+    int clear() throws Exception;
+
+    List<String> keys() throws Exception;
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.storage.implementation;
+
+import android.accounts.Account;
+import android.accounts.AccountManager;
+import android.content.Context;
+import android.util.Base64;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entries of an {@link AccountManagerStorage} space stored one Base64 encoded user data per entry, with a key
+ * index shared by all the spaces. This is the format read and written by the previous versions, it is kept for
+ * the shared space which is also used by the applications built with these versions.
+ */
+class LegacyAccountStore implements AccountStore {
+
+    /**
+     * The key index, shared by the private and shared spaces.
+     */
+    static final String INDEX = "lookup_index";
+    private static final String INDEX_SEPARATOR = ":";
+    private static final String UTF8 = "UTF-8";
+
+    //The index is shared by all the spaces
+    private static final Object indexLock = new Object();
+
+    private final Context context;
+    private final AMSSManager accountManager;
+    private final String prefix;
+
+    /**
+     * @param prefix The prefix of the space, the package name for the private space or "SHARED_".
+     */
+    LegacyAccountStore(Context context, AMSSManager accountManager, String prefix) {
+        this.context = context.getApplicationContext();
+        this.accountManager = accountManager;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public byte[] read(String key) throws Exception {
+        String data = AccountManager.get(context).getUserData(accountManager.getAccount(), encode(key));
+        return data == null ? null : Base64.decode(data.getBytes(UTF8), Base64.DEFAULT);
+    }
+
+    @Override
+    public boolean contains(String key) throws Exception {
+        return AccountManager.get(context).getUserData(accountManager.getAccount(), encode(key)) != null;
+    }
+
+    @Override
+    public void write(String key, byte[] value) throws Exception {
+        AccountManager am = AccountManager.get(context);
+        Account account = accountManager.getAccount();
+        String encodedKey = encode(key);
+        am.setUserData(account, encodedKey, Base64.encodeToString(value, Base64.DEFAULT));
+        updateIndex(am, account, encodedKey, true);
+    }
+
+    @Override
+    public boolean delete(String key) throws Exception {
+        AccountManager am = AccountManager.get(context);
+        Account account = accountManager.getAccount();
+        String encodedKey = encode(key);
+        if (am.getUserData(account, encodedKey) == null) {
+            return false;
+        }
+        updateIndex(am, account, encodedKey, false);
+        am.setUserData(account, encodedKey, null);
+        return true;
+    }
+
+    /**
+     * Remove the entries of the space, the index is read and rewritten once.
+     */
+    @Override
+    public int clear() throws Exception {
+        AccountManager am = AccountManager.get(context);
+        Account account = accountManager.getAccount();
+        synchronized (indexLock) {
+            String index = am.getUserData(account, INDEX);
+            if (index == null || index.length() == 0) {
+                return 0;
+            }
+            int count = 0;
+            List<String> remaining = new ArrayList<>();
+            for (String encodedKey : index.split(INDEX_SEPARATOR)) {
+                if (decode(encodedKey).startsWith(prefix)) {
+                    am.setUserData(account, encodedKey, null);
+                    count++;
+                } else {
+                    remaining.add(encodedKey);
+                }
+            }
+            if (count > 0) {
+                am.setUserData(account, INDEX, join(remaining));
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public List<String> keys() throws Exception {
+        List<String> keys = new ArrayList<>();
+        String index = AccountManager.get(context).getUserData(accountManager.getAccount(), INDEX);
+        if (index == null || index.length() == 0) {
+            return keys;
+        }
+        for (String encodedKey : index.split(INDEX_SEPARATOR)) {
+            String name = decode(encodedKey);
+            if (name.startsWith(prefix)) {
+                keys.add(name.substring(prefix.length()));
+            }
+        }
+        return keys;
+    }
+
+    private String encode(String key) throws Exception {
+        return Base64.encodeToString((prefix + key).getBytes(UTF8), Base64.DEFAULT);
+    }
+
+    private static String decode(String encodedKey) throws Exception {
+        return new String(Base64.decode(encodedKey.getBytes(UTF8), Base64.DEFAULT), UTF8);
+    }
+
+    private void updateIndex(AccountManager am, Account account, String encodedKey, boolean add) {
+        synchronized (indexLock) {
+            String index = am.getUserData(account, INDEX);
+            List<String> encodedKeys = index == null || index.length() == 0 ?
+                    new ArrayList<String>() : new ArrayList<>(Arrays.asList(index.split(INDEX_SEPARATOR)));
+            if (add == encodedKeys.contains(encodedKey)) {
+                return;
+            }
+            if (add) {
+                encodedKeys.add(encodedKey);
+            } else {
+                encodedKeys.remove(encodedKey);
+            }
+            am.setUserData(account, INDEX, join(encodedKeys));
+        }
+    }
+
+    private static String join(List<String> encodedKeys) {
+        StringBuilder sb = new StringBuilder();
+        for (String item : encodedKeys) {
+            if (sb.length() > 0) {
+                sb.append(INDEX_SEPARATOR);
+            }
+            sb.append(item);
+        }
+        return sb.toString();
+    }
+}
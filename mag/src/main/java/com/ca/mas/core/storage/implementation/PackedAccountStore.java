@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.storage.implementation;
+
+import android.accounts.Account;
+import android.accounts.AccountManager;
+import android.content.Context;
+import android.util.Base64;
+import android.util.Log;
+
+import com.ca.mas.core.storage.StorageException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.ca.mas.core.MAG.DEBUG;
+import static com.ca.mas.core.MAG.TAG;
+
+/**
+ * Entries of an {@link AccountManagerStorage} space, packed into a fixed number of segments stored as
+ * Account user data, with an in-memory index of the entries.
+ * <p/>
+ * A header column holds the format version, the generation of the segments and a stamp changed on every write.
+ * Every operation reads the header only, the segments are read again when another process changed the stamp.
+ * A write rewrites the segment of the key and the header, and clearing the space starts a new generation with a
+ * single header write, the segments of the previous generation are then removed, a constant number of calls
+ * whatever the number of entries.
+ * <p/>
+ * The writes hold a file lock of the application and reload the segments changed by another process first, so the
+ * processes of the application do not overwrite each other's entries. The file lock is not shared with the other
+ * applications, the packed format is only used for the private space of the application, see {@link LegacyAccountStore}.
+ * <p/>
+ * Entries written by previous versions, one Base64 encoded user data per entry with a separate key index,
+ * are migrated on first access.
+ */
+class PackedAccountStore implements AccountStore {
+
+    static final int FORMAT_VERSION = 1;
+    static final int SEGMENTS = 8;
+
+    private static final String UTF8 = "UTF-8";
+    private static final String HEADER = "packed.header";
+    private static final String SEGMENT = "packed.segment.";
+    private static final String HEADER_SEPARATOR = ":";
+    private static final String LOCK_FILE = "mas_account_store_%s.lock";
+
+    private static final Map<String, PackedAccountStore> stores = new HashMap<>();
+    private static final Random random = new Random();
+    //A file lock is held by the process, the threads of the process wait on this monitor
+    private static final Object processLock = new Object();
+
+    private final Context context;
+    private final AMSSManager accountManager;
+    private final String prefix;
+
+    @SuppressWarnings("unchecked")
+    private final Map<String, byte[]>[] segments = new Map[SEGMENTS];
+    private String header;
+    private long generation;
+    //The file lock is held by the current thread
+    private boolean locked;
+
+    private PackedAccountStore(Context context, AMSSManager accountManager, String prefix) {
+        this.context = context;
+        this.accountManager = accountManager;
+        this.prefix = prefix;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new HashMap<>();
+        }
+    }
+
+    /**
+     * @param prefix The prefix of the private space of the application.
+     * @return The store of the space, shared by all the storage instances of the space.
+     */
+    static PackedAccountStore get(Context context, AMSSManager accountManager, String prefix) {
+        synchronized (stores) {
+            PackedAccountStore store = stores.get(prefix);
+            if (store == null || store.accountManager != accountManager) {
+                store = new PackedAccountStore(context.getApplicationContext(), accountManager, prefix);
+                stores.put(prefix, store);
+            }
+            return store;
+        }
+    }
+
+    @Override
+    public synchronized byte[] read(String key) throws Exception {
+        sync();
+        return segments[segmentOf(key)].get(key);
+    }
+
+    @Override
+    public synchronized boolean contains(String key) throws Exception {
+        sync();
+        return segments[segmentOf(key)].containsKey(key);
+    }
+
+    @Override
+    public synchronized void write(final String key, final byte[] value) throws Exception {
+        exclusive(new Write<Void>() {
+            @Override
+            Void run() throws Exception {
+                int segment = segmentOf(key);
+                Map<String, byte[]> entries = new HashMap<>(segments[segment]);
+                entries.put(key, value);
+                commit(segment, entries);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public synchronized boolean delete(final String key) throws Exception {
+        return exclusive(new Write<Boolean>() {
+            @Override
+            Boolean run() throws Exception {
+                int segment = segmentOf(key);
+                if (!segments[segment].containsKey(key)) {
+                    return false;
+                }
+                Map<String, byte[]> entries = new HashMap<>(segments[segment]);
+                entries.remove(key);
+                commit(segment, entries);
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public synchronized int clear() throws Exception {
+        return exclusive(new Write<Integer>() {
+            @Override
+            Integer run() throws Exception {
+                int count = 0;
+                for (Map<String, byte[]> entries : segments) {
+                    count += entries.size();
+                }
+                AccountManager am = AccountManager.get(context);
+                Account account = accountManager.getAccount();
+                long previous = generation;
+                String newHeader = createHeader(previous + 1);
+                am.setUserData(account, prefix + HEADER, newHeader);
+                header = newHeader;
+                generation = previous + 1;
+                for (int i = 0; i < SEGMENTS; i++) {
+                    segments[i] = new HashMap<>();
+                    am.setUserData(account, segmentName(previous, i), null);
+                }
+                return count;
+            }
+        });
+    }
+
+    @Override
+    public synchronized List<String> keys() throws Exception {
+        sync();
+        List<String> keys = new ArrayList<>();
+        for (Map<String, byte[]> entries : segments) {
+            keys.addAll(entries.keySet());
+        }
+        return keys;
+    }
+
+    /**
+     * Run the write holding the file lock of the space, with the segments reloaded if another process
+     * changed them since the last access.
+     */
+    private <T> T exclusive(Write<T> write) throws Exception {
+        synchronized (processLock) {
+            File file = new File(context.getFilesDir(), String.format(LOCK_FILE, prefix));
+            FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+            try {
+                channel.lock();
+                locked = true;
+                sync();
+                return write.run();
+            } finally {
+                locked = false;
+                //Releases the lock
+                channel.close();
+            }
+        }
+    }
+
+    private abstract static class Write<T> {
+        abstract T run() throws Exception;
+    }
+
+    /**
+     * Write the segment and a new header, the in-memory segment is only replaced once both are written.
+     */
+    private void commit(int segment, Map<String, byte[]> entries) throws Exception {
+        AccountManager am = AccountManager.get(context);
+        Account account = accountManager.getAccount();
+        String newHeader = createHeader(generation);
+        try {
+            am.setUserData(account, segmentName(generation, segment), entries.isEmpty() ? null : encode(entries));
+            am.setUserData(account, prefix + HEADER, newHeader);
+        } catch (Exception e) {
+            //Reload the segments on next access
+            header = null;
+            throw e;
+        }
+        segments[segment] = entries;
+        header = newHeader;
+    }
+
+    /**
+     * Reload the segments if the header changed since the last access, or migrate the legacy entries
+     * if there is no header yet.
+     */
+    private void sync() throws Exception {
+        AccountManager am = AccountManager.get(context);
+        Account account = accountManager.getAccount();
+        String current = am.getUserData(account, prefix + HEADER);
+        if (current != null && current.equals(header)) {
+            return;
+        }
+        if (current == null) {
+            if (locked) {
+                migrate(am, account);
+            } else {
+                //Another process may be migrating the entries, migrate holding the file lock
+                exclusive(new Write<Void>() {
+                    @Override
+                    Void run() {
+                        return null;
+                    }
+                });
+            }
+            return;
+        }
+
+        String[] fields = current.split(HEADER_SEPARATOR);
+        if (fields.length < 2 || Integer.parseInt(fields[0]) != FORMAT_VERSION) {
+            throw new StorageException("Unsupported storage format " + current, null, StorageException.OPERATION_FAILED);
+        }
+        long g = Long.parseLong(fields[1]);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = decode(am.getUserData(account, segmentName(g, i)));
+        }
+        generation = g;
+        header = current;
+    }
+
+    /**
+     * Move the entries of the space stored one per user data by previous versions to the segments. The legacy
+     * entries are removed through the legacy index, the entries of the other spaces are kept.
+     */
+    private void migrate(AccountManager am, Account account) throws Exception {
+        generation = 0;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new HashMap<>();
+        }
+
+        LegacyAccountStore legacy = new LegacyAccountStore(context, accountManager, prefix);
+        List<String> keys = legacy.keys();
+        for (String key : keys) {
+            byte[] value = legacy.read(key);
+            if (value != null) {
+                segments[segmentOf(key)].put(key, value);
+            }
+        }
+
+        for (int i = 0; i < SEGMENTS; i++) {
+            if (!segments[i].isEmpty()) {
+                am.setUserData(account, segmentName(generation, i), encode(segments[i]));
+            }
+        }
+        header = createHeader(generation);
+        am.setUserData(account, prefix + HEADER, header);
+
+        if (!keys.isEmpty()) {
+            legacy.clear();
+            if (DEBUG) Log.i(TAG, String.format("Migrated %d entries of %s to the packed storage format", keys.size(), prefix));
+        }
+    }
+
+    private String createHeader(long generation) {
+        return FORMAT_VERSION + HEADER_SEPARATOR + generation + HEADER_SEPARATOR + Long.toHexString(random.nextLong());
+    }
+
+    private String segmentName(long generation, int segment) {
+        return prefix + SEGMENT + generation + "." + segment;
+    }
+
+    static int segmentOf(String key) {
+        return (key.hashCode() & 0x7fffffff) % SEGMENTS;
+    }
+
+    static String encode(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            byte[] key = entry.getKey().getBytes(UTF8);
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+        out.flush();
+        return Base64.encodeToString(bytes.toByteArray(), Base64.NO_WRAP);
+    }
+
+    static Map<String, byte[]> decode(String segment) throws IOException {
+        Map<String, byte[]> entries = new HashMap<>();
+        if (segment == null) {
+            return entries;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.decode(segment, Base64.NO_WRAP)));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[in.readInt()];
+            in.readFully(key);
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            entries.put(new String(key, UTF8), value);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.store;
+
+import com.ca.mas.core.cert.PublicKeyHash;
+
+import java.security.cert.X509Certificate;
+import java.util.Date;
+
+/**
+ * The decoded client certificate chain with the values derived from the client certificate, computed once
+ * when the chain is loaded from the token store. Instances of this class are immutable.
+ */
+public class ClientCertificate {
+
+    private final X509Certificate[] chain;
+    private final String subjectDn;
+    private final Date notAfter;
+    private final PublicKeyHash publicKeyHash;
+
+    ClientCertificate(X509Certificate[] chain) {
+        this.chain = chain;
+        X509Certificate certificate = chain[0];
+        this.subjectDn = certificate.getSubjectDN().getName();
+        this.notAfter = certificate.getNotAfter();
+        this.publicKeyHash = PublicKeyHash.fromPublicKey(certificate.getPublicKey());
+    }
+
+    /**
+     * Get the client certificate of the token provider, kept by the provider if it implements
+     * {@link ClientCertificateProvider}, decoded from {@link TokenProvider#getClientCertificateChain()} otherwise.
+     *
+     * @return the client certificate, or null if a client cert chain has not yet been obtained or saved.
+     */
+    public static ClientCertificate of(TokenProvider tokenProvider) {
+        if (tokenProvider instanceof ClientCertificateProvider) {
+            return ((ClientCertificateProvider) tokenProvider).getClientCertificate();
+        }
+        X509Certificate[] chain = tokenProvider.getClientCertificateChain();
+        if (chain == null || chain.length == 0) {
+            return null;
+        }
+        return new ClientCertificate(chain);
+    }
+
+    /**
+     * @return A copy of the client certificate chain, with the client certificate in the zeroth position.
+     */
+    public X509Certificate[] getChain() {
+        return chain.clone();
+    }
+
+    /**
+     * @return The client certificate.
+     */
+    public X509Certificate getCertificate() {
+        return chain[0];
+    }
+
+    /**
+     * @return The subject distinguished name of the client certificate.
+     */
+    public String getSubjectDn() {
+        return subjectDn;
+    }
+
+    /**
+     * @return The expiry date of the client certificate.
+     */
+    public Date getNotAfter() {
+        return new Date(notAfter.getTime());
+    }
+
+    /**
+     * @param date The date to check.
+     * @return True if the client certificate is expired at the provided date.
+     */
+    public boolean isExpired(Date date) {
+        return date.after(notAfter);
+    }
+
+    /**
+     * @return The SHA-256 hash of the client certificate public key.
+     */
+    public PublicKeyHash getPublicKeyHash() {
+        return publicKeyHash;
+    }
+}
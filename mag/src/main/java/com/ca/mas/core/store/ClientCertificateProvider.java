@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.store;
+
+/**
+ * Optional interface of a {@link TokenProvider} which keeps the decoded client cert chain. The callers check
+ * for this interface and fall back to {@link TokenProvider#getClientCertificateChain()}, see
+ * {@link ClientCertificate#of(TokenProvider)}.
+ */
+public interface ClientCertificateProvider extends TokenProvider {
+
+    /**
+     * Get the persisted client cert chain with the values derived from the client cert, if available.
+     *
+     * @return the client certificate, or null if a client cert chain has not yet been obtained or saved.
+     */
+    ClientCertificate getClientCertificate();
+
+    /**
+     * Check if the device is registered, without reading and decoding the client cert chain when possible.
+     *
+     * @return true if a client cert chain is persisted.
+     */
+    boolean isDeviceRegistered();
+}
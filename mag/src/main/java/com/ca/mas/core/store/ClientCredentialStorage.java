@@ -74,6 +74,7 @@ public class ClientCredentialStorage implements ClientCredentialContainer {
     @Override
     public void clearAll() {
         storage.removeAll(null);
+        PrivateTokenStorage.invalidate();
     }
 
 
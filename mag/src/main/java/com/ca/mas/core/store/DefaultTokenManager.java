@@ -21,6 +21,10 @@ import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import static com.ca.mas.core.MAG.DEBUG;
 import static com.ca.mas.core.MAG.TAG;
 
@@ -33,8 +37,11 @@ import static com.ca.mas.core.MAG.TAG;
  * Before the token manager can be used the {@link #isTokenStoreReady()} ()} method must return true.
  * If it doesn't, it may be necessary to start the android.credentials.UNLOCK intent to give the user a
  * chance to set an unlock code and/or unlock the device.
+ * <p/>
+ * The decoded client certificate chain and key pair are cached per connected gateway, and are only
+ * reloaded from the storage after they are saved or deleted.
  */
-public class DefaultTokenManager implements TokenManager {
+public class DefaultTokenManager implements TokenManager, ClientCertificateProvider {
 
     private static final String MSSO_USER_PROFILE = "msso.userProfile";
     private static final String MSSO_MAG_IDENTIFIER = "msso.magIdentifier";
@@ -44,6 +51,15 @@ public class DefaultTokenManager implements TokenManager {
     private static final String MSSO_ID_TOKEN = "msso.idToken";
     private static final String MSSO_ID_TOKEN_TYPE = "msso.idTokenType";
     private static final String MSSO_SECURE_ID_TOKEN = "msso.secureIdToken";
+
+    /**
+     * Marker for an item known to be absent from the storage.
+     */
+    private static final Object NONE = new Object();
+    private static final Map<String, Object> clientCertificates = new ConcurrentHashMap<>();
+    private static final Map<String, Object> clientKeyPairs = new ConcurrentHashMap<>();
+    private static final Object cacheLock = new Object();
+
     protected DataSource<String, byte[]> storage;
 
     public DefaultTokenManager(@NonNull DataSource storage) {
@@ -62,25 +78,45 @@ public class DefaultTokenManager implements TokenManager {
 
     @Override
     public void saveClientKeyPair(KeyPair keyPair) throws TokenStoreException {
-        storeSecureItem(MSSO_CLIENT_CERT_PRIVATE_KEY, KeyUtils.encodeRsaPrivateKey(keyPair.getPrivate()));
-        storeSecureItem(MSSO_CLIENT_CERT_PUBLIC_KEY, KeyUtils.encodeRsaPublicKey(keyPair.getPublic()));
+        synchronized (cacheLock) {
+            try {
+                storeSecureItem(MSSO_CLIENT_CERT_PRIVATE_KEY, KeyUtils.encodePrivateKey(keyPair.getPrivate()));
+                storeSecureItem(MSSO_CLIENT_CERT_PUBLIC_KEY, KeyUtils.encodePublicKey(keyPair.getPublic()));
+            } finally {
+                clientKeyPairs.remove(getPrefix());
+            }
+        }
     }
 
     @Override
     public void saveClientCertificateChain(X509Certificate[] chain) throws TokenStoreException {
-        storeSecureItem(MSSO_CLIENT_CERT_CHAIN, CertUtils.encodeCertificateChain(chain));
+        synchronized (cacheLock) {
+            try {
+                storeSecureItem(MSSO_CLIENT_CERT_CHAIN, CertUtils.encodeCertificateChain(chain));
+            } finally {
+                clientCertificates.remove(getPrefix());
+            }
+        }
     }
 
     @Override
     public void saveIdToken(IdToken idToken) throws TokenStoreException {
-        storeSecureItem(MSSO_ID_TOKEN, idToken.getValue().getBytes(Charsets.UTF8));
-        storeSecureItem(MSSO_ID_TOKEN_TYPE, idToken.getType().getBytes(Charsets.UTF8));
+        try {
+            storeSecureItem(MSSO_ID_TOKEN, idToken.getValue().getBytes(Charsets.UTF8));
+            storeSecureItem(MSSO_ID_TOKEN_TYPE, idToken.getType().getBytes(Charsets.UTF8));
+        } finally {
+            LoginState.invalidate();
+        }
     }
 
     @Override
     public void deleteIdToken() throws TokenStoreException {
-        deleteSecureItem(MSSO_ID_TOKEN);
-        deleteSecureItem(MSSO_ID_TOKEN_TYPE);
+        try {
+            deleteSecureItem(MSSO_ID_TOKEN);
+            deleteSecureItem(MSSO_ID_TOKEN_TYPE);
+        } finally {
+            LoginState.invalidate();
+        }
     }
 
     @Override
@@ -102,15 +138,30 @@ public class DefaultTokenManager implements TokenManager {
     public void clear() throws TokenStoreException {
         deleteIdToken();
         deleteUserProfile();
-        deleteSecureItem(MSSO_CLIENT_CERT_PRIVATE_KEY);
-        deleteSecureItem(MSSO_CLIENT_CERT_PUBLIC_KEY);
-        deleteSecureItem(MSSO_CLIENT_CERT_CHAIN);
+        synchronized (cacheLock) {
+            try {
+                deleteSecureItem(MSSO_CLIENT_CERT_PRIVATE_KEY);
+                deleteSecureItem(MSSO_CLIENT_CERT_PUBLIC_KEY);
+                deleteSecureItem(MSSO_CLIENT_CERT_CHAIN);
+            } finally {
+                clientKeyPairs.remove(getPrefix());
+                clientCertificates.remove(getPrefix());
+            }
+        }
         deleteSecureItem(MSSO_MAG_IDENTIFIER);
     }
 
     @Override
     public void clearAll() throws TokenStoreException {
-        storage.removeAll(null);
+        synchronized (cacheLock) {
+            try {
+                storage.removeAll(null);
+            } finally {
+                clientKeyPairs.clear();
+                clientCertificates.clear();
+            }
+        }
+        PrivateTokenStorage.invalidate();
     }
 
     @Override
@@ -150,16 +201,42 @@ public class DefaultTokenManager implements TokenManager {
 
     @Override
     public KeyPair getClientKeyPair() {
+        String prefix = getPrefix();
+        Object cached = clientKeyPairs.get(prefix);
+        if (cached == null) {
+            synchronized (cacheLock) {
+                cached = clientKeyPairs.get(prefix);
+                if (cached == null) {
+                    KeyPair keyPair = loadClientKeyPair();
+                    if (keyPair == null) {
+                        return null;
+                    }
+                    cached = keyPair;
+                    clientKeyPairs.put(prefix, cached);
+                }
+            }
+        }
+        return cached == NONE ? null : (KeyPair) cached;
+    }
+
+    /**
+     * @return The key pair, or null if the storage is not accessible. Absence of the key pair is cached.
+     */
+    private KeyPair loadClientKeyPair() {
         try {
             byte[] publicBytes = retrieveSecureItem(MSSO_CLIENT_CERT_PUBLIC_KEY);
-            if (publicBytes == null)
+            if (publicBytes == null) {
+                clientKeyPairs.put(getPrefix(), NONE);
                 return null;
+            }
             byte[] privateBytes = retrieveSecureItem(MSSO_CLIENT_CERT_PRIVATE_KEY);
-            if (privateBytes == null)
+            if (privateBytes == null) {
+                clientKeyPairs.put(getPrefix(), NONE);
                 return null;
+            }
 
-            PublicKey publicKey = KeyUtils.decodeRsaPublicKey(publicBytes);
-            PrivateKey privateKey = KeyUtils.decodeRsaPrivateKey(privateBytes);
+            PublicKey publicKey = KeyUtils.decodePublicKey(publicBytes);
+            PrivateKey privateKey = KeyUtils.decodePrivateKey(privateBytes);
             return new KeyPair(publicKey, privateKey);
         } catch (IllegalArgumentException e) {
             if (DEBUG) Log.e(TAG, "Unable to decode client cert key pair: " + e.getMessage(), e);
@@ -172,9 +249,27 @@ public class DefaultTokenManager implements TokenManager {
 
     @Override
     public boolean isClientCertificateChainAvailable() {
+        return isDeviceRegistered();
+    }
+
+    @Override
+    public boolean isDeviceRegistered() {
+        Object cached = clientCertificates.get(getPrefix());
+        if (cached != null) {
+            return cached != NONE;
+        }
+        try {
+            //Listing the keys does not decrypt nor decode the stored items
+            List<String> keys = storage.getKeys(null);
+            if (keys != null && keys.contains(getKey(MSSO_CLIENT_CERT_CHAIN))) {
+                return true;
+            }
+        } catch (Exception e) {
+            if (DEBUG) Log.d(TAG, "Unable to list the token store keys: " + e.getMessage());
+        }
+        //Not found in the key list, which may be empty or use another key format, look the chain up
         try {
             return retrieveSecureItem(MSSO_CLIENT_CERT_CHAIN) != null;
-            //return storage.getKeys().contains(getKey(MSSO_CLIENT_CERT_CHAIN));
         } catch (TokenStoreException e) {
             if (DEBUG) Log.e(TAG, "Unable to access client cert chain: " + e.getMessage(), e);
             return false;
@@ -183,16 +278,32 @@ public class DefaultTokenManager implements TokenManager {
 
     @Override
     public X509Certificate[] getClientCertificateChain() {
-        try {
-            byte[] bytes = retrieveSecureItem(MSSO_CLIENT_CERT_CHAIN);
-            if (bytes == null)
-                return null;
+        ClientCertificate clientCertificate = getClientCertificate();
+        return clientCertificate == null ? null : clientCertificate.getChain();
+    }
 
-            return CertUtils.decodeCertificateChain(bytes);
-        } catch (TokenStoreException e) {
-            if (DEBUG) Log.e(TAG, "Unable to access client cert chain: " + e.getMessage(), e);
-            return null;
+    @Override
+    public ClientCertificate getClientCertificate() {
+        String prefix = getPrefix();
+        Object cached = clientCertificates.get(prefix);
+        if (cached == null) {
+            synchronized (cacheLock) {
+                cached = clientCertificates.get(prefix);
+                if (cached == null) {
+                    try {
+                        byte[] bytes = retrieveSecureItem(MSSO_CLIENT_CERT_CHAIN);
+                        cached = bytes == null
+                                ? NONE
+                                : new ClientCertificate(CertUtils.decodeCertificateChain(bytes));
+                    } catch (TokenStoreException e) {
+                        if (DEBUG) Log.e(TAG, "Unable to access client cert chain: " + e.getMessage(), e);
+                        return null;
+                    }
+                    clientCertificates.put(prefix, cached);
+                }
+            }
         }
+        return cached == NONE ? null : (ClientCertificate) cached;
     }
 
     @Override
@@ -252,6 +363,10 @@ public class DefaultTokenManager implements TokenManager {
     }
 
     private String getKey(String name) {
-        return ConfigurationManager.getInstance().getConnectedGateway().toString() + name;
+        return getPrefix() + name;
+    }
+
+    private String getPrefix() {
+        return ConfigurationManager.getInstance().getConnectedGateway().toString();
     }
 }
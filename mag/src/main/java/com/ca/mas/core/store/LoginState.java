@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.store;
+
+import com.ca.mas.core.datasource.CachingDataSource;
+
+/**
+ * Process wide cache of the login state of the connected gateway, so that checking whether the user
+ * is logged in does not read and decrypt the ID token and the refresh token from the storage every time.
+ * <p/>
+ * The state is computed once by {@link com.ca.mas.core.context.MssoContext#isLogin()} and discarded whenever
+ * the token set or the ID token is saved or removed, or the connected gateway changes.
+ * Changes made by other processes sharing the storage are picked up after {@link #reload()}.
+ */
+public final class LoginState {
+
+    public static final int UNKNOWN = 0;
+    public static final int LOGGED_OUT = 1;
+    public static final int LOGGED_IN = 2;
+
+    private static final Object lock = new Object();
+    private static volatile int state = UNKNOWN;
+    private static volatile int generation;
+
+    private LoginState() {
+    }
+
+    /**
+     * @return The cached login state, {@link #LOGGED_IN}, {@link #LOGGED_OUT} or {@link #UNKNOWN} if the state
+     * has to be computed.
+     */
+    public static int get() {
+        return state;
+    }
+
+    /**
+     * @return The generation to pass to {@link #set(int, boolean)}, to be read before the state is computed.
+     */
+    public static int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Cache the computed login state. The state is discarded if it has been invalidated after
+     * the generation was read, as it may have been computed from stale tokens.
+     *
+     * @param generation The generation read before the state was computed.
+     * @param login      The computed login state.
+     */
+    public static void set(int generation, boolean login) {
+        synchronized (lock) {
+            if (generation == LoginState.generation) {
+                state = login ? LOGGED_IN : LOGGED_OUT;
+            }
+        }
+    }
+
+    /**
+     * Discard the cached login state, the state is computed again on next access.
+     */
+    public static void invalidate() {
+        synchronized (lock) {
+            generation++;
+            state = UNKNOWN;
+        }
+    }
+
+    /**
+     * Discard the cached login state, the cached token set and the cached storage entries, so that tokens saved
+     * or removed by another process sharing the storage are read again on next access.
+     */
+    public static void reload() {
+        CachingDataSource.invalidateAll();
+        PrivateTokenStorage.invalidate();
+    }
+}
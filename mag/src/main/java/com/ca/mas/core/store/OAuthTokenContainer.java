@@ -8,6 +8,8 @@
 
 package com.ca.mas.core.store;
 
+import com.ca.mas.core.oauth.ScopeSet;
+
 public interface OAuthTokenContainer {
 
     void saveAccessToken(String accessToken, String refreshToken, long expiresInSec, String grantedScope);
@@ -18,6 +20,11 @@ public interface OAuthTokenContainer {
 
     String getGrantedScope();
 
+    /**
+     * @return the parsed granted scope, {@link ScopeSet#EMPTY} if not set.
+     */
+    ScopeSet getGrantedScopes();
+
     String takeRefreshToken();
 
     /**
@@ -9,11 +9,34 @@
 package com.ca.mas.core.store;
 
 import android.support.annotation.NonNull;
+import android.util.Log;
 
 import com.ca.mas.core.conf.ConfigurationManager;
+import com.ca.mas.core.conf.Server;
+import com.ca.mas.core.datasource.BatchWrite;
 import com.ca.mas.core.datasource.DataSource;
 import com.ca.mas.core.datasource.DataSourceException;
+import com.ca.mas.core.oauth.ScopeSet;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.ca.mas.core.MAG.DEBUG;
+import static com.ca.mas.core.MAG.TAG;
+
+/**
+ * Persists the OAuth token set to a {@link DataSource}, as a single versioned record, so the token set is
+ * saved or cleared with a single write and never partially updated.
+ * <p/>
+ * The token set is loaded from the storage once and kept as an immutable {@link TokenSnapshot} shared by all
+ * instances for the connected gateway, the snapshot is replaced when the token set is saved or cleared.
+ * The getters do not access the storage after the first load, the key prefix of the connected gateway is
+ * computed once per activated gateway configuration.
+ */
 public class PrivateTokenStorage implements OAuthTokenContainer {
 
     public enum KEY {
@@ -22,9 +45,37 @@ public class PrivateTokenStorage implements OAuthTokenContainer {
         PREF_EXPIRY_UNIXTIME,
         PREF_GRANTED_SCOPE,
         PREF_ID_TOKEN,
-        PREF_ID_TOKEN_TYPE
+        PREF_ID_TOKEN_TYPE,
+        PREF_TOKEN_SET
     }
 
+    /**
+     * Version of the token set record format.
+     */
+    private static final int RECORD_VERSION = 1;
+    private static final String VERSION = "version";
+    private static final String ACCESS_TOKEN = "access_token";
+    private static final String REFRESH_TOKEN = "refresh_token";
+    private static final String EXPIRY = "expiry";
+    private static final String GRANTED_SCOPE = "scope";
+
+    /**
+     * The keys of the token set before it was saved as a single record.
+     */
+    private static final KEY[] LEGACY_KEYS = {KEY.PREF_ACCESS_TOKEN, KEY.PREF_REFRESH_TOKEN,
+            KEY.PREF_EXPIRY_UNIXTIME, KEY.PREF_GRANTED_SCOPE};
+
+    /**
+     * Token snapshots per connected gateway.
+     */
+    private static final Map<String, TokenSnapshot> snapshots = new ConcurrentHashMap<>();
+    private static final Object lock = new Object();
+
+    /**
+     * The key prefix of the connected gateway, replaced when another gateway configuration is activated.
+     */
+    private static volatile GatewayPrefix gatewayPrefix;
+
     private DataSource<String, String> storage;
 
     public PrivateTokenStorage(@NonNull DataSource storage){
@@ -37,79 +88,242 @@ public class PrivateTokenStorage implements OAuthTokenContainer {
         long expiresInMillis = expiresInSec * 1000L;
         long expiry = now + expiresInMillis;
 
-        storage.put(getKey(KEY.PREF_ACCESS_TOKEN.name()), accessToken);
-        storage.put(getKey(KEY.PREF_REFRESH_TOKEN.name()), refreshToken);
-        storage.put(getKey(KEY.PREF_EXPIRY_UNIXTIME.name()), Long.toString(expiry));
-        storage.put(getKey(KEY.PREF_GRANTED_SCOPE.name()), grantedScope);
+        String prefix = getPrefix();
+        synchronized (lock) {
+            //Migrate the legacy entries before the record is written
+            getSnapshot(prefix);
+            write(prefix, new TokenSnapshot(accessToken, refreshToken, expiry, grantedScope));
+        }
     }
 
     @Override
     public String getAccessToken() {
-        try {
-            return storage.get(getKey(KEY.PREF_ACCESS_TOKEN.name()));
-        } catch (DataSourceException e) {
-            return null;
-        }
+        return getSnapshot().getAccessToken();
     }
 
     @Override
     public String getRefreshToken() {
-        try {
-            return storage.get(getKey(KEY.PREF_REFRESH_TOKEN.name()));
-        } catch (DataSourceException e) {
-            return null;
-        }
+        return getSnapshot().getRefreshToken();
     }
 
     @Override
-    public synchronized String takeRefreshToken() {
-        String refreshToken = getRefreshToken();
-        if (refreshToken != null) {
-            storage.remove(getKey(KEY.PREF_REFRESH_TOKEN.name()));
+    public String takeRefreshToken() {
+        String prefix = getPrefix();
+        synchronized (lock) {
+            TokenSnapshot snapshot = getSnapshot(prefix);
+            String refreshToken = snapshot.getRefreshToken();
+            if (refreshToken != null) {
+                write(prefix, snapshot.withoutRefreshToken());
+            }
+            return refreshToken;
         }
-        return refreshToken;
     }
 
     @Override
     public String getGrantedScope() {
+        return getSnapshot().getGrantedScope();
+    }
+
+    @Override
+    public ScopeSet getGrantedScopes() {
+        return getSnapshot().getGrantedScopes();
+    }
+
+    /**
+     * @return expiry date as millis since the epoch, or 0 if not set.
+     */
+    @Override
+    public long getExpiry() {
+        return getSnapshot().getExpiry();
+    }
+
+    @Override
+    public void clear() {
+        String prefix = getPrefix();
+        synchronized (lock) {
+            snapshots.remove(prefix);
+            //Remove the legacy entries with the record, so an interrupted migration cannot bring the tokens back
+            Map<String, String> values = new LinkedHashMap<>();
+            values.put(prefix + KEY.PREF_TOKEN_SET.name(), null);
+            for (KEY k : LEGACY_KEYS) {
+                values.put(prefix + k.name(), null);
+            }
+            BatchWrite.putAll(storage, values);
+            snapshots.put(prefix, TokenSnapshot.EMPTY);
+            LoginState.invalidate();
+        }
+    }
+
+    @Override
+    public void clearAll() {
+        synchronized (lock) {
+            snapshots.clear();
+            storage.removeAll(null);
+            LoginState.invalidate();
+        }
+    }
+
+    /**
+     * Discard the token snapshots, the token set is reloaded from the storage on next access.
+     * Invoked when the underlying storage is cleared by another container.
+     */
+    static void invalidate() {
+        synchronized (lock) {
+            snapshots.clear();
+            LoginState.invalidate();
+        }
+    }
+
+    private TokenSnapshot getSnapshot() {
+        return getSnapshot(getPrefix());
+    }
+
+    private TokenSnapshot getSnapshot(String prefix) {
+        TokenSnapshot snapshot = snapshots.get(prefix);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (lock) {
+            snapshot = snapshots.get(prefix);
+            if (snapshot == null) {
+                snapshot = load(prefix);
+                if (snapshot == null) {
+                    //Storage not available, do not cache the failure
+                    return TokenSnapshot.EMPTY;
+                }
+                snapshots.put(prefix, snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Write the token set record with a single write and replace the snapshot.
+     */
+    private void write(String prefix, TokenSnapshot snapshot) {
+        //Reload on next access if the write fails
+        snapshots.remove(prefix);
+        storage.put(prefix + KEY.PREF_TOKEN_SET.name(), encode(snapshot));
+        snapshots.put(prefix, snapshot);
+        LoginState.invalidate();
+    }
+
+    private TokenSnapshot load(String prefix) {
         try {
-            return storage.get(getKey(KEY.PREF_GRANTED_SCOPE.name()));
+            String record = storage.get(prefix + KEY.PREF_TOKEN_SET.name());
+            if (record != null) {
+                removeLegacyEntries(prefix);
+                return decode(record);
+            }
+            return migrate(prefix);
         } catch (DataSourceException e) {
             return null;
         }
     }
 
     /**
-     * @return expiry date as millis since the epoch, or 0 if not set.
+     * Move the token set stored as separate entries by previous versions to a single record,
+     * the record is written and the legacy entries removed with one write, atomic if the storage is a
+     * {@link com.ca.mas.core.datasource.BatchDataSource}. The record is written first, an interrupted
+     * migration leaves the record, which is read before the legacy entries. The legacy entries left next to the
+     * record are removed when the record is loaded or cleared.
      */
-    @Override
-    public long getExpiry() {
+    private TokenSnapshot migrate(String prefix) {
+        String accessToken = storage.get(prefix + KEY.PREF_ACCESS_TOKEN.name());
+        String refreshToken = storage.get(prefix + KEY.PREF_REFRESH_TOKEN.name());
+        if (accessToken == null && refreshToken == null) {
+            return TokenSnapshot.EMPTY;
+        }
+        String expiry = storage.get(prefix + KEY.PREF_EXPIRY_UNIXTIME.name());
+        TokenSnapshot snapshot = new TokenSnapshot(accessToken, refreshToken,
+                expiry == null ? 0 : Long.parseLong(expiry),
+                storage.get(prefix + KEY.PREF_GRANTED_SCOPE.name()));
+
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put(prefix + KEY.PREF_TOKEN_SET.name(), encode(snapshot));
+        for (KEY k : LEGACY_KEYS) {
+            values.put(prefix + k.name(), null);
+        }
         try {
-            String r = storage.get(getKey(KEY.PREF_EXPIRY_UNIXTIME.name()));
-            if (r != null) {
-                return Long.parseLong(r);
-            } else {
-                return 0;
+            BatchWrite.putAll(storage, values);
+        } catch (DataSourceException e) {
+            if (DEBUG) Log.w(TAG, "Unable to migrate the token set: " + e.getMessage(), e);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Remove the legacy entries left next to the record by an interrupted migration.
+     */
+    private void removeLegacyEntries(String prefix) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (KEY k : LEGACY_KEYS) {
+            if (storage.get(prefix + k.name()) != null) {
+                values.put(prefix + k.name(), null);
             }
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+        try {
+            BatchWrite.putAll(storage, values);
         } catch (DataSourceException e) {
-            return 0;
+            if (DEBUG) Log.w(TAG, "Unable to remove the legacy token entries: " + e.getMessage(), e);
         }
     }
 
-    @Override
-    public void clear() {
-        for (KEY k : KEY.values()) {
-            storage.remove(getKey(k.name()));
+    private static String encode(TokenSnapshot snapshot) {
+        try {
+            JSONObject record = new JSONObject();
+            record.put(VERSION, RECORD_VERSION);
+            record.putOpt(ACCESS_TOKEN, snapshot.getAccessToken());
+            record.putOpt(REFRESH_TOKEN, snapshot.getRefreshToken());
+            record.put(EXPIRY, snapshot.getExpiry());
+            record.putOpt(GRANTED_SCOPE, snapshot.getGrantedScope());
+            return record.toString();
+        } catch (JSONException e) {
+            throw new DataSourceException("Unable to encode the token set", e);
         }
     }
 
-    @Override
-    public void clearAll() {
-        storage.removeAll(null);
+    private static TokenSnapshot decode(String value) {
+        try {
+            JSONObject record = new JSONObject(value);
+            if (record.optInt(VERSION) != RECORD_VERSION) {
+                if (DEBUG) Log.w(TAG, "Unsupported token set version " + record.optInt(VERSION));
+                return TokenSnapshot.EMPTY;
+            }
+            return new TokenSnapshot(
+                    record.has(ACCESS_TOKEN) ? record.getString(ACCESS_TOKEN) : null,
+                    record.has(REFRESH_TOKEN) ? record.getString(REFRESH_TOKEN) : null,
+                    record.optLong(EXPIRY),
+                    record.has(GRANTED_SCOPE) ? record.getString(GRANTED_SCOPE) : null);
+        } catch (JSONException e) {
+            if (DEBUG) Log.w(TAG, "Invalid token set record: " + e.getMessage());
+            return TokenSnapshot.EMPTY;
+        }
     }
 
-    private String getKey(String name) {
-        return ConfigurationManager.getInstance().getConnectedGateway().toString() + name;
+    private String getPrefix() {
+        Server gateway = ConfigurationManager.getInstance().getConnectedGateway();
+        GatewayPrefix current = gatewayPrefix;
+        //Activating a configuration creates a new Server
+        if (current == null || current.gateway != gateway) {
+            current = new GatewayPrefix(gateway);
+            gatewayPrefix = current;
+        }
+        return current.prefix;
+    }
+
+    private static class GatewayPrefix {
+
+        private final Server gateway;
+        private final String prefix;
+
+        private GatewayPrefix(Server gateway) {
+            this.gateway = gateway;
+            this.prefix = gateway.toString();
+        }
     }
 
 }
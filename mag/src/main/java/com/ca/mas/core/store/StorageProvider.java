@@ -23,6 +23,9 @@ import com.ca.mas.core.datasource.StringDataConverter;
 
 import org.json.JSONException;
 import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.WeakHashMap;
 import static com.ca.mas.core.MAG.DEBUG;
 import static com.ca.mas.core.MAG.TAG;
 
@@ -31,6 +34,12 @@ import static com.ca.mas.core.MAG.TAG;
  */
 public class StorageProvider {
 
+    /**
+     * The parsed storage configurations, by storage JSON configuration.
+     */
+    private static final Map<JSONObject, StorageConfig> storageConfigs = new WeakHashMap<>();
+    private static StorageConfig defaultStorageConfig;
+
     private ConfigurationProvider configurationProvider;
     private Context context;
     private StorageConfig mStorageConfig;
@@ -38,7 +47,7 @@ public class StorageProvider {
     public StorageProvider(Context context, ConfigurationProvider configurationProvider) {
         this.configurationProvider = configurationProvider;
         this.context = context;
-        mStorageConfig = new StorageConfig(configurationProvider);
+        mStorageConfig = getStorageConfig(configurationProvider);
     }
 
     public StorageProvider(Context context) {
@@ -53,14 +62,7 @@ public class StorageProvider {
     public TokenManager createTokenManager() {
         String tm = configurationProvider.getProperty(MobileSsoConfig.PROP_SHARE_TOKEN_MANAGER);
         if (tm == null) {
-            JSONObject params = new JSONObject();
-            try {
-                params = new JSONObject(mStorageConfig.getStorageConfig().toString());
-                params.put(StorageConfig.PROP_SHARE_STATUS, Boolean.TRUE);
-            } catch (JSONException e) {
-                if (DEBUG) Log.w(TAG, "failed to set sharing property " + e);
-            }
-            DataSource storage = DataSourceFactory.getStorage(context, mStorageConfig.getStorageClass(), params, null);
+            DataSource storage = DataSourceFactory.getSharedInstance(context, mStorageConfig.getStorageClass(), mStorageConfig.getSharedStorageConfig(), null);
             return new DefaultTokenManager(storage);
         } else {
             return (TokenManager) create(tm);
@@ -76,7 +78,7 @@ public class StorageProvider {
     public OAuthTokenContainer createOAuthTokenContainer() {
         String pt = configurationProvider.getProperty(MobileSsoConfig.PROP_PRIVATE_TOKEN_MANAGER);
         if (pt == null) {
-            DataSource storage = DataSourceFactory.getStorage(context, mStorageConfig.getStorageClass(), mStorageConfig.getStorageConfig(), new StringDataConverter());
+            DataSource storage = DataSourceFactory.getSharedInstance(context, mStorageConfig.getStorageClass(), mStorageConfig.getStorageConfig(), new StringDataConverter());
             return new PrivateTokenStorage(storage);
         } else {
             return (OAuthTokenContainer) create(pt);
@@ -91,13 +93,34 @@ public class StorageProvider {
     public ClientCredentialContainer createClientCredentialContainer() {
         String cc = configurationProvider.getProperty(MobileSsoConfig.PROP_CLIENT_CREDENTIAL_MANAGER);
         if (cc == null) {
-            DataSource storage = DataSourceFactory.getStorage(context, mStorageConfig.getStorageClass(), mStorageConfig.getStorageConfig(), new StringDataConverter());
+            DataSource storage = DataSourceFactory.getSharedInstance(context, mStorageConfig.getStorageClass(), mStorageConfig.getStorageConfig(), new StringDataConverter());
             return new ClientCredentialStorage(storage);
         } else {
             return (ClientCredentialContainer) create(cc);
         }
     }
 
+    /**
+     * Parse and validate the storage configuration of the provider, once per storage configuration.
+     *
+     * @throws DataSourceException if the storage configuration is invalid.
+     */
+    private static StorageConfig getStorageConfig(ConfigurationProvider configurationProvider) {
+        JSONObject storageJson = configurationProvider.getProperty(MobileSsoConfig.PROP_STORAGE);
+        synchronized (storageConfigs) {
+            StorageConfig config = storageJson == null ? defaultStorageConfig : storageConfigs.get(storageJson);
+            if (config == null) {
+                config = new StorageConfig(storageJson);
+                if (storageJson == null) {
+                    defaultStorageConfig = config;
+                } else {
+                    storageConfigs.put(storageJson, config);
+                }
+            }
+            return config;
+        }
+    }
+
     private Object create(String c) {
         try {
             Object o = Class.forName(c).newInstance();
@@ -113,7 +136,7 @@ public class StorageProvider {
      * @return True the storage is ready to use, False when the storage is not ready to use.
      */
     public boolean hasValidStore() {
-        DataSource temp = DataSourceFactory.getStorage(context, mStorageConfig.getStorageClass(), mStorageConfig.getStorageConfig(), new StringDataConverter());
+        DataSource temp = DataSourceFactory.getSharedInstance(context, mStorageConfig.getStorageClass(), mStorageConfig.getStorageConfig(), new StringDataConverter());
         if (temp != null && temp.isReady()) {
             return true;
         } else {
@@ -136,11 +159,13 @@ public class StorageProvider {
      * - Parses the storage configuration from the JSON configuration file
      * - Validates the storage
      * - Falls back to the default, if there is no valid Storage configuration.
+     * The configurations are immutable, they are parsed once and shared by the storage providers.
      */
     private static class StorageConfig {
 
         protected Class storageClass;
         protected JSONObject storageConfig = new JSONObject();
+        protected JSONObject sharedStorageConfig;
 
         /**
          * Common config properties expected for DataSource. Storage specif properties should be defined
@@ -149,9 +174,8 @@ public class StorageProvider {
         public static String PROP_STORAGE_CLASS = "class";
         public static final String PROP_SHARE_STATUS = "share";
 
-        public StorageConfig(ConfigurationProvider configurationProvider) {
+        public StorageConfig(JSONObject storageJson) {
 
-            JSONObject storageJson = configurationProvider.getProperty(MobileSsoConfig.PROP_STORAGE);
             if (storageJson == null) {
                 if (DEBUG) Log.d(TAG, "No storage configuration found in JSON config, falling back to DEFAULT ");
                 storageClass = KeystoreDataSource.class;
@@ -166,7 +190,15 @@ public class StorageProvider {
                     throw new DataSourceException("Invalid Storage Config" , e);
                 }
             }
+            DataSourceFactory.validate(storageClass);
 
+            sharedStorageConfig = new JSONObject();
+            try {
+                sharedStorageConfig = new JSONObject(storageConfig.toString());
+                sharedStorageConfig.put(PROP_SHARE_STATUS, Boolean.TRUE);
+            } catch (JSONException e) {
+                if (DEBUG) Log.w(TAG, "failed to set sharing property " + e);
+            }
         }
 
         public Class getStorageClass() {
@@ -177,6 +209,13 @@ public class StorageProvider {
         public JSONObject getStorageConfig() {
             return storageConfig;
         }
+
+        /**
+         * @return The storage configuration for the shared storage.
+         */
+        public JSONObject getSharedStorageConfig() {
+            return sharedStorageConfig;
+        }
     }
 
 
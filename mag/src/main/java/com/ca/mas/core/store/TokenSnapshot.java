@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.store;
+
+import com.ca.mas.core.oauth.ScopeSet;
+
+/**
+ * Immutable in-memory copy of the OAuth token set persisted by {@link PrivateTokenStorage}.
+ * A new snapshot replaces the current one whenever the token set is saved or cleared.
+ */
+class TokenSnapshot {
+
+    static final TokenSnapshot EMPTY = new TokenSnapshot(null, null, 0, null);
+
+    private final String accessToken;
+    private final String refreshToken;
+    private final long expiry;
+    private final String grantedScope;
+    private final ScopeSet grantedScopes;
+
+    TokenSnapshot(String accessToken, String refreshToken, long expiry, String grantedScope) {
+        this.accessToken = accessToken;
+        this.refreshToken = refreshToken;
+        this.expiry = expiry;
+        this.grantedScope = grantedScope;
+        this.grantedScopes = ScopeSet.parse(grantedScope);
+    }
+
+    String getAccessToken() {
+        return accessToken;
+    }
+
+    String getRefreshToken() {
+        return refreshToken;
+    }
+
+    long getExpiry() {
+        return expiry;
+    }
+
+    String getGrantedScope() {
+        return grantedScope;
+    }
+
+    ScopeSet getGrantedScopes() {
+        return grantedScopes;
+    }
+
+    TokenSnapshot withoutRefreshToken() {
+        return new TokenSnapshot(accessToken, null, expiry, grantedScope);
+    }
+}
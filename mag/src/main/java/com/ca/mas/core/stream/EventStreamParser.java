@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.stream;
+
+/**
+ * Line based parser for the <code>text/event-stream</code> format as defined by the W3C Server-Sent
+ * Events specification, and for newline delimited JSON, where every non empty line is an event.
+ */
+public class EventStreamParser {
+
+    private static final String EVENT = "event";
+    private static final String DATA = "data";
+    private static final String ID = "id";
+    private static final String RETRY = "retry";
+
+    private final MAGStreamListener listener;
+    private final boolean lineDelimited;
+
+    private final StringBuilder data = new StringBuilder();
+    private String type;
+    private String lastEventId;
+    private long retry = -1;
+
+    /**
+     * @param listener      The listener to dispatch the parsed events to.
+     * @param lastEventId   The last event id received from a previous connection, or null.
+     * @param lineDelimited True to dispatch every non empty line as an event (newline delimited JSON),
+     *                      false to parse the text/event-stream format.
+     */
+    public EventStreamParser(MAGStreamListener listener, String lastEventId, boolean lineDelimited) {
+        this.listener = listener;
+        this.lastEventId = lastEventId;
+        this.lineDelimited = lineDelimited;
+    }
+
+    /**
+     * Process a single line, without the line terminator.
+     *
+     * @param line The line received from the stream.
+     */
+    public void onLine(String line) {
+        if (lineDelimited) {
+            if (line.trim().length() > 0) {
+                listener.onEvent(new MAGStreamEvent(lastEventId, null, line));
+            }
+            return;
+        }
+
+        if (line.length() == 0) {
+            dispatch();
+            return;
+        }
+        if (line.charAt(0) == ':') {
+            //Comment, usually sent as keep alive
+            return;
+        }
+
+        String field;
+        String value;
+        int colon = line.indexOf(':');
+        if (colon < 0) {
+            field = line;
+            value = "";
+        } else {
+            field = line.substring(0, colon);
+            int start = colon + 1;
+            if (start < line.length() && line.charAt(start) == ' ') {
+                start++;
+            }
+            value = line.substring(start);
+        }
+
+        if (DATA.equals(field)) {
+            data.append(value).append('\n');
+        } else if (EVENT.equals(field)) {
+            type = value;
+        } else if (ID.equals(field)) {
+            if (value.indexOf('\u0000') < 0) {
+                lastEventId = value;
+            }
+        } else if (RETRY.equals(field)) {
+            try {
+                retry = Long.parseLong(value);
+            } catch (NumberFormatException ignore) {
+                //Ignore the field as per specification
+            }
+        }
+    }
+
+    private void dispatch() {
+        if (data.length() == 0) {
+            type = null;
+            return;
+        }
+        //Remove the last line feed
+        data.setLength(data.length() - 1);
+        MAGStreamEvent event = new MAGStreamEvent(lastEventId, type == null || type.length() == 0 ? null : type, data.toString());
+        data.setLength(0);
+        type = null;
+        listener.onEvent(event);
+    }
+
+    /**
+     * @return The last event id received, or null if none.
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * @return The reconnection time in milliseconds requested by the server, or -1 if not provided.
+     */
+    public long getRetry() {
+        return retry;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.stream;
+
+import com.ca.mas.core.http.MAGResponseBody;
+import com.ca.mas.core.io.Charsets;
+import com.ca.mas.core.io.IoUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+
+/**
+ * Response body which dispatches the events as soon as they are received instead of buffering the
+ * response. Responses which are not a successful stream are buffered as a regular response body.
+ */
+class EventStreamResponseBody extends MAGResponseBody<Void> {
+
+    static final String TEXT_EVENT_STREAM = "text/event-stream";
+    static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private final MAGEventStream stream;
+    private boolean streamed;
+
+    EventStreamResponseBody(MAGEventStream stream) {
+        this.stream = stream;
+    }
+
+    @Override
+    protected void read(HttpURLConnection httpURLConnection) throws IOException {
+        String type = httpURLConnection.getContentType();
+        boolean eventStream = type != null && type.contains(TEXT_EVENT_STREAM);
+        boolean lineDelimited = type != null && type.contains(APPLICATION_NDJSON);
+        if (httpURLConnection.getResponseCode() != HttpURLConnection.HTTP_OK || !(eventStream || lineDelimited)) {
+            super.read(httpURLConnection);
+            return;
+        }
+
+        this.httpURLConnection = httpURLConnection;
+        this.contentType = type;
+        this.contentLength = httpURLConnection.getContentLength();
+        this.streamed = true;
+
+        EventStreamParser parser = stream.onOpen(httpURLConnection, lineDelimited);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(httpURLConnection.getInputStream(), Charsets.UTF8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                parser.onLine(line);
+            }
+        } finally {
+            stream.onDisconnected(parser);
+            IoUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * @return True if the response has been consumed as a stream of events.
+     */
+    boolean isStreamed() {
+        return streamed;
+    }
+
+    @Override
+    public Void getContent() {
+        return null;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.stream;
+
+import android.util.Log;
+
+import com.ca.mas.core.context.MssoContext;
+import com.ca.mas.core.error.TargetApiException;
+import com.ca.mas.core.http.MAGRequest;
+import com.ca.mas.core.http.MAGResponse;
+import com.ca.mas.core.http.MAGResponseBody;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+
+import static com.ca.mas.core.MAG.DEBUG;
+import static com.ca.mas.core.MAG.TAG;
+
+/**
+ * <p>A long-lived streaming connection to the MAG server, delivering <code>text/event-stream</code>
+ * (Server-Sent Events) or newline delimited JSON (<code>application/x-ndjson</code>) events incrementally.</p>
+ * <p>The stream request goes through the same policies as any other API request, so the device
+ * registration and the access token are handled by the SDK. When the connection is dropped, the stream
+ * reconnects automatically with the <code>Last-Event-ID</code> header, and when the server rejects the access token
+ * with 401, the access token is renewed before reconnecting.</p>
+ * The stream runs on its own thread and never blocks the request queue.
+ */
+public class MAGEventStream implements Runnable {
+
+    public static final String LAST_EVENT_ID = "Last-Event-ID";
+    private static final String ACCEPT = "Accept";
+
+    /**
+     * Default reconnection time in milliseconds, the server may override it with the retry field.
+     */
+    private static final long DEFAULT_RETRY = 3000;
+
+    /**
+     * Maximum reconnection time in milliseconds when the server is not reachable.
+     */
+    private static final long MAX_RETRY = 60000;
+
+    private final MssoContext mssoContext;
+    private final MAGRequest request;
+    private final MAGStreamListener listener;
+
+    private volatile boolean closed;
+    private volatile HttpURLConnection connection;
+    private volatile String lastEventId;
+    private volatile long retry = DEFAULT_RETRY;
+    private Thread thread;
+
+    public MAGEventStream(MssoContext mssoContext, MAGRequest request, MAGStreamListener listener) {
+        if (request == null)
+            throw new NullPointerException("request");
+        if (listener == null)
+            throw new NullPointerException("listener");
+        this.mssoContext = mssoContext;
+        this.request = request;
+        this.listener = listener;
+        List<String> lastEventIds = request.getHeaders().get(LAST_EVENT_ID);
+        if (lastEventIds != null && !lastEventIds.isEmpty()) {
+            lastEventId = lastEventIds.get(0);
+        }
+    }
+
+    /**
+     * Open the stream on a new thread. This method returns immediately.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Stream already started");
+        }
+        thread = new Thread(this, "MAGEventStream");
+        thread.start();
+    }
+
+    /**
+     * Close the stream, no more event will be delivered after {@link MAGStreamListener#onClosed()}.
+     */
+    public synchronized void close() {
+        closed = true;
+        HttpURLConnection c = connection;
+        if (c != null) {
+            c.disconnect();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * @return True if the stream has been closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return The last event id received from the server, or null if none.
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    @Override
+    public void run() {
+        int failures = 0;
+        boolean tokenRenewed = false;
+        try {
+            while (!closed) {
+                EventStreamResponseBody body = new EventStreamResponseBody(this);
+                try {
+                    MAGResponse response = mssoContext.executeRequest(null, createRequest(body));
+                    int responseCode = response.getResponseCode();
+                    if (body.isStreamed()) {
+                        //The server ended the stream, reconnect after the retry delay
+                        failures = 0;
+                        tokenRenewed = false;
+                    } else if (responseCode == HttpURLConnection.HTTP_NO_CONTENT) {
+                        //The server asked to stop reconnecting
+                        break;
+                    } else if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED && !tokenRenewed) {
+                        if (DEBUG) Log.d(TAG, "Stream rejected with 401, renewing the access token");
+                        tokenRenewed = true;
+                        mssoContext.clearAccessToken();
+                        continue;
+                    } else if (responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                        failures++;
+                    } else {
+                        closed = true;
+                        listener.onError(new TargetApiException(response));
+                        return;
+                    }
+                } catch (IOException e) {
+                    if (closed) {
+                        break;
+                    }
+                    failures++;
+                    if (DEBUG) Log.d(TAG, "Stream disconnected: " + e.getMessage());
+                }
+                if (!closed) {
+                    Thread.sleep(getReconnectDelay(failures));
+                }
+            }
+        } catch (InterruptedException e) {
+            //Stream closed
+        } catch (Exception e) {
+            if (!closed) {
+                if (DEBUG) Log.e(TAG, "Stream failed: " + e.getMessage(), e);
+                closed = true;
+                listener.onError(e);
+                return;
+            }
+        }
+        closed = true;
+        listener.onClosed();
+    }
+
+    private long getReconnectDelay(int failures) {
+        if (failures <= 1) {
+            return retry;
+        }
+        return Math.min(MAX_RETRY, Math.max(retry, DEFAULT_RETRY) << Math.min(failures - 1, 16));
+    }
+
+    private MAGRequest createRequest(MAGResponseBody body) {
+        MAGRequest.MAGRequestBuilder builder = new MAGRequest.MAGRequestBuilder(request)
+                .responseBody(body);
+        if (!request.getHeaders().containsKey(ACCEPT)) {
+            builder.header(ACCEPT, EventStreamResponseBody.TEXT_EVENT_STREAM + ", " + EventStreamResponseBody.APPLICATION_NDJSON);
+        }
+        if (lastEventId != null) {
+            builder.removeHeader(LAST_EVENT_ID).header(LAST_EVENT_ID, lastEventId);
+        }
+        return builder.build();
+    }
+
+    EventStreamParser onOpen(HttpURLConnection connection, boolean lineDelimited) throws IOException {
+        this.connection = connection;
+        if (closed) {
+            connection.disconnect();
+            throw new IOException("Stream closed");
+        }
+
+        final Map<String, List<String>> headers = connection.getHeaderFields();
+        final int responseCode = connection.getResponseCode();
+        final String responseMessage = connection.getResponseMessage();
+        listener.onOpen(new MAGResponse() {
+            @Override
+            public Map<String, List<String>> getHeaders() {
+                return headers;
+            }
+
+            @Override
+            public int getResponseCode() {
+                return responseCode;
+            }
+
+            @Override
+            public String getResponseMessage() {
+                return responseMessage;
+            }
+
+            @Override
+            public MAGResponseBody getBody() {
+                return null;
+            }
+        });
+        return new EventStreamParser(listener, lastEventId, lineDelimited);
+    }
+
+    void onDisconnected(EventStreamParser parser) {
+        connection = null;
+        lastEventId = parser.getLastEventId();
+        if (parser.getRetry() >= 0) {
+            retry = parser.getRetry();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.stream;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * An event received from a streaming response. For <code>text/event-stream</code> responses, an event
+ * is dispatched for every blank line terminated block, for <code>application/x-ndjson</code> responses,
+ * an event is dispatched for every line. Instances of this class are immutable.
+ */
+public class MAGStreamEvent {
+
+    /**
+     * The default event type when the event does not define one.
+     */
+    public static final String DEFAULT_TYPE = "message";
+
+    private final String id;
+    private final String type;
+    private final String data;
+
+    public MAGStreamEvent(String id, String type, String data) {
+        this.id = id;
+        this.type = type == null ? DEFAULT_TYPE : type;
+        this.data = data;
+    }
+
+    /**
+     * @return The last event id received from the stream, or null if the server did not send any.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The event type, {@link #DEFAULT_TYPE} if the event does not define one.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return The event data, multiple data lines are joined with a line feed.
+     */
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * @return The event data parsed as {@link JSONObject}.
+     * @throws JSONException if the data is not a JSON object.
+     */
+    public JSONObject getJsonData() throws JSONException {
+        return new JSONObject(data);
+    }
+
+    @Override
+    public String toString() {
+        return "MAGStreamEvent{" +
+                "id='" + id + '\'' +
+                ", type='" + type + '\'' +
+                ", data='" + data + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.core.stream;
+
+import com.ca.mas.core.http.MAGResponse;
+
+/**
+ * Listener to receive the events of a {@link MAGEventStream}. All methods are invoked on the stream thread.
+ */
+public interface MAGStreamListener {
+
+    /**
+     * Invoked when the connection is established and the server started to stream the response,
+     * also invoked after every reconnect.
+     *
+     * @param response The response status and headers, the body is not available.
+     */
+    void onOpen(MAGResponse response);
+
+    /**
+     * Invoked for every event received from the server.
+     *
+     * @param event The received event.
+     */
+    void onEvent(MAGStreamEvent event);
+
+    /**
+     * Invoked when the stream cannot be recovered, no further event is delivered.
+     *
+     * @param e The reason of the failure, a {@link com.ca.mas.core.error.TargetApiException} if the server
+     *          rejected the stream request.
+     */
+    void onError(Throwable e);
+
+    /**
+     * Invoked when the stream is closed with {@link MAGEventStream#close()} or when the server
+     * asked the client to stop reconnecting with a 204 No Content response.
+     */
+    void onClosed();
+}
@@ -10,21 +10,49 @@ package com.ca.mas.core.util;
 
 import org.spongycastle.jce.provider.BouncyCastleProvider;
 
+import java.security.InvalidAlgorithmParameterException;
+import java.security.Key;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
 
 /**
  * Utility methods for working with keys and key pairs.
  */
 public class KeyUtils {
 
+    public static final String RSA = "RSA";
+    public static final String EC = "EC";
+
+    /**
+     * The named curve of the generated EC keys, NIST P-256.
+     */
+    public static final String EC_CURVE = "secp256r1";
+
+    /**
+     * Generate a new key pair of the specified algorithm.
+     *
+     * @param algorithm the key algorithm, {@link #RSA} or {@link #EC}.  Null for RSA.
+     * @param keysize   the RSA key size in bits, ignored for EC keys.
+     * @return a new key pair.  Never null.
+     * @throws IllegalArgumentException if the algorithm is not supported
+     */
+    public static KeyPair generateKeyPair(String algorithm, int keysize) {
+        if (algorithm == null || RSA.equalsIgnoreCase(algorithm))
+            return generateRsaKeyPair(keysize);
+        if (EC.equalsIgnoreCase(algorithm))
+            return generateEcKeyPair();
+        throw new IllegalArgumentException("Unsupported key algorithm: " + algorithm);
+    }
+
     /**
      * Generate a new RSA keypair with the specified number of key bits.
      *
@@ -42,6 +70,109 @@ public class KeyUtils {
         }
     }
 
+    /**
+     * Generate a new EC key pair on the {@link #EC_CURVE} curve, with the default provider of the platform.
+     *
+     * @return a new EC keypair.  Never null.
+     * @throws RuntimeException if an EC key pair cannot be generated
+     */
+    public static KeyPair generateEcKeyPair() {
+        try {
+            KeyPairGenerator kpg = KeyPairGenerator.getInstance(EC);
+            kpg.initialize(new ECGenParameterSpec(EC_CURVE));
+            return kpg.generateKeyPair();
+        } catch (NoSuchAlgorithmException | InvalidAlgorithmParameterException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Convert the specified RSA or EC private key into encoded key bytes in PKCS#8 format.
+     *
+     * @param privateKey the private key to encode.  Required.
+     * @return the encoded form of this key.  Never null.
+     * @throws IllegalArgumentException if the key is not RSA or EC, or cannot be encoded
+     */
+    public static byte[] encodePrivateKey(PrivateKey privateKey) {
+        if (isEc(privateKey))
+            return encode(privateKey, "PKCS#8");
+        return encodeRsaPrivateKey(privateKey);
+    }
+
+    /**
+     * Convert the specified RSA or EC public key into an X.509 SubjectPublicKeyInfo structure.
+     *
+     * @param publicKey the public key to encode.  Required.
+     * @return the X.509 encoded bytes of the public key.  Never null.
+     * @throws IllegalArgumentException if the key is not RSA or EC, or cannot be encoded
+     */
+    public static byte[] encodePublicKey(PublicKey publicKey) {
+        if (isEc(publicKey))
+            return encode(publicKey, "X.509", "X509");
+        return encodeRsaPublicKey(publicKey);
+    }
+
+    /**
+     * Decode the specified PKCS#8 encoded RSA or EC private key bytes.
+     *
+     * @param pkcs8EncodedKeyBytes the PKCS#8 encoded private key bytes.  Required.
+     * @return the decoded PrivateKey instance.  Never null.
+     * @throws IllegalArgumentException if the key cannot be decoded
+     */
+    public static PrivateKey decodePrivateKey(byte[] pkcs8EncodedKeyBytes) {
+        try {
+            return decodeRsaPrivateKey(pkcs8EncodedKeyBytes);
+        } catch (IllegalArgumentException e) {
+            try {
+                return KeyFactory.getInstance(EC).generatePrivate(new PKCS8EncodedKeySpec(pkcs8EncodedKeyBytes));
+            } catch (InvalidKeySpecException e1) {
+                throw new IllegalArgumentException(e1);
+            } catch (NoSuchAlgorithmException e1) {
+                throw new RuntimeException(e1);
+            }
+        }
+    }
+
+    /**
+     * Decode the specified X.509 encoded SubjectPublicKeyInfo bytes of an RSA or EC public key.
+     *
+     * @param x509EncodedKeyBytes the X.509 encoded bytes of the public key.  Required.
+     * @return the decoded PublicKey instance.  Never null.
+     * @throws IllegalArgumentException if the key cannot be decoded
+     */
+    public static PublicKey decodePublicKey(byte[] x509EncodedKeyBytes) {
+        try {
+            return decodeRsaPublicKey(x509EncodedKeyBytes);
+        } catch (IllegalArgumentException e) {
+            try {
+                return KeyFactory.getInstance(EC).generatePublic(new X509EncodedKeySpec(x509EncodedKeyBytes));
+            } catch (InvalidKeySpecException e1) {
+                throw new IllegalArgumentException(e1);
+            } catch (NoSuchAlgorithmException e1) {
+                throw new RuntimeException(e1);
+            }
+        }
+    }
+
+    /**
+     * @param key the key.  Required.
+     * @return true if the key is an EC key, as named by the platform ("EC") or by Bouncy Castle ("ECDSA").
+     */
+    public static boolean isEc(Key key) {
+        return EC.equals(key.getAlgorithm()) || "ECDSA".equals(key.getAlgorithm());
+    }
+
+    private static byte[] encode(Key key, String... formats) {
+        if (!Arrays.asList(formats).contains(key.getFormat()))
+            throw new IllegalArgumentException("Key encoding format is not " + formats[0] + ": " + key.getFormat());
+
+        byte[] bytes = key.getEncoded();
+        if (bytes == null || bytes.length < 1)
+            throw new IllegalArgumentException("Key encoded form is null or empty");
+
+        return bytes;
+    }
+
     /**
      * Convert the specified private key into encoded key bytes in PKCS#8 format.
      *
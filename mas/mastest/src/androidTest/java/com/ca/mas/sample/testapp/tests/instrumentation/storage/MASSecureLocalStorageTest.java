@@ -29,8 +29,15 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 
@@ -488,6 +495,174 @@ public class MASSecureLocalStorageTest extends MASIntegrationBaseTest {
         assertTrue(assertResult[0]);
     }
 
+    //Large value operations.
+
+    @Test
+    public void testSaveLargeByteArray() throws InterruptedException {
+        final String key = "key1";
+        final byte[] value = new byte[MASSecureLocalStorage.LARGE_VALUE_THRESHOLD * 2 + 1];
+        new Random().nextBytes(value);
+        final boolean[] assertResult = {false, false};
+        final CountDownLatch latch = new CountDownLatch(2);
+        localStorage.save(key, value, getMode(), new MASCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                localStorage.findByKey(key, getMode(), new MASCallback() {
+                    @Override
+                    public void onSuccess(Object result) {
+                        assertResult[0] = result instanceof byte[] && Arrays.equals(value, (byte[]) result);
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        latch.countDown();
+                    }
+                });
+                localStorage.findStreamByKey(key, getMode(), new MASCallback<InputStream>() {
+                    @Override
+                    public void onSuccess(InputStream result) {
+                        try {
+                            ByteArrayOutputStream out = new ByteArrayOutputStream();
+                            byte[] buffer = new byte[8192];
+                            int n;
+                            while ((n = result.read(buffer)) != -1) {
+                                out.write(buffer, 0, n);
+                            }
+                            result.close();
+                            assertResult[1] = Arrays.equals(value, out.toByteArray());
+                        } catch (IOException e) {
+                            //assertResult stays false
+                        }
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        latch.countDown();
+                    }
+                });
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                latch.countDown();
+                latch.countDown();
+            }
+        });
+        await(latch);
+        assertTrue(assertResult[0]);
+        assertTrue(assertResult[1]);
+    }
+
+    @Test
+    public void testReplaceLargeByteArray() throws InterruptedException {
+        final String key = "key1";
+        byte[] value = new byte[MASSecureLocalStorage.LARGE_VALUE_THRESHOLD + 1];
+        final boolean[] assertResult = {false};
+        final CountDownLatch latch = new CountDownLatch(1);
+        localStorage.save(key, value, getMode(), new MASCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                localStorage.save(key, "value1", getMode(), new MASCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void result) {
+                        localStorage.findByKey(key, getMode(), new MASCallback() {
+                            @Override
+                            public void onSuccess(Object result) {
+                                assertResult[0] = "value1".equals(result);
+                                latch.countDown();
+                            }
+
+                            @Override
+                            public void onError(Throwable e) {
+                                latch.countDown();
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        latch.countDown();
+                    }
+                });
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                latch.countDown();
+            }
+        });
+        await(latch);
+        assertTrue(assertResult[0]);
+    }
+
+    //Bulk operations.
+
+    @Test
+    public void testSaveAllFindAllDeleteAll() throws InterruptedException {
+        final Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            values.put("key" + i, "value" + i);
+        }
+        values.put("large", new byte[MASSecureLocalStorage.LARGE_VALUE_THRESHOLD + 1]);
+        final List<String> keys = new ArrayList<>(values.keySet());
+        keys.add("missing");
+
+        final Map<String, Object> found = new HashMap<>();
+        final Map<String, Object> remaining = new HashMap<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        localStorage.saveAll(values, getMode(), new MASCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                localStorage.findAll(keys, getMode(), new MASCallback<Map<String, Object>>() {
+                    @Override
+                    public void onSuccess(Map<String, Object> result) {
+                        found.putAll(result);
+                        localStorage.deleteAll(keys, getMode(), new MASCallback<Void>() {
+                            @Override
+                            public void onSuccess(Void result) {
+                                localStorage.findAll(keys, getMode(), new MASCallback<Map<String, Object>>() {
+                                    @Override
+                                    public void onSuccess(Map<String, Object> result) {
+                                        remaining.putAll(result);
+                                        remaining.put("done", true);
+                                        latch.countDown();
+                                    }
+
+                                    @Override
+                                    public void onError(Throwable e) {
+                                        latch.countDown();
+                                    }
+                                });
+                            }
+
+                            @Override
+                            public void onError(Throwable e) {
+                                latch.countDown();
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        latch.countDown();
+                    }
+                });
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                latch.countDown();
+            }
+        });
+        await(latch);
+        assertEquals(values.size(), found.size());
+        assertEquals("value42", found.get("key42"));
+        assertTrue(Arrays.equals((byte[]) values.get("large"), (byte[]) found.get("large")));
+        assertEquals(1, remaining.size());
+    }
+
     // Utility methods.
     private static Bitmap getBitmapFromAsset(Context context, String filePath) {
         AssetManager assetManager = context.getAssets();
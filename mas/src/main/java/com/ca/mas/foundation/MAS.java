@@ -14,6 +14,7 @@ import android.app.DialogFragment;
 import android.content.AsyncTaskLoader;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
@@ -26,10 +27,15 @@ import com.ca.mas.core.auth.otp.OtpAuthenticationHandler;
 import com.ca.mas.core.conf.ConfigurationManager;
 import com.ca.mas.core.error.MAGError;
 import com.ca.mas.core.error.MAGErrorCode;
+import com.ca.mas.core.http.MAGInterceptor;
 import com.ca.mas.core.http.MAGResponse;
 import com.ca.mas.core.http.MAGResponseBody;
 import com.ca.mas.core.oauth.GrantProvider;
 import com.ca.mas.core.service.AuthenticationProvider;
+import com.ca.mas.core.store.LoginState;
+import com.ca.mas.core.stream.MAGEventStream;
+import com.ca.mas.core.stream.MAGStreamEvent;
+import com.ca.mas.core.stream.MAGStreamListener;
 import com.ca.mas.foundation.auth.MASAuthenticationProviders;
 import com.ca.mas.foundation.notify.Callback;
 
@@ -55,6 +61,7 @@ public class MAS {
     public static Context ctx;
     private static Activity currentActivity;
     private static boolean hasRegisteredActivityCallback;
+    private static int startedActivities;
     private static MASAuthenticationListener masAuthenticationListener;
 
     private static synchronized void init(@NonNull Context context) {
@@ -107,6 +114,10 @@ public class MAS {
 
             @Override
             public void onActivityStarted(Activity activity) {
+                if (startedActivities++ == 0) {
+                    //Back to foreground, another App sharing the storage may have logged in or out
+                    LoginState.reload();
+                }
             }
 
             @Override
@@ -120,7 +131,9 @@ public class MAS {
 
             @Override
             public void onActivityStopped(Activity activity) {
-
+                if (startedActivities > 0) {
+                    startedActivities--;
+                }
             }
 
             @Override
@@ -271,6 +284,87 @@ public class MAS {
         });
     }
 
+    /**
+     * Opens a long-lived streaming connection to the Gateway. The Gateway responds with
+     * <code>text/event-stream</code> (Server-Sent Events) or newline delimited JSON (<code>application/x-ndjson</code>),
+     * and the events are delivered to the listener as soon as they are received.
+     * The stream reconnects automatically with the last received event id, and renews the access token
+     * when it is rejected by the Gateway, until {@link MASStream#close()} is called.
+     *
+     * @param request  The stream request to send.
+     * @param listener The listener to notify when an event is received, or if there is an error.
+     * @return The opened stream.
+     */
+    public static MASStream stream(final MASRequest request, final MASStreamListener listener) {
+
+        final MAGEventStream stream = MobileSsoFactory.getInstance().stream(request, new MAGStreamListener() {
+            @Override
+            public void onOpen(final MAGResponse response) {
+                post(listener.getHandler(), new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onOpen(response);
+                    }
+                });
+            }
+
+            @Override
+            public void onEvent(final MAGStreamEvent event) {
+                post(listener.getHandler(), new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onEvent(event);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(final Throwable e) {
+                post(listener.getHandler(), new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onError(e);
+                    }
+                });
+            }
+
+            @Override
+            public void onClosed() {
+                post(listener.getHandler(), new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onClosed();
+                    }
+                });
+            }
+        });
+
+        return new MASStream() {
+            @Override
+            public void close() {
+                stream.close();
+            }
+
+            @Override
+            public boolean isClosed() {
+                return stream.isClosed();
+            }
+
+            @Override
+            public String getLastEventId() {
+                return stream.getLastEventId();
+            }
+        };
+    }
+
+    private static void post(Handler handler, Runnable runnable) {
+        if (handler == null) {
+            runnable.run();
+        } else {
+            handler.post(runnable);
+        }
+    }
+
     public static class RequestCancelledException extends Exception {
 
     }
@@ -317,6 +411,66 @@ public class MAS {
         ConfigurationManager.getInstance().setConnectionListener(listener);
     }
 
+    /**
+     * Adds an application interceptor. Application interceptors are invoked once for each
+     * {@link MAS#invoke(MASRequest, MASCallback)} in the order they were added, before the SDK
+     * applies the security policies to the request.
+     *
+     * @param interceptor The interceptor to add.
+     */
+    public static void addInterceptor(MAGInterceptor interceptor) {
+        ConfigurationManager.getInstance().addInterceptor(interceptor);
+    }
+
+    /**
+     * Removes a previously added application interceptor.
+     *
+     * @param interceptor The interceptor to remove.
+     */
+    public static void removeInterceptor(MAGInterceptor interceptor) {
+        ConfigurationManager.getInstance().removeInterceptor(interceptor);
+    }
+
+    /**
+     * Adds a network interceptor. Network interceptors are invoked for every HTTP exchange with the Gateway
+     * in the order they were added, including the retries and the requests issued by the SDK.
+     *
+     * @param interceptor The interceptor to add.
+     */
+    public static void addNetworkInterceptor(MAGInterceptor interceptor) {
+        ConfigurationManager.getInstance().addNetworkInterceptor(interceptor);
+    }
+
+    /**
+     * Removes a previously added network interceptor.
+     *
+     * @param interceptor The interceptor to remove.
+     */
+    public static void removeNetworkInterceptor(MAGInterceptor interceptor) {
+        ConfigurationManager.getInstance().removeNetworkInterceptor(interceptor);
+    }
+
+    /**
+     * Enables the resolution of the Gateway host name in the background when the SDK is started, so the first
+     * request does not wait for the DNS resolver. Call this method before {@link #start(Context)}.
+     *
+     * @param enabled True to resolve the Gateway host name at startup.
+     */
+    public static void enableDnsPrefetch(boolean enabled) {
+        ConfigurationManager.getInstance().setDnsPrefetchEnabled(enabled);
+    }
+
+    /**
+     * Enables the generation of the device registration key pair in the background when the SDK is started,
+     * and after the device registration is removed, so the registration does not wait for the key generation.
+     * Call this method before {@link #start(Context)}.
+     *
+     * @param enabled True to generate the key pair ahead of the device registration.
+     */
+    public static void enableKeyPairPregeneration(boolean enabled) {
+        ConfigurationManager.getInstance().setKeyPairPregenerationEnabled(enabled);
+    }
+
     /**
      * Set a user login listener to handle user authentication.
      *
@@ -20,6 +20,7 @@ import java.net.URI;
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An Http Api Request. Instances of this class are immutable.
@@ -101,6 +102,11 @@ public interface MASRequest extends MAGRequest {
             return (MASRequestBuilder) super.connectionListener(listener);
         }
 
+        @Override
+        public MASRequestBuilder timeout(long timeout, TimeUnit unit) {
+            return (MASRequestBuilder) super.timeout(timeout, unit);
+        }
+
         public MASRequestBuilder notifyOnCancel() {
             this.notifyOnCancel = true;
             return this;
@@ -109,7 +115,7 @@ public interface MASRequest extends MAGRequest {
 
         public MASRequest build() {
             final MAGRequest request = super.build();
-            return new MASRequest() {
+            return new TimedMASRequest() {
 
                 @Override
                 public boolean notifyOnCancel() {
@@ -155,8 +161,16 @@ public interface MASRequest extends MAGRequest {
                 public String getScope() {
                     return request.getScope();
                 }
+
+                @Override
+                public long getTimeout() {
+                    return ((MAGTimedRequest) request).getTimeout();
+                }
             };
         }
+
+        private interface TimedMASRequest extends MASRequest, MAGTimedRequest {
+        }
     }
 
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.foundation;
+
+/**
+ * A long-lived streaming connection opened with {@link MAS#stream(MASRequest, MASStreamListener)}.
+ */
+public interface MASStream {
+
+    /**
+     * Closes the stream, {@link MASStreamListener#onClosed()} is invoked once the connection is released.
+     */
+    void close();
+
+    /**
+     * @return True if the stream has been closed.
+     */
+    boolean isClosed();
+
+    /**
+     * @return The last event id received from the Gateway, or null if none.
+     */
+    String getLastEventId();
+}
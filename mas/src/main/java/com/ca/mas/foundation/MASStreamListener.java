@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.foundation;
+
+import android.os.Handler;
+
+import com.ca.mas.core.http.MAGResponse;
+import com.ca.mas.core.stream.MAGStreamEvent;
+
+/**
+ * Listener to receive the events of a stream opened with {@link MAS#stream(MASRequest, MASStreamListener)}.
+ */
+public abstract class MASStreamListener {
+
+    /**
+     * The Handler to handle the callback, refer to {@link Handler} for details. When null, the callback
+     * is invoked on the stream thread.
+     */
+    public Handler getHandler() {
+        return null;
+    }
+
+    /**
+     * Called when the stream is connected, and again after every reconnect.
+     *
+     * @param response The response status and headers.
+     */
+    public void onOpen(MAGResponse response) {
+    }
+
+    /**
+     * Called when an event is received.
+     *
+     * @param event The received event.
+     */
+    public abstract void onEvent(MAGStreamEvent event);
+
+    /**
+     * Called when the stream fails and cannot be recovered.
+     *
+     * @param e the reason for failure
+     */
+    public abstract void onError(Throwable e);
+
+    /**
+     * Called when the stream is closed by {@link MASStream#close()} or by the server.
+     */
+    public void onClosed() {
+    }
+}
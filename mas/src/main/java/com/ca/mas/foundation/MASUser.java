@@ -89,7 +89,7 @@ public abstract class MASUser implements MASTransformable, MASMessenger, MASUser
     }
 
     protected static final String TAG = MASUser.class.getSimpleName();
-    private static MASUser current;
+    private static volatile MASUser current;
 
     /**
      * Authenticate a user with username and password.
@@ -133,24 +133,28 @@ public abstract class MASUser implements MASTransformable, MASMessenger, MASUser
     }
 
     /**
-     * Retrieves the currently authenticated user.
+     * Retrieves the currently authenticated user. The authentication state is cached in memory until
+     * the user logs in or out, or the tokens are saved or removed, so this method can be called frequently.
      *
      * @return The currently authenticated user.
      */
     public static MASUser getCurrentUser() {
-        if (current == null) {
+        MASUser user = current;
+        if (user == null) {
             if (MobileSsoFactory.getInstance().isLogin()) {
-                current = createMASUser();
+                user = createMASUser();
+                current = user;
             }
         } else {
-            if (!current.isAuthenticated()) {
+            if (!user.isAuthenticated()) {
                 //The user's session has been removed,
                 //The Grant flow has been switch from user to client credential
                 //Device has been de-registered or resetLocally
                 current = null;
+                user = null;
             }
         }
-        return current;
+        return user;
     }
 
     private static MASUser createMASUser() {
@@ -35,7 +35,7 @@ import java.util.List;
  * {@link com.ca.mas.storage.MASStorage} implementation(s).
  *
  */
-abstract class AbstractMASStorage implements MASStorage {
+abstract class AbstractMASStorage implements MASBulkStorage {
 
     private List<DataMarshaller> marshallers = new ArrayList<>();
 
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.storage;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.ca.mas.core.security.EncryptionProvider;
+import com.ca.mas.core.security.SeekableDecryptor;
+import com.ca.mas.core.security.SegmentedEncryption;
+import com.ca.mas.core.security.StreamEncryptionProvider;
+import com.ca.mas.core.util.Functions;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.ca.mas.core.MAG.DEBUG;
+import static com.ca.mas.core.MAG.TAG;
+
+/**
+ * Files of the values too large for a database row, the files are encrypted with
+ * a {@link StreamEncryptionProvider} and referenced by name from the rows.
+ * <p/>
+ * A file is written to a temporary file and renamed once complete, it stays pending until its row is
+ * committed, see {@link #release(String)}. {@link #collect(Functions.Nullary)} deletes the files that are neither
+ * pending nor referenced, left by an interrupted save or a concurrent replace.
+ */
+class LargeValueStore {
+
+    private static final String DIRECTORY = "mas_storage_files";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    //Names of the files written but not yet referenced by a committed row
+    private static final Set<String> pending = new HashSet<>();
+
+    private final File directory;
+    private final StreamEncryptionProvider streams;
+
+    LargeValueStore(Context context, EncryptionProvider encryptionProvider) {
+        directory = new File(context.getFilesDir(), DIRECTORY);
+        if (encryptionProvider instanceof StreamEncryptionProvider) {
+            streams = (StreamEncryptionProvider) encryptionProvider;
+        } else if (encryptionProvider != null) {
+            streams = new SegmentedEncryption(encryptionProvider);
+        } else {
+            streams = null;
+        }
+    }
+
+    /**
+     * Write the value to a new file, the file is pending until released.
+     *
+     * @return The name of the file.
+     */
+    String write(byte[] data) throws IOException {
+        String name = UUID.randomUUID().toString();
+        synchronized (pending) {
+            pending.add(name);
+        }
+        boolean written = false;
+        File temp = new File(directory, name + TEMP_EXTENSION);
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Failed to create " + directory);
+            }
+            OutputStream out = new FileOutputStream(temp) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        getFD().sync();
+                    } finally {
+                        super.close();
+                    }
+                }
+            };
+            if (streams != null) {
+                out = streams.getEncryptingStream(out);
+            }
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(new File(directory, name))) {
+                throw new IOException("Failed to rename " + temp);
+            }
+            written = true;
+            return name;
+        } finally {
+            if (!written) {
+                temp.delete();
+                release(name);
+            }
+        }
+    }
+
+    /**
+     * The file is referenced by a committed row, or its row was not written.
+     */
+    void release(String name) {
+        synchronized (pending) {
+            pending.remove(name);
+        }
+    }
+
+    /**
+     * Read the whole value, the size of the value is known upfront so it is read into a single array.
+     */
+    byte[] read(String name) throws IOException {
+        File file = new File(directory, name);
+        if (streams == null) {
+            byte[] data = new byte[(int) file.length()];
+            InputStream in = new FileInputStream(file);
+            try {
+                readFully(in, data);
+            } finally {
+                in.close();
+            }
+            return data;
+        }
+        SeekableDecryptor decryptor = streams.getSeekableDecryptor(new RandomAccessFile(file, "r"));
+        try {
+            byte[] data = new byte[(int) decryptor.size()];
+            readFully(decryptor.getInputStream(0), data);
+            return data;
+        } finally {
+            decryptor.close();
+        }
+    }
+
+    /**
+     * @return A stream of the value, to be closed by the caller.
+     */
+    InputStream openStream(String name) throws IOException {
+        InputStream in = new FileInputStream(new File(directory, name));
+        if (streams == null) {
+            return in;
+        }
+        try {
+            return streams.getDecryptingStream(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    void delete(String name) {
+        File file = new File(directory, name);
+        if (file.exists() && !file.delete()) {
+            if (DEBUG) Log.w(TAG, "Failed to delete " + file);
+        }
+    }
+
+    /**
+     * Delete the files that are neither pending nor in the referenced names. The files are listed
+     * before the references are read, so a file released after the listing is always referenced.
+     *
+     * @param referenced Returns the names of the files referenced by the committed rows.
+     */
+    void collect(Functions.Nullary<Collection<String>> referenced) {
+        String[] files;
+        Set<String> inUse;
+        synchronized (pending) {
+            files = directory.list();
+            inUse = new HashSet<>(pending);
+        }
+        if (files == null) {
+            return;
+        }
+        inUse.addAll(referenced.call());
+        for (String file : files) {
+            String name = file.endsWith(TEMP_EXTENSION) ? file.substring(0, file.length() - TEMP_EXTENSION.length()) : file;
+            if (!inUse.contains(name)) {
+                if (DEBUG) Log.d(TAG, "Delete unreferenced storage file " + file);
+                delete(file);
+            }
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] data) throws IOException {
+        int offset = 0;
+        while (offset < data.length) {
+            int n = in.read(data, offset, data.length - offset);
+            if (n < 0) {
+                throw new EOFException("Storage file is truncated");
+            }
+            offset += n;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016 CA. All rights reserved.
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license.  See the LICENSE file for details.
+ *
+ */
+
+package com.ca.mas.storage;
+
+import com.ca.mas.foundation.MASCallback;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A {@link MASStorage} that saves, finds and deletes several objects at once, with fewer round trips
+ * than one operation per object. The storage implementations of the SDK implement this interface.
+ */
+public interface MASBulkStorage extends MASStorage {
+
+    /**
+     * Save several objects into Storage, with fewer round trips than saving them one by one.
+     *
+     * @param objects  The objects to be saved by key, of the types supported by {@link #save(String, Object, int, MASCallback)}.
+     * @param segment  The Storage segment {@link MASStorageSegment} to be used
+     * @param callback Notifies the caller with the result of the operation.
+     *                 {@link MASCallback#onError(Throwable)} will be called if any of the objects is not saved
+     */
+    void saveAll(Map<String, Object> objects,
+                 @MASStorageSegment int segment,
+                 MASCallback<Void> callback);
+
+    /**
+     * Find several objects from Storage based on their keys.
+     *
+     * @param keys     The keys used to get the objects from storage
+     * @param segment  The Storage segment {@link MASStorageSegment} to be used in the search
+     * @param callback Notifies the caller with the objects by key, the keys not found are not in the map.
+     *                 {@link MASCallback#onError(Throwable)} will be called in case of failure
+     */
+    void findAll(Collection<String> keys,
+                 @MASStorageSegment int segment,
+                 MASCallback<Map<String, Object>> callback);
+
+    /**
+     * Delete several objects from Storage based on their keys.
+     *
+     * @param keys     The keys used to delete the objects from storage
+     * @param segment  The Storage segment {@link MASStorageSegment} to be used
+     * @param callback Notifies the caller with the result of the operation.
+     *                 {@link MASCallback#onError(Throwable)} will be called if any of the objects is not deleted
+     */
+    void deleteAll(Collection<String> keys,
+                   @MASStorageSegment int segment,
+                   MASCallback<Void> callback);
+}
@@ -10,6 +10,11 @@ package com.ca.mas.storage;
 
 import com.ca.mas.core.security.EncryptionProvider;
 
+/**
+ * Encrypts the values of {@link MASSecureLocalStorage}. A provider that also implements
+ * {@link com.ca.mas.core.security.StreamEncryptionProvider} encrypts the large values as streams,
+ * otherwise they are encrypted by {@link com.ca.mas.core.security.SegmentedEncryption} on top of this provider.
+ */
 public interface MASEncryptionProvider extends EncryptionProvider{
 
 
@@ -11,8 +11,8 @@ package com.ca.mas.storage;
 import android.content.AsyncTaskLoader;
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.util.Log;
 
-import com.ca.mas.core.datasource.DataSource;
 import com.ca.mas.core.datasource.DataSourceFactory;
 import com.ca.mas.core.datasource.LocalStoreDataSource;
 import com.ca.mas.core.datasource.LocalStoreEntity;
@@ -28,14 +28,68 @@ import com.ca.mas.foundation.MASFoundationStrings;
 import com.ca.mas.foundation.MASUser;
 import com.ca.mas.foundation.notify.Callback;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ca.mas.core.MAG.DEBUG;
+import static com.ca.mas.core.MAG.TAG;
 
 public class MASSecureLocalStorage extends AbstractMASStorage {
 
-    private DataSource<LocalStoreKey, LocalStoreEntity> dataSource;
+    /**
+     * Values larger than the threshold, once marshalled, are stored in encrypted files referenced from
+     * the database instead of in the database rows.
+     */
+    public static final int LARGE_VALUE_THRESHOLD = 256 * 1024;
+
+    //Type prefix of the rows referencing a file, the value of the row is the file name
+    private static final String FILE_TYPE = "file:";
+
+    private static volatile boolean filesCollected;
+
+    //Marshalling and encryption of the bulk operations
+    private static final int THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final ThreadPoolExecutor executor;
+
+    static {
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MASStorage-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private LocalStoreDataSource dataSource;
     private Context context;
     private EncryptionProvider encProvider;
+    private LargeValueStore files;
 
     public MASSecureLocalStorage() {
         this(new DefaultEncryptionProvider(MAS.getContext()));
@@ -52,7 +106,9 @@ public class MASSecureLocalStorage extends AbstractMASStorage {
         setDefaultDataMarshallers();
 
         //Create/get the LocalStoreDataSource
-        dataSource = DataSourceFactory.getStorage(this.context, LocalStoreDataSource.class, null, null);
+        dataSource = (LocalStoreDataSource) DataSourceFactory.<LocalStoreKey, LocalStoreEntity>getSharedInstance(this.context, LocalStoreDataSource.class, null, null);
+
+        files = new LargeValueStore(this.context, encProvider);
 
     }
 
@@ -63,17 +119,10 @@ public class MASSecureLocalStorage extends AbstractMASStorage {
             @Override
             public void call(String s) {
                 try {
-                    DataMarshaller relevantM = findMarshaller(value);
-                    byte[] data;
-                    data = relevantM.marshall(value);
-                    byte[] encryptedData = data;
-                    if (encProvider != null) {
-                        encryptedData = encProvider.encrypt(data);
-                    }
                     if (segment == MASConstants.MAS_APPLICATION) {
                         s = context.getPackageName();
                     }
-                    dataSource.put(new Key(key, segment, s), new LocalStoreEntity(relevantM.getTypeAsString(), encryptedData));
+                    store(Collections.singletonList(prepare(new Key(key, segment, s), value)));
                     Callback.onSuccess(callback, null);
                 } catch (Exception e) {
                     Callback.onError(callback, e);
@@ -84,6 +133,54 @@ public class MASSecureLocalStorage extends AbstractMASStorage {
 
     }
 
+    @Override
+    public void saveAll(@NonNull final Map<String, Object> values, @MASStorageSegment final int segment, final MASCallback<Void> callback) {
+
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            checkNull(entry.getKey(), entry.getValue());
+        }
+        final Map<String, Object> copy = new LinkedHashMap<>(values);
+        execute(new Functions.UnaryVoid<String>() {
+            @Override
+            public void call(String s) {
+                try {
+                    if (segment == MASConstants.MAS_APPLICATION) {
+                        s = context.getPackageName();
+                    }
+                    List<Callable<Row>> tasks = new ArrayList<>();
+                    for (final Map.Entry<String, Object> entry : copy.entrySet()) {
+                        final Key k = new Key(entry.getKey(), segment, s);
+                        tasks.add(new Callable<Row>() {
+                            @Override
+                            public Row call() throws Exception {
+                                return prepare(k, entry.getValue());
+                            }
+                        });
+                    }
+                    List<Row> rows = new ArrayList<>();
+                    Exception error = null;
+                    for (Future<Row> future : invokeAll(tasks)) {
+                        try {
+                            rows.add(future.get());
+                        } catch (ExecutionException e) {
+                            if (error == null) {
+                                error = getCause(e);
+                            }
+                        }
+                    }
+                    if (error != null) {
+                        discard(rows);
+                        throw error;
+                    }
+                    store(rows);
+                    Callback.onSuccess(callback, null);
+                } catch (Exception e) {
+                    Callback.onError(callback, e);
+                }
+            }
+        }, segment, callback);
+    }
+
     @Override
     public void findByKey(@NonNull final String key, @MASStorageSegment final int segment, final MASCallback callback) {
 
@@ -94,14 +191,105 @@ public class MASSecureLocalStorage extends AbstractMASStorage {
 
                 try {
                     Object value = null;
-                    LocalStoreEntity result = dataSource.get(new Key(key,segment, s));
+                    Key k = new Key(key, segment, s);
+                    LocalStoreEntity result = dataSource.get(k);
                     if (result != null) {
-                        byte[] decryptedData = result.getData();
-                        if (encProvider != null) {
-                            decryptedData = encProvider.decrypt(result.getData());
+                        value = decode(k, result);
+                    }
+                    Callback.onSuccess(callback, value);
+                } catch (Exception e) {
+                    Callback.onError(callback, e);
+                }
+            }
+        }, segment, callback);
+    }
+
+    @Override
+    public void findAll(@NonNull Collection<String> keys, @MASStorageSegment final int segment, final MASCallback<Map<String, Object>> callback) {
+
+        for (String key : keys) {
+            checkNull(key);
+        }
+        final List<String> copy = new ArrayList<>(keys);
+        execute(new Functions.UnaryVoid<String>() {
+            @Override
+            public void call(final String s) {
+                try {
+                    //Read the rows from a single snapshot, then decrypt and unmarshall in parallel
+                    final Map<String, LocalStoreEntity> rows = new LinkedHashMap<>();
+                    dataSource.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (String key : copy) {
+                                LocalStoreEntity result = dataSource.get(new Key(key, segment, s));
+                                if (result != null) {
+                                    rows.put(key, result);
+                                }
+                            }
+                        }
+                    });
+                    List<Callable<Object>> tasks = new ArrayList<>();
+                    for (final Map.Entry<String, LocalStoreEntity> row : rows.entrySet()) {
+                        tasks.add(new Callable<Object>() {
+                            @Override
+                            public Object call() throws Exception {
+                                return decode(new Key(row.getKey(), segment, s), row.getValue());
+                            }
+                        });
+                    }
+                    Map<String, Object> values = new LinkedHashMap<>();
+                    Iterator<String> iterator = rows.keySet().iterator();
+                    for (Future<Object> future : invokeAll(tasks)) {
+                        String key = iterator.next();
+                        Object value;
+                        try {
+                            value = future.get();
+                        } catch (ExecutionException e) {
+                            throw getCause(e);
+                        }
+                        //Deleted since the snapshot
+                        if (value != null) {
+                            values.put(key, value);
+                        }
+                    }
+                    Callback.onSuccess(callback, values);
+                } catch (Exception e) {
+                    Callback.onError(callback, e);
+                }
+            }
+        }, segment, callback);
+    }
+
+    /**
+     * Find the marshalled value of an object from Local Storage based on a specific key, without loading
+     * large values in memory. The stream holds the bytes of the object as marshalled by its {@link DataMarshaller},
+     * for example the PNG image of a {@link android.graphics.Bitmap}.
+     *
+     * @param key      The key used to get the object from storage
+     * @param segment  The Storage segment {@link MASStorageSegment} to be used in the search
+     * @param callback Notifies the caller with the decrypted stream, or null if not found. The stream must be closed by the caller.
+     */
+    public void findStreamByKey(@NonNull final String key, @MASStorageSegment final int segment, final MASCallback<InputStream> callback) {
+
+        checkNull(key);
+        execute(new Functions.UnaryVoid<String>() {
+            @Override
+            public void call(String s) {
+
+                try {
+                    InputStream value = null;
+                    Key k = new Key(key, segment, s);
+                    LocalStoreEntity result = dataSource.get(k);
+                    if (result != null) {
+                        try {
+                            value = openStream(result);
+                        } catch (FileNotFoundException e) {
+                            //The value was replaced or deleted after the row was read
+                            result = dataSource.get(k);
+                            if (result != null) {
+                                value = openStream(result);
+                            }
                         }
-                        DataMarshaller relevantM = findMarshaller(result.getType());
-                        value = relevantM.unmarshall(decryptedData);
                     }
                     Callback.onSuccess(callback, value);
                 } catch (Exception e) {
@@ -118,7 +306,40 @@ public class MASSecureLocalStorage extends AbstractMASStorage {
             @Override
             public void call(String s) {
                 try {
-                    dataSource.remove(new Key(key,segment, s));
+                    Key k = new Key(key, segment, s);
+                    List<byte[]> previous = dataSource.getValues(k, FILE_TYPE);
+                    dataSource.remove(k);
+                    deleteFiles(previous);
+                    Callback.onSuccess(callback, null);
+                } catch (Exception e) {
+                    Callback.onError(callback, e);
+                }
+            }
+        }, segment, callback);
+    }
+
+    @Override
+    public void deleteAll(@NonNull Collection<String> keys, @MASStorageSegment final int segment, final MASCallback<Void> callback) {
+        for (String key : keys) {
+            checkNull(key);
+        }
+        final List<String> copy = new ArrayList<>(keys);
+        execute(new Functions.UnaryVoid<String>() {
+            @Override
+            public void call(final String s) {
+                try {
+                    final List<byte[]> previous = new ArrayList<>();
+                    dataSource.runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (String key : copy) {
+                                Key k = new Key(key, segment, s);
+                                previous.addAll(dataSource.getValues(k, FILE_TYPE));
+                                dataSource.remove(k);
+                            }
+                        }
+                    });
+                    deleteFiles(previous);
                     Callback.onSuccess(callback, null);
                 } catch (Exception e) {
                     Callback.onError(callback, e);
@@ -138,7 +359,10 @@ public class MASSecureLocalStorage extends AbstractMASStorage {
             @Override
             public void call(String s) {
                 try {
-                    dataSource.removeAll(new Key(null, segment, s));
+                    Key filter = new Key(null, segment, s);
+                    List<byte[]> previous = dataSource.getValues(filter, FILE_TYPE);
+                    dataSource.removeAll(filter);
+                    deleteFiles(previous);
                     Callback.onSuccess(callback, null);
                 } catch (Exception e) {
                     Callback.onError(callback, e);
@@ -166,6 +390,175 @@ public class MASSecureLocalStorage extends AbstractMASStorage {
         }, segment, callback);
     }
 
+    /**
+     * Marshall and encrypt the value for its row, into a file referenced by the row if larger than
+     * {@link #LARGE_VALUE_THRESHOLD}. Called from several threads.
+     */
+    private Row prepare(LocalStoreKey key, Object value) throws Exception {
+        DataMarshaller relevantM = findMarshaller(value);
+        byte[] data = relevantM.marshall(value);
+        if (data.length > LARGE_VALUE_THRESHOLD) {
+            String file = files.write(data);
+            return new Row(key, new LocalStoreEntity(FILE_TYPE + relevantM.getTypeAsString(), file.getBytes("UTF-8")), file);
+        }
+        byte[] encryptedData = data;
+        if (encProvider != null) {
+            encryptedData = encProvider.encrypt(data);
+        }
+        return new Row(key, new LocalStoreEntity(relevantM.getTypeAsString(), encryptedData), null);
+    }
+
+    /**
+     * Write the rows in a single transaction. The files are complete before the rows reference them,
+     * and the files of the previous values are deleted once the rows are replaced.
+     */
+    private void store(final List<Row> rows) throws IOException {
+        final List<byte[]> previous = new ArrayList<>();
+        boolean committed = false;
+        try {
+            dataSource.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    for (Row row : rows) {
+                        previous.addAll(dataSource.getValues(row.key, FILE_TYPE));
+                        dataSource.put(row.key, row.entity);
+                    }
+                }
+            });
+            committed = true;
+        } finally {
+            if (!committed) {
+                discard(rows);
+            } else {
+                for (Row row : rows) {
+                    if (row.file != null) {
+                        files.release(row.file);
+                    }
+                }
+            }
+        }
+        deleteFiles(previous);
+    }
+
+    /**
+     * Delete the files of the rows that are not written.
+     */
+    private void discard(List<Row> rows) {
+        for (Row row : rows) {
+            if (row.file != null) {
+                files.delete(row.file);
+                files.release(row.file);
+            }
+        }
+    }
+
+    private InputStream openStream(LocalStoreEntity entity) throws Exception {
+        if (isFile(entity.getType())) {
+            return files.openStream(getFileName(entity.getData()));
+        }
+        byte[] decryptedData = entity.getData();
+        if (encProvider != null) {
+            decryptedData = encProvider.decrypt(entity.getData());
+        }
+        return new ByteArrayInputStream(decryptedData);
+    }
+
+    /**
+     * Decode the row read for the key. A concurrent save or delete may remove the file of a large value
+     * once the row is read, the row is then read again once.
+     *
+     * @return The object, or null if the row was deleted.
+     */
+    private Object decode(Key key, LocalStoreEntity entity) throws Exception {
+        try {
+            return decode(entity);
+        } catch (FileNotFoundException e) {
+            LocalStoreEntity current = dataSource.get(key);
+            return current == null ? null : decode(current);
+        }
+    }
+
+    private Object decode(LocalStoreEntity entity) throws Exception {
+        byte[] decryptedData;
+        String type = entity.getType();
+        if (isFile(type)) {
+            decryptedData = files.read(getFileName(entity.getData()));
+            type = type.substring(FILE_TYPE.length());
+        } else {
+            decryptedData = entity.getData();
+            if (encProvider != null) {
+                decryptedData = encProvider.decrypt(entity.getData());
+            }
+        }
+        DataMarshaller relevantM = findMarshaller(type);
+        return relevantM.unmarshall(decryptedData);
+    }
+
+    /**
+     * Run the tasks on the marshalling threads and wait for all of them, a single task runs on the calling thread.
+     */
+    private static <T> List<Future<T>> invokeAll(List<Callable<T>> tasks) throws InterruptedException {
+        if (tasks.size() < 2) {
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                FutureTask<T> future = new FutureTask<>(task);
+                future.run();
+                futures.add(future);
+            }
+            return futures;
+        }
+        return executor.invokeAll(tasks);
+    }
+
+    private static Exception getCause(ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+            return (Exception) e.getCause();
+        }
+        return e;
+    }
+
+    private void deleteFiles(List<byte[]> fileNames) throws IOException {
+        for (byte[] fileName : fileNames) {
+            files.delete(getFileName(fileName));
+        }
+    }
+
+    private static boolean isFile(String type) {
+        return type.startsWith(FILE_TYPE);
+    }
+
+    private static String getFileName(byte[] data) throws IOException {
+        return new String(data, "UTF-8");
+    }
+
+    /**
+     * Delete the files left by interrupted operations, once per process.
+     */
+    private void collectFiles() {
+        if (filesCollected) {
+            return;
+        }
+        filesCollected = true;
+        try {
+            files.collect(new Functions.Nullary<Collection<String>>() {
+                @Override
+                public Collection<String> call() {
+                    List<String> names = new ArrayList<>();
+                    try {
+                        for (byte[] fileName : dataSource.getValues(new LocalStoreKey(null, null, null), FILE_TYPE)) {
+                            names.add(getFileName(fileName));
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return names;
+                }
+            });
+        } catch (Exception e) {
+            if (DEBUG) Log.w(TAG, "Failed to delete the unreferenced storage files", e);
+        }
+    }
+
     private void setEncryptionProvider(@NonNull EncryptionProvider provider) {
         encProvider = provider;
     }
@@ -222,6 +615,7 @@ public class MASSecureLocalStorage extends AbstractMASStorage {
 
             @Override
             public Void loadInBackground() {
+                collectFiles();
                 function.call(username);
                 return null;
             }
@@ -241,6 +635,19 @@ public class MASSecureLocalStorage extends AbstractMASStorage {
 
     }
 
+    private static class Row {
+
+        private final LocalStoreKey key;
+        private final LocalStoreEntity entity;
+        private final String file;
+
+        private Row(LocalStoreKey key, LocalStoreEntity entity, String file) {
+            this.key = key;
+            this.entity = entity;
+            this.file = file;
+        }
+    }
+
     private static class Key extends LocalStoreKey {
 
         public Key(String key, Integer segment, String createdBy) {
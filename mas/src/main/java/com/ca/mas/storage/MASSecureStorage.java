@@ -28,7 +28,10 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import javax.net.ssl.HttpsURLConnection;
@@ -116,6 +119,95 @@ public class MASSecureStorage extends AbstractMASStorage {
 
     }
 
+    /**
+     * The storage API has no batch operation, the items are listed once to send a single create or update
+     * request for each item, instead of an update followed by a create for the new items.
+     * The requests are sent concurrently.
+     */
+    @Override
+    public void saveAll(@NonNull Map<String, Object> values, @MASStorageSegment final int segment, final MASCallback<Void> callback) {
+        final Map<String, JSONObject> items = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                checkNull(entry.getKey(), entry.getValue());
+                DataMarshaller relevantM = findMarshaller(entry.getValue());
+                StorageItem item = new StorageItem();
+                item.setKey(entry.getKey());
+                item.setType(relevantM.getTypeAsString());
+                item.setValue(relevantM.marshall(entry.getValue()));
+                items.put(entry.getKey(), item.getAsJSONObject());
+            }
+        } catch (NullPointerException e) {
+            throw e;
+        } catch (Exception e) {
+            Callback.onError(callback, e);
+            return;
+        }
+        if (items.isEmpty()) {
+            Callback.onSuccess(callback, null);
+            return;
+        }
+
+        keySet(segment, new MASCallback<Set<String>>() {
+            @Override
+            public void onSuccess(Set<String> existing) {
+                final Batch<Void> batch = new Batch<>(items.size(), false, callback);
+                for (final Map.Entry<String, JSONObject> item : items.entrySet()) {
+                    MASRequest.MASRequestBuilder builder = getRequestBuilder(item.getKey(), segment);
+                    if (existing.contains(item.getKey())) {
+                        builder.put(MASRequestBody.jsonBody(item.getValue()));
+                    } else {
+                        builder.post(MASRequestBody.jsonBody(item.getValue()));
+                    }
+                    MAS.invoke(builder.build(), new MASCallback<MASResponse<Void>>() {
+                        @Override
+                        public void onSuccess(MASResponse<Void> result) {
+                            batch.done(item.getKey(), null);
+                        }
+
+                        @Override
+                        public void onError(Throwable e) {
+                            batch.failed(e);
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                Callback.onError(callback, e);
+            }
+        });
+    }
+
+    /**
+     * The storage API has no batch operation, the items are requested concurrently.
+     */
+    @Override
+    public void findAll(@NonNull Collection<String> keys, @MASStorageSegment int segment, MASCallback<Map<String, Object>> callback) {
+        for (String key : keys) {
+            checkNull(key);
+        }
+        if (keys.isEmpty()) {
+            Callback.onSuccess(callback, new LinkedHashMap<String, Object>());
+            return;
+        }
+        final Batch<Map<String, Object>> batch = new Batch<>(keys.size(), true, callback);
+        for (final String key : keys) {
+            findByKey(key, segment, new MASCallback<Object>() {
+                @Override
+                public void onSuccess(Object result) {
+                    batch.done(key, result);
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    batch.failed(e);
+                }
+            });
+        }
+    }
+
     @Override
     public void findByKey(@NonNull final String key, @MASStorageSegment final int segment, final MASCallback callback) {
         checkNull(key);
@@ -215,6 +307,84 @@ public class MASSecureStorage extends AbstractMASStorage {
 
     }
 
+    /**
+     * The storage API has no batch operation, the items are deleted concurrently.
+     */
+    @Override
+    public void deleteAll(@NonNull Collection<String> keys, @MASStorageSegment int segment, MASCallback<Void> callback) {
+        for (String key : keys) {
+            checkNull(key);
+        }
+        if (keys.isEmpty()) {
+            Callback.onSuccess(callback, null);
+            return;
+        }
+        final Batch<Void> batch = new Batch<>(keys.size(), false, callback);
+        for (final String key : keys) {
+            delete(key, segment, new MASCallback<Void>() {
+                @Override
+                public void onSuccess(Void result) {
+                    batch.done(key, null);
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    batch.failed(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Collects the results of the requests of a bulk operation, the callback is notified once all the
+     * requests complete, with the first error if any failed.
+     */
+    private static class Batch<T> {
+
+        private final MASCallback<T> callback;
+        private final boolean withResults;
+        private final Map<String, Object> results = new LinkedHashMap<>();
+        private int remaining;
+        private Throwable error;
+
+        private Batch(int count, boolean withResults, MASCallback<T> callback) {
+            this.remaining = count;
+            this.withResults = withResults;
+            this.callback = callback;
+        }
+
+        void done(String key, Object value) {
+            synchronized (this) {
+                if (value != null) {
+                    results.put(key, value);
+                }
+            }
+            complete();
+        }
+
+        void failed(Throwable e) {
+            synchronized (this) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+            complete();
+        }
+
+        private void complete() {
+            synchronized (this) {
+                if (--remaining > 0) {
+                    return;
+                }
+            }
+            if (error != null) {
+                Callback.onError(callback, error);
+            } else {
+                Callback.onSuccess(callback, withResults ? (T) results : null);
+            }
+        }
+    }
+
     /**
      * <p>Generate a String representing the cloud storage URL without a dataKey; i.e.;
      * <b>https://magserver:8443/Client/{clientId}/Data/{dataKey}</b></p>